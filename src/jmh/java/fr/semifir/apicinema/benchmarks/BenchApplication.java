@@ -0,0 +1,80 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.ApiCinemaApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * L'application complète démarrée sur un port libre contre un InMemoryMongo,
+ * avec un client HTTP pour l'appeler
+ */
+public class BenchApplication implements AutoCloseable {
+
+    public final ConfigurableApplicationContext context;
+    private final HttpClient client;
+    private final String baseUrl;
+
+    /**
+     * @param mongo
+     * @param profiles profils Spring actifs
+     * @param properties propriétés supplémentaires, "nom=valeur", prioritaires sur application.properties
+     */
+    public BenchApplication(InMemoryMongo mongo, String[] profiles, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.data.mongodb.host=" + mongo.address.getHostString(),
+                "--spring.data.mongodb.port=" + mongo.address.getPort()));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        this.context = new SpringApplicationBuilder(ApiCinemaApplication.class)
+                .profiles(profiles)
+                .run(args.toArray(new String[0]));
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.baseUrl = "http://localhost:" + this.context.getEnvironment().getProperty("local.server.port") + "/";
+    }
+
+    public HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(this.baseUrl + path)).GET().build();
+    }
+
+    public HttpRequest put(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    /**
+     * @param request
+     * @return code de la réponse, dont le corps est lu puis ignoré
+     */
+    public int status(HttpRequest request) throws IOException, InterruptedException {
+        return this.client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * @param request
+     * @return taille du corps de la réponse, qui doit être en 200
+     */
+    public int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = this.client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " : " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    @Override
+    public void close() {
+        this.context.close();
+    }
+}
@@ -0,0 +1,26 @@
+package fr.semifir.apicinema.benchmarks;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Caches findByID des services pour les benchmarks, comme dans CacheConfiguration
+ */
+public final class BenchCaches {
+
+    private BenchCaches() {
+    }
+
+    /**
+     * @param enabled false : taille 0 avec éviction synchrone, chaque lecture va à Mongo
+     */
+    public static <V> Cache<String, V> of(boolean enabled) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        if (enabled) {
+            return builder.maximumSize(10_000).expireAfterWrite(Duration.ofSeconds(30)).build();
+        }
+        return builder.maximumSize(0).executor(Runnable::run).build();
+    }
+}
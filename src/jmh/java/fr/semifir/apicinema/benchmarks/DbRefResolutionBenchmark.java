@@ -0,0 +1,83 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.FilmRepository;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.services.Pages;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecture d'une page de films / séances : @DBRef résolues une par une par le converter (eager)
+ * ou par lots avec DbRefBatchLoader (batched).
+ * Les compteurs mongoCommands / calls donnent le nombre de requêtes Mongo par page
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DbRefResolutionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int pageSize;
+
+    @Param({"eager", "batched"})
+    String resolution;
+
+    InMemoryMongo mongo;
+    FilmRepository films;
+    SeanceRepository seances;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class QueryCounts {
+        public long mongoCommands;
+        public long calls;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mongo = new InMemoryMongo();
+        mongo.seed(new Fixtures(2000));
+        films = mongo.repository(FilmRepository.class);
+        seances = mongo.repository(SeanceRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongo.close();
+    }
+
+    @Benchmark
+    public List<Film> filmPage(QueryCounts counts) {
+        long before = mongo.commands.total();
+        List<Film> page = resolution.equals("eager")
+                ? mongo.template.find(firstPage(), Film.class)
+                : films.findPageResolved(null, Pages.byId(pageSize));
+        counts.mongoCommands += mongo.commands.total() - before;
+        counts.calls++;
+        return page;
+    }
+
+    @Benchmark
+    public List<Seance> seancePage(QueryCounts counts) {
+        long before = mongo.commands.total();
+        List<Seance> page = resolution.equals("eager")
+                ? mongo.template.find(firstPage(), Seance.class)
+                : seances.findPageResolved(null, Pages.byId(pageSize));
+        counts.mongoCommands += mongo.commands.total() - before;
+        counts.calls++;
+        return page;
+    }
+
+    private Query firstPage() {
+        return new Query().with(Sort.by(Sort.Direction.ASC, "id")).limit(pageSize);
+    }
+}
@@ -0,0 +1,58 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.dtos.film.FilmTitreDTO;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.services.FilmTitleIndex;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche par titre dans l'index en mémoire, sur des titres tirés d'un vocabulaire français accentué :
+ * saisie courte (préfixe d'une lettre), mot partiel, plusieurs mots, et saisie sans résultat
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilmSearchBenchmark {
+
+    private static final String[] WORDS = {
+            "le", "la", "les", "des", "du", "fabuleux", "destin", "amélie", "poulain", "intouchables",
+            "été", "dernier", "métro", "haine", "cité", "peur", "château", "mystère", "cœur", "forêt",
+            "bête", "enfants", "paradis", "grande", "illusion", "règle", "jeu", "quatre", "cents", "coups",
+            "élève", "théâtre", "lumière", "nuit", "américaine", "belle", "époque", "jour", "fête", "océan"
+    };
+
+    @Param({"10000", "100000"})
+    int films;
+
+    @Param({"a", "ame", "destin amel", "zzz"})
+    String q;
+
+    FilmTitleIndex index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        index = new FilmTitleIndex(null);
+        for (int i = 0; i < films; i++) {
+            StringBuilder nom = new StringBuilder();
+            for (int w = 2 + random.nextInt(4); w > 0; w--) {
+                nom.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            nom.append(i);
+            index.put(new Film(new ObjectId().toHexString(), nom.toString(), 90f, null));
+        }
+    }
+
+    @Benchmark
+    public List<FilmTitreDTO> search() {
+        return index.search(q, 10);
+    }
+}
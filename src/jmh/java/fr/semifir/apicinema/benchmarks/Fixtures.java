@@ -0,0 +1,42 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Jeu de données commun aux benchmarks : des cinémas, leurs salles, des séances et un film par séance
+ */
+public class Fixtures {
+
+    public final List<Cinema> cinemas = new ArrayList<>();
+    public final List<Salle> salles = new ArrayList<>();
+    public final List<Seance> seances = new ArrayList<>();
+    public final List<Film> films = new ArrayList<>();
+
+    /**
+     * @param nbSeances nombre de séances (et de films), réparties sur 10 salles par cinéma
+     */
+    public Fixtures(int nbSeances) {
+        int nbSalles = Math.max(1, nbSeances / 20);
+        int nbCinemas = Math.max(1, nbSalles / 10);
+        for (int i = 0; i < nbCinemas; i++) {
+            cinemas.add(new Cinema(new ObjectId().toHexString(), "Cinéma " + i));
+        }
+        for (int i = 0; i < nbSalles; i++) {
+            salles.add(new Salle(new ObjectId().toHexString(), i % 10 + 1, 80 + i % 200, cinemas.get(i % nbCinemas)));
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < nbSeances; i++) {
+            Seance seance = new Seance(new ObjectId().toHexString(), new Date(start + i * 3_600_000L), salles.get(i % nbSalles));
+            seances.add(seance);
+            films.add(new Film(new ObjectId().toHexString(), "Film numéro " + i, 90f + i % 60, seance));
+        }
+    }
+}
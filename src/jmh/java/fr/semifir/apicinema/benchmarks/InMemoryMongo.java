@@ -0,0 +1,94 @@
+package fr.semifir.apicinema.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import fr.semifir.apicinema.monitoring.MongoCommandCounter;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.DbRefBatchLoader;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import fr.semifir.apicinema.repositories.FilmRepositoryCustom;
+import fr.semifir.apicinema.repositories.FilmRepositoryCustomImpl;
+import fr.semifir.apicinema.repositories.SalleRepositoryCustom;
+import fr.semifir.apicinema.repositories.SalleRepositoryCustomImpl;
+import fr.semifir.apicinema.repositories.SeanceRepositoryCustom;
+import fr.semifir.apicinema.repositories.SeanceRepositoryCustomImpl;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+/**
+ * Serveur Mongo en mémoire (mongo-java-server) démarré dans le process du benchmark,
+ * avec un MongoTemplate et une fabrique de repositories Spring Data branchés dessus
+ */
+public class InMemoryMongo implements AutoCloseable {
+
+    private final MongoServer server;
+    private final MongoClient client;
+    public final InetSocketAddress address;
+    public final MongoCommandCounter commands = new MongoCommandCounter();
+    public final MongoTemplate template;
+    // Pas chargé tant que references.load() n'est pas appelé : les lectures vont alors dans Mongo
+    public final ReferenceData references;
+    public final DbRefBatchLoader loader;
+    public final BulkWriter bulkWriter;
+    public final PatchWriter patchWriter;
+    private final MongoRepositoryFactory repositories;
+
+    public InMemoryMongo() {
+        this.server = new MongoServer(new MemoryBackend());
+        this.address = this.server.bind();
+        this.client = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString("mongodb://" + address.getHostString() + ":" + address.getPort()))
+                .addCommandListener(this.commands)
+                .build());
+        this.template = new MongoTemplate(this.client, "cinemas");
+        this.references = new ReferenceData(this.template, true, Duration.ZERO);
+        this.loader = new DbRefBatchLoader(this.template, this.references);
+        this.bulkWriter = new BulkWriter(this.template, 1000);
+        this.patchWriter = new PatchWriter(this.template, this.loader, new ObjectMapper());
+        this.repositories = new MongoRepositoryFactory(this.template);
+    }
+
+    /**
+     * Repository Spring Data, avec les mêmes fragments custom que dans l'application
+     * @param repositoryType
+     * @return
+     */
+    public <R> R repository(Class<R> repositoryType) {
+        RepositoryFragments fragments = RepositoryFragments.empty();
+        if (SalleRepositoryCustom.class.isAssignableFrom(repositoryType)) {
+            fragments = RepositoryFragments.just(new SalleRepositoryCustomImpl(this.loader));
+        } else if (SeanceRepositoryCustom.class.isAssignableFrom(repositoryType)) {
+            fragments = RepositoryFragments.just(new SeanceRepositoryCustomImpl(this.loader, this.template));
+        } else if (FilmRepositoryCustom.class.isAssignableFrom(repositoryType)) {
+            fragments = RepositoryFragments.just(new FilmRepositoryCustomImpl(this.loader, this.template));
+        }
+        return this.repositories.getRepository(repositoryType, fragments);
+    }
+
+    /**
+     * J'insère le jeu de données, collection par collection
+     * @param fixtures
+     */
+    public void seed(Fixtures fixtures) {
+        this.template.insertAll(fixtures.cinemas);
+        this.template.insertAll(fixtures.salles);
+        this.template.insertAll(fixtures.seances);
+        this.template.insertAll(fixtures.films);
+    }
+
+    @Override
+    public void close() {
+        this.client.close();
+        this.server.shutdownNow();
+    }
+}
@@ -0,0 +1,87 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.mappers.CinemaMapper;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.FilmMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.mappers.SalleMapper;
+import fr.semifir.apicinema.mappers.SeanceMapper;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût par ligne du mapping entité -> DTO : ModelMapper (réflexion) contre MapStruct (code généré)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    @Param({"modelmapper", "mapstruct"})
+    String mapping;
+
+    EntityMapper<Cinema, CinemaDTO> cinemaMapper;
+    EntityMapper<Salle, SalleDTO> salleMapper;
+    EntityMapper<Seance, SeanceDTO> seanceMapper;
+    EntityMapper<Film, FilmDTO> filmMapper;
+
+    Cinema cinema;
+    Salle salle;
+    Seance seance;
+    Film film;
+
+    @Setup
+    public void setup() {
+        if (mapping.equals("modelmapper")) {
+            ModelMapper modelMapper = new ModelMapper();
+            cinemaMapper = new ModelMapperEntityMapper<>(modelMapper, CinemaDTO.class);
+            salleMapper = new ModelMapperEntityMapper<>(modelMapper, SalleDTO.class);
+            seanceMapper = new ModelMapperEntityMapper<>(modelMapper, SeanceDTO.class);
+            filmMapper = new ModelMapperEntityMapper<>(modelMapper, FilmDTO.class);
+        } else {
+            cinemaMapper = Mappers.getMapper(CinemaMapper.class);
+            salleMapper = Mappers.getMapper(SalleMapper.class);
+            seanceMapper = Mappers.getMapper(SeanceMapper.class);
+            filmMapper = Mappers.getMapper(FilmMapper.class);
+        }
+        cinema = new Cinema("61b0c0a1e4b0a1b2c3d4e5f6", "Gaumont");
+        salle = new Salle("61b0c0a1e4b0a1b2c3d4e5f7", 1, 120, cinema);
+        seance = new Seance("61b0c0a1e4b0a1b2c3d4e5f8", new Date(), salle);
+        film = new Film("61b0c0a1e4b0a1b2c3d4e5f9", "Le Fabuleux Destin d'Amélie Poulain", 122f, seance);
+    }
+
+    @Benchmark
+    public CinemaDTO cinema() {
+        return cinemaMapper.toDTO(cinema);
+    }
+
+    @Benchmark
+    public SalleDTO salle() {
+        return salleMapper.toDTO(salle);
+    }
+
+    @Benchmark
+    public SeanceDTO seance() {
+        return seanceMapper.toDTO(seance);
+    }
+
+    @Benchmark
+    public FilmDTO film() {
+        return filmMapper.toDTO(film);
+    }
+}
@@ -0,0 +1,120 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.mappers.CinemaMapper;
+import fr.semifir.apicinema.mappers.FilmMapper;
+import fr.semifir.apicinema.mappers.SalleMapper;
+import fr.semifir.apicinema.mappers.SeanceMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.FilmRepository;
+import fr.semifir.apicinema.repositories.SalleRepository;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.services.CinemaService;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.FilmService;
+import fr.semifir.apicinema.services.SalleService;
+import fr.semifir.apicinema.services.SeanceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * findAll et findByID des quatre services contre un Mongo en mémoire dans le même process,
+ * avec ou sans le cache des findByID, avec ou sans les cinémas et salles en mémoire (ReferenceData)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MongoServiceBenchmark {
+
+    @Param({"1000"})
+    int nbSeances;
+
+    @Param({"false", "true"})
+    boolean cache;
+
+    @Param({"false", "true"})
+    boolean referenceData;
+
+    InMemoryMongo mongo;
+    Fixtures fixtures;
+    CinemaService cinemaService;
+    SalleService salleService;
+    SeanceService seanceService;
+    FilmService filmService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mongo = new InMemoryMongo();
+        fixtures = new Fixtures(nbSeances);
+        mongo.seed(fixtures);
+        if (referenceData) {
+            mongo.references.load();
+        }
+        cinemaService = new CinemaService(mongo.repository(CinemaRepository.class), Mappers.getMapper(CinemaMapper.class), BenchCaches.of(cache), mongo.bulkWriter, mongo.patchWriter, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "cinema"), mongo.references);
+        salleService = new SalleService(mongo.repository(SalleRepository.class), Mappers.getMapper(SalleMapper.class), BenchCaches.of(cache), mongo.bulkWriter, mongo.patchWriter, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "salle"), null, null, mongo.references, null);
+        seanceService = new SeanceService(mongo.repository(SeanceRepository.class), Mappers.getMapper(SeanceMapper.class), BenchCaches.of(cache), mongo.bulkWriter, mongo.patchWriter, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "seance"), null, null, null, null);
+        filmService = new FilmService(mongo.repository(FilmRepository.class), Mappers.getMapper(FilmMapper.class), BenchCaches.of(cache), mongo.bulkWriter, mongo.patchWriter, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "film"), null, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongo.close();
+    }
+
+    private static <T> T any(List<T> rows) {
+        return rows.get(ThreadLocalRandom.current().nextInt(rows.size()));
+    }
+
+    @Benchmark
+    public List<CinemaDTO> cinemaFindAll() {
+        return cinemaService.findAll();
+    }
+
+    @Benchmark
+    public List<SalleDTO> salleFindAll() {
+        return salleService.findAll();
+    }
+
+    @Benchmark
+    public List<SeanceDTO> seanceFindAll() {
+        return seanceService.findAll();
+    }
+
+    @Benchmark
+    public List<FilmDTO> filmFindAll() {
+        return filmService.findAll();
+    }
+
+    @Benchmark
+    public Optional<CinemaDTO> cinemaFindByID() {
+        return cinemaService.findByID(any(fixtures.cinemas).getId());
+    }
+
+    @Benchmark
+    public Optional<SalleDTO> salleFindByID() {
+        return salleService.findByID(any(fixtures.salles).getId());
+    }
+
+    @Benchmark
+    public Optional<SeanceDTO> seanceFindByID() {
+        return seanceService.findByID(any(fixtures.seances).getId());
+    }
+
+    @Benchmark
+    public Optional<FilmDTO> filmFindByID() {
+        return filmService.findByID(any(fixtures.films).getId());
+    }
+}
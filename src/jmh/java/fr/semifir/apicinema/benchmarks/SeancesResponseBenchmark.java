@@ -0,0 +1,58 @@
+package fr.semifir.apicinema.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit de GET /seances (page de 100 séances avec Salle et Cinema imbriqués) sur l'application complète
+ * contre un Mongo en mémoire : Jackson par défaut ou réglé (apicinema.json.fast),
+ * réponse brute ou compressée en gzip. Le score secondaire bytes donne la taille envoyée
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class SeancesResponseBenchmark {
+
+    @Param({"1000"})
+    int nbSeances;
+
+    @Param({"false", "true"})
+    boolean fastJson;
+
+    @Param({"identity", "gzip"})
+    String encoding;
+
+    InMemoryMongo mongo;
+    BenchApplication application;
+    HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mongo = new InMemoryMongo();
+        mongo.seed(new Fixtures(nbSeances));
+        application = new BenchApplication(mongo, new String[0],
+                "apicinema.json.fast=" + fastJson,
+                "logging.level.root=WARN");
+        request = HttpRequest.newBuilder(application.get("seances?limit=100"), (name, value) -> true)
+                .header("Accept-Encoding", encoding)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+        mongo.close();
+    }
+
+    @Benchmark
+    public int get() throws IOException, InterruptedException {
+        return application.send(request);
+    }
+}
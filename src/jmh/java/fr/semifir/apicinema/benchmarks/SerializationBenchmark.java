@@ -0,0 +1,70 @@
+package fr.semifir.apicinema.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.json.FastJson;
+import fr.semifir.apicinema.mappers.FilmMapper;
+import fr.semifir.apicinema.mappers.SeanceMapper;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Sérialisation Jackson d'une page de SeanceDTO (Salle et Cinema imbriqués)
+ * et de FilmDTO (Seance, Salle et Cinema imbriqués), configurée comme dans Spring Boot :
+ * Jackson par défaut, ou avec les réglages de FastJson (apicinema.json.fast)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"100"})
+    int pageSize;
+
+    @Param({"default", "fast"})
+    String json;
+
+    ObjectWriter seancesWriter;
+    ObjectWriter filmsWriter;
+    List<SeanceDTO> seances;
+    List<FilmDTO> films;
+
+    @Setup
+    public void setup() {
+        Fixtures fixtures = new Fixtures(pageSize);
+        SeanceMapper seanceMapper = Mappers.getMapper(SeanceMapper.class);
+        FilmMapper filmMapper = Mappers.getMapper(FilmMapper.class);
+        seances = fixtures.seances.stream().map(seanceMapper::toDTO).collect(Collectors.toList());
+        films = fixtures.films.stream().map(filmMapper::toDTO).collect(Collectors.toList());
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (json.equals("fast")) {
+            builder.modulesToInstall(FastJson.accessors(), FastJson.dates()).postConfigurer(FastJson::preResolve);
+        }
+        ObjectMapper objectMapper = builder.build();
+        seancesWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, SeanceDTO.class));
+        filmsWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, FilmDTO.class));
+    }
+
+    @Benchmark
+    public byte[] seances() throws JsonProcessingException {
+        return seancesWriter.writeValueAsBytes(seances);
+    }
+
+    @Benchmark
+    public byte[] films() throws JsonProcessingException {
+        return filmsWriter.writeValueAsBytes(films);
+    }
+}
@@ -0,0 +1,97 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.mappers.CinemaMapper;
+import fr.semifir.apicinema.mappers.FilmMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.mappers.SalleMapper;
+import fr.semifir.apicinema.mappers.SeanceMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.FilmRepository;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import fr.semifir.apicinema.repositories.SalleRepository;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.services.CinemaService;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.FilmService;
+import fr.semifir.apicinema.services.SalleService;
+import fr.semifir.apicinema.services.SeanceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Une page de liste dans chacun des quatre services, repository en mémoire :
+ * seul le mapping entité -> DTO et la construction de la liste sont mesurés
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceMappingBenchmark {
+
+    @Param({"modelmapper", "mapstruct"})
+    String mapping;
+
+    @Param({"100"})
+    int pageSize;
+
+    CinemaService cinemaService;
+    SalleService salleService;
+    SeanceService seanceService;
+    FilmService filmService;
+
+    @Setup
+    public void setup() {
+        Fixtures fixtures = new Fixtures(pageSize * 200);
+        CinemaRepository cinemas = StubRepositories.returning(CinemaRepository.class, fixtures.cinemas.subList(0, Math.min(pageSize, fixtures.cinemas.size())));
+        SalleRepository salles = StubRepositories.returning(SalleRepository.class, fixtures.salles.subList(0, pageSize));
+        SeanceRepository seances = StubRepositories.returning(SeanceRepository.class, fixtures.seances.subList(0, pageSize));
+        FilmRepository films = StubRepositories.returning(FilmRepository.class, fixtures.films.subList(0, pageSize));
+        // Jamais chargé : les services lisent les repositories
+        ReferenceData references = new ReferenceData(null, false, Duration.ZERO);
+        if (mapping.equals("modelmapper")) {
+            ModelMapper modelMapper = new ModelMapper();
+            cinemaService = new CinemaService(cinemas, new ModelMapperEntityMapper<>(modelMapper, CinemaDTO.class), BenchCaches.of(false), null, null, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "cinema"), references);
+            salleService = new SalleService(salles, new ModelMapperEntityMapper<>(modelMapper, SalleDTO.class), BenchCaches.of(false), null, null, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "salle"), null, null, references, null);
+            seanceService = new SeanceService(seances, new ModelMapperEntityMapper<>(modelMapper, SeanceDTO.class), BenchCaches.of(false), null, null, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "seance"), null, null, null, null);
+            filmService = new FilmService(films, new ModelMapperEntityMapper<>(modelMapper, FilmDTO.class), BenchCaches.of(false), null, null, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "film"), null, null, null);
+        } else {
+            cinemaService = new CinemaService(cinemas, Mappers.getMapper(CinemaMapper.class), BenchCaches.of(false), null, null, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "cinema"), references);
+            salleService = new SalleService(salles, Mappers.getMapper(SalleMapper.class), BenchCaches.of(false), null, null, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "salle"), null, null, references, null);
+            seanceService = new SeanceService(seances, Mappers.getMapper(SeanceMapper.class), BenchCaches.of(false), null, null, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "seance"), null, null, null, null);
+            filmService = new FilmService(films, Mappers.getMapper(FilmMapper.class), BenchCaches.of(false), null, null, new CollectionVersions(), new ServiceMetrics(new SimpleMeterRegistry(), "film"), null, null, null);
+        }
+    }
+
+    @Benchmark
+    public List<CinemaDTO> cinemaPage() {
+        return cinemaService.findPage(null, pageSize);
+    }
+
+    @Benchmark
+    public List<SalleDTO> sallePage() {
+        return salleService.findPage(null, pageSize);
+    }
+
+    @Benchmark
+    public List<SeanceDTO> seancePage() {
+        return seanceService.findPage(null, pageSize);
+    }
+
+    @Benchmark
+    public List<FilmDTO> filmPage() {
+        return filmService.findPage(null, pageSize);
+    }
+}
@@ -0,0 +1,39 @@
+package fr.semifir.apicinema.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repositories factices qui renvoient des entités déjà en mémoire,
+ * pour mesurer le travail des services sans Mongo
+ */
+public final class StubRepositories {
+
+    private StubRepositories() {
+    }
+
+    public static <R> R returning(Class<R> repositoryType, List<?> rows) {
+        Object stub = Proxy.newProxyInstance(
+                repositoryType.getClassLoader(),
+                new Class<?>[]{repositoryType},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findAll":
+                        case "findAllBy":
+                        case "findByIdGreaterThan":
+                        case "findAllResolved":
+                        case "findPageResolved":
+                            return rows;
+                        case "findById":
+                            return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+                        case "streamAllBy":
+                        case "streamAllResolved":
+                            return rows.stream();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return repositoryType.cast(stub);
+    }
+}
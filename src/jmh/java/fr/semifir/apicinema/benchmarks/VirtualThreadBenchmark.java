@@ -0,0 +1,64 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.configurations.VirtualThreads;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads virtuels contre pool de threads Tomcat : 512 clients concurrents sur l'application complète,
+ * avec apicinema.threads.virtual=true ou le pool par défaut borné à tomcatThreads.
+ * Le cas virtual demande de lancer Maven avec un JDK 21 (JAVA_HOME), sinon il échoue au démarrage
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(512)
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+    @Param({"1000"})
+    int nbSeances;
+
+    @Param({"false", "true"})
+    boolean virtual;
+
+    @Param({"200"})
+    int tomcatThreads;
+
+    @Param({"films?limit=10"})
+    String path;
+
+    InMemoryMongo mongo;
+    BenchApplication application;
+    HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (virtual && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("Benchmark virtual=true à lancer sur Java 21, JVM actuelle : " + Runtime.version());
+        }
+        mongo = new InMemoryMongo();
+        mongo.seed(new Fixtures(nbSeances));
+        application = new BenchApplication(mongo, new String[0],
+                "apicinema.threads.virtual=" + virtual,
+                "server.tomcat.threads.max=" + tomcatThreads,
+                "server.tomcat.max-connections=20000");
+        request = application.get(path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+        mongo.close();
+    }
+
+    @Benchmark
+    public int get() throws IOException, InterruptedException {
+        return application.send(request);
+    }
+}
@@ -0,0 +1,55 @@
+package fr.semifir.apicinema.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test de charge HTTP côte à côte : l'application complète (profil reactive) tourne sur un port libre
+ * contre un Mongo en mémoire, et 64 clients concurrents appellent soit les controllers bloquants,
+ * soit leur variante réactive sous /reactive.
+ * server.tomcat.threads.max borne le pool de threads servlet, pour voir l'effet d'un pool saturé
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class WebStackBenchmark {
+
+    @Param({"1000"})
+    int nbSeances;
+
+    @Param({"films", "reactive/films", "seances/stream", "reactive/seances/stream"})
+    String path;
+
+    @Param({"16"})
+    int tomcatThreads;
+
+    InMemoryMongo mongo;
+    BenchApplication application;
+    HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mongo = new InMemoryMongo();
+        mongo.seed(new Fixtures(nbSeances));
+        application = new BenchApplication(mongo, new String[]{"reactive"}, "server.tomcat.threads.max=" + tomcatThreads);
+        request = application.get(path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+        mongo.close();
+    }
+
+    @Benchmark
+    public int get() throws IOException, InterruptedException {
+        return application.send(request);
+    }
+}
@@ -0,0 +1,132 @@
+package fr.semifir.apicinema.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.semifir.apicinema.benchmarks.BenchApplication;
+import fr.semifir.apicinema.benchmarks.Fixtures;
+import fr.semifir.apicinema.entities.Salle;
+
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+/**
+ * Les requêtes envoyées par le test de charge, tirées au hasard selon leur poids dans le mélange.
+ * Chaque requête porte sur un élément du jeu de données pris au hasard
+ */
+public class LoadMix {
+
+    public static final String DEFAULT = "films:15,film:15,seances:10,seance:10,salle:10,cinemas:5,programme:10,"
+            + "search:10,mget:5,put-salle:5,put-seance:5";
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Function<Random, HttpRequest>> requests = new ArrayList<>();
+    private final int[] cumulated;
+
+    /**
+     * @param mix "nom:poids,nom:poids..." parmi les requêtes de available
+     * @param application
+     * @param fixtures données chargées dans le Mongo de l'application
+     * @throws IllegalArgumentException pour une requête inconnue ou un poids invalide
+     */
+    public LoadMix(String mix, BenchApplication application, Fixtures fixtures) {
+        Map<String, Function<Random, HttpRequest>> available = available(application, fixtures);
+        List<Integer> weights = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            Function<Random, HttpRequest> request = available.get(parts[0]);
+            if (request == null || parts.length != 2) {
+                throw new IllegalArgumentException("Requête inconnue " + entry + ", parmi " + available.keySet());
+            }
+            int weight = Integer.parseInt(parts[1]);
+            if (weight <= 0) {
+                continue;
+            }
+            this.names.add(parts[0]);
+            this.requests.add(request);
+            weights.add(weight);
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mélange vide : " + mix);
+        }
+        this.cumulated = new int[weights.size()];
+        int total = 0;
+        for (int i = 0; i < weights.size(); i++) {
+            total += weights.get(i);
+            this.cumulated[i] = total;
+        }
+    }
+
+    public List<String> names() {
+        return this.names;
+    }
+
+    /**
+     * Je tire une requête selon les poids
+     * @param random
+     * @return l'indice de la requête dans names
+     */
+    public int pick(Random random) {
+        int drawn = random.nextInt(this.cumulated[this.cumulated.length - 1]);
+        int i = 0;
+        while (this.cumulated[i] <= drawn) {
+            i++;
+        }
+        return i;
+    }
+
+    public HttpRequest request(int index, Random random) {
+        return this.requests.get(index).apply(random);
+    }
+
+    private static Map<String, Function<Random, HttpRequest>> available(BenchApplication application, Fixtures fixtures) {
+        ObjectMapper json = new ObjectMapper();
+        Map<String, Function<Random, HttpRequest>> available = new LinkedHashMap<>();
+        available.put("films", random -> application.get("films?limit=50"));
+        available.put("film", random -> application.get("films/" + pick(fixtures.films, random).getId()));
+        available.put("seances", random -> application.get("seances?limit=50"));
+        available.put("seance", random -> application.get("seances/" + pick(fixtures.seances, random).getId()));
+        available.put("salles", random -> application.get("salles?limit=50"));
+        available.put("salle", random -> application.get("salles/" + pick(fixtures.salles, random).getId()));
+        available.put("cinemas", random -> application.get("cinemas"));
+        available.put("cinema", random -> application.get("cinemas/" + pick(fixtures.cinemas, random).getId()));
+        available.put("programme", random -> application.get("cinemas/" + pick(fixtures.cinemas, random).getId() + "/programme"));
+        available.put("search", random -> application.get("films/search?q="
+                + URLEncoder.encode("numéro " + random.nextInt(fixtures.films.size()), StandardCharsets.UTF_8)));
+        available.put("mget", random -> {
+            StringJoiner ids = new StringJoiner(",");
+            for (int i = 0; i < 20; i++) {
+                ids.add(pick(fixtures.films, random).getId());
+            }
+            return application.get("films/_mget?ids=" + ids);
+        });
+        // Ecritures : une salle change de nombre de places, une séance est réécrite à l'identique (pas de conflit)
+        available.put("put-salle", random -> {
+            Salle salle = pick(fixtures.salles, random);
+            Salle updated = new Salle(salle.getId(), salle.getNumDeSalle(), 50 + random.nextInt(250), salle.getCinema());
+            return application.put("salles", write(json, updated));
+        });
+        available.put("put-seance", random -> application.put("seances", write(json, pick(fixtures.seances, random))));
+        return available;
+    }
+
+    private static <T> T pick(List<T> list, Random random) {
+        return list.get(random.nextInt(list.size()));
+    }
+
+    private static String write(ObjectMapper json, Object entity) {
+        try {
+            return json.writeValueAsString(entity);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
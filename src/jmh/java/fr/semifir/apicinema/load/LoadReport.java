@@ -0,0 +1,102 @@
+package fr.semifir.apicinema.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latences (HdrHistogram, en microsecondes) et erreurs de chaque requête du mélange.
+ * Les Recorder sont écrits par tous les workers sans verrou ; reset ouvre une nouvelle mesure (fin du warmup)
+ */
+public class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final List<String> names;
+    private final List<Recorder> recorders = new ArrayList<>();
+    private final List<LongAdder> errors = new ArrayList<>();
+    private final List<Histogram> histograms = new ArrayList<>();
+    private long startNanos;
+    private double seconds;
+
+    public LoadReport(List<String> names) {
+        this.names = names;
+        names.forEach(name -> {
+            this.recorders.add(new Recorder(3));
+            this.errors.add(new LongAdder());
+        });
+        this.reset();
+    }
+
+    public void record(int index, long latencyNanos) {
+        this.recorders.get(index).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+    }
+
+    public void error(int index) {
+        this.errors.get(index).increment();
+    }
+
+    /**
+     * J'oublie ce qui a été mesuré jusqu'ici
+     */
+    public void reset() {
+        this.recorders.forEach(Recorder::reset);
+        this.errors.forEach(LongAdder::reset);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Je fige les mesures depuis le dernier reset
+     */
+    public void stop() {
+        this.seconds = (System.nanoTime() - this.startNanos) / 1e9;
+        this.histograms.clear();
+        this.recorders.forEach(recorder -> this.histograms.add(recorder.getIntervalHistogram()));
+    }
+
+    /**
+     * Une ligne par requête puis le total : nombre, débit, erreurs et percentiles en millisecondes
+     */
+    public void print(PrintStream out) {
+        out.printf("%-12s %10s %9s %8s %9s %9s %9s %9s %9s%n",
+                "requête", "nombre", "req/s", "erreurs", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        for (int i = 0; i < this.names.size(); i++) {
+            Histogram histogram = this.histograms.get(i);
+            total.add(histogram);
+            totalErrors += this.errors.get(i).sum();
+            this.printLine(out, this.names.get(i), histogram, this.errors.get(i).sum());
+        }
+        this.printLine(out, "total", total, totalErrors);
+    }
+
+    /**
+     * J'écris la distribution complète de chaque requête (format .hgrm, en millisecondes), pour tracer les courbes
+     * @param directory
+     */
+    public void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (int i = 0; i < this.names.size(); i++) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(this.names.get(i) + ".hgrm")))) {
+                this.histograms.get(i).outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private void printLine(PrintStream out, String name, Histogram histogram, long errors) {
+        out.printf("%-12s %10d %9.1f %8d", name, histogram.getTotalCount(), histogram.getTotalCount() / this.seconds, errors);
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9.2f", histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        out.printf(" %9.2f%n", histogram.getMaxValue() / 1000.0);
+    }
+}
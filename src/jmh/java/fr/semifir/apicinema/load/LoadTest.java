@@ -0,0 +1,138 @@
+package fr.semifir.apicinema.load;
+
+import fr.semifir.apicinema.benchmarks.BenchApplication;
+import fr.semifir.apicinema.benchmarks.Fixtures;
+import fr.semifir.apicinema.benchmarks.InMemoryMongo;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test de charge : l'application complète démarrée contre un Mongo en mémoire, remplie du jeu de données des benchmarks,
+ * puis appelée par concurrency clients pendant duration, après warmup, selon le mélange de requêtes mix.
+ * Sans rate, chaque client renvoie une requête dès la réponse reçue (débit maximal).
+ * Avec rate (requêtes/s au total), les clients suivent un planning fixe et la latence est comptée depuis l'heure prévue :
+ * une réponse lente retarde les suivantes, qui comptent ce retard (pas d'omission coordonnée).
+ * Le générateur tourne dans le même process que l'application : sur une petite machine, il lui prend du CPU.
+ *
+ * mvn -P jmh test-compile exec:exec@run-load -Dload.concurrency=32 -Dload.duration=60s
+ */
+public class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("seances", "5000");
+        DEFAULTS.put("concurrency", "16");
+        DEFAULTS.put("warmup", "10s");
+        DEFAULTS.put("duration", "30s");
+        DEFAULTS.put("rate", "0");
+        DEFAULTS.put("mix", LoadMix.DEFAULT);
+        DEFAULTS.put("profiles", "");
+        DEFAULTS.put("properties", "");
+        DEFAULTS.put("out", "");
+    }
+
+    /**
+     * @param args options "nom=valeur" (voir DEFAULTS) ; properties : propriétés de l'application séparées par ";"
+     */
+    public static void main(String[] args) throws Exception {
+        // Sans cela, devtools relancerait LoadTest.main dans son classloader avec les arguments de l'application
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0 || !DEFAULTS.containsKey(arg.substring(0, equals))) {
+                throw new IllegalArgumentException("Option inconnue " + arg + ", parmi " + DEFAULTS.keySet());
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        System.out.println("Options : " + options);
+
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        double rate = Double.parseDouble(options.get("rate"));
+        Duration warmup = DurationStyle.detectAndParse(options.get("warmup"));
+        Duration duration = DurationStyle.detectAndParse(options.get("duration"));
+        List<String> properties = new ArrayList<>(List.of("logging.level.root=WARN"));
+        for (String property : options.get("properties").split(";")) {
+            if (!property.isBlank()) {
+                properties.add(property.trim());
+            }
+        }
+        String profiles = options.get("profiles");
+
+        Fixtures fixtures = new Fixtures(Integer.parseInt(options.get("seances")));
+        try (InMemoryMongo mongo = new InMemoryMongo()) {
+            mongo.seed(fixtures);
+            try (BenchApplication application = new BenchApplication(mongo,
+                    profiles.isBlank() ? new String[0] : profiles.split(","),
+                    properties.toArray(new String[0]))) {
+                LoadMix mix = new LoadMix(options.get("mix"), application, fixtures);
+                LoadReport report = new LoadReport(mix.names());
+                run(application, mix, report, concurrency, rate, warmup, duration);
+                report.print(System.out);
+                if (!options.get("out").isBlank()) {
+                    report.write(Path.of(options.get("out")));
+                }
+            }
+        }
+    }
+
+    private static void run(BenchApplication application, LoadMix mix, LoadReport report,
+                            int concurrency, double rate, Duration warmup, Duration duration) throws InterruptedException {
+        long end = System.nanoTime() + warmup.toNanos() + duration.toNanos();
+        // Intervalle entre deux requêtes d'un même client quand le débit est imposé
+        long interval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * concurrency / rate) : 0;
+        List<Thread> clients = new ArrayList<>(concurrency);
+        for (int c = 0; c < concurrency; c++) {
+            long seed = c;
+            Thread client = new Thread(() -> {
+                Random random = new Random(seed);
+                // Clients décalés d'une fraction d'intervalle, pour ne pas partir ensemble
+                long next = System.nanoTime() + interval * seed / concurrency;
+                while (System.nanoTime() < end) {
+                    if (interval > 0) {
+                        LockSupport.parkNanos(next - System.nanoTime());
+                    }
+                    int index = mix.pick(random);
+                    HttpRequest request = mix.request(index, random);
+                    long start = interval > 0 ? next : System.nanoTime();
+                    try {
+                        int status = application.status(request);
+                        if (status >= 200 && status < 300) {
+                            report.record(index, System.nanoTime() - start);
+                        } else {
+                            report.error(index);
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Exception e) {
+                        report.error(index);
+                    }
+                    next += interval;
+                }
+            }, "load-client-" + c);
+            client.setDaemon(true);
+            clients.add(client);
+            client.start();
+        }
+        System.out.println("Warmup " + warmup + " avec " + concurrency + " clients");
+        Thread.sleep(warmup.toMillis());
+        report.reset();
+        System.out.println("Mesure " + duration);
+        Thread.sleep(duration.toMillis());
+        report.stop();
+        for (Thread client : clients) {
+            client.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+}
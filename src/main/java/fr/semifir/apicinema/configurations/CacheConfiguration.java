@@ -0,0 +1,109 @@
+package fr.semifir.apicinema.configurations;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.entities.Versioned;
+import fr.semifir.apicinema.services.CollectionVersions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Caches des findByID, bornés en taille et en durée de vie.
+ * Chaque service invalide ses propres entrées sur save / delete.
+ * Une écriture d'une collection embarquée (la Salle d'une Seance...) retire des caches qui l'embarquent
+ * les entrées qui référencent les éléments écrits : sinon l'ancien contenu partirait sous le nouvel ETag,
+ * et les 304 le garderaient chez le client. Les autres entrées restent en cache
+ */
+@Configuration
+public class CacheConfiguration {
+
+    @Value("${apicinema.cache.maximum-size:10000}")
+    long maximumSize;
+
+    @Value("${apicinema.cache.ttl:30s}")
+    Duration ttl;
+
+    @Bean
+    public Cache<String, CinemaDTO> cinemaCache() {
+        return this.newCache();
+    }
+
+    @Bean
+    public Cache<String, SalleDTO> salleCache() {
+        return this.newCache();
+    }
+
+    @Bean
+    public Cache<String, SeanceDTO> seanceCache() {
+        return this.newCache();
+    }
+
+    @Bean
+    public Cache<String, FilmDTO> filmCache() {
+        return this.newCache();
+    }
+
+    @Bean
+    public CollectionVersions collectionVersions(
+            Cache<String, SalleDTO> salleCache,
+            Cache<String, SeanceDTO> seanceCache,
+            Cache<String, FilmDTO> filmCache
+    ) {
+        CollectionVersions versions = new CollectionVersions();
+        // SalleDTO embarque son Cinema, SeanceDTO sa Salle, FilmDTO sa Seance
+        versions.onBump(Cinema.class, evict(salleCache, salle -> idOf(salle.getCinema())));
+        versions.onBump(Cinema.class, evict(seanceCache, seance -> seance.getSalle() == null ? null : idOf(seance.getSalle().getCinema())));
+        versions.onBump(Cinema.class, evict(filmCache, film -> film.getSeance() == null || film.getSeance().getSalle() == null ? null : idOf(film.getSeance().getSalle().getCinema())));
+        versions.onBump(Salle.class, evict(seanceCache, seance -> idOf(seance.getSalle())));
+        versions.onBump(Salle.class, evict(filmCache, film -> film.getSeance() == null ? null : idOf(film.getSeance().getSalle())));
+        versions.onBump(Seance.class, evict(filmCache, film -> idOf(film.getSeance())));
+        return versions;
+    }
+
+    /**
+     * Je retire du cache les DTO qui embarquent un des éléments écrits (un parcours du cache), tout le cache si ids est null
+     * @param cache
+     * @param reference id de l'élément embarqué par le DTO, null s'il n'en a pas
+     * @return
+     */
+    static <V> Consumer<Collection<String>> evict(Cache<String, V> cache, Function<V, String> reference) {
+        return ids -> {
+            if (ids == null) {
+                cache.invalidateAll();
+                return;
+            }
+            Set<String> written = new HashSet<>(ids);
+            cache.asMap().values().removeIf(dto -> {
+                String id = reference.apply(dto);
+                return id != null && written.contains(id);
+            });
+        };
+    }
+
+    private static String idOf(Versioned entity) {
+        return entity == null ? null : entity.getId();
+    }
+
+    private <V> Cache<String, V> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfterWrite(this.ttl)
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+package fr.semifir.apicinema.configurations;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import fr.semifir.apicinema.services.ChangeStreamInvalidator;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.FilmTitleIndex;
+import fr.semifir.apicinema.services.SeanceSchedule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+
+/**
+ * Plusieurs instances derrière un load balancer : chacune suit les écritures des autres par les change streams.
+ * Demande un replica set, d'où apicinema.change-streams.enabled=false par défaut
+ */
+@Configuration
+@ConditionalOnProperty(name = "apicinema.change-streams.enabled", havingValue = "true")
+public class ChangeStreamConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ChangeStreamInvalidator changeStreamInvalidator(
+            MongoTemplate template,
+            Cache<String, CinemaDTO> cinemaCache,
+            Cache<String, SalleDTO> salleCache,
+            Cache<String, SeanceDTO> seanceCache,
+            Cache<String, FilmDTO> filmCache,
+            FilmTitleIndex titles,
+            SeanceSchedule schedule,
+            ReferenceData references,
+            CollectionVersions versions,
+            @Value("${apicinema.change-streams.node:}") String node,
+            @Value("${apicinema.change-streams.token-interval:1s}") Duration tokenInterval,
+            @Value("${apicinema.change-streams.retry-delay:5s}") Duration retryDelay
+    ) throws UnknownHostException {
+        // Un jeton de reprise par instance : par défaut le nom de la machine, stable d'un redémarrage à l'autre
+        String name = node.isBlank() ? InetAddress.getLocalHost().getHostName() : node;
+        return new ChangeStreamInvalidator(template, cinemaCache, salleCache, seanceCache, filmCache,
+                titles, schedule, references, versions, name, tokenInterval, retryDelay);
+    }
+}
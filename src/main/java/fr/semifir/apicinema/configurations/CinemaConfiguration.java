@@ -1,8 +1,22 @@
 package fr.semifir.apicinema.configurations;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.mappers.CinemaMapper;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.PatchWriter;
 import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import fr.semifir.apicinema.services.CollectionVersions;
 import fr.semifir.apicinema.services.CinemaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mapstruct.factory.Mappers;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -10,7 +24,20 @@ import org.springframework.context.annotation.Configuration;
 public class CinemaConfiguration {
 
     @Bean
-    public CinemaService cinemaService(CinemaRepository repository, ModelMapper mapper) {
-        return new CinemaService(repository, mapper);
+    public CinemaService cinemaService(
+            CinemaRepository repository,
+            ModelMapper mapper,
+            Cache<String, CinemaDTO> cache,
+            BulkWriter bulkWriter,
+            PatchWriter patchWriter,
+            CollectionVersions versions,
+            MeterRegistry registry,
+            ReferenceData references,
+            @Value("${apicinema.mapping.modelmapper:false}") boolean useModelMapper
+    ) {
+        EntityMapper<Cinema, CinemaDTO> cinemaMapper = useModelMapper
+                ? new ModelMapperEntityMapper<>(mapper, CinemaDTO.class)
+                : Mappers.getMapper(CinemaMapper.class);
+        return new CinemaService(repository, cinemaMapper, cache, bulkWriter, patchWriter, versions, new ServiceMetrics(registry, "cinema"), references);
     }
 }
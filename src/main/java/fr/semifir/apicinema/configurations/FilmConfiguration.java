@@ -1,10 +1,26 @@
 package fr.semifir.apicinema.configurations;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.FilmMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.PatchWriter;
 import fr.semifir.apicinema.repositories.FilmRepository;
 import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.ProgrammeService;
+import fr.semifir.apicinema.services.SeanceSchedule;
 import fr.semifir.apicinema.services.FilmService;
+import fr.semifir.apicinema.services.FilmTitleIndex;
 import fr.semifir.apicinema.services.SeanceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mapstruct.factory.Mappers;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -12,7 +28,27 @@ import org.springframework.context.annotation.Configuration;
 public class FilmConfiguration {
 
     @Bean
-    public FilmService filmService(FilmRepository repository, ModelMapper mapper) {
-        return new FilmService(repository, mapper);
+    public FilmService filmService(
+            FilmRepository repository,
+            ModelMapper mapper,
+            Cache<String, FilmDTO> cache,
+            BulkWriter bulkWriter,
+            PatchWriter patchWriter,
+            CollectionVersions versions,
+            MeterRegistry registry,
+            ProgrammeService programmes,
+            SeanceSchedule schedule,
+            FilmTitleIndex titles,
+            @Value("${apicinema.mapping.modelmapper:false}") boolean useModelMapper
+    ) {
+        EntityMapper<Film, FilmDTO> filmMapper = useModelMapper
+                ? new ModelMapperEntityMapper<>(mapper, FilmDTO.class)
+                : Mappers.getMapper(FilmMapper.class);
+        return new FilmService(repository, filmMapper, cache, bulkWriter, patchWriter, versions, new ServiceMetrics(registry, "film"), programmes, schedule, titles);
+    }
+
+    @Bean
+    public FilmTitleIndex filmTitleIndex(FilmRepository repository) {
+        return new FilmTitleIndex(repository);
     }
 }
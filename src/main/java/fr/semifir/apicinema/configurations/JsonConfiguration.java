@@ -0,0 +1,32 @@
+package fr.semifir.apicinema.configurations;
+
+import com.fasterxml.jackson.databind.Module;
+import fr.semifir.apicinema.json.FastJson;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Sérialisation JSON des réponses : les Module déclarés ici sont ajoutés par Spring Boot à son ObjectMapper.
+ * apicinema.json.fast=false pour revenir au Jackson par défaut
+ */
+@Configuration
+@ConditionalOnProperty(name = "apicinema.json.fast", havingValue = "true", matchIfMissing = true)
+public class JsonConfiguration {
+
+    @Bean
+    public Module blackbirdModule() {
+        return FastJson.accessors();
+    }
+
+    @Bean
+    public Module isoDatesModule() {
+        return FastJson.dates();
+    }
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer preResolvedSerializers() {
+        return builder -> builder.postConfigurer(FastJson::preResolve);
+    }
+}
@@ -0,0 +1,80 @@
+package fr.semifir.apicinema.configurations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Programme;
+import fr.semifir.apicinema.entities.Reservation;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.monitoring.MongoCommandCounter;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.DbRefBatchLoader;
+import fr.semifir.apicinema.repositories.MongoIndexCreator;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MongoConfiguration {
+
+    @Bean
+    public MongoCommandCounter mongoCommandCounter() {
+        return new MongoCommandCounter();
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoCommandCounterCustomizer(MongoCommandCounter counter) {
+        return settings -> settings.addCommandListener(counter);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoServerSelectionCustomizer(
+            @Value("${apicinema.mongo.server-selection-timeout:30s}") Duration timeout
+    ) {
+        return settings -> settings.applyToClusterSettings(cluster ->
+                cluster.serverSelectionTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "apicinema.mongo.create-indexes", havingValue = "true", matchIfMissing = true)
+    public MongoIndexCreator mongoIndexCreator(MongoTemplate template) {
+        return new MongoIndexCreator(template, List.of(Cinema.class, Salle.class, Seance.class, Film.class, Reservation.class, Programme.class));
+    }
+
+    @Bean
+    public DbRefBatchLoader dbRefBatchLoader(MongoTemplate template, ReferenceData references) {
+        return new DbRefBatchLoader(template, references);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReferenceData referenceData(
+            MongoTemplate template,
+            @Value("${apicinema.reference-data.enabled:true}") boolean enabled,
+            @Value("${apicinema.reference-data.refresh:5m}") Duration refresh
+    ) {
+        return new ReferenceData(template, enabled, refresh);
+    }
+
+    @Bean
+    public BulkWriter bulkWriter(
+            MongoTemplate template,
+            @Value("${apicinema.bulk.batch-size:1000}") int batchSize
+    ) {
+        return new BulkWriter(template, batchSize);
+    }
+
+    @Bean
+    public PatchWriter patchWriter(MongoTemplate template, DbRefBatchLoader loader, ObjectMapper objectMapper) {
+        return new PatchWriter(template, loader, objectMapper);
+    }
+}
@@ -0,0 +1,27 @@
+package fr.semifir.apicinema.configurations;
+
+import fr.semifir.apicinema.mappers.ProgrammeMapper;
+import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.ProgrammeRepository;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.ProgrammeService;
+import org.mapstruct.factory.Mappers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.ZoneId;
+
+@Configuration
+public class ProgrammeConfiguration {
+
+    @Bean
+    public ProgrammeService programmeService(
+            ProgrammeRepository repository,
+            CinemaRepository cinemaRepository,
+            CollectionVersions versions,
+            @Value("${apicinema.programme.zone:Europe/Paris}") ZoneId zone
+    ) {
+        return new ProgrammeService(repository, cinemaRepository, Mappers.getMapper(ProgrammeMapper.class), versions, zone);
+    }
+}
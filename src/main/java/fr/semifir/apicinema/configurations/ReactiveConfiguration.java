@@ -0,0 +1,92 @@
+package fr.semifir.apicinema.configurations;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.mappers.CinemaMapper;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.FilmMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.mappers.SalleMapper;
+import fr.semifir.apicinema.mappers.SeanceMapper;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import fr.semifir.apicinema.repositories.reactive.ReactiveCinemaRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveDbRefBatchLoader;
+import fr.semifir.apicinema.repositories.reactive.ReactiveFilmRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveSalleRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveSeanceRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveVersionedWriter;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.FilmTitleIndex;
+import fr.semifir.apicinema.services.SeanceSchedule;
+import fr.semifir.apicinema.services.reactive.ReactiveCinemaService;
+import fr.semifir.apicinema.services.reactive.ReactiveFilmService;
+import fr.semifir.apicinema.services.reactive.ReactiveSalleService;
+import fr.semifir.apicinema.services.reactive.ReactiveSeanceService;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+/**
+ * Variante réactive, activée par le profil reactive (voir application-reactive.properties) :
+ * driver et repositories Mongo réactifs, controllers sous /reactive
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfiguration {
+
+    @Value("${apicinema.mapping.modelmapper:false}")
+    boolean useModelMapper;
+
+    @Bean
+    public ReactiveDbRefBatchLoader reactiveDbRefBatchLoader(ReactiveMongoTemplate template) {
+        return new ReactiveDbRefBatchLoader(template);
+    }
+
+    @Bean
+    public ReactiveVersionedWriter reactiveVersionedWriter(ReactiveMongoTemplate template) {
+        return new ReactiveVersionedWriter(template);
+    }
+
+    @Bean
+    public ReactiveCinemaService reactiveCinemaService(ReactiveCinemaRepository repository, ModelMapper mapper, Cache<String, CinemaDTO> cache, CollectionVersions versions, ReactiveVersionedWriter writer, ReferenceData references) {
+        EntityMapper<Cinema, CinemaDTO> cinemaMapper = useModelMapper
+                ? new ModelMapperEntityMapper<>(mapper, CinemaDTO.class)
+                : Mappers.getMapper(CinemaMapper.class);
+        return new ReactiveCinemaService(repository, cinemaMapper, cache, versions, writer, references);
+    }
+
+    @Bean
+    public ReactiveSalleService reactiveSalleService(ReactiveSalleRepository repository, ModelMapper mapper, Cache<String, SalleDTO> cache, CollectionVersions versions, ReactiveVersionedWriter writer, ReferenceData references) {
+        EntityMapper<Salle, SalleDTO> salleMapper = useModelMapper
+                ? new ModelMapperEntityMapper<>(mapper, SalleDTO.class)
+                : Mappers.getMapper(SalleMapper.class);
+        return new ReactiveSalleService(repository, salleMapper, cache, versions, writer, references);
+    }
+
+    @Bean
+    public ReactiveSeanceService reactiveSeanceService(ReactiveSeanceRepository repository, ModelMapper mapper, Cache<String, SeanceDTO> cache, CollectionVersions versions, ReactiveVersionedWriter writer, SeanceSchedule schedule) {
+        EntityMapper<Seance, SeanceDTO> seanceMapper = useModelMapper
+                ? new ModelMapperEntityMapper<>(mapper, SeanceDTO.class)
+                : Mappers.getMapper(SeanceMapper.class);
+        return new ReactiveSeanceService(repository, seanceMapper, cache, versions, writer, schedule);
+    }
+
+    @Bean
+    public ReactiveFilmService reactiveFilmService(ReactiveFilmRepository repository, ModelMapper mapper, Cache<String, FilmDTO> cache, CollectionVersions versions, ReactiveVersionedWriter writer, SeanceSchedule schedule, FilmTitleIndex titles) {
+        EntityMapper<Film, FilmDTO> filmMapper = useModelMapper
+                ? new ModelMapperEntityMapper<>(mapper, FilmDTO.class)
+                : Mappers.getMapper(FilmMapper.class);
+        return new ReactiveFilmService(repository, filmMapper, cache, versions, writer, schedule, titles);
+    }
+}
@@ -0,0 +1,26 @@
+package fr.semifir.apicinema.configurations;
+
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.ReservationRepository;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.services.ReservationService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class ReservationConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ReservationService reservationService(
+            ReservationRepository repository,
+            SeanceRepository seanceRepository,
+            BulkWriter bulkWriter,
+            @Value("${apicinema.reservations.batch-size:500}") int batchSize,
+            @Value("${apicinema.reservations.flush-interval:200ms}") Duration flushInterval
+    ) {
+        return new ReservationService(repository, seanceRepository, bulkWriter, batchSize, flushInterval);
+    }
+}
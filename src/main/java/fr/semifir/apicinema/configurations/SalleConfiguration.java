@@ -1,18 +1,52 @@
 package fr.semifir.apicinema.configurations;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.SalleMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
 import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.ReferenceData;
 import fr.semifir.apicinema.repositories.SalleRepository;
 import fr.semifir.apicinema.services.CinemaService;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.ProgrammeService;
+import fr.semifir.apicinema.services.ReservationService;
 import fr.semifir.apicinema.services.SalleService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mapstruct.factory.Mappers;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class SalleConfiguration {
 
-    @Bean
-    public SalleService salleService(SalleRepository repository, ModelMapper mapper) {
-        return new SalleService(repository, mapper);
+    @Bean(destroyMethod = "close")
+    public SalleService salleService(
+            SalleRepository repository,
+            ModelMapper mapper,
+            Cache<String, SalleDTO> cache,
+            BulkWriter bulkWriter,
+            PatchWriter patchWriter,
+            CollectionVersions versions,
+            MeterRegistry registry,
+            ProgrammeService programmes,
+            ReservationService reservations,
+            ReferenceData references,
+            @Value("${apicinema.mapping.modelmapper:false}") boolean useModelMapper,
+            @Value("${apicinema.write-behind.flush-interval:0ms}") Duration writeBehind
+    ) {
+        EntityMapper<Salle, SalleDTO> salleMapper = useModelMapper
+                ? new ModelMapperEntityMapper<>(mapper, SalleDTO.class)
+                : Mappers.getMapper(SalleMapper.class);
+        return new SalleService(repository, salleMapper, cache, bulkWriter, patchWriter, versions, new ServiceMetrics(registry, "salle"), programmes, reservations, references, writeBehind);
     }
 }
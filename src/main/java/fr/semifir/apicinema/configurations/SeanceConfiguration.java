@@ -1,16 +1,60 @@
 package fr.semifir.apicinema.configurations;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.SeanceMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.FilmRepository;
 import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.ProgrammeService;
+import fr.semifir.apicinema.services.ReservationService;
+import fr.semifir.apicinema.services.SeanceSchedule;
 import fr.semifir.apicinema.services.SeanceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mapstruct.factory.Mappers;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class SeanceConfiguration {
 
+    @Bean(destroyMethod = "close")
+    public SeanceService seanceService(
+            SeanceRepository repository,
+            ModelMapper mapper,
+            Cache<String, SeanceDTO> cache,
+            BulkWriter bulkWriter,
+            PatchWriter patchWriter,
+            CollectionVersions versions,
+            MeterRegistry registry,
+            ProgrammeService programmes,
+            ReservationService reservations,
+            SeanceSchedule schedule,
+            @Value("${apicinema.mapping.modelmapper:false}") boolean useModelMapper,
+            @Value("${apicinema.write-behind.flush-interval:0ms}") Duration writeBehind
+    ) {
+        EntityMapper<Seance, SeanceDTO> seanceMapper = useModelMapper
+                ? new ModelMapperEntityMapper<>(mapper, SeanceDTO.class)
+                : Mappers.getMapper(SeanceMapper.class);
+        return new SeanceService(repository, seanceMapper, cache, bulkWriter, patchWriter, versions, new ServiceMetrics(registry, "seance"), programmes, reservations, schedule, writeBehind);
+    }
+
     @Bean
-    public SeanceService seanceService(SeanceRepository repository, ModelMapper mapper) {
-        return new SeanceService(repository, mapper);
+    public SeanceSchedule seanceSchedule(
+            SeanceRepository repository,
+            FilmRepository filmRepository,
+            @Value("${apicinema.seances.default-length:2h}") Duration defaultLength
+    ) {
+        return new SeanceSchedule(repository, filmRepository, defaultLength);
     }
 }
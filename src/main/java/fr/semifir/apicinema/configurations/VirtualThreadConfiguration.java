@@ -0,0 +1,54 @@
+package fr.semifir.apicinema.configurations;
+
+import fr.semifir.apicinema.monitoring.PinnedThreadMonitor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Mode threads virtuels (apicinema.threads.virtual=true, Java 21) : Tomcat traite chaque requête
+ * sur un thread virtuel, et les appels Mongo bloquants des services s'y exécutent sans occuper
+ * de thread système pendant l'attente. Les réponses asynchrones (StreamingResponseBody, Mono/Flux)
+ * utilisent le même exécuteur
+ */
+@Configuration
+@ConditionalOnProperty(name = "apicinema.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        return VirtualThreads.newExecutor("http-virtual-");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    @Bean
+    public WebMvcConfigurer virtualThreadAsyncSupport(ExecutorService virtualThreadExecutor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(new ConcurrentTaskExecutor(virtualThreadExecutor));
+            }
+        };
+    }
+
+    @Bean(destroyMethod = "close")
+    public PinnedThreadMonitor pinnedThreadMonitor(
+            @Value("${apicinema.threads.pinned-threshold:20ms}") Duration threshold
+    ) {
+        PinnedThreadMonitor monitor = new PinnedThreadMonitor(threshold);
+        monitor.start();
+        return monitor;
+    }
+}
@@ -1,16 +1,30 @@
 package fr.semifir.apicinema.controllers;
 
+import fr.semifir.apicinema.dtos.delete.DeletedDTO;
 import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.mget.MgetRequestDTO;
 import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.MultiGet;
 import fr.semifir.apicinema.services.CinemaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("cinemas")
@@ -19,17 +33,86 @@ public class CinemaController {
     @Autowired
     CinemaService service;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     @GetMapping
-    public List<CinemaDTO> findAll() {
-        return this.service.findAll();
+    public ResponseEntity<?> findAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + Pages.DEFAULT_LIMIT) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
+        Set<String> selected;
+        try {
+            selected = Fields.parse(fields, CinemaDTO.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        // ETag lu avant Mongo : un client à jour reçoit un 304 sans requête ni sérialisation
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
+        List<CinemaDTO> cinemaDTOS = this.service.findPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (cinemaDTOS.size() == Pages.clamp(limit)) {
+            response.header(Pages.NEXT_CURSOR_HEADER, cinemaDTOS.get(cinemaDTOS.size() - 1).getId());
+        }
+        return response.body(selected == null ? cinemaDTOS : Fields.select(objectMapper, cinemaDTOS, selected));
+    }
+
+    @GetMapping("_mget")
+    public ResponseEntity<MgetDTO<CinemaDTO>> mget(@RequestParam List<String> ids, WebRequest request) {
+        if (ids.size() > MultiGet.MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok(this.service.findAllByID(ids));
+    }
+
+    @PostMapping("_mget")
+    public ResponseEntity<MgetDTO<CinemaDTO>> mget(@RequestBody MgetRequestDTO body) {
+        if (body.getIds() == null || body.getIds().size() > MultiGet.MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(this.service.findAllByID(body.getIds()));
+    }
+
+    @GetMapping(value = "stream", produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody stream() {
+        return NdjsonStreams.of(objectMapper, this.service::stream);
+    }
+
+    @PostMapping(
+            value = "bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonStreams.MEDIA_TYPE},
+            produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody bulk(InputStream body) {
+        return NdjsonStreams.bulk(objectMapper, body, Cinema.class, this.service::bulkInsert);
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<CinemaDTO> findById(@PathVariable String id) {
+    public ResponseEntity<?> findById(
+            @PathVariable String id,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
+        Set<String> selected;
+        try {
+            selected = Fields.parse(fields, CinemaDTO.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
         Optional<CinemaDTO> cinemaDTO = null;
         try {
             cinemaDTO = this.service.findByID(id);
-            return ResponseEntity.ok(cinemaDTO.get());
+            if (selected == null) {
+                return ResponseEntity.ok(cinemaDTO.get());
+            }
+            return ResponseEntity.ok(Fields.select(objectMapper, cinemaDTO.get(), selected));
         } catch (NotFoundException e) {
            return ResponseEntity.notFound().header(e.getMessage()).build();
         } catch (NoSuchElementException e) {
@@ -38,13 +121,32 @@ public class CinemaController {
     }
 
     @PostMapping
-    public CinemaDTO save(@RequestBody Cinema cinema) {
-        return this.service.save(cinema);
+    public ResponseEntity<CinemaDTO> save(@RequestBody Cinema cinema) {
+        try {
+            return ResponseEntity.ok(this.service.save(cinema));
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build();
+        }
     }
 
+    /**
+     * Remplacement entier : avec "version", seulement si l'élément en est toujours à cette version
+     */
     @PutMapping
-    public CinemaDTO update(@RequestBody Cinema cinema) {
-        return this.service.save(cinema);
+    public ResponseEntity<CinemaDTO> update(@RequestBody Cinema cinema) {
+        try {
+            return ResponseEntity.ok(this.service.save(cinema));
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Mise à jour partielle (JSON merge patch) : seuls les champs envoyés sont modifiés, voir Patches
+     */
+    @PatchMapping(value = "{id}", consumes = {Patches.MEDIA_TYPE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<CinemaDTO> patch(@PathVariable String id, @RequestBody Map<String, Object> patch) {
+        return Patches.respond(() -> this.service.patch(id, patch));
     }
 
     @DeleteMapping
@@ -52,4 +154,22 @@ public class CinemaController {
         this.service.delete(cinema);
         return ResponseEntity.ok(true);
     }
+
+    @DeleteMapping("{id}")
+    public ResponseEntity<Boolean> deleteById(@PathVariable String id) {
+        try {
+            this.service.deleteByID(id);
+            return ResponseEntity.ok(true);
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().header(e.getMessage()).build();
+        }
+    }
+
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<DeletedDTO> deleteAllById(@RequestParam List<String> ids) {
+        if (ids.size() > MultiGet.MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new DeletedDTO(this.service.deleteAllByID(ids)));
+    }
 }
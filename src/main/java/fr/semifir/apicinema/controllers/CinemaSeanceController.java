@@ -0,0 +1,37 @@
+package fr.semifir.apicinema.controllers;
+
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.services.SeanceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+@RestController
+@RequestMapping("cinemas/{id}/seances")
+public class CinemaSeanceController {
+
+    @Autowired
+    SeanceService service;
+
+    /**
+     * Séances d'un cinéma entre from et to, par défaut les prochaines 24 heures
+     */
+    @GetMapping
+    public ResponseEntity<List<SeanceDTO>> findByCinema(
+            @PathVariable String id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        Instant start = from == null ? Instant.now() : from;
+        Instant end = to == null ? start.plus(Duration.ofDays(1)) : to;
+        if (!end.isAfter(start)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(this.service.findByCinema(id, Date.from(start), Date.from(end)));
+    }
+}
@@ -0,0 +1,61 @@
+package fr.semifir.apicinema.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Sélection des champs d'une réponse par le paramètre ?fields=nom,date
+ */
+public final class Fields {
+
+    private Fields() {
+    }
+
+    /**
+     * Je découpe la liste des champs demandés et je vérifie qu'ils existent sur le DTO.
+     * L'id est toujours renvoyé, il sert de curseur pour la page suivante
+     * @param fields valeur du paramètre, séparée par des virgules
+     * @param type DTO renvoyé par le contrôleur
+     * @return les champs demandés, null si le paramètre est absent
+     */
+    public static Set<String> parse(String fields, Class<?> type) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        selected.add("id");
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (ReflectionUtils.findField(type, name) == null) {
+                throw new IllegalArgumentException("Champ inconnu : " + name);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    /**
+     * Je ne garde que les champs demandés dans le JSON du DTO, ou de chaque DTO d'une liste
+     * @param objectMapper
+     * @param body
+     * @param fields
+     * @return
+     */
+    public static JsonNode select(ObjectMapper objectMapper, Object body, Set<String> fields) {
+        JsonNode tree = objectMapper.valueToTree(body);
+        if (tree.isArray()) {
+            tree.forEach(node -> ((ObjectNode) node).retain(fields));
+        } else if (tree.isObject()) {
+            ((ObjectNode) tree).retain(fields);
+        }
+        return tree;
+    }
+}
@@ -1,16 +1,31 @@
 package fr.semifir.apicinema.controllers;
 
+import fr.semifir.apicinema.dtos.delete.DeletedDTO;
 import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.mget.MgetRequestDTO;
+import fr.semifir.apicinema.dtos.film.FilmTitreDTO;
 import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.MultiGet;
 import fr.semifir.apicinema.services.FilmService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("films")
@@ -19,17 +34,95 @@ public class FilmController {
     @Autowired
     FilmService service;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     @GetMapping
-    public List<FilmDTO> findAll() {
-        return this.service.findAll();
+    public ResponseEntity<?> findAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + Pages.DEFAULT_LIMIT) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
+        Set<String> selected;
+        try {
+            selected = Fields.parse(fields, FilmDTO.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        // ETag lu avant Mongo : un client à jour reçoit un 304 sans requête ni sérialisation
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
+        List<FilmDTO> filmDTOS = selected == null
+                ? this.service.findPage(after, limit)
+                : this.service.findPage(after, limit, selected);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (filmDTOS.size() == Pages.clamp(limit)) {
+            response.header(Pages.NEXT_CURSOR_HEADER, filmDTOS.get(filmDTOS.size() - 1).getId());
+        }
+        return response.body(selected == null ? filmDTOS : Fields.select(objectMapper, filmDTOS, selected));
+    }
+
+    @GetMapping("search")
+    public List<FilmTitreDTO> search(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "" + FilmService.SEARCH_DEFAULT_LIMIT) int limit) {
+        return this.service.search(q, limit);
+    }
+
+    @GetMapping("_mget")
+    public ResponseEntity<MgetDTO<FilmDTO>> mget(@RequestParam List<String> ids, WebRequest request) {
+        if (ids.size() > MultiGet.MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok(this.service.findAllByID(ids));
+    }
+
+    @PostMapping("_mget")
+    public ResponseEntity<MgetDTO<FilmDTO>> mget(@RequestBody MgetRequestDTO body) {
+        if (body.getIds() == null || body.getIds().size() > MultiGet.MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(this.service.findAllByID(body.getIds()));
+    }
+
+    @GetMapping(value = "stream", produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody stream() {
+        return NdjsonStreams.of(objectMapper, this.service::stream);
+    }
+
+    @PostMapping(
+            value = "bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonStreams.MEDIA_TYPE},
+            produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody bulk(InputStream body) {
+        return NdjsonStreams.bulk(objectMapper, body, Film.class, this.service::bulkInsert);
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<FilmDTO> findById(@PathVariable String id) {
+    public ResponseEntity<?> findById(
+            @PathVariable String id,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
+        Set<String> selected;
+        try {
+            selected = Fields.parse(fields, FilmDTO.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
         Optional<FilmDTO> filmDTO = null;
         try {
-            filmDTO = this.service.findByID(id);
-            return ResponseEntity.ok(filmDTO.get());
+            filmDTO = selected == null ? this.service.findByID(id) : this.service.findByID(id, selected);
+            if (selected == null) {
+                return ResponseEntity.ok(filmDTO.get());
+            }
+            return ResponseEntity.ok(Fields.select(objectMapper, filmDTO.get(), selected));
         } catch (NotFoundException e) {
            return ResponseEntity.notFound().header(e.getMessage()).build();
         } catch (NoSuchElementException es) {
@@ -38,13 +131,32 @@ public class FilmController {
     }
 
     @PostMapping
-    public FilmDTO save(@RequestBody Film film) {
-        return this.service.save(film);
+    public ResponseEntity<FilmDTO> save(@RequestBody Film film) {
+        try {
+            return ResponseEntity.ok(this.service.save(film));
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build();
+        }
     }
 
+    /**
+     * Remplacement entier : avec "version", seulement si l'élément en est toujours à cette version
+     */
     @PutMapping
-    public FilmDTO update(@RequestBody Film film) {
-        return this.service.save(film);
+    public ResponseEntity<FilmDTO> update(@RequestBody Film film) {
+        try {
+            return ResponseEntity.ok(this.service.save(film));
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Mise à jour partielle (JSON merge patch) : seuls les champs envoyés sont modifiés, voir Patches
+     */
+    @PatchMapping(value = "{id}", consumes = {Patches.MEDIA_TYPE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<FilmDTO> patch(@PathVariable String id, @RequestBody Map<String, Object> patch) {
+        return Patches.respond(() -> this.service.patch(id, patch));
     }
 
     @DeleteMapping
@@ -52,4 +164,22 @@ public class FilmController {
         this.service.delete(film);
         return ResponseEntity.ok(true);
     }
+
+    @DeleteMapping("{id}")
+    public ResponseEntity<Boolean> deleteById(@PathVariable String id) {
+        try {
+            this.service.deleteByID(id);
+            return ResponseEntity.ok(true);
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().header(e.getMessage()).build();
+        }
+    }
+
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<DeletedDTO> deleteAllById(@RequestParam List<String> ids) {
+        if (ids.size() > MultiGet.MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new DeletedDTO(this.service.deleteAllByID(ids)));
+    }
 }
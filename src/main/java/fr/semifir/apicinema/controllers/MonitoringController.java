@@ -0,0 +1,71 @@
+package fr.semifir.apicinema.controllers;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.semifir.apicinema.monitoring.MongoCommandCounter;
+import fr.semifir.apicinema.monitoring.PinnedThreadMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequestMapping("monitoring")
+public class MonitoringController {
+
+    @Autowired
+    MongoCommandCounter mongoCommandCounter;
+
+    @Autowired
+    Map<String, Cache<?, ?>> caches;
+
+    @Autowired(required = false)
+    PinnedThreadMonitor pinnedThreadMonitor;
+
+    /**
+     * Nombre de commandes Mongo depuis le démarrage, par commande et collection
+     * @return
+     */
+    @GetMapping("mongo")
+    public Map<String, Long> mongoCommands() {
+        return this.mongoCommandCounter.snapshot();
+    }
+
+    /**
+     * Statistiques des caches findByID, par nom de bean
+     * @return
+     */
+    @GetMapping("caches")
+    public Map<String, Map<String, Long>> caches() {
+        Map<String, Map<String, Long>> caches = new TreeMap<>();
+        this.caches.forEach((name, cache) -> {
+            CacheStats stats = cache.stats();
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("size", cache.estimatedSize());
+            values.put("hits", stats.hitCount());
+            values.put("misses", stats.missCount());
+            values.put("evictions", stats.evictionCount());
+            caches.put(name, values);
+        });
+        return caches;
+    }
+
+    /**
+     * Mode threads virtuels et épinglages détectés, par frame applicative
+     * @return
+     */
+    @GetMapping("threads")
+    public Map<String, Object> threads() {
+        Map<String, Object> threads = new LinkedHashMap<>();
+        threads.put("virtual", this.pinnedThreadMonitor != null);
+        if (this.pinnedThreadMonitor != null) {
+            threads.put("pinned", this.pinnedThreadMonitor.total());
+            threads.put("pinnedBy", this.pinnedThreadMonitor.snapshot());
+        }
+        return threads;
+    }
+}
@@ -0,0 +1,113 @@
+package fr.semifir.apicinema.controllers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Ecriture d'un Stream en NDJSON (un document JSON par ligne)
+ */
+public final class NdjsonStreams {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private NdjsonStreams() {
+    }
+
+    /**
+     * Le Stream n'est ouvert qu'au moment d'écrire la réponse, et fermé à la fin,
+     * pour que le curseur Mongo reste ouvert pendant l'écriture sans tout charger en mémoire
+     * @param objectMapper
+     * @param source
+     * @return
+     */
+    public static <T> StreamingResponseBody of(ObjectMapper objectMapper, Supplier<Stream<T>> source) {
+        ObjectWriter writer = writer(objectMapper);
+        return outputStream -> {
+            try (Stream<T> items = source.get()) {
+                Iterator<T> iterator = items.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(outputStream, iterator.next());
+                    outputStream.write('\n');
+                }
+            }
+            outputStream.flush();
+        };
+    }
+
+    /**
+     * Import en masse : le corps (tableau JSON ou NDJSON) est lu élément par élément pendant l'écriture
+     * de la réponse, et le résultat de chaque élément est renvoyé en NDJSON dès que son lot est écrit.
+     * Un élément illisible arrête l'import, les éléments précédents restent importés ;
+     * toute autre erreur interrompt la réponse
+     * @param objectMapper
+     * @param body corps de la requête
+     * @param type entité à lire
+     * @param importer import des entités lues, qui publie un résultat par élément
+     * @return
+     */
+    public static <T> StreamingResponseBody bulk(
+            ObjectMapper objectMapper,
+            InputStream body,
+            Class<T> type,
+            BiConsumer<Iterator<T>, Consumer<BulkResultDTO>> importer
+    ) {
+        ObjectWriter writer = writer(objectMapper);
+        return outputStream -> {
+            long[] count = {0};
+            Consumer<BulkResultDTO> results = result -> {
+                count[0]++;
+                write(writer, outputStream, result);
+            };
+            try (MappingIterator<T> items = objectMapper.readerFor(type).readValues(body)) {
+                importer.accept(items, results);
+            } catch (JsonProcessingException e) {
+                unreadable(writer, outputStream, count[0], e);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                // MappingIterator enveloppe les erreurs de lecture : les autres (Mongo...) ne sont pas la faute de l'élément
+                if (!(e.getCause() instanceof JsonProcessingException)) {
+                    throw e;
+                }
+                unreadable(writer, outputStream, count[0], (JsonProcessingException) e.getCause());
+            }
+            outputStream.flush();
+        };
+    }
+
+    private static void unreadable(ObjectWriter writer, OutputStream outputStream, long index, JsonProcessingException e) throws IOException {
+        writer.writeValue(outputStream, BulkResultDTO.error(index, null, "Elément illisible : " + e.getOriginalMessage()));
+        outputStream.write('\n');
+    }
+
+    private static ObjectWriter writer(ObjectMapper objectMapper) {
+        return objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    private static void write(ObjectWriter writer, OutputStream outputStream, Object value) {
+        try {
+            writer.writeValue(outputStream, value);
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package fr.semifir.apicinema.controllers;
+
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+/**
+ * Réponse des PATCH (JSON merge patch, voir PatchWriter) : l'élément modifié, et sa version dans VERSION_HEADER
+ * à renvoyer dans le champ "version" du patch suivant pour ne pas écraser une modification faite entre-temps
+ */
+public final class Patches {
+
+    public static final String MEDIA_TYPE = "application/merge-patch+json";
+    public static final String VERSION_HEADER = "X-Version";
+
+    private Patches() {
+    }
+
+    /**
+     * @param patch appel du service
+     * @return 200 avec l'élément, 400 pour un patch invalide, 404, ou 409 si la version ou le créneau ne convient plus
+     */
+    public static <D> ResponseEntity<D> respond(Supplier<PatchedDTO<D>> patch) {
+        try {
+            PatchedDTO<D> patched = patch.get();
+            return ResponseEntity.ok()
+                    .header(VERSION_HEADER, String.valueOf(patched.getVersion()))
+                    .body(patched.getValue());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().header(e.getMessage()).build();
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package fr.semifir.apicinema.controllers;
+
+import fr.semifir.apicinema.dtos.programme.ProgrammeDTO;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.ProgrammeService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("cinemas/{id}/programme")
+public class ProgrammeController {
+
+    @Autowired
+    ProgrammeService service;
+
+    /**
+     * Programme précalculé d'un cinéma pour un jour (aaaa-mm-jj), par défaut aujourd'hui
+     */
+    @GetMapping({"", "{jour}"})
+    public ResponseEntity<ProgrammeDTO> findByCinema(
+            @PathVariable String id,
+            @PathVariable(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate jour,
+            WebRequest request) {
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
+        try {
+            return ResponseEntity.ok(this.service.findByCinema(id, jour == null ? this.service.today() : jour));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().header(e.getMessage()).build();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package fr.semifir.apicinema.controllers;
+
+import fr.semifir.apicinema.dtos.reservation.PlacesRestantesDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationRequestDTO;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.ReservationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("seances/{id}/reservations")
+public class ReservationController {
+
+    @Autowired
+    ReservationService service;
+
+    @PostMapping
+    public ResponseEntity<ReservationDTO> reserve(@PathVariable String id, @RequestBody ReservationRequestDTO request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(this.service.reserve(id, request));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().header(e.getMessage()).build();
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().header(e.getMessage()).build();
+        }
+    }
+
+    @GetMapping("remaining")
+    public ResponseEntity<PlacesRestantesDTO> remaining(@PathVariable String id) {
+        try {
+            return ResponseEntity.ok(this.service.remaining(id));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().header(e.getMessage()).build();
+        }
+    }
+}
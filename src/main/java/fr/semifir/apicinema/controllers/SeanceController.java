@@ -1,17 +1,35 @@
 package fr.semifir.apicinema.controllers;
 
+import fr.semifir.apicinema.dtos.delete.DeletedDTO;
 import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.mget.MgetRequestDTO;
 import fr.semifir.apicinema.dtos.seance.SeanceDTO;
 import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
 import fr.semifir.apicinema.services.SalleService;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.MultiGet;
 import fr.semifir.apicinema.services.SeanceService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("seances")
@@ -20,30 +38,119 @@ public class SeanceController {
     @Autowired
     SeanceService service;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     @GetMapping
-    public List<SeanceDTO> findAll() {
-        return this.service.findAll();
+    public ResponseEntity<?> findAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + Pages.DEFAULT_LIMIT) int limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
+        Set<String> selected;
+        try {
+            selected = Fields.parse(fields, SeanceDTO.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        // ETag lu avant Mongo : un client à jour reçoit un 304 sans requête ni sérialisation
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
+        List<SeanceDTO> seanceDTOS = selected == null
+                ? this.service.findPage(after, limit)
+                : this.service.findPage(after, limit, selected);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (seanceDTOS.size() == Pages.clamp(limit)) {
+            response.header(Pages.NEXT_CURSOR_HEADER, seanceDTOS.get(seanceDTOS.size() - 1).getId());
+        }
+        return response.body(selected == null ? seanceDTOS : Fields.select(objectMapper, seanceDTOS, selected));
+    }
+
+    @GetMapping("_mget")
+    public ResponseEntity<MgetDTO<SeanceDTO>> mget(@RequestParam List<String> ids, WebRequest request) {
+        if (ids.size() > MultiGet.MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok(this.service.findAllByID(ids));
+    }
+
+    @PostMapping("_mget")
+    public ResponseEntity<MgetDTO<SeanceDTO>> mget(@RequestBody MgetRequestDTO body) {
+        if (body.getIds() == null || body.getIds().size() > MultiGet.MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(this.service.findAllByID(body.getIds()));
+    }
+
+    @GetMapping(value = "stream", produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody stream() {
+        return NdjsonStreams.of(objectMapper, this.service::stream);
+    }
+
+    @PostMapping(
+            value = "bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonStreams.MEDIA_TYPE},
+            produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody bulk(InputStream body) {
+        return NdjsonStreams.bulk(objectMapper, body, Seance.class, this.service::bulkInsert);
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<SeanceDTO> findById(@PathVariable String id) {
+    public ResponseEntity<?> findById(
+            @PathVariable String id,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
+        Set<String> selected;
+        try {
+            selected = Fields.parse(fields, SeanceDTO.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.checkNotModified(this.service.etag())) {
+            return null;
+        }
         Optional<SeanceDTO> SeanceDTO = null;
         try {
-            SeanceDTO = this.service.findByID(id);
+            SeanceDTO = selected == null ? this.service.findByID(id) : this.service.findByID(id, selected);
+            if (selected == null) {
+                return ResponseEntity.ok(SeanceDTO.get());
+            }
+            return ResponseEntity.ok(Fields.select(objectMapper, SeanceDTO.get(), selected));
         } catch (NotFoundException e) {
            return ResponseEntity.notFound().header(e.getMessage()).build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().header(e.getMessage()).build();
         }
-        return ResponseEntity.ok(SeanceDTO.get());
     }
 
     @PostMapping
-    public SeanceDTO save(@RequestBody Seance seance) {
-        return this.service.save(seance);
+    public ResponseEntity<SeanceDTO> save(@RequestBody Seance seance) {
+        try {
+            return ResponseEntity.ok(this.service.save(seance));
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build();
+        }
     }
 
     @PutMapping
-    public SeanceDTO update(@RequestBody Seance seance) {
-        return this.service.save(seance);
+    public ResponseEntity<SeanceDTO> update(@RequestBody Seance seance) {
+        try {
+            return ResponseEntity.ok(this.service.save(seance));
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Mise à jour partielle (JSON merge patch) : seuls les champs envoyés sont modifiés, voir Patches
+     */
+    @PatchMapping(value = "{id}", consumes = {Patches.MEDIA_TYPE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<SeanceDTO> patch(@PathVariable String id, @RequestBody Map<String, Object> patch) {
+        return Patches.respond(() -> this.service.patch(id, patch));
     }
 
     @DeleteMapping
@@ -51,4 +158,28 @@ public class SeanceController {
         this.service.delete(seance);
         return ResponseEntity.ok(true);
     }
+
+    @DeleteMapping("{id}")
+    public ResponseEntity<Boolean> deleteById(@PathVariable String id) {
+        try {
+            this.service.deleteByID(id);
+            return ResponseEntity.ok(true);
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().header(e.getMessage()).build();
+        }
+    }
+
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<DeletedDTO> deleteAllById(@RequestParam List<String> ids) {
+        if (ids.size() > MultiGet.MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new DeletedDTO(this.service.deleteAllByID(ids)));
+    }
+
+    @DeleteMapping(params = "before")
+    public ResponseEntity<DeletedDTO> deleteBefore(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant before) {
+        return ResponseEntity.ok(new DeletedDTO(this.service.deleteBefore(Date.from(before))));
+    }
 }
@@ -0,0 +1,71 @@
+package fr.semifir.apicinema.controllers.reactive;
+
+import fr.semifir.apicinema.controllers.NdjsonStreams;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.reactive.ReactiveCinemaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("reactive/cinemas")
+public class ReactiveCinemaController {
+
+    @Autowired
+    ReactiveCinemaService service;
+
+    @GetMapping
+    public Mono<ResponseEntity<List<CinemaDTO>>> findAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + Pages.DEFAULT_LIMIT) int limit) {
+        return this.service.findPage(after, limit).collectList().map(cinemaDTOS -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (cinemaDTOS.size() == Pages.clamp(limit)) {
+                response.header(Pages.NEXT_CURSOR_HEADER, cinemaDTOS.get(cinemaDTOS.size() - 1).getId());
+            }
+            return response.body(cinemaDTOS);
+        });
+    }
+
+    @GetMapping(value = "stream", produces = NdjsonStreams.MEDIA_TYPE)
+    public Flux<CinemaDTO> stream() {
+        return this.service.stream();
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<CinemaDTO>> findById(@PathVariable String id) {
+        return this.service.findByID(id)
+                .map(ResponseEntity::ok)
+                .onErrorResume(NotFoundException.class, e -> Mono.just(ResponseEntity.notFound().header(e.getMessage()).build()));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<CinemaDTO>> save(@RequestBody Cinema cinema) {
+        return this.service.save(cinema)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ConflictException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build()));
+    }
+
+    @PutMapping
+    public Mono<ResponseEntity<CinemaDTO>> update(@RequestBody Cinema cinema) {
+        return this.service.save(cinema)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ConflictException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build()));
+    }
+
+    @DeleteMapping
+    public Mono<ResponseEntity<Boolean>> delete(@RequestBody Cinema cinema) {
+        return this.service.delete(cinema).thenReturn(ResponseEntity.ok(true));
+    }
+}
@@ -0,0 +1,71 @@
+package fr.semifir.apicinema.controllers.reactive;
+
+import fr.semifir.apicinema.controllers.NdjsonStreams;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.reactive.ReactiveFilmService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("reactive/films")
+public class ReactiveFilmController {
+
+    @Autowired
+    ReactiveFilmService service;
+
+    @GetMapping
+    public Mono<ResponseEntity<List<FilmDTO>>> findAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + Pages.DEFAULT_LIMIT) int limit) {
+        return this.service.findPage(after, limit).collectList().map(filmDTOS -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (filmDTOS.size() == Pages.clamp(limit)) {
+                response.header(Pages.NEXT_CURSOR_HEADER, filmDTOS.get(filmDTOS.size() - 1).getId());
+            }
+            return response.body(filmDTOS);
+        });
+    }
+
+    @GetMapping(value = "stream", produces = NdjsonStreams.MEDIA_TYPE)
+    public Flux<FilmDTO> stream() {
+        return this.service.stream();
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<FilmDTO>> findById(@PathVariable String id) {
+        return this.service.findByID(id)
+                .map(ResponseEntity::ok)
+                .onErrorResume(NotFoundException.class, e -> Mono.just(ResponseEntity.notFound().header(e.getMessage()).build()));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<FilmDTO>> save(@RequestBody Film film) {
+        return this.service.save(film)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ConflictException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build()));
+    }
+
+    @PutMapping
+    public Mono<ResponseEntity<FilmDTO>> update(@RequestBody Film film) {
+        return this.service.save(film)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ConflictException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build()));
+    }
+
+    @DeleteMapping
+    public Mono<ResponseEntity<Boolean>> delete(@RequestBody Film film) {
+        return this.service.delete(film).thenReturn(ResponseEntity.ok(true));
+    }
+}
@@ -0,0 +1,71 @@
+package fr.semifir.apicinema.controllers.reactive;
+
+import fr.semifir.apicinema.controllers.NdjsonStreams;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.reactive.ReactiveSalleService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("reactive/salles")
+public class ReactiveSalleController {
+
+    @Autowired
+    ReactiveSalleService service;
+
+    @GetMapping
+    public Mono<ResponseEntity<List<SalleDTO>>> findAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + Pages.DEFAULT_LIMIT) int limit) {
+        return this.service.findPage(after, limit).collectList().map(salleDTOS -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (salleDTOS.size() == Pages.clamp(limit)) {
+                response.header(Pages.NEXT_CURSOR_HEADER, salleDTOS.get(salleDTOS.size() - 1).getId());
+            }
+            return response.body(salleDTOS);
+        });
+    }
+
+    @GetMapping(value = "stream", produces = NdjsonStreams.MEDIA_TYPE)
+    public Flux<SalleDTO> stream() {
+        return this.service.stream();
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<SalleDTO>> findById(@PathVariable String id) {
+        return this.service.findByID(id)
+                .map(ResponseEntity::ok)
+                .onErrorResume(NotFoundException.class, e -> Mono.just(ResponseEntity.notFound().header(e.getMessage()).build()));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<SalleDTO>> save(@RequestBody Salle salle) {
+        return this.service.save(salle)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ConflictException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build()));
+    }
+
+    @PutMapping
+    public Mono<ResponseEntity<SalleDTO>> update(@RequestBody Salle salle) {
+        return this.service.save(salle)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ConflictException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build()));
+    }
+
+    @DeleteMapping
+    public Mono<ResponseEntity<Boolean>> delete(@RequestBody Salle salle) {
+        return this.service.delete(salle).thenReturn(ResponseEntity.ok(true));
+    }
+}
@@ -0,0 +1,71 @@
+package fr.semifir.apicinema.controllers.reactive;
+
+import fr.semifir.apicinema.controllers.NdjsonStreams;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.reactive.ReactiveSeanceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("reactive/seances")
+public class ReactiveSeanceController {
+
+    @Autowired
+    ReactiveSeanceService service;
+
+    @GetMapping
+    public Mono<ResponseEntity<List<SeanceDTO>>> findAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + Pages.DEFAULT_LIMIT) int limit) {
+        return this.service.findPage(after, limit).collectList().map(seanceDTOS -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (seanceDTOS.size() == Pages.clamp(limit)) {
+                response.header(Pages.NEXT_CURSOR_HEADER, seanceDTOS.get(seanceDTOS.size() - 1).getId());
+            }
+            return response.body(seanceDTOS);
+        });
+    }
+
+    @GetMapping(value = "stream", produces = NdjsonStreams.MEDIA_TYPE)
+    public Flux<SeanceDTO> stream() {
+        return this.service.stream();
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<SeanceDTO>> findById(@PathVariable String id) {
+        return this.service.findByID(id)
+                .map(ResponseEntity::ok)
+                .onErrorResume(NotFoundException.class, e -> Mono.just(ResponseEntity.notFound().header(e.getMessage()).build()));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<SeanceDTO>> save(@RequestBody Seance seance) {
+        return this.service.save(seance)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ConflictException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build()));
+    }
+
+    @PutMapping
+    public Mono<ResponseEntity<SeanceDTO>> update(@RequestBody Seance seance) {
+        return this.service.save(seance)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ConflictException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).header(e.getMessage()).build()));
+    }
+
+    @DeleteMapping
+    public Mono<ResponseEntity<Boolean>> delete(@RequestBody Seance seance) {
+        return this.service.delete(seance).thenReturn(ResponseEntity.ok(true));
+    }
+}
@@ -0,0 +1,31 @@
+package fr.semifir.apicinema.dtos.bulk;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Résultat d'un élément d'un import en masse, index = position dans le corps de la requête
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkResultDTO {
+    public static final String OK = "ok";
+    public static final String ERROR = "error";
+
+    private long index;
+    private String id;
+    private String status;
+    private String message;
+
+    public static BulkResultDTO ok(long index, String id) {
+        return new BulkResultDTO(index, id, OK, null);
+    }
+
+    public static BulkResultDTO error(long index, String id, String message) {
+        return new BulkResultDTO(index, id, ERROR, message);
+    }
+}
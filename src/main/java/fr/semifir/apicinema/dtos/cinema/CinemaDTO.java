@@ -10,4 +10,10 @@ import lombok.NoArgsConstructor;
 public class CinemaDTO {
     private String id;
     private String nom;
+    // Version du document, à renvoyer dans un PUT ou un PATCH pour ne pas écraser une écriture faite entre-temps
+    private Long version;
+
+    public CinemaDTO(String id, String nom) {
+        this(id, nom, null);
+    }
 }
@@ -0,0 +1,15 @@
+package fr.semifir.apicinema.dtos.delete;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Résultat d'une suppression en masse : le nombre de documents supprimés
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeletedDTO {
+    private long deleted;
+}
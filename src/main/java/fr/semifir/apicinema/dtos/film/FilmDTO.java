@@ -19,4 +19,10 @@ public class FilmDTO {
     private String nom;
     private Float duree;
     private Seance seance;
+    // Version du document, à renvoyer dans un PUT ou un PATCH pour ne pas écraser une écriture faite entre-temps
+    private Long version;
+
+    public FilmDTO(String id, String nom, Float duree, Seance seance) {
+        this(id, nom, duree, seance, null);
+    }
 }
@@ -0,0 +1,17 @@
+package fr.semifir.apicinema.dtos.film;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Résultat de la recherche par titre : de quoi afficher une suggestion sans relire le film
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FilmTitreDTO {
+    private String id;
+    private String nom;
+    private Float duree;
+}
@@ -0,0 +1,18 @@
+package fr.semifir.apicinema.dtos.mget;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Réponse d'une lecture par ids : les éléments trouvés dans l'ordre demandé, et les ids introuvables
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MgetDTO<T> {
+    private List<T> found;
+    private List<String> missing;
+}
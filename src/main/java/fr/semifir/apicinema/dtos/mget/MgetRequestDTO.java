@@ -0,0 +1,17 @@
+package fr.semifir.apicinema.dtos.mget;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Corps de POST /{ressource}/_mget : {"ids": ["...", "..."]}
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MgetRequestDTO {
+    private List<String> ids;
+}
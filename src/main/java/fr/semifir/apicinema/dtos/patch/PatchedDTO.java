@@ -0,0 +1,16 @@
+package fr.semifir.apicinema.dtos.patch;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Résultat d'une mise à jour partielle : l'élément après le patch et la version du document
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatchedDTO<T> {
+    private T value;
+    private long version;
+}
@@ -0,0 +1,19 @@
+package fr.semifir.apicinema.dtos.programme;
+
+import fr.semifir.apicinema.entities.ProgrammeSeance;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProgrammeDTO {
+    private String cinemaId;
+    private String jour;
+    private Date miseAJour;
+    private List<ProgrammeSeance> seances;
+}
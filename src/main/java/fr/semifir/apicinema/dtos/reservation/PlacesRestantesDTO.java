@@ -0,0 +1,14 @@
+package fr.semifir.apicinema.dtos.reservation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PlacesRestantesDTO {
+    private String seanceId;
+    private int nbrPlace;
+    private int nbrPlaceRestante;
+}
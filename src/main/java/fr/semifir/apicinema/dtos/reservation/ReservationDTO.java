@@ -0,0 +1,18 @@
+package fr.semifir.apicinema.dtos.reservation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationDTO {
+    private String id;
+    private String seanceId;
+    private List<Integer> places;
+    private Date date;
+}
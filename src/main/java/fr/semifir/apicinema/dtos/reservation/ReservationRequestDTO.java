@@ -0,0 +1,18 @@
+package fr.semifir.apicinema.dtos.reservation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Soit des places précises (numérotées de 1 à nbrPlace), soit un nombre de places quelconques
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationRequestDTO {
+    private List<Integer> places;
+    private Integer nombre;
+}
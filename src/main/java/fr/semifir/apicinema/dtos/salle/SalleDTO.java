@@ -15,4 +15,10 @@ public class SalleDTO {
     private int numDeSalle;
     private int nbrPlace;
     private Cinema cinema;
+    // Version du document, à renvoyer dans un PUT ou un PATCH pour ne pas écraser une écriture faite entre-temps
+    private Long version;
+
+    public SalleDTO(String id, int numDeSalle, int nbrPlace, Cinema cinema) {
+        this(id, numDeSalle, nbrPlace, cinema, null);
+    }
 }
@@ -18,4 +18,10 @@ public class SeanceDTO {
     private String id;
     private Date date;
     private Salle salle;
+    // Version du document, à renvoyer dans un PUT ou un PATCH pour ne pas écraser une écriture faite entre-temps
+    private Long version;
+
+    public SeanceDTO(String id, Date date, Salle salle) {
+        this(id, date, salle, null);
+    }
 }
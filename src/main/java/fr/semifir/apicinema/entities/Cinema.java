@@ -10,8 +10,14 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class Cinema {
+public class Cinema implements Versioned {
     @Id
     private String id;
     private String nom;
+    // Incrémentée à chaque écriture, voir Versioned
+    private Long version;
+
+    public Cinema(String id, String nom) {
+        this(id, nom, null);
+    }
 }
@@ -5,20 +5,28 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
 @Document
+@CompoundIndex(name = "seance_ref", def = "{'seance.$id': 1}")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class Film {
+public class Film implements Versioned {
     @Id
     private String id;
     private String nom;
     private Float duree;
     @DBRef
     private Seance seance;
+    // Incrémentée à chaque écriture, voir Versioned
+    private Long version;
+
+    public Film(String id, String nom, Float duree, Seance seance) {
+        this(id, nom, duree, seance, null);
+    }
 }
@@ -0,0 +1,48 @@
+package fr.semifir.apicinema.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Programme d'un cinéma pour un jour, précalculé : séances triées par heure, avec leur salle et leurs films.
+ * L'id est "cinemaId:aaaa-mm-jj", le programme est lu en un seul document.
+ * Les index servent à retrouver les programmes touchés par l'écriture d'une séance, d'une salle ou d'un film
+ */
+@Document
+@CompoundIndexes({
+        @CompoundIndex(name = "seance_ids", def = "{'seances.seanceId': 1}"),
+        @CompoundIndex(name = "salle_ids", def = "{'seances.salleId': 1}"),
+        @CompoundIndex(name = "film_ids", def = "{'seances.films.filmId': 1}")
+})
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Programme {
+    @Id
+    private String id;
+    private String cinemaId;
+    private String jour;
+    private Date miseAJour;
+    private List<ProgrammeSeance> seances;
+
+    public static String id(String cinemaId, LocalDate jour) {
+        return cinemaId + ":" + jour;
+    }
+
+    public static String cinemaIdOf(String id) {
+        return id.substring(0, id.lastIndexOf(':'));
+    }
+
+    public static LocalDate jourOf(String id) {
+        return LocalDate.parse(id.substring(id.lastIndexOf(':') + 1));
+    }
+}
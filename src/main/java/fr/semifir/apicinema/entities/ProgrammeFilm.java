@@ -0,0 +1,17 @@
+package fr.semifir.apicinema.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Film embarqué dans une ProgrammeSeance
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProgrammeFilm {
+    private String filmId;
+    private String nom;
+    private Float duree;
+}
@@ -0,0 +1,22 @@
+package fr.semifir.apicinema.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Séance embarquée dans un Programme, avec les champs de sa salle utiles à l'affichage
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProgrammeSeance {
+    private String seanceId;
+    private Date date;
+    private String salleId;
+    private int numDeSalle;
+    private List<ProgrammeFilm> films;
+}
@@ -0,0 +1,24 @@
+package fr.semifir.apicinema.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+
+@Document
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Reservation {
+    @Id
+    private String id;
+    @Indexed
+    private String seanceId;
+    private List<Integer> places;
+    private Date date;
+}
@@ -4,18 +4,26 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document
+@CompoundIndex(name = "cinema_ref", def = "{'cinema.$id': 1}")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class Salle {
+public class Salle implements Versioned {
     @Id
     private String id;
     private int numDeSalle;
     private int nbrPlace;
     @DBRef
     private Cinema cinema;
+    // Incrémentée à chaque écriture, voir Versioned
+    private Long version;
+
+    public Salle(String id, int numDeSalle, int nbrPlace, Cinema cinema) {
+        this(id, numDeSalle, nbrPlace, cinema, null);
+    }
 }
@@ -5,19 +5,27 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
 @Document
+@CompoundIndex(name = "salle_date", def = "{'salle.$id': 1, 'date': 1}")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class Seance {
+public class Seance implements Versioned {
     @Id
     private String id;
     private Date date;
     @DBRef
     private Salle salle;
+    // Incrémentée à chaque écriture, voir Versioned
+    private Long version;
+
+    public Seance(String id, Date date, Salle salle) {
+        this(id, date, salle, null);
+    }
 }
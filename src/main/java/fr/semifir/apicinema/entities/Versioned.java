@@ -0,0 +1,14 @@
+package fr.semifir.apicinema.entities;
+
+/**
+ * Entité dont chaque écriture incrémente la version (champ "version" du document, 0 pour un document sans ce champ) :
+ * un PUT ou un PATCH qui porte une version n'est appliqué que si le document en est toujours là
+ */
+public interface Versioned {
+
+    String getId();
+
+    Long getVersion();
+
+    void setVersion(Long version);
+}
@@ -0,0 +1,61 @@
+package fr.semifir.apicinema.json;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Réglages de la sérialisation JSON des réponses, partagés par la configuration Spring et les benchmarks
+ */
+public final class FastJson {
+
+    /**
+     * DTO renvoyés par les contrôleurs, seuls ou en liste
+     */
+    public static final List<Class<?>> DTO_TYPES = List.of(CinemaDTO.class, SalleDTO.class, SeanceDTO.class, FilmDTO.class);
+
+    private FastJson() {
+    }
+
+    /**
+     * Accesseurs des DTO et entités appelés par des lambdas générées (Blackbird) plutôt que par réflexion.
+     * Le Lookup vient d'une classe de l'application et non de Blackbird : avec devtools,
+     * les DTO sont chargés par un autre ClassLoader que Jackson, et LambdaMetafactory refuse un Lookup d'un autre module
+     * @return
+     */
+    public static Module accessors() {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        return new BlackbirdModule(() -> lookup);
+    }
+
+    /**
+     * Dates formatées sans cloner de DateFormat
+     * @return
+     */
+    public static Module dates() {
+        return new SimpleModule("IsoDates").addSerializer(Date.class, new IsoDateSerializer());
+    }
+
+    /**
+     * Je résous les sérialiseurs des DTO et de leurs listes au démarrage :
+     * Jackson les garde en cache, la première requête ne paie plus leur construction
+     * @param objectMapper
+     */
+    public static void preResolve(ObjectMapper objectMapper) {
+        DTO_TYPES.forEach(type -> {
+            JavaType list = objectMapper.getTypeFactory().constructCollectionType(List.class, type);
+            objectMapper.writerFor(type);
+            objectMapper.writerFor(list);
+        });
+    }
+}
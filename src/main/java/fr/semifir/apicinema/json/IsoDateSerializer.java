@@ -0,0 +1,63 @@
+package fr.semifir.apicinema.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+/**
+ * Date écrite comme le fait Jackson par défaut ("2021-12-01T20:30:00.000+00:00"),
+ * chiffre par chiffre dans un tableau de caractères : le sérialiseur standard clone son StdDateFormat
+ * et passe par un Calendar et un StringBuffer pour chaque date.
+ * Si Jackson est configuré autrement (timestamps, autre format ou autre fuseau), je lui laisse la main
+ */
+public class IsoDateSerializer extends StdSerializer<Date> {
+
+    private static final int LENGTH = 29;
+
+    public IsoDateSerializer() {
+        super(Date.class);
+    }
+
+    @Override
+    public void serialize(Date value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        long millis = value.getTime();
+        LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), 0, ZoneOffset.UTC);
+        if (time.getYear() < 0 || time.getYear() > 9999
+                || provider.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                || provider.getConfig().getDateFormat().getClass() != StdDateFormat.class
+                || !"UTC".equals(provider.getTimeZone().getID())) {
+            provider.defaultSerializeDateValue(value, gen);
+            return;
+        }
+        char[] text = new char[LENGTH];
+        digits(text, 0, time.getYear(), 4);
+        text[4] = '-';
+        digits(text, 5, time.getMonthValue(), 2);
+        text[7] = '-';
+        digits(text, 8, time.getDayOfMonth(), 2);
+        text[10] = 'T';
+        digits(text, 11, time.getHour(), 2);
+        text[13] = ':';
+        digits(text, 14, time.getMinute(), 2);
+        text[16] = ':';
+        digits(text, 17, time.getSecond(), 2);
+        text[19] = '.';
+        digits(text, 20, (int) Math.floorMod(millis, 1000), 3);
+        "+00:00".getChars(0, 6, text, 23);
+        gen.writeString(text, 0, LENGTH);
+    }
+
+    private static void digits(char[] text, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
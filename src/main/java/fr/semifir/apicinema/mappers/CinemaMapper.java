@@ -0,0 +1,11 @@
+package fr.semifir.apicinema.mappers;
+
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import org.mapstruct.Mapper;
+
+/**
+ * Implémentation générée à la compilation par MapStruct (getters / setters, sans réflexion)
+ */
+@Mapper
+public interface CinemaMapper extends EntityMapper<Cinema, CinemaDTO> { }
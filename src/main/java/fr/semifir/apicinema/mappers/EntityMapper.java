@@ -0,0 +1,11 @@
+package fr.semifir.apicinema.mappers;
+
+/**
+ * Conversion d'une entité en DTO
+ * @param <E> entité
+ * @param <D> DTO
+ */
+public interface EntityMapper<E, D> {
+
+    D toDTO(E entity);
+}
@@ -0,0 +1,11 @@
+package fr.semifir.apicinema.mappers;
+
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.entities.Film;
+import org.mapstruct.Mapper;
+
+/**
+ * Implémentation générée à la compilation par MapStruct (getters / setters, sans réflexion)
+ */
+@Mapper
+public interface FilmMapper extends EntityMapper<Film, FilmDTO> { }
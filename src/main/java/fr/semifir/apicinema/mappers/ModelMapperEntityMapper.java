@@ -0,0 +1,24 @@
+package fr.semifir.apicinema.mappers;
+
+import org.modelmapper.ModelMapper;
+
+/**
+ * Mapper réflexif via ModelMapper, gardé en repli des mappers générés
+ * @param <E> entité
+ * @param <D> DTO
+ */
+public class ModelMapperEntityMapper<E, D> implements EntityMapper<E, D> {
+
+    ModelMapper mapper;
+    Class<D> dtoClass;
+
+    public ModelMapperEntityMapper(ModelMapper mapper, Class<D> dtoClass) {
+        this.mapper = mapper;
+        this.dtoClass = dtoClass;
+    }
+
+    @Override
+    public D toDTO(E entity) {
+        return mapper.map(entity, dtoClass);
+    }
+}
@@ -0,0 +1,11 @@
+package fr.semifir.apicinema.mappers;
+
+import fr.semifir.apicinema.dtos.programme.ProgrammeDTO;
+import fr.semifir.apicinema.entities.Programme;
+import org.mapstruct.Mapper;
+
+/**
+ * Implémentation générée à la compilation par MapStruct (getters / setters, sans réflexion)
+ */
+@Mapper
+public interface ProgrammeMapper extends EntityMapper<Programme, ProgrammeDTO> { }
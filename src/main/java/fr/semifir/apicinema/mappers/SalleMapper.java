@@ -0,0 +1,11 @@
+package fr.semifir.apicinema.mappers;
+
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.entities.Salle;
+import org.mapstruct.Mapper;
+
+/**
+ * Implémentation générée à la compilation par MapStruct (getters / setters, sans réflexion)
+ */
+@Mapper
+public interface SalleMapper extends EntityMapper<Salle, SalleDTO> { }
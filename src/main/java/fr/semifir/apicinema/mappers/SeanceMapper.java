@@ -0,0 +1,11 @@
+package fr.semifir.apicinema.mappers;
+
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Seance;
+import org.mapstruct.Mapper;
+
+/**
+ * Implémentation générée à la compilation par MapStruct (getters / setters, sans réflexion)
+ */
+@Mapper
+public interface SeanceMapper extends EntityMapper<Seance, SeanceDTO> { }
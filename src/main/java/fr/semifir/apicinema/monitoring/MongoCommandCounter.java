@@ -0,0 +1,71 @@
+package fr.semifir.apicinema.monitoring;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compte les commandes envoyées à Mongo, par commande et par collection ("find:seance")
+ */
+public class MongoCommandCounter implements CommandListener {
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        String key = event.getCommandName() + ":" + collectionOf(event.getCommandName(), event.getCommand());
+        this.counts.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+    }
+
+    /**
+     * @param command nom de la commande Mongo (find, getMore, insert...)
+     * @param collection
+     * @return
+     */
+    public long count(String command, String collection) {
+        LongAdder count = this.counts.get(command + ":" + collection);
+        return count == null ? 0 : count.sum();
+    }
+
+    public long total() {
+        return this.counts.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        this.counts.forEach((key, count) -> snapshot.put(key, count.sum()));
+        return snapshot;
+    }
+
+    public void reset() {
+        this.counts.clear();
+    }
+
+    static String collectionOf(String commandName, BsonDocument command) {
+        BsonValue target = command.get(commandName);
+        if (target != null && target.isString()) {
+            return target.asString().getValue();
+        }
+        BsonValue collection = command.get("collection");
+        if (collection != null && collection.isString()) {
+            return collection.asString().getValue();
+        }
+        return "-";
+    }
+}
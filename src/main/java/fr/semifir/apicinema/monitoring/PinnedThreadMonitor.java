@@ -0,0 +1,90 @@
+package fr.semifir.apicinema.monitoring;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Détecte les threads virtuels épinglés à leur thread porteur (bloqués dans un bloc synchronized
+ * ou un appel natif) grâce à l'événement JFR jdk.VirtualThreadPinned.
+ * Chaque épinglage au-delà du seuil est compté par frame applicative et loggué avec sa pile
+ */
+public class PinnedThreadMonitor implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+    public static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 12;
+
+    private final Duration threshold;
+    private final LongAdder total = new LongAdder();
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    public PinnedThreadMonitor(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    public void start() {
+        this.stream = new RecordingStream();
+        this.stream.enable(PINNED_EVENT).withThreshold(this.threshold).withStackTrace();
+        this.stream.onEvent(PINNED_EVENT, this::onPinned);
+        this.stream.startAsync();
+    }
+
+    public long total() {
+        return this.total.sum();
+    }
+
+    /**
+     * Epinglages par première frame hors JDK
+     * @return
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        this.counts.forEach((frame, count) -> snapshot.put(frame, count.sum()));
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        if (this.stream != null) {
+            this.stream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        List<String> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames().stream()
+                .map(PinnedThreadMonitor::describe)
+                .collect(Collectors.toList());
+        // Les premières frames sont celles du park dans le JDK : je commence à la première frame hors JDK
+        int origin = 0;
+        while (origin < frames.size() && isJdk(frames.get(origin))) {
+            origin++;
+        }
+        String frame = origin < frames.size() ? frames.get(origin) : "inconnu";
+        this.total.increment();
+        this.counts.computeIfAbsent(frame, k -> new LongAdder()).increment();
+        LOGGER.warn("Thread virtuel épinglé {} ms depuis {}\n\t{}",
+                event.getDuration().toMillis(),
+                frame,
+                String.join("\n\t", frames.subList(origin, Math.min(frames.size(), origin + LOGGED_FRAMES))));
+    }
+
+    private static boolean isJdk(String frame) {
+        return frame.startsWith("java.") || frame.startsWith("jdk.") || frame.startsWith("sun.");
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,97 @@
+package fr.semifir.apicinema.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Timers des méthodes d'un service, qui séparent le temps passé dans Mongo du temps de mapping vers les DTO :
+ * apicinema.service{service, method, phase=mongo|mapping}.
+ * Les lectures qui ont attendu le résultat d'une lecture identique en cours (voir SingleFlight)
+ * sont comptées dans apicinema.service.coalesced{service, method}
+ */
+public class ServiceMetrics {
+
+    public static final String TIMER = "apicinema.service";
+    public static final String COALESCED = "apicinema.service.coalesced";
+
+    private final MeterRegistry registry;
+    private final String service;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> coalesced = new ConcurrentHashMap<>();
+
+    public ServiceMetrics(MeterRegistry registry, String service) {
+        this.registry = registry;
+        this.service = service;
+    }
+
+    /**
+     * Je mesure un appel au repository
+     * @param method méthode du service
+     * @param call
+     * @return
+     */
+    public <T> T mongo(String method, Supplier<T> call) {
+        return this.timer(method, "mongo").record(call);
+    }
+
+    /**
+     * Je mesure un appel au repository sans résultat
+     * @param method méthode du service
+     * @param call
+     */
+    public void run(String method, Runnable call) {
+        this.timer(method, "mongo").record(call);
+    }
+
+    /**
+     * Je mesure la conversion d'une entité en DTO
+     * @param method méthode du service
+     * @param call
+     * @return
+     */
+    public <T> T mapping(String method, Supplier<T> call) {
+        return this.timer(method, "mapping").record(call);
+    }
+
+    /**
+     * Je mesure la conversion d'une liste d'entités en DTO, en un seul enregistrement
+     * @param method méthode du service
+     * @param entities
+     * @param mapper
+     * @return
+     */
+    public <E, D> List<D> mapAll(String method, List<E> entities, Function<E, D> mapper) {
+        return this.mapping(method, () -> {
+            List<D> dtos = new ArrayList<>(entities.size());
+            entities.forEach(entity -> dtos.add(mapper.apply(entity)));
+            return dtos;
+        });
+    }
+
+    /**
+     * Je compte une lecture servie par une lecture identique déjà en cours, sans appel à Mongo
+     * @param method méthode du service
+     */
+    public void coalesced(String method) {
+        this.coalesced.computeIfAbsent(method, key -> Counter.builder(COALESCED)
+                .tag("service", this.service)
+                .tag("method", method)
+                .register(this.registry)).increment();
+    }
+
+    private Timer timer(String method, String phase) {
+        return this.timers.computeIfAbsent(method + ":" + phase, key -> Timer.builder(TIMER)
+                .tag("service", this.service)
+                .tag("method", method)
+                .tag("phase", phase)
+                .register(this.registry));
+    }
+}
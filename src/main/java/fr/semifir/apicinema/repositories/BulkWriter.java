@@ -0,0 +1,265 @@
+package fr.semifir.apicinema.repositories;
+
+import com.mongodb.bulk.BulkWriteError;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
+import fr.semifir.apicinema.entities.Versioned;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Insertions en masse : les entités sont envoyées par lots non ordonnés (insertMany),
+ * seul le lot en cours est gardé en mémoire.
+ * Insertions par lots sans flux (insertAll) pour les écritures en attente,
+ * remplacements (replace, replaceAll) qui incrémentent la version des documents (voir Versioned),
+ * suppressions en masse par id (deleteAll, un deleteMany par lot) ou par filtre (deleteWhere, un seul deleteMany)
+ */
+public class BulkWriter {
+
+    // Code Mongo d'une clé dupliquée
+    public static final int DUPLICATE_KEY = 11000;
+
+    MongoTemplate template;
+    int batchSize;
+
+    public BulkWriter(MongoTemplate template, int batchSize) {
+        this.template = template;
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    public <T> Bulk<T> open(Class<T> type, Function<T, String> getId, BiConsumer<T, String> setId, Consumer<BulkResultDTO> results) {
+        return new Bulk<>(type, getId, setId, results);
+    }
+
+    /**
+     * J'insère des entités par lots non ordonnés de batchSize : un document refusé n'empêche pas l'écriture des suivants.
+     * Un document déjà présent (clé dupliquée) compte comme écrit, pour qu'un lot rejoué après un échec partiel passe
+     * @param type
+     * @param entities entités avec leur id
+     * @return les entités que Mongo n'a pas écrites
+     */
+    public <T> List<T> insertAll(Class<T> type, List<T> entities) {
+        List<T> failed = new ArrayList<>();
+        for (int from = 0; from < entities.size(); from += this.batchSize) {
+            List<T> batch = entities.subList(from, Math.min(from + this.batchSize, entities.size()));
+            try {
+                this.template.bulkOps(BulkOperations.BulkMode.UNORDERED, type).insert(batch).execute();
+            } catch (BulkOperationException e) {
+                e.getErrors().stream()
+                        .filter(error -> error.getCode() != DUPLICATE_KEY)
+                        .forEach(error -> failed.add(batch.get(error.getIndex())));
+            } catch (DataAccessException e) {
+                failed.addAll(batch);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Je remplace un document entier (PUT) en incrémentant sa version, ou je l'insère en version 0.
+     * Si l'entité porte une version, le remplacement n'a lieu que si le document en est toujours là.
+     * Sinon il part de la version lue juste avant, et recommence si une autre écriture passe entre les deux
+     * @param type
+     * @param entity entité, sans id pour une insertion
+     * @return l'entité écrite, avec sa nouvelle version
+     * @throws ConflictException si le document n'est plus à la version portée par l'entité
+     */
+    public <T extends Versioned> T replace(Class<T> type, T entity) throws ConflictException {
+        Long expected = entity.getVersion();
+        if (entity.getId() == null) {
+            entity.setVersion(0L);
+            return this.template.insert(entity);
+        }
+        Object id = DbRefBatchLoader.toObjectId(entity.getId());
+        while (true) {
+            Long current = expected != null ? expected : this.versions(type, List.of(id)).get(entity.getId());
+            try {
+                if (current == null) {
+                    entity.setVersion(0L);
+                    return this.template.insert(entity);
+                }
+                entity.setVersion(current + 1);
+                Query query = new Query(Criteria.where("_id").is(id)).addCriteria(PatchWriter.versionIs(current));
+                if (this.template.findAndReplace(query, entity) != null) {
+                    return entity;
+                }
+            } catch (DuplicateKeyException e) {
+                // Inséré par une autre écriture depuis la lecture de la version
+            }
+            if (expected != null) {
+                entity.setVersion(expected);
+                throw new ConflictException("Le document a été modifié depuis la version " + expected);
+            }
+        }
+    }
+
+    /**
+     * Je remplace des documents entiers par leur id (replaceOne avec upsert), par lots non ordonnés de batchSize,
+     * en incrémentant leur version : un document modifié depuis la lecture des versions n'est pas écrit
+     * @param type
+     * @param entities entités avec leur id
+     * @return les entités que Mongo n'a pas écrites
+     */
+    public <T extends Versioned> List<T> replaceAll(Class<T> type, List<T> entities) {
+        List<T> failed = new ArrayList<>();
+        for (int from = 0; from < entities.size(); from += this.batchSize) {
+            List<T> batch = entities.subList(from, Math.min(from + this.batchSize, entities.size()));
+            BulkOperations operations = this.template.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+            Map<String, Long> versions;
+            try {
+                versions = this.versions(type, batch.stream().map(entity -> DbRefBatchLoader.toObjectId(entity.getId())).collect(Collectors.toList()));
+            } catch (DataAccessException e) {
+                failed.addAll(batch);
+                continue;
+            }
+            batch.forEach(entity -> {
+                Long current = versions.get(entity.getId());
+                entity.setVersion(current == null ? 0 : current + 1);
+                // Version -1 pour un document absent : s'il est créé entre-temps, l'upsert tombe sur une clé dupliquée
+                operations.replaceOne(
+                        new Query(Criteria.where("_id").is(DbRefBatchLoader.toObjectId(entity.getId())))
+                                .addCriteria(PatchWriter.versionIs(current == null ? -1 : current)),
+                        entity,
+                        FindAndReplaceOptions.options().upsert());
+            });
+            try {
+                operations.execute();
+            } catch (BulkOperationException e) {
+                e.getErrors().forEach(error -> failed.add(batch.get(error.getIndex())));
+            } catch (DataAccessException e) {
+                failed.addAll(batch);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Version actuelle des documents (0 sans champ version), absents de la map s'ils n'existent pas
+     */
+    private Map<String, Long> versions(Class<?> type, List<Object> ids) {
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include(PatchWriter.VERSION_FIELD);
+        Map<String, Long> versions = new HashMap<>();
+        for (Document document : this.template.find(query, Document.class, this.template.getCollectionName(type))) {
+            Number version = document.get(PatchWriter.VERSION_FIELD, Number.class);
+            versions.put(document.get("_id").toString(), version == null ? 0 : version.longValue());
+        }
+        return versions;
+    }
+
+    /**
+     * Je supprime des documents par leur id, en un deleteMany ($in) par lot de batchSize
+     * @param type
+     * @param ids
+     * @return le nombre de documents supprimés
+     */
+    public long deleteAll(Class<?> type, Collection<String> ids) {
+        List<Object> objectIds = ids.stream().distinct().map(DbRefBatchLoader::toObjectId).collect(Collectors.toList());
+        long deleted = 0;
+        for (int from = 0; from < objectIds.size(); from += this.batchSize) {
+            List<Object> batch = objectIds.subList(from, Math.min(from + this.batchSize, objectIds.size()));
+            deleted += this.template.remove(new Query(Criteria.where("_id").in(batch)), type).getDeletedCount();
+        }
+        return deleted;
+    }
+
+    /**
+     * Je supprime les documents qui répondent au filtre, en un seul deleteMany et sans lire leurs ids
+     * @param type
+     * @param criteria
+     * @return le nombre de documents supprimés
+     */
+    public long deleteWhere(Class<?> type, Criteria criteria) {
+        return this.template.remove(new Query(criteria), type).getDeletedCount();
+    }
+
+    /**
+     * Un import en cours : add pour chaque entité, reject pour celles refusées avant écriture, puis finish
+     */
+    public class Bulk<T> {
+        private final Class<T> type;
+        private final Function<T, String> getId;
+        private final BiConsumer<T, String> setId;
+        private final Consumer<BulkResultDTO> results;
+        private final List<T> batch = new ArrayList<>(batchSize);
+        private final List<Long> indexes = new ArrayList<>(batchSize);
+        private long index;
+
+        private Bulk(Class<T> type, Function<T, String> getId, BiConsumer<T, String> setId, Consumer<BulkResultDTO> results) {
+            this.type = type;
+            this.getId = getId;
+            this.setId = setId;
+            this.results = results;
+        }
+
+        public void add(T entity) {
+            if (this.getId.apply(entity) == null) {
+                this.setId.accept(entity, new ObjectId().toHexString());
+            }
+            if (entity instanceof Versioned) {
+                ((Versioned) entity).setVersion(0L);
+            }
+            this.batch.add(entity);
+            this.indexes.add(this.index++);
+            if (this.batch.size() >= batchSize) {
+                this.write();
+            }
+        }
+
+        public void reject(T entity, String message) {
+            this.results.accept(BulkResultDTO.error(this.index++, this.getId.apply(entity), message));
+        }
+
+        public void finish() {
+            if (!this.batch.isEmpty()) {
+                this.write();
+            }
+        }
+
+        private void write() {
+            Map<Integer, String> errors = new HashMap<>();
+            try {
+                template.bulkOps(BulkOperations.BulkMode.UNORDERED, this.type).insert(this.batch).execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    errors.put(error.getIndex(), error.getMessage());
+                }
+            } catch (DataAccessException e) {
+                for (int i = 0; i < this.batch.size(); i++) {
+                    errors.put(i, e.getMessage());
+                }
+            }
+            for (int i = 0; i < this.batch.size(); i++) {
+                String id = this.getId.apply(this.batch.get(i));
+                String error = errors.get(i);
+                this.results.accept(error == null
+                        ? BulkResultDTO.ok(this.indexes.get(i), id)
+                        : BulkResultDTO.error(this.indexes.get(i), id, error));
+            }
+            this.batch.clear();
+            this.indexes.clear();
+        }
+    }
+}
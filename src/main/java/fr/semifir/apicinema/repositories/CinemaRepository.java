@@ -1,6 +1,26 @@
 package fr.semifir.apicinema.repositories;
 
 import fr.semifir.apicinema.entities.Cinema;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface CinemaRepository extends MongoRepository<Cinema, String> { }
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface CinemaRepository extends MongoRepository<Cinema, String> {
+
+    /**
+     * Première page, sans requête de comptage
+     */
+    List<Cinema> findAllBy(Pageable pageable);
+
+    /**
+     * Page suivante par keyset sur l'_id
+     */
+    List<Cinema> findByIdGreaterThan(String id, Pageable pageable);
+
+    /**
+     * Curseur Mongo ouvert sur toute la collection, à fermer par l'appelant
+     */
+    Stream<Cinema> streamAllBy();
+}
@@ -0,0 +1,269 @@
+package fr.semifir.apicinema.repositories;
+
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lecture des listes avec résolution des @DBRef par lots.
+ * Les documents sont lus bruts, puis chaque collection référencée est chargée
+ * en une seule requête $in, au lieu d'un aller-retour Mongo par référence :
+ * Film -> Seance -> Salle -> Cinema coûte 4 requêtes quelle que soit la taille de la page.
+ * Une fois ReferenceData chargé, les salles et les cinémas référencés sont pris en mémoire :
+ * seuls ceux qu'il ne connaît pas sont lus dans Mongo
+ */
+public class DbRefBatchLoader {
+
+    public static final int STREAM_BATCH_SIZE = 500;
+
+    MongoTemplate template;
+    ReferenceData references;
+
+    public DbRefBatchLoader(MongoTemplate template) {
+        this(template, null);
+    }
+
+    /**
+     * @param template
+     * @param references cinémas et salles en mémoire, null pour tout lire dans Mongo
+     */
+    public DbRefBatchLoader(MongoTemplate template, ReferenceData references) {
+        this.template = template;
+        this.references = references;
+    }
+
+    /**
+     * Page brute triée par _id, après le curseur after
+     * @param type entité de la collection à lire
+     * @param after
+     * @param pageable
+     * @return
+     */
+    public List<Document> findPage(Class<?> type, String after, Pageable pageable) {
+        return this.findPage(type, after, pageable, null);
+    }
+
+    /**
+     * Page brute réduite aux champs demandés : Mongo ne renvoie que ces champs,
+     * et une référence absente du document n'est pas résolue par la suite
+     * @param type
+     * @param after
+     * @param pageable
+     * @param fields propriétés de l'entité à lire, null pour tout le document
+     * @return
+     */
+    public List<Document> findPage(Class<?> type, String after, Pageable pageable, Collection<String> fields) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).limit(pageable.getPageSize());
+        if (after != null) {
+            query.addCriteria(Criteria.where("_id").gt(toObjectId(after)));
+        }
+        this.project(query, type, fields);
+        return this.template.find(query, Document.class, this.template.getCollectionName(type));
+    }
+
+    /**
+     * Un document brut réduit aux champs demandés
+     * @param type
+     * @param id
+     * @param fields propriétés de l'entité à lire, null pour tout le document
+     * @return
+     */
+    public List<Document> findById(Class<?> type, String id, Collection<String> fields) {
+        Query query = new Query(Criteria.where("_id").is(toObjectId(id)));
+        this.project(query, type, fields);
+        return this.template.find(query, Document.class, this.template.getCollectionName(type));
+    }
+
+    /**
+     * Les documents bruts de plusieurs ids en une seule requête $in, dans l'ordre de Mongo
+     * @param type
+     * @param ids
+     * @return
+     */
+    public List<Document> findAllById(Class<?> type, Collection<String> ids) {
+        List<Object> objectIds = new ArrayList<>(ids.size());
+        ids.forEach(id -> objectIds.add(toObjectId(id)));
+        Query query = new Query(Criteria.where("_id").in(objectIds));
+        return this.template.find(query, Document.class, this.template.getCollectionName(type));
+    }
+
+    /**
+     * Toute la collection brute
+     * @param type
+     * @return
+     */
+    public List<Document> findAll(Class<?> type) {
+        return this.template.findAll(Document.class, this.template.getCollectionName(type));
+    }
+
+    /**
+     * Parcourt la collection sur un curseur, en résolvant les références par lots de STREAM_BATCH_SIZE
+     * @param type
+     * @param reader conversion d'un lot de documents bruts en entités
+     * @return Stream à fermer par l'appelant
+     */
+    public <T> Stream<T> stream(Class<T> type, Function<List<Document>, List<T>> reader) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id"));
+        CloseableIterator<Document> cursor = this.template.stream(query, Document.class, this.template.getCollectionName(type));
+        Iterator<T> batches = new Iterator<T>() {
+            Iterator<T> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && cursor.hasNext()) {
+                    List<Document> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+                    while (batch.size() < STREAM_BATCH_SIZE && cursor.hasNext()) {
+                        batch.add(cursor.next());
+                    }
+                    current = reader.apply(batch).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false)
+                .onClose(cursor::close);
+    }
+
+    public List<Cinema> cinemas(List<Document> documents) {
+        List<Cinema> cinemas = new ArrayList<>(documents.size());
+        documents.forEach(document -> cinemas.add(this.template.getConverter().read(Cinema.class, document)));
+        return cinemas;
+    }
+
+    public List<Salle> salles(List<Document> documents) {
+        return this.resolve(documents, Salle.class, "cinema",
+                ids -> this.inMemory(ids, ReferenceData::cinema, misses -> this.byId(this.cinemas(this.findByIds(Cinema.class, misses)), Cinema::getId)),
+                Salle::setCinema);
+    }
+
+    public List<Seance> seances(List<Document> documents) {
+        return this.resolve(documents, Seance.class, "salle",
+                ids -> this.inMemory(ids, ReferenceData::salle, misses -> this.byId(this.salles(this.findByIds(Salle.class, misses)), Salle::getId)),
+                Seance::setSalle);
+    }
+
+    public List<Film> films(List<Document> documents) {
+        return this.resolve(documents, Film.class, "seance", ids -> this.byId(this.seances(this.findByIds(Seance.class, ids)), Seance::getId), Film::setSeance);
+    }
+
+    /**
+     * Je retire la référence des documents avant conversion (pour que le converter ne la résolve pas),
+     * je charge toutes les cibles en une fois, puis je les rattache aux entités
+     */
+    private <T, R> List<T> resolve(
+            List<Document> documents,
+            Class<T> type,
+            String field,
+            Function<Set<Object>, Map<String, R>> loader,
+            BiConsumer<T, R> setter
+    ) {
+        List<Object> refIds = new ArrayList<>(documents.size());
+        Set<Object> ids = new LinkedHashSet<>();
+        for (Document document : documents) {
+            Object ref = document.remove(field);
+            Object id = ref instanceof DBRef ? ((DBRef) ref).getId() : null;
+            refIds.add(id);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        Map<String, R> targets = ids.isEmpty() ? Collections.emptyMap() : loader.apply(ids);
+        List<T> entities = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            T entity = this.template.getConverter().read(type, documents.get(i));
+            Object id = refIds.get(i);
+            if (id != null) {
+                setter.accept(entity, targets.get(id.toString()));
+            }
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    /**
+     * Les cibles connues de ReferenceData, puis les autres en une requête
+     */
+    private <R> Map<String, R> inMemory(Set<Object> ids, BiFunction<ReferenceData, String, R> lookup, Function<Set<Object>, Map<String, R>> loader) {
+        if (this.references == null || !this.references.isLoaded()) {
+            return loader.apply(ids);
+        }
+        Map<String, R> targets = new HashMap<>(ids.size() * 2);
+        Set<Object> misses = new LinkedHashSet<>();
+        for (Object id : ids) {
+            R target = lookup.apply(this.references, id.toString());
+            if (target != null) {
+                targets.put(id.toString(), target);
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            targets.putAll(loader.apply(misses));
+        }
+        return targets;
+    }
+
+    /**
+     * Je traduis les propriétés de l'entité en champs Mongo (id -> _id, @Field) pour la projection
+     */
+    private void project(Query query, Class<?> type, Collection<String> fields) {
+        if (fields == null) {
+            return;
+        }
+        MongoPersistentEntity<?> entity = this.template.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+        for (String field : fields) {
+            MongoPersistentProperty property = entity.getPersistentProperty(field);
+            if (property == null) {
+                throw new IllegalArgumentException("Champ inconnu : " + field);
+            }
+            query.fields().include(property.getFieldName());
+        }
+    }
+
+    private List<Document> findByIds(Class<?> type, Collection<Object> ids) {
+        Query query = new Query(Criteria.where("_id").in(ids));
+        return this.template.find(query, Document.class, this.template.getCollectionName(type));
+    }
+
+    private <R> Map<String, R> byId(List<R> entities, Function<R, String> id) {
+        Map<String, R> byId = new HashMap<>(entities.size() * 2);
+        entities.forEach(entity -> byId.put(id.apply(entity), entity));
+        return byId;
+    }
+
+    /**
+     * Les ids valides sont stockés en ObjectId par Spring Data, y compris dans les DBRef
+     * @param id
+     * @return
+     */
+    public static Object toObjectId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+}
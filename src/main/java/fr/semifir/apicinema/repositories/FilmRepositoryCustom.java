@@ -0,0 +1,46 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Film;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Lectures de listes avec les @DBRef résolues par lots (voir DbRefBatchLoader)
+ */
+public interface FilmRepositoryCustom {
+
+    List<Film> findAllResolved();
+
+    List<Film> findPageResolved(String after, Pageable pageable);
+
+    /**
+     * Page réduite aux champs demandés, sans résoudre les références qui n'en font pas partie
+     */
+    List<Film> findPageResolved(String after, Pageable pageable, Set<String> fields);
+
+    /**
+     * Un élément avec ses références résolues par lots ; fields null pour le document entier
+     */
+    Optional<Film> findByIdResolved(String id, Set<String> fields);
+
+    /**
+     * Plusieurs films en une requête, les ids introuvables sont simplement absents
+     */
+    List<Film> findAllByIdResolved(Collection<String> ids);
+
+    /**
+     * Curseur Mongo ouvert sur toute la collection, à fermer par l'appelant
+     */
+    Stream<Film> streamAllResolved();
+
+    /**
+     * Films qui ont une séance, réduits à leur id, leur durée et l'id de leur séance (sans la résoudre)
+     * @return
+     */
+    List<Film> findDurees();
+}
@@ -0,0 +1,74 @@
+package fr.semifir.apicinema.repositories;
+
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Seance;
+import org.bson.Document;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class FilmRepositoryCustomImpl implements FilmRepositoryCustom {
+
+    DbRefBatchLoader loader;
+    MongoTemplate template;
+
+    public FilmRepositoryCustomImpl(DbRefBatchLoader loader, MongoTemplate template) {
+        this.loader = loader;
+        this.template = template;
+    }
+
+    @Override
+    public List<Film> findAllResolved() {
+        return this.loader.films(this.loader.findAll(Film.class));
+    }
+
+    @Override
+    public List<Film> findPageResolved(String after, Pageable pageable) {
+        return this.loader.films(this.loader.findPage(Film.class, after, pageable));
+    }
+
+    @Override
+    public List<Film> findPageResolved(String after, Pageable pageable, Set<String> fields) {
+        return this.loader.films(this.loader.findPage(Film.class, after, pageable, fields));
+    }
+
+    @Override
+    public Optional<Film> findByIdResolved(String id, Set<String> fields) {
+        return this.loader.films(this.loader.findById(Film.class, id, fields)).stream().findFirst();
+    }
+
+    @Override
+    public List<Film> findAllByIdResolved(Collection<String> ids) {
+        return this.loader.films(this.loader.findAllById(Film.class, ids));
+    }
+
+    @Override
+    public Stream<Film> streamAllResolved() {
+        return this.loader.stream(Film.class, this.loader::films);
+    }
+
+    @Override
+    public List<Film> findDurees() {
+        Query query = new Query(Criteria.where("seance").exists(true));
+        query.fields().include("seance").include("duree");
+        List<Film> films = new ArrayList<>();
+        this.template.find(query, Document.class, this.template.getCollectionName(Film.class)).forEach(film -> {
+            Object seance = film.get("seance");
+            Number duree = film.get("duree", Number.class);
+            if (seance instanceof DBRef) {
+                films.add(new Film(film.get("_id").toString(), null, duree == null ? null : duree.floatValue(),
+                        new Seance(((DBRef) seance).getId().toString(), null, null)));
+            }
+        });
+        return films;
+    }
+}
@@ -0,0 +1,50 @@
+package fr.semifir.apicinema.repositories;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mapping.context.MappingContext;
+
+import java.util.List;
+
+/**
+ * Crée au démarrage les index déclarés sur les entités (@Indexed, @CompoundIndex).
+ * Si Mongo n'est pas joignable, l'application démarre quand même et l'erreur est tracée
+ */
+public class MongoIndexCreator implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoIndexCreator.class);
+
+    MongoTemplate template;
+    List<Class<?>> entities;
+
+    public MongoIndexCreator(MongoTemplate template, List<Class<?>> entities) {
+        this.template = template;
+        this.entities = entities;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        this.createIndexes();
+    }
+
+    public void createIndexes() {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                this.template.getConverter().getMappingContext();
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        try {
+            for (Class<?> entity : this.entities) {
+                resolver.resolveIndexFor(entity).forEach(index -> this.template.indexOps(entity).ensureIndex(index));
+            }
+        } catch (DataAccessException e) {
+            LOGGER.warn("Création des index Mongo impossible", e);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package fr.semifir.apicinema.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.ClassUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Mises à jour partielles (JSON merge patch) : seuls les champs du patch partent dans Mongo, en un findAndModify,
+ * au lieu de réécrire le document entier avec toutes ses @DBRef.
+ * Une valeur devient un $set, null un $unset, et "$inc": {"champ": n} ajoute n à un champ numérique
+ * sans relire sa valeur : deux patchs concurrents sur des champs différents ou en $inc ne se gênent pas.
+ * Chaque patch incrémente le champ version du document, comme les PUT et les écritures différées (voir Versioned) ;
+ * un patch qui porte "version" n'est appliqué que si le document en est toujours à cette version (verrou optimiste)
+ */
+public class PatchWriter {
+
+    public static final String VERSION_FIELD = "version";
+    public static final String INC = "$inc";
+
+    MongoTemplate template;
+    DbRefBatchLoader loader;
+    ObjectMapper objectMapper;
+
+    /**
+     * @param template
+     * @param loader résolution des références du document patché
+     * @param objectMapper conversion des valeurs JSON vers le type des propriétés
+     */
+    public PatchWriter(MongoTemplate template, DbRefBatchLoader loader, ObjectMapper objectMapper) {
+        this.template = template;
+        this.loader = loader;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Je traduis le patch en update Mongo, sans rien écrire
+     * @param type entité de la collection
+     * @param id
+     * @param body corps du PATCH
+     * @return
+     * @throws IllegalArgumentException pour un champ inconnu, une valeur du mauvais type, un id différent,
+     * null sur un champ qui ne peut pas être vide ou "$inc" sur un champ non numérique
+     */
+    public Patch parse(Class<?> type, String id, Map<String, Object> body) {
+        MongoPersistentEntity<?> entity = this.template.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+        Patch patch = new Patch(type, id);
+        body.forEach((name, value) -> {
+            if (VERSION_FIELD.equals(name)) {
+                if (value != null && (!(value instanceof Integer || value instanceof Long) || ((Number) value).longValue() < 0)) {
+                    throw new IllegalArgumentException("Version invalide : " + value);
+                }
+                patch.version = value == null ? null : ((Number) value).longValue();
+            } else if (INC.equals(name)) {
+                if (!(value instanceof Map)) {
+                    throw new IllegalArgumentException(INC + " attend un objet");
+                }
+                ((Map<?, ?>) value).forEach((field, amount) -> this.increment(patch, entity, String.valueOf(field), amount));
+            } else {
+                this.set(patch, entity, name, value);
+            }
+        });
+        patch.update.inc(VERSION_FIELD, 1);
+        return patch;
+    }
+
+    /**
+     * Je lis les champs dont dépend une vérification faite avant l'écriture (un créneau de salle par exemple),
+     * et le patch ne sera appliqué que s'ils n'ont pas changé d'ici là
+     * @param patch
+     * @param properties propriétés à garder, modifiées ou non par le patch
+     * @return la valeur de ces propriétés une fois le patch appliqué (l'id pour une référence),
+     * null si le document n'existe pas
+     */
+    public Map<String, Object> guard(Patch patch, String... properties) {
+        MongoPersistentEntity<?> entity = this.template.getConverter().getMappingContext().getRequiredPersistentEntity(patch.type);
+        List<Document> documents = this.loader.findById(patch.type, patch.id, List.of(properties));
+        if (documents.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> after = new HashMap<>();
+        for (String name : properties) {
+            MongoPersistentProperty property = entity.getRequiredPersistentProperty(name);
+            Object current = documents.get(0).get(property.getFieldName());
+            patch.guards.put(property.getFieldName(), current);
+            if (patch.values.containsKey(name)) {
+                after.put(name, patch.values.get(name));
+            } else if (patch.increments.containsKey(name)) {
+                // $inc sur un champ absent le crée avec la quantité ajoutée
+                double before = current instanceof Number ? ((Number) current).doubleValue() : 0;
+                after.put(name, before + patch.increments.get(name).doubleValue());
+            } else {
+                after.put(name, current instanceof DBRef ? String.valueOf(((DBRef) current).getId()) : current);
+            }
+        }
+        return after;
+    }
+
+    /**
+     * J'applique le patch en un findAndModify, qui renvoie le document modifié
+     * @param patch
+     * @param reader conversion du document en entité, avec ses références (DbRefBatchLoader::salles par exemple)
+     * @return l'entité après le patch et sa version, null si le document n'existe pas
+     * @throws ConflictException si le document n'est plus à la version du patch, ou si un champ gardé a changé
+     */
+    public <T> PatchedDTO<T> apply(Patch patch, BiFunction<DbRefBatchLoader, List<Document>, List<T>> reader) throws ConflictException {
+        String collection = this.template.getCollectionName(patch.type);
+        Query query = new Query(Criteria.where("_id").is(DbRefBatchLoader.toObjectId(patch.id)));
+        if (patch.version != null) {
+            query.addCriteria(versionIs(patch.version));
+        }
+        patch.guards.forEach((field, value) -> query.addCriteria(Criteria.where(field).is(value)));
+        Document document = this.template.findAndModify(query, patch.update,
+                FindAndModifyOptions.options().returnNew(true), Document.class, collection);
+        if (document == null) {
+            boolean conditional = patch.version != null || !patch.guards.isEmpty();
+            if (conditional && this.template.exists(new Query(Criteria.where("_id").is(DbRefBatchLoader.toObjectId(patch.id))), collection)) {
+                throw new ConflictException("Le document a été modifié depuis la version " + (patch.version == null ? "lue" : patch.version));
+            }
+            return null;
+        }
+        long version = ((Number) document.getOrDefault(VERSION_FIELD, 0)).longValue();
+        return new PatchedDTO<>(reader.apply(this.loader, List.of(document)).get(0), version);
+    }
+
+    /**
+     * Filtre sur la version d'un document : un document écrit avant les versions n'a pas le champ, il en est à 0
+     * @param version
+     * @return Criteria
+     */
+    public static Criteria versionIs(long version) {
+        return version == 0
+                ? Criteria.where(VERSION_FIELD).in(0, null)
+                : Criteria.where(VERSION_FIELD).is(version);
+    }
+
+    private void set(Patch patch, MongoPersistentEntity<?> entity, String name, Object value) {
+        MongoPersistentProperty property = this.property(patch, entity, name);
+        if (property.isIdProperty()) {
+            if (value != null && !patch.id.equals(value.toString())) {
+                throw new IllegalArgumentException("L'id ne peut pas être modifié");
+            }
+            return;
+        }
+        String field = property.getFieldName();
+        if (value == null) {
+            if (property.getType().isPrimitive()) {
+                throw new IllegalArgumentException("Le champ " + name + " ne peut pas être vide");
+            }
+            patch.update.unset(field);
+            patch.values.put(name, null);
+        } else if (property.isDbReference()) {
+            // {"salle": {"id": "..."}} comme dans le corps d'un PUT, ou directement l'id
+            Object refId = value instanceof Map ? ((Map<?, ?>) value).get("id") : value;
+            if (!(refId instanceof String)) {
+                throw new IllegalArgumentException("La référence " + name + " attend un id");
+            }
+            patch.update.set(field, new DBRef(this.template.getCollectionName(property.getActualType()), DbRefBatchLoader.toObjectId((String) refId)));
+            patch.values.put(name, refId);
+        } else {
+            Object converted = this.convert(name, value, property.getType());
+            patch.update.set(field, converted);
+            patch.values.put(name, converted);
+        }
+    }
+
+    private void increment(Patch patch, MongoPersistentEntity<?> entity, String name, Object amount) {
+        MongoPersistentProperty property = this.property(patch, entity, name);
+        Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(property.getType());
+        if (!Number.class.isAssignableFrom(type) || !(amount instanceof Number)) {
+            throw new IllegalArgumentException(INC + " attend un nombre pour un champ numérique : " + name);
+        }
+        Number converted = (Number) this.convert(name, amount, type);
+        patch.update.inc(property.getFieldName(), converted);
+        patch.increments.put(name, converted);
+    }
+
+    /**
+     * Un champ ne peut être modifié qu'une fois par patch : Mongo refuse $set et $inc sur le même champ
+     */
+    private MongoPersistentProperty property(Patch patch, MongoPersistentEntity<?> entity, String name) {
+        MongoPersistentProperty property = entity.getPersistentProperty(name);
+        if (property == null) {
+            throw new IllegalArgumentException("Champ inconnu : " + name);
+        }
+        if (VERSION_FIELD.equals(property.getFieldName())) {
+            throw new IllegalArgumentException("La version est incrémentée par chaque écriture, elle ne se modifie pas");
+        }
+        if (!patch.touched.add(name)) {
+            throw new IllegalArgumentException("Champ modifié deux fois : " + name);
+        }
+        return property;
+    }
+
+    private Object convert(String name, Object value, Class<?> type) {
+        try {
+            return this.objectMapper.convertValue(value, type);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Valeur invalide pour " + name + " : " + value, e);
+        }
+    }
+
+    /**
+     * Un patch traduit, prêt à être appliqué
+     */
+    public static final class Patch {
+        private final Class<?> type;
+        private final String id;
+        private final Update update = new Update();
+        private final Set<String> touched = new HashSet<>();
+        // Valeurs posées par le patch ($set, $unset), l'id pour une référence
+        private final Map<String, Object> values = new HashMap<>();
+        // Quantités ajoutées par "$inc"
+        private final Map<String, Number> increments = new HashMap<>();
+        // Champs Mongo dont la valeur lue par guard conditionne l'écriture
+        private final Map<String, Object> guards = new LinkedHashMap<>();
+        private Long version;
+
+        private Patch(Class<?> type, String id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        /**
+         * @param properties
+         * @return true si le patch modifie l'une de ces propriétés
+         */
+        public boolean touches(String... properties) {
+            for (String property : properties) {
+                if (this.touched.contains(property)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public Long getVersion() {
+            return this.version;
+        }
+    }
+}
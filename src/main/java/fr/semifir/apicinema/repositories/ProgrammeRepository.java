@@ -0,0 +1,6 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Programme;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ProgrammeRepository extends MongoRepository<Programme, String>, ProgrammeRepositoryCustom { }
@@ -0,0 +1,43 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Programme;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Calcul des programmes depuis les collections sources, et des programmes touchés par une écriture.
+ * Les ids renvoyés sont ceux des Programme ("cinemaId:aaaa-mm-jj")
+ */
+public interface ProgrammeRepositoryCustom {
+
+    /**
+     * Je calcule le programme d'un cinéma pour un jour, en trois requêtes (salles, séances, films)
+     * et sans résoudre de @DBRef
+     */
+    Programme build(String cinemaId, LocalDate jour, ZoneId zone);
+
+    /**
+     * Programmes qui contiennent ces séances, et programmes où elles doivent être d'après la base
+     */
+    Set<String> idsOfSeances(Collection<String> seanceIds, ZoneId zone);
+
+    /**
+     * Programmes qui contiennent des séances de ces salles, et programmes où ces séances doivent être d'après la base
+     */
+    Set<String> idsOfSalles(Collection<String> salleIds, ZoneId zone);
+
+    /**
+     * Programmes qui contiennent ces films, et programmes de leurs séances d'après la base
+     */
+    Set<String> idsOfFilms(Collection<String> filmIds, ZoneId zone);
+
+    /**
+     * Je parcours sur un curseur les ids des programmes déjà calculés qui contiennent une séance antérieure à la date
+     */
+    void forEachIdWithSeanceBefore(Date before, Consumer<String> action);
+}
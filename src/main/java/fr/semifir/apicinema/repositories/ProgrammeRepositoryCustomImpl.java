@@ -0,0 +1,173 @@
+package fr.semifir.apicinema.repositories;
+
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Programme;
+import fr.semifir.apicinema.entities.ProgrammeFilm;
+import fr.semifir.apicinema.entities.ProgrammeSeance;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Consumer;
+
+public class ProgrammeRepositoryCustomImpl implements ProgrammeRepositoryCustom {
+
+    MongoTemplate template;
+
+    public ProgrammeRepositoryCustomImpl(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Override
+    public Programme build(String cinemaId, LocalDate jour, ZoneId zone) {
+        Query salles = new Query(Criteria.where("cinema.$id").is(DbRefBatchLoader.toObjectId(cinemaId)));
+        salles.fields().include("_id").include("numDeSalle");
+        Map<Object, Integer> numDeSalles = new HashMap<>();
+        this.find(salles, Salle.class).forEach(salle -> numDeSalles.put(salle.get("_id"), salle.getInteger("numDeSalle", 0)));
+
+        Map<Object, ProgrammeSeance> seances = new LinkedHashMap<>();
+        if (!numDeSalles.isEmpty()) {
+            Date from = Date.from(jour.atStartOfDay(zone).toInstant());
+            Date to = Date.from(jour.plusDays(1).atStartOfDay(zone).toInstant());
+            Query query = new Query(Criteria.where("salle.$id").in(numDeSalles.keySet()).and("date").gte(from).lt(to))
+                    .with(Sort.by(Sort.Direction.ASC, "date", "_id"));
+            for (Document seance : this.find(query, Seance.class)) {
+                Object salleId = refId(seance.get("salle"));
+                seances.put(seance.get("_id"), new ProgrammeSeance(
+                        seance.get("_id").toString(),
+                        seance.getDate("date"),
+                        salleId.toString(),
+                        numDeSalles.get(salleId),
+                        new ArrayList<>()));
+            }
+        }
+        if (!seances.isEmpty()) {
+            Query films = new Query(Criteria.where("seance.$id").in(seances.keySet()))
+                    .with(Sort.by(Sort.Direction.ASC, "_id"));
+            films.fields().include("nom").include("duree").include("seance");
+            for (Document film : this.find(films, Film.class)) {
+                Number duree = film.get("duree", Number.class);
+                seances.get(refId(film.get("seance"))).getFilms().add(new ProgrammeFilm(
+                        film.get("_id").toString(),
+                        film.getString("nom"),
+                        duree == null ? null : duree.floatValue()));
+            }
+        }
+        return new Programme(Programme.id(cinemaId, jour), cinemaId, jour.toString(), new Date(), new ArrayList<>(seances.values()));
+    }
+
+    @Override
+    public Set<String> idsOfSeances(Collection<String> seanceIds, ZoneId zone) {
+        Set<String> ids = this.existing("seances.seanceId", seanceIds);
+        Query seances = new Query(Criteria.where("_id").in(toObjectIds(seanceIds)));
+        seances.fields().include("date").include("salle");
+        ids.addAll(this.programmesOf(this.find(seances, Seance.class), zone));
+        return ids;
+    }
+
+    @Override
+    public Set<String> idsOfSalles(Collection<String> salleIds, ZoneId zone) {
+        Set<String> ids = this.existing("seances.salleId", salleIds);
+        Query seances = new Query(Criteria.where("salle.$id").in(toObjectIds(salleIds)));
+        seances.fields().include("date").include("salle");
+        ids.addAll(this.programmesOf(this.find(seances, Seance.class), zone));
+        return ids;
+    }
+
+    @Override
+    public Set<String> idsOfFilms(Collection<String> filmIds, ZoneId zone) {
+        Set<String> ids = this.existing("seances.films.filmId", filmIds);
+        Query films = new Query(Criteria.where("_id").in(toObjectIds(filmIds)));
+        films.fields().include("seance");
+        List<Object> seanceIds = new ArrayList<>();
+        this.find(films, Film.class).forEach(film -> {
+            Object seanceId = refId(film.get("seance"));
+            if (seanceId != null) {
+                seanceIds.add(seanceId);
+            }
+        });
+        if (!seanceIds.isEmpty()) {
+            Query seances = new Query(Criteria.where("_id").in(seanceIds));
+            seances.fields().include("date").include("salle");
+            ids.addAll(this.programmesOf(this.find(seances, Seance.class), zone));
+        }
+        return ids;
+    }
+
+    @Override
+    public void forEachIdWithSeanceBefore(Date before, Consumer<String> action) {
+        Query query = new Query(Criteria.where("seances.date").lt(before));
+        query.fields().include("_id");
+        try (CloseableIterator<Document> cursor = this.template.stream(query, Document.class, this.template.getCollectionName(Programme.class))) {
+            cursor.forEachRemaining(programme -> action.accept(programme.getString("_id")));
+        }
+    }
+
+    /**
+     * Ids des programmes déjà calculés qui contiennent une de ces valeurs
+     */
+    private Set<String> existing(String field, Collection<String> values) {
+        Query query = new Query(Criteria.where(field).in(values));
+        query.fields().include("_id");
+        Set<String> ids = new LinkedHashSet<>();
+        this.find(query, Programme.class).forEach(programme -> ids.add(programme.getString("_id")));
+        return ids;
+    }
+
+    /**
+     * Ids des programmes où ces séances doivent apparaître : cinéma de leur salle et jour de leur date
+     */
+    private Set<String> programmesOf(List<Document> seances, ZoneId zone) {
+        Set<Object> salleIds = new HashSet<>();
+        seances.forEach(seance -> {
+            Object salleId = refId(seance.get("salle"));
+            if (salleId != null) {
+                salleIds.add(salleId);
+            }
+        });
+        Set<String> ids = new LinkedHashSet<>();
+        if (salleIds.isEmpty()) {
+            return ids;
+        }
+        Query salles = new Query(Criteria.where("_id").in(salleIds));
+        salles.fields().include("cinema");
+        Map<Object, Object> cinemaIds = new HashMap<>();
+        this.find(salles, Salle.class).forEach(salle -> {
+            Object cinemaId = refId(salle.get("cinema"));
+            if (cinemaId != null) {
+                cinemaIds.put(salle.get("_id"), cinemaId);
+            }
+        });
+        for (Document seance : seances) {
+            Object cinemaId = cinemaIds.get(refId(seance.get("salle")));
+            Date date = seance.getDate("date");
+            if (cinemaId != null && date != null) {
+                ids.add(Programme.id(cinemaId.toString(), LocalDate.ofInstant(date.toInstant(), zone)));
+            }
+        }
+        return ids;
+    }
+
+    private List<Document> find(Query query, Class<?> type) {
+        return this.template.find(query, Document.class, this.template.getCollectionName(type));
+    }
+
+    private static Object refId(Object ref) {
+        return ref instanceof DBRef ? ((DBRef) ref).getId() : null;
+    }
+
+    private static List<Object> toObjectIds(Collection<String> ids) {
+        List<Object> objectIds = new ArrayList<>(ids.size());
+        ids.forEach(id -> objectIds.add(DbRefBatchLoader.toObjectId(id)));
+        return objectIds;
+    }
+}
@@ -0,0 +1,292 @@
+package fr.semifir.apicinema.repositories;
+
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cinémas et salles en mémoire : petites collections, rarement écrites, mais lues à presque chaque requête
+ * (directement, ou par les @DBRef Seance.salle et Salle.cinema).
+ * Les deux collections sont chargées au démarrage dans un instantané immuable, triées par id comme les pages Mongo ;
+ * une écriture construit un nouvel instantané et le publie d'un coup : une lecture voit l'ancien ou le nouveau, jamais un mélange.
+ * Les salles de l'instantané portent leur Cinema de l'instantané.
+ * Les entités sont partagées entre les lectures : elles ne doivent pas être modifiées.
+ * Les écritures des autres instances arrivent par les change streams s'ils sont activés,
+ * sinon au rechargement complet fait toutes les refresh.
+ * Tant que l'instantané n'est pas chargé (ou si apicinema.reference-data.enabled=false), les lectures vont dans Mongo
+ */
+public class ReferenceData implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceData.class);
+
+    MongoTemplate template;
+    boolean enabled;
+    Duration refresh;
+
+    // Un seul écrivain à la fois : chaque écriture part de l'instantané précédent
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+    private ScheduledExecutorService refresher;
+
+    /**
+     * @param template
+     * @param enabled
+     * @param refresh intervalle des rechargements complets, 0 pour ne recharger qu'au démarrage
+     */
+    public ReferenceData(MongoTemplate template, boolean enabled, Duration refresh) {
+        this.template = template;
+        this.enabled = enabled;
+        this.refresh = refresh;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!this.enabled) {
+            return;
+        }
+        this.reload();
+        if (!this.refresh.isZero()) {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "reference-data-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = this.refresh.toMillis();
+            this.refresher.scheduleWithFixedDelay(this::reload, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void close() {
+        if (this.refresher != null) {
+            this.refresher.shutdownNow();
+        }
+    }
+
+    private void reload() {
+        try {
+            this.load();
+        } catch (DataAccessException e) {
+            LOGGER.warn("Chargement des cinémas et des salles impossible, lectures dans Mongo", e);
+        }
+    }
+
+    /**
+     * Je relis les deux collections : une requête pour les cinémas, une pour les salles. Rien si désactivé
+     */
+    public void load() {
+        if (!this.enabled) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            NavigableMap<String, Cinema> cinemas = new TreeMap<>();
+            this.template.findAll(Cinema.class).forEach(cinema -> cinemas.put(cinema.getId(), cinema));
+            NavigableMap<String, Salle> salles = new TreeMap<>();
+            for (Document document : this.template.findAll(Document.class, this.template.getCollectionName(Salle.class))) {
+                // La référence est retirée avant conversion pour ne pas être résolue par le converter
+                Object ref = document.remove("cinema");
+                Salle salle = this.template.getConverter().read(Salle.class, document);
+                if (ref instanceof DBRef) {
+                    salle.setCinema(cinemas.get(String.valueOf(((DBRef) ref).getId())));
+                }
+                salles.put(salle.getId(), salle);
+            }
+            this.snapshot = new Snapshot(cinemas, salles);
+            LOGGER.debug("{} cinémas et {} salles en mémoire", cinemas.size(), salles.size());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return this.snapshot != null;
+    }
+
+    /**
+     * @param id
+     * @return le cinéma, null s'il n'existe pas ou si l'instantané n'est pas chargé
+     */
+    public Cinema cinema(String id) {
+        Snapshot current = this.snapshot;
+        return current == null || id == null ? null : current.cinemas.get(id);
+    }
+
+    /**
+     * @param id
+     * @return la salle avec son cinéma, null si elle n'existe pas ou si l'instantané n'est pas chargé
+     */
+    public Salle salle(String id) {
+        Snapshot current = this.snapshot;
+        return current == null || id == null ? null : current.salles.get(id);
+    }
+
+    /**
+     * Les cinémas triés par id, null si l'instantané n'est pas chargé
+     */
+    public List<Cinema> cinemas() {
+        Snapshot current = this.snapshot;
+        return current == null ? null : new ArrayList<>(current.cinemas.values());
+    }
+
+    /**
+     * Les salles triées par id, null si l'instantané n'est pas chargé
+     */
+    public List<Salle> salles() {
+        Snapshot current = this.snapshot;
+        return current == null ? null : new ArrayList<>(current.salles.values());
+    }
+
+    /**
+     * Une page de cinémas après le curseur after, comme findPage dans Mongo ; null si l'instantané n'est pas chargé
+     */
+    public List<Cinema> cinemaPage(String after, int limit) {
+        Snapshot current = this.snapshot;
+        return current == null ? null : page(current.cinemas, after, limit);
+    }
+
+    /**
+     * Une page de salles après le curseur after, comme findPage dans Mongo ; null si l'instantané n'est pas chargé
+     */
+    public List<Salle> sallePage(String after, int limit) {
+        Snapshot current = this.snapshot;
+        return current == null ? null : page(current.salles, after, limit);
+    }
+
+    /**
+     * Un cinéma écrit : je le remplace, ainsi que le cinéma porté par ses salles
+     * @param cinemas cinémas écrits dans Mongo
+     */
+    public void putCinemas(Collection<Cinema> cinemas) {
+        this.update(current -> {
+            NavigableMap<String, Cinema> nextCinemas = new TreeMap<>(current.cinemas);
+            cinemas.forEach(cinema -> nextCinemas.put(cinema.getId(), copy(cinema)));
+            return new Snapshot(nextCinemas, withCinemas(current.salles, nextCinemas));
+        });
+    }
+
+    /**
+     * Un cinéma supprimé : ses salles n'ont plus de cinéma, comme une référence que Mongo ne trouve plus
+     * @param id
+     */
+    public void removeCinema(String id) {
+        this.removeCinemas(List.of(id));
+    }
+
+    /**
+     * Des cinémas supprimés, en une seule copie de l'instantané
+     * @param ids
+     */
+    public void removeCinemas(Collection<String> ids) {
+        Set<String> removed = new HashSet<>(ids);
+        this.update(current -> {
+            NavigableMap<String, Cinema> nextCinemas = new TreeMap<>(current.cinemas);
+            nextCinemas.keySet().removeAll(removed);
+            NavigableMap<String, Salle> nextSalles = new TreeMap<>(current.salles);
+            current.salles.forEach((salleId, salle) -> {
+                if (salle.getCinema() != null && removed.contains(salle.getCinema().getId())) {
+                    nextSalles.put(salleId, new Salle(salle.getId(), salle.getNumDeSalle(), salle.getNbrPlace(), null, salle.getVersion()));
+                }
+            });
+            return new Snapshot(nextCinemas, nextSalles);
+        });
+    }
+
+    /**
+     * Des salles écrites : leur cinéma est pris dans l'instantané, par son id
+     * @param salles salles écrites dans Mongo
+     */
+    public void putSalles(Collection<Salle> salles) {
+        this.update(current -> {
+            NavigableMap<String, Salle> nextSalles = new TreeMap<>(current.salles);
+            salles.forEach(salle -> nextSalles.put(salle.getId(), resolve(salle, current.cinemas)));
+            return new Snapshot(current.cinemas, nextSalles);
+        });
+    }
+
+    public void removeSalle(String id) {
+        this.removeSalles(List.of(id));
+    }
+
+    public void removeSalles(Collection<String> ids) {
+        this.update(current -> {
+            NavigableMap<String, Salle> nextSalles = new TreeMap<>(current.salles);
+            nextSalles.keySet().removeAll(new HashSet<>(ids));
+            return new Snapshot(current.cinemas, nextSalles);
+        });
+    }
+
+    private void update(UnaryOperator<Snapshot> change) {
+        this.lock.lock();
+        try {
+            if (this.snapshot != null) {
+                this.snapshot = change.apply(this.snapshot);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private static <T> List<T> page(NavigableMap<String, T> entities, String after, int limit) {
+        List<T> page = new ArrayList<>(Math.min(limit, entities.size()));
+        for (T entity : (after == null ? entities : entities.tailMap(after, false)).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(entity);
+        }
+        return page;
+    }
+
+    private static NavigableMap<String, Salle> withCinemas(NavigableMap<String, Salle> salles, NavigableMap<String, Cinema> cinemas) {
+        NavigableMap<String, Salle> next = new TreeMap<>();
+        salles.forEach((id, salle) -> next.put(id, salle.getCinema() == null ? salle : resolve(salle, cinemas)));
+        return next;
+    }
+
+    /**
+     * Copie de la salle portant le cinéma de l'instantané ; une référence vers un cinéma inconnu est gardée telle quelle
+     */
+    private static Salle resolve(Salle salle, NavigableMap<String, Cinema> cinemas) {
+        Cinema cinema = salle.getCinema();
+        if (cinema != null && cinema.getId() != null && cinemas.containsKey(cinema.getId())) {
+            cinema = cinemas.get(cinema.getId());
+        }
+        return new Salle(salle.getId(), salle.getNumDeSalle(), salle.getNbrPlace(), cinema, salle.getVersion());
+    }
+
+    private static Cinema copy(Cinema cinema) {
+        return new Cinema(cinema.getId(), cinema.getNom(), cinema.getVersion());
+    }
+
+    private static final class Snapshot {
+        final NavigableMap<String, Cinema> cinemas;
+        final NavigableMap<String, Salle> salles;
+
+        Snapshot(NavigableMap<String, Cinema> cinemas, NavigableMap<String, Salle> salles) {
+            this.cinemas = Collections.unmodifiableNavigableMap(cinemas);
+            this.salles = Collections.unmodifiableNavigableMap(salles);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Reservation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface ReservationRepository extends MongoRepository<Reservation, String> {
+
+    List<Reservation> findBySeanceId(String seanceId);
+}
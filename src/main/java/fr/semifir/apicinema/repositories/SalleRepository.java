@@ -3,4 +3,4 @@ package fr.semifir.apicinema.repositories;
 import fr.semifir.apicinema.entities.Salle;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface SalleRepository extends MongoRepository<Salle, String> { }
+public interface SalleRepository extends MongoRepository<Salle, String>, SalleRepositoryCustom { }
@@ -0,0 +1,40 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Salle;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Lectures de listes avec les @DBRef résolues par lots (voir DbRefBatchLoader)
+ */
+public interface SalleRepositoryCustom {
+
+    List<Salle> findAllResolved();
+
+    List<Salle> findPageResolved(String after, Pageable pageable);
+
+    /**
+     * Page réduite aux champs demandés, sans résoudre les références qui n'en font pas partie
+     */
+    List<Salle> findPageResolved(String after, Pageable pageable, Set<String> fields);
+
+    /**
+     * Un élément avec ses références résolues par lots ; fields null pour le document entier
+     */
+    Optional<Salle> findByIdResolved(String id, Set<String> fields);
+
+    /**
+     * Plusieurs salles en une requête, les ids introuvables sont simplement absents
+     */
+    List<Salle> findAllByIdResolved(Collection<String> ids);
+
+    /**
+     * Curseur Mongo ouvert sur toute la collection, à fermer par l'appelant
+     */
+    Stream<Salle> streamAllResolved();
+}
@@ -0,0 +1,49 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Salle;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class SalleRepositoryCustomImpl implements SalleRepositoryCustom {
+
+    DbRefBatchLoader loader;
+
+    public SalleRepositoryCustomImpl(DbRefBatchLoader loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public List<Salle> findAllResolved() {
+        return this.loader.salles(this.loader.findAll(Salle.class));
+    }
+
+    @Override
+    public List<Salle> findPageResolved(String after, Pageable pageable) {
+        return this.loader.salles(this.loader.findPage(Salle.class, after, pageable));
+    }
+
+    @Override
+    public List<Salle> findPageResolved(String after, Pageable pageable, Set<String> fields) {
+        return this.loader.salles(this.loader.findPage(Salle.class, after, pageable, fields));
+    }
+
+    @Override
+    public Optional<Salle> findByIdResolved(String id, Set<String> fields) {
+        return this.loader.salles(this.loader.findById(Salle.class, id, fields)).stream().findFirst();
+    }
+
+    @Override
+    public List<Salle> findAllByIdResolved(Collection<String> ids) {
+        return this.loader.salles(this.loader.findAllById(Salle.class, ids));
+    }
+
+    @Override
+    public Stream<Salle> streamAllResolved() {
+        return this.loader.stream(Salle.class, this.loader::salles);
+    }
+}
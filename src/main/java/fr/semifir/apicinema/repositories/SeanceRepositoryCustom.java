@@ -0,0 +1,52 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Seance;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Lectures de listes avec les @DBRef résolues par lots (voir DbRefBatchLoader)
+ */
+public interface SeanceRepositoryCustom {
+
+    List<Seance> findAllResolved();
+
+    List<Seance> findPageResolved(String after, Pageable pageable);
+
+    /**
+     * Page réduite aux champs demandés, sans résoudre les références qui n'en font pas partie
+     */
+    List<Seance> findPageResolved(String after, Pageable pageable, Set<String> fields);
+
+    /**
+     * Un élément avec ses références résolues par lots ; fields null pour le document entier
+     */
+    Optional<Seance> findByIdResolved(String id, Set<String> fields);
+
+    /**
+     * Plusieurs seances en une requête, les ids introuvables sont simplement absents
+     */
+    List<Seance> findAllByIdResolved(Collection<String> ids);
+
+    /**
+     * Curseur Mongo ouvert sur toute la collection, à fermer par l'appelant
+     */
+    Stream<Seance> streamAllResolved();
+
+    /**
+     * Toutes les séances avec seulement leur date et l'id de leur salle (salle non résolue)
+     */
+    List<Seance> findAllSlots();
+
+    /**
+     * Séances des salles d'un cinéma entre from (inclus) et to (exclu), triées par date.
+     * S'appuie sur les index Salle {cinema.$id} et Seance {salle.$id, date}
+     */
+    List<Seance> findByCinemaBetween(String cinemaId, Date from, Date to);
+}
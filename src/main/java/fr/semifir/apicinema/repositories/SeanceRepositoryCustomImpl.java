@@ -0,0 +1,93 @@
+package fr.semifir.apicinema.repositories;
+
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.bson.Document;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class SeanceRepositoryCustomImpl implements SeanceRepositoryCustom {
+
+    DbRefBatchLoader loader;
+    MongoTemplate template;
+
+    public SeanceRepositoryCustomImpl(DbRefBatchLoader loader, MongoTemplate template) {
+        this.loader = loader;
+        this.template = template;
+    }
+
+    @Override
+    public List<Seance> findAllResolved() {
+        return this.loader.seances(this.loader.findAll(Seance.class));
+    }
+
+    @Override
+    public List<Seance> findPageResolved(String after, Pageable pageable) {
+        return this.loader.seances(this.loader.findPage(Seance.class, after, pageable));
+    }
+
+    @Override
+    public List<Seance> findPageResolved(String after, Pageable pageable, Set<String> fields) {
+        return this.loader.seances(this.loader.findPage(Seance.class, after, pageable, fields));
+    }
+
+    @Override
+    public Optional<Seance> findByIdResolved(String id, Set<String> fields) {
+        return this.loader.seances(this.loader.findById(Seance.class, id, fields)).stream().findFirst();
+    }
+
+    @Override
+    public List<Seance> findAllByIdResolved(Collection<String> ids) {
+        return this.loader.seances(this.loader.findAllById(Seance.class, ids));
+    }
+
+    @Override
+    public Stream<Seance> streamAllResolved() {
+        return this.loader.stream(Seance.class, this.loader::seances);
+    }
+
+    @Override
+    public List<Seance> findAllSlots() {
+        Query query = new Query();
+        query.fields().include("date").include("salle");
+        List<Seance> seances = new ArrayList<>();
+        this.template.find(query, Document.class, this.template.getCollectionName(Seance.class)).forEach(seance -> {
+            Object salle = seance.get("salle");
+            Salle ref = null;
+            if (salle instanceof DBRef) {
+                ref = new Salle();
+                ref.setId(((DBRef) salle).getId().toString());
+            }
+            seances.add(new Seance(seance.get("_id").toString(), seance.getDate("date"), ref));
+        });
+        return seances;
+    }
+
+    @Override
+    public List<Seance> findByCinemaBetween(String cinemaId, Date from, Date to) {
+        Query salles = new Query(Criteria.where("cinema.$id").is(DbRefBatchLoader.toObjectId(cinemaId)));
+        salles.fields().include("_id");
+        List<Object> salleIds = new ArrayList<>();
+        this.template.find(salles, Document.class, this.template.getCollectionName(Salle.class))
+                .forEach(salle -> salleIds.add(salle.get("_id")));
+        if (salleIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Query seances = new Query(Criteria.where("salle.$id").in(salleIds).and("date").gte(from).lt(to))
+                .with(Sort.by(Sort.Direction.ASC, "date"));
+        return this.loader.seances(this.template.find(seances, Document.class, this.template.getCollectionName(Seance.class)));
+    }
+}
@@ -0,0 +1,19 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Cinema;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+public interface ReactiveCinemaRepository extends ReactiveMongoRepository<Cinema, String> {
+
+    /**
+     * Première page, sans requête de comptage
+     */
+    Flux<Cinema> findAllBy(Pageable pageable);
+
+    /**
+     * Page suivante par keyset sur l'_id
+     */
+    Flux<Cinema> findByIdGreaterThan(String id, Pageable pageable);
+}
@@ -0,0 +1,138 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.DbRefBatchLoader;
+import org.bson.Document;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Equivalent réactif de DbRefBatchLoader : le driver réactif ne sait pas résoudre les @DBRef,
+ * je les résous donc par lots, une requête $in par collection référencée
+ */
+public class ReactiveDbRefBatchLoader {
+
+    ReactiveMongoTemplate template;
+
+    public ReactiveDbRefBatchLoader(ReactiveMongoTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Page brute triée par _id, après le curseur after
+     * @param type
+     * @param after
+     * @param pageable
+     * @return
+     */
+    public Flux<Document> findPage(Class<?> type, String after, Pageable pageable) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).limit(pageable.getPageSize());
+        if (after != null) {
+            query.addCriteria(Criteria.where("_id").gt(DbRefBatchLoader.toObjectId(after)));
+        }
+        return this.template.find(query, Document.class, this.template.getCollectionName(type));
+    }
+
+    /**
+     * Un document brut par son id
+     * @param type
+     * @param id
+     * @return
+     */
+    public Mono<Document> findById(Class<?> type, String id) {
+        return this.template.findById(DbRefBatchLoader.toObjectId(id), Document.class, this.template.getCollectionName(type));
+    }
+
+    /**
+     * Parcourt toute la collection : le driver ne lit que ce que l'abonné demande,
+     * et les références sont résolues par lots de STREAM_BATCH_SIZE
+     * @param type
+     * @param reader conversion d'un lot de documents bruts en entités
+     * @return
+     */
+    public <T> Flux<T> stream(Class<T> type, Function<List<Document>, Mono<List<T>>> reader) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id"));
+        return this.template.find(query, Document.class, this.template.getCollectionName(type))
+                .buffer(DbRefBatchLoader.STREAM_BATCH_SIZE)
+                .concatMap(reader)
+                .concatMapIterable(entities -> entities);
+    }
+
+    public Mono<List<Cinema>> cinemas(List<Document> documents) {
+        List<Cinema> cinemas = new ArrayList<>(documents.size());
+        documents.forEach(document -> cinemas.add(this.template.getConverter().read(Cinema.class, document)));
+        return Mono.just(cinemas);
+    }
+
+    public Mono<List<Salle>> salles(List<Document> documents) {
+        return this.resolve(documents, Salle.class, "cinema", ids -> this.findByIds(Cinema.class, ids).flatMap(this::cinemas).map(cinemas -> this.byId(cinemas, Cinema::getId)), Salle::setCinema);
+    }
+
+    public Mono<List<Seance>> seances(List<Document> documents) {
+        return this.resolve(documents, Seance.class, "salle", ids -> this.findByIds(Salle.class, ids).flatMap(this::salles).map(salles -> this.byId(salles, Salle::getId)), Seance::setSalle);
+    }
+
+    public Mono<List<Film>> films(List<Document> documents) {
+        return this.resolve(documents, Film.class, "seance", ids -> this.findByIds(Seance.class, ids).flatMap(this::seances).map(seances -> this.byId(seances, Seance::getId)), Film::setSeance);
+    }
+
+    /**
+     * Je retire la référence des documents avant conversion, je charge toutes les cibles en une fois,
+     * puis je les rattache aux entités
+     */
+    private <T, R> Mono<List<T>> resolve(
+            List<Document> documents,
+            Class<T> type,
+            String field,
+            Function<Set<Object>, Mono<Map<String, R>>> loader,
+            BiConsumer<T, R> setter
+    ) {
+        List<Object> refIds = new ArrayList<>(documents.size());
+        Set<Object> ids = new LinkedHashSet<>();
+        for (Document document : documents) {
+            Object ref = document.remove(field);
+            Object id = ref instanceof DBRef ? ((DBRef) ref).getId() : null;
+            refIds.add(id);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        Mono<Map<String, R>> targets = ids.isEmpty() ? Mono.just(Collections.emptyMap()) : loader.apply(ids);
+        return targets.map(byId -> {
+            List<T> entities = new ArrayList<>(documents.size());
+            for (int i = 0; i < documents.size(); i++) {
+                T entity = this.template.getConverter().read(type, documents.get(i));
+                Object id = refIds.get(i);
+                if (id != null) {
+                    setter.accept(entity, byId.get(id.toString()));
+                }
+                entities.add(entity);
+            }
+            return entities;
+        });
+    }
+
+    private Mono<List<Document>> findByIds(Class<?> type, Collection<Object> ids) {
+        Query query = new Query(Criteria.where("_id").in(ids));
+        return this.template.find(query, Document.class, this.template.getCollectionName(type)).collectList();
+    }
+
+    private <R> Map<String, R> byId(List<R> entities, Function<R, String> id) {
+        Map<String, R> byId = new HashMap<>(entities.size() * 2);
+        entities.forEach(entity -> byId.put(id.apply(entity), entity));
+        return byId;
+    }
+}
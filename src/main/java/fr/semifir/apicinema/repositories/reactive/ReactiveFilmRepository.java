@@ -0,0 +1,7 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Film;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ReactiveFilmRepository extends ReactiveMongoRepository<Film, String>, ReactiveFilmRepositoryCustom {
+}
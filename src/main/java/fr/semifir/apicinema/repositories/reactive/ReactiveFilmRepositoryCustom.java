@@ -0,0 +1,22 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Film;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Lectures avec les @DBRef résolues par lots (voir ReactiveDbRefBatchLoader),
+ * le findById de ReactiveMongoRepository ne sachant pas les résoudre
+ */
+public interface ReactiveFilmRepositoryCustom {
+
+    Mono<Film> findByIdResolved(String id);
+
+    Flux<Film> findPageResolved(String after, Pageable pageable);
+
+    /**
+     * Toute la collection, lue au rythme de l'abonné
+     */
+    Flux<Film> streamAllResolved();
+}
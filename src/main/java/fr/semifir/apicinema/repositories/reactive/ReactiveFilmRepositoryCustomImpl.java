@@ -0,0 +1,37 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Film;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public class ReactiveFilmRepositoryCustomImpl implements ReactiveFilmRepositoryCustom {
+
+    ReactiveDbRefBatchLoader loader;
+
+    public ReactiveFilmRepositoryCustomImpl(ReactiveDbRefBatchLoader loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public Mono<Film> findByIdResolved(String id) {
+        return this.loader.findById(Film.class, id)
+                .flatMap(document -> this.loader.films(List.of(document)))
+                .map(films -> films.get(0));
+    }
+
+    @Override
+    public Flux<Film> findPageResolved(String after, Pageable pageable) {
+        return this.loader.findPage(Film.class, after, pageable)
+                .collectList()
+                .flatMap(this.loader::films)
+                .flatMapIterable(entities -> entities);
+    }
+
+    @Override
+    public Flux<Film> streamAllResolved() {
+        return this.loader.stream(Film.class, this.loader::films);
+    }
+}
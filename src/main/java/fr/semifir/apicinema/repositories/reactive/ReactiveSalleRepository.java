@@ -0,0 +1,7 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Salle;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ReactiveSalleRepository extends ReactiveMongoRepository<Salle, String>, ReactiveSalleRepositoryCustom {
+}
@@ -0,0 +1,22 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Salle;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Lectures avec les @DBRef résolues par lots (voir ReactiveDbRefBatchLoader),
+ * le findById de ReactiveMongoRepository ne sachant pas les résoudre
+ */
+public interface ReactiveSalleRepositoryCustom {
+
+    Mono<Salle> findByIdResolved(String id);
+
+    Flux<Salle> findPageResolved(String after, Pageable pageable);
+
+    /**
+     * Toute la collection, lue au rythme de l'abonné
+     */
+    Flux<Salle> streamAllResolved();
+}
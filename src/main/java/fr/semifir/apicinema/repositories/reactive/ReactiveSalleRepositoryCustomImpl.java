@@ -0,0 +1,37 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Salle;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public class ReactiveSalleRepositoryCustomImpl implements ReactiveSalleRepositoryCustom {
+
+    ReactiveDbRefBatchLoader loader;
+
+    public ReactiveSalleRepositoryCustomImpl(ReactiveDbRefBatchLoader loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public Mono<Salle> findByIdResolved(String id) {
+        return this.loader.findById(Salle.class, id)
+                .flatMap(document -> this.loader.salles(List.of(document)))
+                .map(salles -> salles.get(0));
+    }
+
+    @Override
+    public Flux<Salle> findPageResolved(String after, Pageable pageable) {
+        return this.loader.findPage(Salle.class, after, pageable)
+                .collectList()
+                .flatMap(this.loader::salles)
+                .flatMapIterable(entities -> entities);
+    }
+
+    @Override
+    public Flux<Salle> streamAllResolved() {
+        return this.loader.stream(Salle.class, this.loader::salles);
+    }
+}
@@ -0,0 +1,37 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Seance;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public class ReactiveSeanceRepositoryCustomImpl implements ReactiveSeanceRepositoryCustom {
+
+    ReactiveDbRefBatchLoader loader;
+
+    public ReactiveSeanceRepositoryCustomImpl(ReactiveDbRefBatchLoader loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public Mono<Seance> findByIdResolved(String id) {
+        return this.loader.findById(Seance.class, id)
+                .flatMap(document -> this.loader.seances(List.of(document)))
+                .map(seances -> seances.get(0));
+    }
+
+    @Override
+    public Flux<Seance> findPageResolved(String after, Pageable pageable) {
+        return this.loader.findPage(Seance.class, after, pageable)
+                .collectList()
+                .flatMap(this.loader::seances)
+                .flatMapIterable(entities -> entities);
+    }
+
+    @Override
+    public Flux<Seance> streamAllResolved() {
+        return this.loader.stream(Seance.class, this.loader::seances);
+    }
+}
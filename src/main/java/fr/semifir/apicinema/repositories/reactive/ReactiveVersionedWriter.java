@@ -0,0 +1,85 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Versioned;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.repositories.DbRefBatchLoader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+/**
+ * Equivalent réactif de BulkWriter.replace : un PUT incrémente la version du document (voir Versioned)
+ * au lieu de la remettre à zéro comme repository.save
+ */
+public class ReactiveVersionedWriter {
+
+    ReactiveMongoTemplate template;
+
+    public ReactiveVersionedWriter(ReactiveMongoTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Je remplace un document entier en incrémentant sa version, ou je l'insère en version 0.
+     * Si l'entité porte une version, le remplacement n'a lieu que si le document en est toujours là.
+     * Sinon il part de la version lue juste avant, et recommence si une autre écriture passe entre les deux
+     * @param type
+     * @param entity entité, sans id pour une insertion
+     * @return l'entité écrite avec sa nouvelle version, ou une ConflictException si le document n'est plus à la version portée par l'entité
+     */
+    public <T extends Versioned> Mono<T> replace(Class<T> type, T entity) {
+        Long expected = entity.getVersion();
+        if (entity.getId() == null) {
+            entity.setVersion(0L);
+            return this.template.insert(entity);
+        }
+        Object id = DbRefBatchLoader.toObjectId(entity.getId());
+        return Mono.defer(() -> this.attempt(type, entity, id, expected))
+                .switchIfEmpty(Mono.defer(() -> {
+                    if (expected == null) {
+                        return this.replace(type, entity);
+                    }
+                    entity.setVersion(expected);
+                    return Mono.error(new ConflictException("Le document a été modifié depuis la version " + expected));
+                }));
+    }
+
+    /**
+     * Un essai de remplacement, vide si une autre écriture est passée avant
+     */
+    private <T extends Versioned> Mono<T> attempt(Class<T> type, T entity, Object id, Long expected) {
+        Mono<Long> current = expected != null ? Mono.just(expected) : this.version(type, id);
+        return current.map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(version -> {
+                    if (version.isEmpty()) {
+                        entity.setVersion(0L);
+                        return this.template.insert(entity);
+                    }
+                    entity.setVersion(version.get() + 1);
+                    Query query = new Query(Criteria.where("_id").is(id)).addCriteria(PatchWriter.versionIs(version.get()));
+                    return this.template.findAndReplace(query, entity).map(previous -> entity);
+                })
+                // Inséré par une autre écriture depuis la lecture de la version
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+    }
+
+    /**
+     * Version actuelle du document (0 sans champ version), vide s'il n'existe pas
+     */
+    private Mono<Long> version(Class<?> type, Object id) {
+        Query query = new Query(Criteria.where("_id").is(id));
+        query.fields().include(PatchWriter.VERSION_FIELD);
+        return this.template.findOne(query, Document.class, this.template.getCollectionName(type))
+                .map(document -> {
+                    Number version = document.get(PatchWriter.VERSION_FIELD, Number.class);
+                    return version == null ? 0L : version.longValue();
+                });
+    }
+}
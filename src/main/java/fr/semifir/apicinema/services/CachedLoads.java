@@ -0,0 +1,54 @@
+package fr.semifir.apicinema.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.function.Function;
+
+/**
+ * Lectures mises en cache sans y laisser un DTO périmé : une écriture des collections lues peut passer pendant
+ * la lecture Mongo, et ses abonnés (voir CollectionVersions.onBump) retirer les entrées avant que la lecture
+ * ait mis la sienne. La lecture compare donc les écritures commencées avant et après, et retire son entrée si besoin
+ */
+public final class CachedLoads {
+
+    private CachedLoads() {
+    }
+
+    /**
+     * Je lis un élément depuis le cache, ou à défaut avec load (une seule lecture par id à la fois, voir Cache.get)
+     * @param cache
+     * @param id
+     * @param load lecture dans Mongo, null si l'élément n'existe pas
+     * @param versions
+     * @param collections collections lues par load (celle de l'élément et celles qu'il embarque)
+     * @return
+     */
+    public static <D> D get(Cache<String, D> cache, String id, Function<String, D> load, CollectionVersions versions, Class<?>... collections) {
+        long[] before = {-1};
+        D dto = cache.get(id, key -> {
+            before[0] = versions.writes(collections);
+            return load.apply(key);
+        });
+        // Seul l'appel qui a fait la lecture connaît before
+        if (before[0] >= 0 && versions.writes(collections) != before[0]) {
+            cache.invalidate(id);
+        }
+        return dto;
+    }
+
+    /**
+     * Je mets en cache un élément lu hors de Cache.get (lecture réactive)
+     * @param cache
+     * @param id
+     * @param dto
+     * @param versions
+     * @param before versions.writes(collections) lu avant la lecture Mongo
+     * @param collections
+     */
+    public static <D> void put(Cache<String, D> cache, String id, D dto, CollectionVersions versions, long before, Class<?>... collections) {
+        cache.put(id, dto);
+        if (versions.writes(collections) != before) {
+            cache.invalidate(id);
+        }
+    }
+}
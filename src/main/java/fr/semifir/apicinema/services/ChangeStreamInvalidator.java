@@ -0,0 +1,337 @@
+package fr.semifir.apicinema.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.mongodb.DBRef;
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Invalidation des caches en mémoire à partir des change streams Mongo, pour voir les écritures des autres instances :
+ * caches des findByID, cinémas et salles en mémoire, index des titres de films, créneaux des salles et versions des ETag.
+ * Les programmes sont dans Mongo, déjà recalculés par l'instance qui a écrit.
+ * Un seul curseur suit les quatre collections ; le jeton de reprise est enregistré par instance (node),
+ * pour reprendre après un redémarrage là où le flux s'était arrêté.
+ * Si l'oplog ne remonte plus jusqu'au jeton, je vide les caches et recharge les index avant de repartir de maintenant.
+ * Les caches qui embarquent une collection (séances et films pour une salle...) sont vidés par le bump de sa version,
+ * voir CacheConfiguration.
+ * Les change streams demandent un replica set (un seul noeud suffit en local)
+ */
+public class ChangeStreamInvalidator implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeStreamInvalidator.class);
+    public static final String TOKENS_COLLECTION = "changeStreamTokens";
+    // ChangeStreamHistoryLost, ChangeStreamFatalError, InvalidResumeToken
+    private static final Set<Integer> RESUME_FAILED = Set.of(286, 280, 260);
+
+    MongoTemplate template;
+    Cache<String, ?> cinemaCache;
+    Cache<String, ?> salleCache;
+    Cache<String, ?> seanceCache;
+    Cache<String, ?> filmCache;
+    FilmTitleIndex titles;
+    SeanceSchedule schedule;
+    ReferenceData references;
+    CollectionVersions versions;
+    String node;
+    Duration tokenInterval;
+    Duration retryDelay;
+
+    private volatile boolean running;
+    private Thread thread;
+    // Ecrits par le thread du change stream, lus aussi par close() si le thread tarde à s'arrêter
+    private volatile BsonDocument token;
+    private volatile long tokenSavedAt;
+    // Un enregistrement à la fois : un jeton plus ancien ne doit pas écraser le dernier
+    private final ReentrantLock tokenLock = new ReentrantLock();
+
+    public ChangeStreamInvalidator(
+            MongoTemplate template,
+            Cache<String, ?> cinemaCache,
+            Cache<String, ?> salleCache,
+            Cache<String, ?> seanceCache,
+            Cache<String, ?> filmCache,
+            FilmTitleIndex titles,
+            SeanceSchedule schedule,
+            ReferenceData references,
+            CollectionVersions versions,
+            String node,
+            Duration tokenInterval,
+            Duration retryDelay
+    ) {
+        this.template = template;
+        this.cinemaCache = cinemaCache;
+        this.salleCache = salleCache;
+        this.seanceCache = seanceCache;
+        this.filmCache = filmCache;
+        this.titles = titles;
+        this.schedule = schedule;
+        this.references = references;
+        this.versions = versions;
+        this.node = node;
+        this.tokenInterval = tokenInterval;
+        this.retryDelay = retryDelay;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        this.start();
+    }
+
+    public void start() {
+        this.token = this.loadToken();
+        this.running = true;
+        this.thread = new Thread(this::run, "change-stream");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        LOGGER.info("Change streams suivis pour l'instance {}, {}", this.node, this.token == null ? "depuis maintenant" : "depuis le dernier jeton");
+    }
+
+    /**
+     * Le curseur attend au plus une seconde : le thread s'arrête dans la seconde, puis j'enregistre le dernier jeton
+     */
+    public void close() {
+        this.running = false;
+        if (this.thread == null) {
+            return;
+        }
+        try {
+            this.thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.saveToken();
+    }
+
+    private void run() {
+        while (this.running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = this.watch().cursor()) {
+                while (this.running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        this.applySafely(change);
+                        if (change.getOperationType() == OperationType.INVALIDATE) {
+                            // Le flux est fermé par Mongo : je le rouvre depuis maintenant
+                            this.token = null;
+                            break;
+                        }
+                    }
+                    // Sans événement, le jeton avance quand même (fin du lot) : la reprise ne relit pas l'oplog inutilement
+                    BsonDocument resumeToken = change != null ? change.getResumeToken() : cursor.getResumeToken();
+                    if (resumeToken != null) {
+                        this.token = resumeToken;
+                    }
+                    if (System.currentTimeMillis() - this.tokenSavedAt >= this.tokenInterval.toMillis()) {
+                        this.saveToken();
+                    }
+                }
+            } catch (MongoServerException e) {
+                if (this.token != null && RESUME_FAILED.contains(e.getCode())) {
+                    LOGGER.warn("Reprise du change stream impossible depuis le jeton, caches vidés et index rechargés", e);
+                    this.token = null;
+                    this.reloadAll();
+                } else {
+                    this.retryLater(e);
+                }
+            } catch (MongoException e) {
+                this.retryLater(e);
+            }
+        }
+    }
+
+    private ChangeStreamIterable<Document> watch() {
+        List<String> collections = List.of(
+                this.template.getCollectionName(Cinema.class),
+                this.template.getCollectionName(Salle.class),
+                this.template.getCollectionName(Seance.class),
+                this.template.getCollectionName(Film.class));
+        ChangeStreamIterable<Document> watch = this.template.getDb()
+                .watch(List.of(Aggregates.match(Filters.or(
+                        Filters.in("ns.coll", collections),
+                        Filters.in("operationType", List.of("dropDatabase", "invalidate"))))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        return this.token == null ? watch : watch.resumeAfter(this.token);
+    }
+
+    /**
+     * J'applique un changement fait par n'importe quelle instance, celle-ci comprise :
+     * tout est idempotent, une invalidation de plus ne coûte qu'une lecture Mongo
+     * @param change
+     */
+    public void apply(ChangeStreamDocument<Document> change) {
+        OperationType operation = change.getOperationType();
+        if (operation == OperationType.INVALIDATE || operation == OperationType.DROP_DATABASE
+                || operation == OperationType.DROP || operation == OperationType.RENAME) {
+            this.reloadAll();
+            return;
+        }
+        if (change.getNamespace() == null || change.getDocumentKey() == null) {
+            return;
+        }
+        String collection = change.getNamespace().getCollectionName();
+        String id = idOf(change.getDocumentKey().get("_id"));
+        boolean deleted = operation == OperationType.DELETE;
+        Document document = change.getFullDocument();
+        if (collection.equals(this.template.getCollectionName(Cinema.class))) {
+            this.cinemaCache.invalidate(id);
+            if (deleted) {
+                this.references.removeCinema(id);
+            } else if (document != null) {
+                this.references.putCinemas(List.of(this.template.getConverter().read(Cinema.class, document)));
+            }
+            this.versions.bump(Cinema.class, List.of(id));
+        } else if (collection.equals(this.template.getCollectionName(Salle.class))) {
+            this.salleCache.invalidate(id);
+            if (deleted) {
+                this.references.removeSalle(id);
+            } else if (document != null) {
+                // Le cinéma est repris de ReferenceData par son id, sans requête
+                String cinemaId = refId(document.remove("cinema"));
+                Salle salle = this.template.getConverter().read(Salle.class, document);
+                salle.setCinema(cinemaId == null ? null : new Cinema(cinemaId, null));
+                this.references.putSalles(List.of(salle));
+            }
+            this.versions.bump(Salle.class, List.of(id));
+        } else if (collection.equals(this.template.getCollectionName(Seance.class))) {
+            this.seanceCache.invalidate(id);
+            if (deleted) {
+                this.schedule.remove(id);
+            } else if (document != null) {
+                this.schedule.replace(id, refId(document.get("salle")), document.getDate("date"));
+            }
+            this.versions.bump(Seance.class, List.of(id));
+        } else if (collection.equals(this.template.getCollectionName(Film.class))) {
+            this.filmCache.invalidate(id);
+            if (deleted) {
+                this.titles.remove(id);
+                this.schedule.removeFilm(id);
+            } else if (document != null) {
+                Number duree = document.get("duree", Number.class);
+                Film film = new Film(id, document.getString("nom"), duree == null ? null : duree.floatValue(), null);
+                this.titles.put(film);
+                this.schedule.replaceDuree(id, refId(document.get("seance")), film.getDuree());
+            }
+            this.versions.bump(Film.class, List.of(id));
+        }
+    }
+
+    private void applySafely(ChangeStreamDocument<Document> change) {
+        try {
+            this.apply(change);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Changement {} non appliqué aux caches", change.getDocumentKey(), e);
+        }
+    }
+
+    /**
+     * Des événements ont pu être perdus : je repars de Mongo pour tout
+     */
+    private void reloadAll() {
+        this.cinemaCache.invalidateAll();
+        this.salleCache.invalidateAll();
+        this.seanceCache.invalidateAll();
+        this.filmCache.invalidateAll();
+        try {
+            this.references.load();
+            this.titles.load();
+            this.schedule.load();
+        } catch (DataAccessException e) {
+            LOGGER.warn("Rechargement des index impossible", e);
+        }
+        this.versions.bump(Cinema.class);
+        this.versions.bump(Salle.class);
+        this.versions.bump(Seance.class);
+        this.versions.bump(Film.class);
+    }
+
+    private void retryLater(MongoException e) {
+        if (!this.running) {
+            return;
+        }
+        LOGGER.warn("Change stream interrompu, nouvel essai dans {}", this.retryDelay, e);
+        try {
+            Thread.sleep(this.retryDelay.toMillis());
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            this.running = false;
+        }
+    }
+
+    private MongoCollection<BsonDocument> tokens() {
+        return this.template.getDb().getCollection(TOKENS_COLLECTION, BsonDocument.class);
+    }
+
+    private BsonDocument loadToken() {
+        try {
+            BsonDocument saved = this.tokens().find(Filters.eq("_id", this.node)).first();
+            return saved == null || !saved.isDocument("token") ? null : saved.getDocument("token");
+        } catch (MongoException e) {
+            LOGGER.warn("Lecture du jeton de reprise impossible, change stream suivi depuis maintenant", e);
+            return null;
+        }
+    }
+
+    private void saveToken() {
+        this.tokenLock.lock();
+        try {
+            BsonDocument current = this.token;
+            long savedAt = System.currentTimeMillis();
+            this.tokenSavedAt = savedAt;
+            if (current == null) {
+                return;
+            }
+            this.tokens().replaceOne(Filters.eq("_id", this.node),
+                    new BsonDocument("_id", new BsonString(this.node))
+                            .append("token", current)
+                            .append("at", new BsonDateTime(savedAt)),
+                    new ReplaceOptions().upsert(true));
+        } catch (MongoException e) {
+            LOGGER.warn("Enregistrement du jeton de reprise impossible", e);
+        } finally {
+            this.tokenLock.unlock();
+        }
+    }
+
+    private static String idOf(BsonValue id) {
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private static String refId(Object ref) {
+        return ref instanceof DBRef ? String.valueOf(((DBRef) ref).getId()) : null;
+    }
+}
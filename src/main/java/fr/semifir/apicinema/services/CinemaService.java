@@ -1,71 +1,250 @@
 package fr.semifir.apicinema.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
 import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
 import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.DbRefBatchLoader;
+import fr.semifir.apicinema.repositories.PatchWriter;
 import fr.semifir.apicinema.repositories.CinemaRepository;
-import org.modelmapper.ModelMapper;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.Streamable;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CinemaService {
 
     CinemaRepository repository;
-    ModelMapper mapper;
+    EntityMapper<Cinema, CinemaDTO> mapper;
+    Cache<String, CinemaDTO> cache;
+    BulkWriter bulkWriter;
+    PatchWriter patchWriter;
+    CollectionVersions versions;
+    ServiceMetrics metrics;
+    SingleFlight flights;
+    ReferenceData references;
 
     public CinemaService(
             CinemaRepository repository,
-            ModelMapper mapper
+            EntityMapper<Cinema, CinemaDTO> mapper,
+            Cache<String, CinemaDTO> cache,
+            BulkWriter bulkWriter,
+            PatchWriter patchWriter,
+            CollectionVersions versions,
+            ServiceMetrics metrics,
+            ReferenceData references
             ) {
         this.repository = repository;
         this.mapper = mapper;
+        this.cache = cache;
+        this.bulkWriter = bulkWriter;
+        this.patchWriter = patchWriter;
+        this.versions = versions;
+        this.metrics = metrics;
+        this.flights = new SingleFlight(metrics);
+        this.references = references;
     }
 
     /**
-     * Retour une liste de Cinema
+     * Retour une liste de Cinema, depuis la mémoire une fois ReferenceData chargé
      * @return List<Cinema>
      */
     public List<CinemaDTO> findAll() {
-        // Je crée une liste vide de Cinema DTO
-        List<CinemaDTO> cinemaDTOS = new ArrayList<>();
-        // J'appelle mon repo pour récupérer mes cinémas
-        // Je boucle directement avec un Foreach le retour de mon repo
-        // J'utlise une lambda
-        this.repository.findAll().forEach(cinema -> {
-            // Je map l'entité Cinema en CinemaDTO
-            CinemaDTO cinemaDTO = mapper.map(cinema, CinemaDTO.class);
-            // Je l'ajoute à mon tableau
-            cinemaDTOS.add(cinemaDTO);
+        List<Cinema> inMemory = this.references.cinemas();
+        if (inMemory != null) {
+            return this.metrics.mapAll("findAll", inMemory, mapper::toDTO);
+        }
+        return this.flights.run("findAll", List.of(this.etag()), () -> {
+            // Je sépare le temps passé dans Mongo du temps de mapping
+            List<Cinema> cinemas = this.metrics.mongo("findAll", this.repository::findAll);
+            return this.metrics.mapAll("findAll", cinemas, mapper::toDTO);
+        });
+    }
+
+    /**
+     * Retourne une page de Cinema triée par id, après le curseur after
+     * @param after id du dernier élément de la page précédente, null pour la première page
+     * @param limit
+     * @return List<CinemaDTO>
+     */
+    public List<CinemaDTO> findPage(String after, int limit) {
+        List<Cinema> inMemory = this.references.cinemaPage(after, Pages.clamp(limit));
+        if (inMemory != null) {
+            return this.metrics.mapAll("findPage", inMemory, mapper::toDTO);
+        }
+        return this.flights.run("findPage", Arrays.asList(this.etag(), after, limit), () -> {
+            Pageable pageable = Pages.byId(limit);
+            List<Cinema> cinemas = this.metrics.mongo("findPage", () -> after == null
+                    ? this.repository.findAllBy(pageable)
+                    : this.repository.findByIdGreaterThan(after, pageable));
+            return this.metrics.mapAll("findPage", cinemas, mapper::toDTO);
         });
-        return cinemaDTOS;
     }
 
     /**
-     * Je récupère un cinema selon son ID
+     * Parcourt tous les Cinema sur un curseur Mongo ouvert (ou en mémoire), à fermer par l'appelant
+     * @return Stream<CinemaDTO>
+     */
+    public Stream<CinemaDTO> stream() {
+        List<Cinema> inMemory = this.references.cinemas();
+        if (inMemory != null) {
+            return inMemory.stream().map(mapper::toDTO);
+        }
+        return this.repository.streamAllBy().map(mapper::toDTO);
+    }
+
+    /**
+     * ETag des lectures de Cinema, qui change à chaque écriture des Cinema
+     * @return
+     */
+    public String etag() {
+        return this.versions.etag(Cinema.class);
+    }
+
+    /**
+     * Je récupère un cinema selon son ID, depuis la mémoire, le cache ou à défaut depuis Mongo
      * @param id
      * @return
      */
     public Optional<CinemaDTO> findByID(String id) throws NotFoundException {
-        Optional<Cinema> cinema = this.repository.findById(id);
-        Optional<CinemaDTO> cinemaDTO;
-        if (cinema.isPresent()) {
-           cinemaDTO = Optional.of(mapper.map(cinema.get(), CinemaDTO.class));
-        } else {
+        Cinema inMemory = this.references.cinema(id);
+        if (inMemory != null) {
+            return Optional.of(this.metrics.mapping("findByID", () -> mapper.toDTO(inMemory)));
+        }
+        CinemaDTO cinemaDTO = this.cache.getIfPresent(id);
+        if (cinemaDTO == null) {
+            cinemaDTO = CachedLoads.get(this.cache, id, key -> this.metrics.mongo("findByID", () -> this.repository.findById(key))
+                    .map(cinema -> this.metrics.mapping("findByID", () -> mapper.toDTO(cinema)))
+                    .orElse(null), this.versions, Cinema.class);
+        }
+        if (cinemaDTO == null) {
             throw new NotFoundException("Le cinema n'a pas été trouvé");
         }
-        return cinemaDTO;
+        return Optional.of(cinemaDTO);
+    }
+
+    /**
+     * Je récupère plusieurs cinémas en une requête, sans erreur pour les ids introuvables
+     * @param ids
+     * @return les CinemaDTO trouvés dans l'ordre des ids, et les ids manquants
+     */
+    public MgetDTO<CinemaDTO> findAllByID(Collection<String> ids) {
+        return MultiGet.collect(ids, id -> {
+            Cinema inMemory = this.references.cinema(id);
+            return inMemory == null ? null : mapper.toDTO(inMemory);
+        }, this.cache, misses -> {
+            List<Cinema> cinemas = this.metrics.mongo("findAllByID", () -> Streamable.of(this.repository.findAllById(misses)).toList());
+            return this.metrics.mapAll("findAllByID", cinemas, mapper::toDTO);
+        }, CinemaDTO::getId);
     }
 
     /**
-     * Save & update un cinema
+     * Save & update un cinema, en incrémentant sa version (voir BulkWriter.replace)
      * @param cinema
      * @return
+     * @throws ConflictException si cinema porte une version qui n'est plus celle du document
      */
-    public CinemaDTO save(Cinema cinema) {
-        return mapper.map(this.repository.save(cinema), CinemaDTO.class);
+    public CinemaDTO save(Cinema cinema) throws ConflictException {
+        Cinema saved = this.metrics.mongo("save", () -> this.bulkWriter.replace(Cinema.class, cinema));
+        CinemaDTO cinemaDTO = this.metrics.mapping("save", () -> mapper.toDTO(saved));
+        this.cache.invalidate(cinemaDTO.getId());
+        this.references.putCinemas(List.of(saved));
+        this.versions.bump(Cinema.class, List.of(cinemaDTO.getId()));
+        return cinemaDTO;
+    }
+
+    /**
+     * Mise à jour partielle : seuls les champs du patch sont écrits dans Mongo (voir PatchWriter)
+     * @param id
+     * @param body JSON merge patch, avec "version" pour ne l'appliquer qu'à cette version du cinema
+     * @return le cinema après le patch et sa version
+     * @throws IllegalArgumentException si le patch est invalide
+     */
+    public PatchedDTO<CinemaDTO> patch(String id, Map<String, Object> body) throws NotFoundException, ConflictException {
+        PatchWriter.Patch patch = this.patchWriter.parse(Cinema.class, id, body);
+        PatchedDTO<Cinema> patched = this.metrics.mongo("patch", () -> this.patchWriter.apply(patch, DbRefBatchLoader::cinemas));
+        if (patched == null) {
+            throw new NotFoundException("Le cinema n'a pas été trouvé");
+        }
+        CinemaDTO cinemaDTO = this.metrics.mapping("patch", () -> mapper.toDTO(patched.getValue()));
+        this.cache.invalidate(id);
+        this.references.putCinemas(List.of(patched.getValue()));
+        this.versions.bump(Cinema.class, List.of(id));
+        return new PatchedDTO<>(cinemaDTO, patched.getVersion());
+    }
+
+    /**
+     * Import en masse : j'insère les cinémas par lots, sans les garder tous en mémoire
+     * @param cinemas cinémas lus depuis le corps de la requête
+     * @param results résultat de chaque élément, publié après l'écriture de son lot
+     */
+    public void bulkInsert(Iterator<Cinema> cinemas, Consumer<BulkResultDTO> results) {
+        Map<String, Cinema> pending = new HashMap<>();
+        List<Cinema> written = new ArrayList<>();
+        BulkWriter.Bulk<Cinema> bulk = this.bulkWriter.open(Cinema.class, Cinema::getId, Cinema::setId, result -> {
+            // Seul un cinéma écrit par Mongo entre dans ReferenceData
+            Cinema cinema = pending.remove(result.getId());
+            if (cinema != null && BulkResultDTO.OK.equals(result.getStatus())) {
+                written.add(cinema);
+            }
+            results.accept(result);
+        });
+        try {
+            cinemas.forEachRemaining(cinema -> {
+                if (cinema.getId() == null) {
+                    cinema.setId(new ObjectId().toHexString());
+                }
+                pending.put(cinema.getId(), cinema);
+                bulk.add(cinema);
+            });
+        } finally {
+            bulk.finish();
+            this.references.putCinemas(written);
+            this.versions.bump(Cinema.class, written.stream().map(Cinema::getId).collect(Collectors.toList()));
+        }
+    }
+    /**
+     * Je supprime un cinema par son id
+     * @param id
+     */
+    public void deleteByID(String id) throws NotFoundException {
+        if (this.deleteAllByID(List.of(id)) == 0) {
+            throw new NotFoundException("Le cinema n'a pas été trouvé");
+        }
+    }
+
+    /**
+     * Je supprime des cinémas par leurs ids, en un deleteMany par lot (voir BulkWriter)
+     * @param ids
+     * @return le nombre de cinémas supprimés
+     */
+    public long deleteAllByID(Collection<String> ids) {
+        List<String> distinct = ids.stream().distinct().collect(Collectors.toList());
+        long deleted = this.metrics.mongo("deleteAllByID", () -> this.bulkWriter.deleteAll(Cinema.class, distinct));
+        this.cache.invalidateAll(distinct);
+        this.references.removeCinemas(distinct);
+        this.versions.bump(Cinema.class, distinct);
+        return deleted;
     }
 
     /**
@@ -73,6 +252,11 @@ public class CinemaService {
      * @param cinema
      */
     public void delete(Cinema cinema) {
-        this.repository.delete(cinema);
+        this.metrics.run("delete", () -> this.repository.delete(cinema));
+        if (cinema.getId() != null) {
+            this.cache.invalidate(cinema.getId());
+            this.references.removeCinema(cinema.getId());
+            this.versions.bump(Cinema.class, List.of(cinema.getId()));
+        }
     }
 }
@@ -0,0 +1,97 @@
+package fr.semifir.apicinema.services;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Numéro de version par collection, incrémenté par les services après chaque écriture.
+ * Les ETag en sont dérivés : tant qu'aucune des collections d'une réponse n'a changé,
+ * l'ETag reste le même et un If-None-Match est servi en 304 sans lire Mongo.
+ * Le préfixe (démarrage du process) invalide les ETag d'une instance précédente ;
+ * les écritures faites hors de l'application ne sont pas vues.
+ * Les caches dont les DTO embarquent une collection s'abonnent à ses écritures (onBump),
+ * avec les ids écrits pour n'en retirer que les entrées qui les embarquent
+ */
+public class CollectionVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+    // Incrémenté au début de chaque bump, avant les abonnés (voir writes)
+    private final Map<Class<?>, AtomicLong> writes = new ConcurrentHashMap<>();
+    private final Map<Class<?>, List<Consumer<Collection<String>>>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Ecriture d'éléments dont les ids ne sont pas connus : les abonnés retirent tout
+     * @param collection entité de la collection modifiée
+     */
+    public void bump(Class<?> collection) {
+        this.bump(collection, null);
+    }
+
+    /**
+     * A appeler une fois l'écriture terminée, jamais avant :
+     * une lecture faite entre les deux porterait sinon la nouvelle version avec l'ancien contenu.
+     * Pour la même raison, les abonnés sont prévenus avant que la version change
+     * @param collection entité de la collection modifiée
+     * @param ids ids des éléments écrits, null si inconnus
+     */
+    public void bump(Class<?> collection, Collection<String> ids) {
+        this.writes.computeIfAbsent(collection, k -> new AtomicLong()).incrementAndGet();
+        List<Consumer<Collection<String>>> listeners = this.listeners.get(collection);
+        if (listeners != null) {
+            listeners.forEach(listener -> listener.accept(ids));
+        }
+        this.versions.computeIfAbsent(collection, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * J'abonne un listener aux écritures d'une collection, par exemple pour retirer d'un cache
+     * les DTO qui embarquent les éléments écrits
+     * @param collection
+     * @param listener appelé à chaque bump avec les ids écrits (null si inconnus), avant le changement de version
+     */
+    public void onBump(Class<?> collection, Consumer<Collection<String>> listener) {
+        this.listeners.computeIfAbsent(collection, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Nombre d'écritures commencées dans ces collections. Une lecture qui le voit changer pendant qu'elle lit Mongo
+     * a pu lire l'état d'avant l'écriture, et le mettre en cache après que les abonnés ont retiré les entrées concernées :
+     * elle doit retirer ce qu'elle a mis en cache (voir CachedLoads)
+     * @param collections
+     * @return
+     */
+    public long writes(Class<?>... collections) {
+        long writes = 0;
+        for (Class<?> collection : collections) {
+            AtomicLong count = this.writes.get(collection);
+            writes += count == null ? 0 : count.get();
+        }
+        return writes;
+    }
+
+    public long get(Class<?> collection) {
+        AtomicLong version = this.versions.get(collection);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * ETag faible d'une réponse construite à partir de ces collections (la collection lue et celles qu'elle embarque).
+     * Faible parce que le corps peut être envoyé compressé ou non : Tomcat ne compresse pas une réponse à ETag fort.
+     * A lire avant la requête Mongo
+     * @param collections
+     * @return
+     */
+    public String etag(Class<?>... collections) {
+        StringBuilder etag = new StringBuilder("W/\"").append(this.epoch);
+        for (Class<?> collection : collections) {
+            etag.append('-').append(this.get(collection));
+        }
+        return etag.append('"').toString();
+    }
+}
@@ -1,29 +1,80 @@
 package fr.semifir.apicinema.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
 import fr.semifir.apicinema.dtos.film.FilmDTO;
-import fr.semifir.apicinema.dtos.film.FilmDTO;
-import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.dtos.film.FilmTitreDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
+import fr.semifir.apicinema.entities.Cinema;
 import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.DbRefBatchLoader;
+import fr.semifir.apicinema.repositories.PatchWriter;
 import fr.semifir.apicinema.repositories.FilmRepository;
 import fr.semifir.apicinema.repositories.SeanceRepository;
-import org.modelmapper.ModelMapper;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class FilmService {
 
+    public static final int SEARCH_DEFAULT_LIMIT = 10;
+    public static final int SEARCH_MAX_LIMIT = 50;
+
     FilmRepository repository;
-    ModelMapper mapper;
+    EntityMapper<Film, FilmDTO> mapper;
+    Cache<String, FilmDTO> cache;
+    BulkWriter bulkWriter;
+    PatchWriter patchWriter;
+    CollectionVersions versions;
+    ServiceMetrics metrics;
+    SingleFlight flights;
+    ProgrammeService programmes;
+    SeanceSchedule schedule;
+    FilmTitleIndex titles;
 
     public FilmService(
             FilmRepository repository,
-            ModelMapper mapper
+            EntityMapper<Film, FilmDTO> mapper,
+            Cache<String, FilmDTO> cache,
+            BulkWriter bulkWriter,
+            PatchWriter patchWriter,
+            CollectionVersions versions,
+            ServiceMetrics metrics,
+            ProgrammeService programmes,
+            SeanceSchedule schedule,
+            FilmTitleIndex titles
             ) {
         this.repository = repository;
         this.mapper = mapper;
+        this.cache = cache;
+        this.bulkWriter = bulkWriter;
+        this.patchWriter = patchWriter;
+        this.versions = versions;
+        this.metrics = metrics;
+        this.flights = new SingleFlight(metrics);
+        this.programmes = programmes;
+        this.schedule = schedule;
+        this.titles = titles;
     }
 
     /**
@@ -31,37 +82,255 @@ public class FilmService {
      * @return List<Film>
      */
     public List<FilmDTO> findAll() {
-        List<FilmDTO> filmDTOS = new ArrayList<>();
-        this.repository.findAll().forEach(film -> {
-            FilmDTO filmDTO = mapper.map(film, FilmDTO.class);
-            filmDTOS.add(filmDTO);
+        return this.flights.run("findAll", List.of(this.etag()), () -> {
+            List<Film> films = this.metrics.mongo("findAll", this.repository::findAllResolved);
+            return this.metrics.mapAll("findAll", films, mapper::toDTO);
         });
-        return filmDTOS;
     }
 
     /**
-     * Je récupère un film selon son ID
+     * Retourne une page de Film triée par id, après le curseur after
+     * @param after id du dernier élément de la page précédente, null pour la première page
+     * @param limit
+     * @return List<FilmDTO>
+     */
+    public List<FilmDTO> findPage(String after, int limit) {
+        return this.flights.run("findPage", Arrays.asList(this.etag(), after, limit), () -> {
+            Pageable pageable = Pages.byId(limit);
+            List<Film> films = this.metrics.mongo("findPage", () -> this.repository.findPageResolved(after, pageable));
+            return this.metrics.mapAll("findPage", films, mapper::toDTO);
+        });
+    }
+
+    /**
+     * Page réduite aux champs demandés : la projection est faite par Mongo,
+     * et les références non demandées ne sont pas chargées
+     * @param after
+     * @param limit
+     * @param fields propriétés du DTO à renvoyer
+     * @return List<FilmDTO> dont les autres champs sont vides
+     */
+    public List<FilmDTO> findPage(String after, int limit, Set<String> fields) {
+        return this.flights.run("findPage", Arrays.asList(this.etag(), after, limit, fields), () -> {
+            Pageable pageable = Pages.byId(limit);
+            List<Film> films = this.metrics.mongo("findPage", () -> this.repository.findPageResolved(after, pageable, fields));
+            return this.metrics.mapAll("findPage", films, mapper::toDTO);
+        });
+    }
+
+    /**
+     * Parcourt tous les Film sur un curseur Mongo ouvert, à fermer par l'appelant
+     * @return Stream<FilmDTO>
+     */
+    public Stream<FilmDTO> stream() {
+        return this.repository.streamAllResolved().map(mapper::toDTO);
+    }
+
+    /**
+     * Je cherche les films dont le titre contient la saisie, sans accents ni majuscules, depuis l'index en mémoire
+     * @param q saisie de l'utilisateur
+     * @param limit nombre de résultats, au plus SEARCH_MAX_LIMIT
+     * @return List<FilmTitreDTO> les meilleurs titres d'abord
+     */
+    public List<FilmTitreDTO> search(String q, int limit) {
+        return this.titles.search(q, Math.min(Math.max(limit, 1), SEARCH_MAX_LIMIT));
+    }
+
+    /**
+     * ETag des lectures de Film, qui change à chaque écriture des Film et des collections embarquées
+     * @return
+     */
+    public String etag() {
+        return this.versions.etag(Film.class, Seance.class, Salle.class, Cinema.class);
+    }
+
+    /**
+     * Je récupère un film selon son ID, depuis le cache ou à défaut depuis Mongo
      * @param id
      * @return
      */
     public Optional<FilmDTO> findByID(String id) throws NotFoundException {
-        Optional<Film> film = this.repository.findById(id);
-        Optional<FilmDTO> seanceDTO;
-        if (film.isPresent()) {
-           seanceDTO = Optional.of(mapper.map(film.get(), FilmDTO.class));
-        } else {
+        FilmDTO filmDTO = this.cache.getIfPresent(id);
+        if (filmDTO == null) {
+            filmDTO = CachedLoads.get(this.cache, id, key -> this.metrics.mongo("findByID", () -> this.repository.findByIdResolved(key, null))
+                    .map(film -> this.metrics.mapping("findByID", () -> mapper.toDTO(film)))
+                    .orElse(null), this.versions, Film.class, Seance.class, Salle.class, Cinema.class);
+        }
+        if (filmDTO == null) {
             throw new NotFoundException("Le film n'a pas été trouvé");
         }
-        return seanceDTO;
+        return Optional.of(filmDTO);
+    }
+
+    /**
+     * Je récupère un film réduit aux champs demandés : complet depuis le cache s'il y est,
+     * sinon projeté par Mongo, sans passer par le cache
+     * @param id
+     * @param fields propriétés du DTO à renvoyer
+     * @return
+     */
+    public Optional<FilmDTO> findByID(String id, Set<String> fields) throws NotFoundException {
+        FilmDTO cached = this.cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return Optional.of(this.flights.run("findByID", List.of(this.etag(), id, fields), () -> this.metrics.mongo("findByID", () -> this.repository.findByIdResolved(id, fields))
+                        .map(film -> this.metrics.mapping("findByID", () -> mapper.toDTO(film)))
+                        .orElseThrow(() -> new NotFoundException("Le film n'a pas été trouvé"))));
     }
 
     /**
-     * Save & update un film
+     * Je récupère plusieurs films en une requête, sans erreur pour les ids introuvables
+     * @param ids
+     * @return les FilmDTO trouvés dans l'ordre des ids, et les ids manquants
+     */
+    public MgetDTO<FilmDTO> findAllByID(Collection<String> ids) {
+        return MultiGet.collect(ids, this.cache, misses -> {
+            List<Film> films = this.metrics.mongo("findAllByID", () -> this.repository.findAllByIdResolved(misses));
+            return this.metrics.mapAll("findAllByID", films, mapper::toDTO);
+        }, FilmDTO::getId);
+    }
+
+    /**
+     * Save & update un film, en incrémentant sa version (voir BulkWriter.replace).
+     * Sa durée est portée sur le créneau de sa séance avant l'écriture, et rendue si elle échoue
      * @param film
      * @return
+     * @throws ConflictException si la séance, allongée, chevauche une autre séance de sa salle,
+     * ou si film porte une version qui n'est plus celle du document
+     */
+    public FilmDTO save(Film film) throws ConflictException {
+        if (film.getId() == null) {
+            film.setId(new ObjectId().toHexString());
+        }
+        SeanceSchedule.FilmDuree previous = this.schedule.setDuree(film.getId(), seanceIdOf(film), film.getDuree());
+        Film saved;
+        try {
+            saved = this.metrics.mongo("save", () -> this.bulkWriter.replace(Film.class, film));
+        } catch (RuntimeException e) {
+            this.schedule.restore(previous);
+            throw e;
+        }
+        FilmDTO filmDTO = this.metrics.mapping("save", () -> mapper.toDTO(saved));
+        this.titles.put(saved);
+        this.cache.invalidate(filmDTO.getId());
+        this.programmes.filmsChanged(List.of(filmDTO.getId()));
+        this.versions.bump(Film.class);
+        return filmDTO;
+    }
+
+    /**
+     * Mise à jour partielle : seuls les champs du patch sont écrits dans Mongo (voir PatchWriter).
+     * Un patch de la durée ou de la séance la porte d'abord sur le créneau de la séance, et n'est écrit que si le film
+     * a encore la durée et la séance lues pour le vérifier
+     * @param id
+     * @param body JSON merge patch, avec "version" pour ne l'appliquer qu'à cette version du film
+     * @return le film après le patch et sa version
+     * @throws IllegalArgumentException si le patch est invalide
+     * @throws ConflictException si la séance, allongée, chevauche une autre séance de sa salle, ou si le film a changé entre-temps
+     */
+    public PatchedDTO<FilmDTO> patch(String id, Map<String, Object> body) throws NotFoundException, ConflictException {
+        PatchWriter.Patch patch = this.patchWriter.parse(Film.class, id, body);
+        boolean resized = patch.touches("duree", "seance");
+        SeanceSchedule.FilmDuree previous = null;
+        if (resized) {
+            Map<String, Object> after = this.metrics.mongo("patch", () -> this.patchWriter.guard(patch, "duree", "seance"));
+            if (after == null) {
+                throw new NotFoundException("Le film n'a pas été trouvé");
+            }
+            Number duree = (Number) after.get("duree");
+            previous = this.schedule.setDuree(id, (String) after.get("seance"), duree == null ? null : duree.floatValue());
+        }
+        PatchedDTO<Film> patched;
+        try {
+            patched = this.metrics.mongo("patch", () -> this.patchWriter.apply(patch, DbRefBatchLoader::films));
+        } catch (RuntimeException e) {
+            if (resized) {
+                this.schedule.restore(previous);
+            }
+            throw e;
+        }
+        if (patched == null) {
+            if (resized) {
+                this.schedule.restore(previous);
+            }
+            throw new NotFoundException("Le film n'a pas été trouvé");
+        }
+        Film film = patched.getValue();
+        FilmDTO filmDTO = this.metrics.mapping("patch", () -> mapper.toDTO(film));
+        this.titles.put(film);
+        this.cache.invalidate(id);
+        this.programmes.filmsChanged(List.of(id));
+        this.versions.bump(Film.class);
+        return new PatchedDTO<>(filmDTO, patched.getVersion());
+    }
+
+    /**
+     * Import en masse : j'insère les films par lots, sans les garder tous en mémoire
+     * @param films films lus depuis le corps de la requête
+     * @param results résultat de chaque élément, publié après l'écriture de son lot
      */
-    public FilmDTO save(Film film) {
-        return mapper.map(this.repository.save(film), FilmDTO.class);
+    public void bulkInsert(Iterator<Film> films, Consumer<BulkResultDTO> results) {
+        Map<String, Film> pending = new HashMap<>();
+        Map<String, SeanceSchedule.FilmDuree> resized = new HashMap<>();
+        BulkWriter.Bulk<Film> bulk = this.bulkWriter.open(Film.class, Film::getId, Film::setId, result -> {
+            // Seul un film écrit par Mongo entre dans l'index des titres ; un film refusé rend la durée de sa séance
+            Film written = pending.remove(result.getId());
+            if (written != null && BulkResultDTO.OK.equals(result.getStatus())) {
+                this.titles.put(written);
+            }
+            SeanceSchedule.FilmDuree previous = resized.remove(result.getId());
+            if (previous != null && BulkResultDTO.ERROR.equals(result.getStatus())) {
+                this.schedule.restore(previous);
+            }
+            results.accept(result);
+        });
+        List<String> ids = new ArrayList<>();
+        try {
+            films.forEachRemaining(film -> {
+                if (film.getId() == null) {
+                    film.setId(new ObjectId().toHexString());
+                }
+                try {
+                    resized.putIfAbsent(film.getId(), this.schedule.setDuree(film.getId(), seanceIdOf(film), film.getDuree()));
+                } catch (ConflictException e) {
+                    bulk.reject(film, e.getMessage());
+                    return;
+                }
+                pending.put(film.getId(), film);
+                bulk.add(film);
+                ids.add(film.getId());
+            });
+        } finally {
+            bulk.finish();
+            this.programmes.filmsChanged(ids);
+            this.versions.bump(Film.class);
+        }
+    }
+    /**
+     * Je supprime un film par son id
+     * @param id
+     */
+    public void deleteByID(String id) throws NotFoundException {
+        if (this.deleteAllByID(List.of(id)) == 0) {
+            throw new NotFoundException("Le film n'a pas été trouvé");
+        }
+    }
+
+    /**
+     * Je supprime des films par leurs ids, en un deleteMany par lot (voir BulkWriter)
+     * @param ids
+     * @return le nombre de films supprimés
+     */
+    public long deleteAllByID(Collection<String> ids) {
+        List<String> distinct = ids.stream().distinct().collect(Collectors.toList());
+        long deleted = this.metrics.mongo("deleteAllByID", () -> this.bulkWriter.deleteAll(Film.class, distinct));
+        this.cache.invalidateAll(distinct);
+        distinct.forEach(this.titles::remove);
+        distinct.forEach(this.schedule::removeFilm);
+        this.programmes.filmsChanged(distinct);
+        this.versions.bump(Film.class);
+        return deleted;
     }
 
     /**
@@ -69,6 +338,17 @@ public class FilmService {
      * @param film
      */
     public void delete(Film film) {
-        this.repository.delete(film);
+        this.metrics.run("delete", () -> this.repository.delete(film));
+        if (film.getId() != null) {
+            this.cache.invalidate(film.getId());
+            this.titles.remove(film.getId());
+            this.schedule.removeFilm(film.getId());
+            this.programmes.filmsChanged(List.of(film.getId()));
+        }
+        this.versions.bump(Film.class);
+    }
+
+    private static String seanceIdOf(Film film) {
+        return film.getSeance() == null ? null : film.getSeance().getId();
     }
 }
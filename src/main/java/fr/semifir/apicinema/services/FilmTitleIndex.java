@@ -0,0 +1,236 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.dtos.film.FilmTitreDTO;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.repositories.FilmRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * Index en mémoire des titres de films pour la recherche à la frappe.
+ * Les titres sont normalisés (minuscules, sans accents ni ponctuation : "Amélie" -> "amelie"),
+ * puis indexés par trigrammes, et par préfixes de 1 et 2 lettres de chaque mot pour les termes courts.
+ * Les titres qui commencent par la saisie viennent d'abord, lus dans l'ordre alphabétique ;
+ * les autres sont lus dans la plus courte des listes des termes, triée du titre le plus court au plus long,
+ * jusqu'à avoir assez de résultats : une saisie fréquente s'arrête après quelques titres.
+ * L'index est chargé au démarrage, puis tenu à jour par les écritures des films
+ */
+public class FilmTitleIndex implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilmTitleIndex.class);
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{Alnum}]+");
+    private static final int LOAD_PAGE = Pages.MAX_LIMIT;
+    private static final Comparator<Entry> ALPHABETICAL = Comparator.<Entry, String>comparing(entry -> entry.titre)
+            .thenComparing(entry -> entry.id);
+    private static final Comparator<Entry> SHORTEST = Comparator.<Entry>comparingInt(entry -> entry.titre.length())
+            .thenComparing(ALPHABETICAL);
+
+    FilmRepository repository;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> titres = new ConcurrentSkipListSet<>(ALPHABETICAL);
+    private final Map<String, NavigableSet<Entry>> postings = new ConcurrentHashMap<>();
+
+    public FilmTitleIndex(FilmRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        try {
+            this.load();
+        } catch (DataAccessException e) {
+            LOGGER.warn("Chargement de l'index des titres de films impossible", e);
+        }
+    }
+
+    /**
+     * Je charge tous les films par pages, en ne lisant que l'id, le nom et la durée (séances non résolues)
+     */
+    public void load() {
+        Set<String> fields = Set.of("id", "nom", "duree");
+        String after = null;
+        List<Film> page;
+        do {
+            page = this.repository.findPageResolved(after, Pages.byId(LOAD_PAGE), fields);
+            page.forEach(this::put);
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (page.size() == LOAD_PAGE);
+        LOGGER.info("{} titres de films indexés", this.entries.size());
+    }
+
+    /**
+     * J'indexe ou je réindexe un film
+     * @param film
+     */
+    public void put(Film film) {
+        if (film.getId() == null) {
+            return;
+        }
+        Entry entry = new Entry(film.getId(), film.getNom(), film.getDuree(), normalize(film.getNom()));
+        Entry previous = this.entries.put(entry.id, entry);
+        this.unlink(previous);
+        this.titres.add(entry);
+        keys(entry.titre).forEach(key -> this.postings.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>(SHORTEST)).add(entry));
+    }
+
+    /**
+     * Je retire un film supprimé
+     * @param id
+     */
+    public void remove(String id) {
+        this.unlink(this.entries.remove(id));
+    }
+
+    /**
+     * Les meilleurs titres pour la saisie q : chaque mot saisi doit se trouver dans le titre,
+     * un mot de moins de 3 lettres au début d'un mot du titre.
+     * Les titres qui commencent par la saisie passent devant, puis les plus courts
+     * @param q
+     * @param limit
+     * @return
+     */
+    public List<FilmTitreDTO> search(String q, int limit) {
+        String query = normalize(q);
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Entry> found = new ArrayList<>(limit);
+        for (Entry entry : this.titres.tailSet(new Entry("", null, null, query), true)) {
+            if (found.size() == limit || !entry.titre.startsWith(query)) {
+                break;
+            }
+            if (this.isCurrent(entry)) {
+                found.add(entry);
+            }
+        }
+        String[] terms = query.split(" ");
+        for (Entry entry : this.candidates(terms)) {
+            if (found.size() == limit) {
+                break;
+            }
+            if (!entry.titre.startsWith(query) && this.isCurrent(entry) && matches(entry.titre, terms)) {
+                found.add(entry);
+            }
+        }
+        List<FilmTitreDTO> results = new ArrayList<>(found.size());
+        found.forEach(entry -> results.add(new FilmTitreDTO(entry.id, entry.nom, entry.duree)));
+        return results;
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * La plus courte des listes des termes : tout titre qui correspond à la saisie y est
+     */
+    private NavigableSet<Entry> candidates(String[] terms) {
+        NavigableSet<Entry> candidates = null;
+        for (String term : terms) {
+            for (String key : termKeys(term)) {
+                NavigableSet<Entry> posting = this.postings.get(key);
+                if (posting == null) {
+                    return Collections.emptyNavigableSet();
+                }
+                if (candidates == null || posting.size() < candidates.size()) {
+                    candidates = posting;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Une entrée remplacée peut rester un instant dans les listes pendant une réindexation
+     */
+    private boolean isCurrent(Entry entry) {
+        return this.entries.get(entry.id) == entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        this.titres.remove(entry);
+        keys(entry.titre).forEach(key -> this.postings.computeIfPresent(key, (k, posting) -> {
+            posting.remove(entry);
+            return posting.isEmpty() ? null : posting;
+        }));
+    }
+    private static boolean matches(String titre, String[] terms) {
+        for (String term : terms) {
+            if (term.length() < 3 ? !(titre.startsWith(term) || titre.contains(" " + term)) : !titre.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clés d'un titre normalisé : trigrammes de chaque mot, et "^" + les deux premiers préfixes de chaque mot
+     */
+    private static Set<String> keys(String titre) {
+        Set<String> keys = new HashSet<>();
+        for (String word : titre.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            keys.add("^" + word.substring(0, 1));
+            if (word.length() >= 2) {
+                keys.add("^" + word.substring(0, 2));
+            }
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                keys.add(word.substring(i, i + 3));
+            }
+        }
+        return keys;
+    }
+
+    private static List<String> termKeys(String term) {
+        if (term.length() < 3) {
+            return List.of("^" + term);
+        }
+        List<String> keys = new ArrayList<>(term.length() - 2);
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            keys.add(term.substring(i, i + 3));
+        }
+        return keys;
+    }
+
+    /**
+     * Minuscules, sans accents ni ligatures, mots séparés par une seule espace
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT).replace("œ", "oe").replace("æ", "ae");
+        String unaccented = MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(unaccented).replaceAll(" ").trim();
+    }
+
+    private static final class Entry {
+        final String id;
+        final String nom;
+        final Float duree;
+        final String titre;
+
+        Entry(String id, String nom, Float duree, String titre) {
+            this.id = id;
+            this.nom = nom;
+            this.duree = duree;
+            this.titre = titre;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package fr.semifir.apicinema.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Lecture de plusieurs éléments par ids : le cache d'abord, puis une seule requête Mongo pour les absents
+ */
+public final class MultiGet {
+
+    public static final int MAX_IDS = Pages.MAX_LIMIT;
+
+    private MultiGet() {
+    }
+
+    /**
+     * @param ids ids demandés, les doublons sont lus une fois
+     * @param cache cache des DTO du service, seulement lu : un élément lu ici n'y est pas ajouté
+     * @param load lecture des ids absents du cache en une requête
+     * @param idOf
+     * @return les DTO trouvés dans l'ordre des ids, et les ids introuvables
+     */
+    public static <D> MgetDTO<D> collect(Collection<String> ids, Cache<String, D> cache, Function<List<String>, List<D>> load, Function<D, String> idOf) {
+        return collect(ids, id -> null, cache, load, idOf);
+    }
+
+    /**
+     * @param ids
+     * @param pending lecture en mémoire faite avant le cache (écritures en attente, ReferenceData), null si absent
+     * @param cache
+     * @param load
+     * @param idOf
+     * @return
+     */
+    public static <D> MgetDTO<D> collect(Collection<String> ids, Function<String, D> pending, Cache<String, D> cache, Function<List<String>, List<D>> load, Function<D, String> idOf) {
+        Set<String> unique = new LinkedHashSet<>(ids);
+        Map<String, D> found = new HashMap<>(cache.getAllPresent(unique));
+        unique.forEach(id -> {
+            D dto = pending.apply(id);
+            if (dto != null) {
+                found.put(id, dto);
+            }
+        });
+        List<String> misses = new ArrayList<>(unique.size() - found.size());
+        unique.forEach(id -> {
+            if (!found.containsKey(id)) {
+                misses.add(id);
+            }
+        });
+        if (!misses.isEmpty()) {
+            load.apply(misses).forEach(dto -> found.put(idOf.apply(dto), dto));
+        }
+        List<D> ordered = new ArrayList<>(found.size());
+        List<String> missing = new ArrayList<>();
+        unique.forEach(id -> {
+            D dto = found.get(id);
+            if (dto != null) {
+                ordered.add(dto);
+            } else {
+                missing.add(id);
+            }
+        });
+        return new MgetDTO<>(ordered, missing);
+    }
+}
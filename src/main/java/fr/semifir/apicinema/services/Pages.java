@@ -0,0 +1,36 @@
+package fr.semifir.apicinema.services;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Pagination par keyset sur l'_id, commune aux services
+ */
+public final class Pages {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private Pages() {
+    }
+
+    /**
+     * Je borne la limite demandée et je trie par id croissant
+     * @param limit
+     * @return
+     */
+    public static Pageable byId(int limit) {
+        return PageRequest.of(0, clamp(limit), Sort.by(Sort.Direction.ASC, "id"));
+    }
+
+    /**
+     * Taille de page effectivement appliquée pour une limite demandée
+     * @param limit
+     * @return
+     */
+    public static int clamp(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_LIMIT);
+    }
+}
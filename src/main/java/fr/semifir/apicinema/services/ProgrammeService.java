@@ -0,0 +1,168 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.dtos.programme.ProgrammeDTO;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Programme;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.ProgrammeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Programmes quotidiens des cinémas, précalculés dans la collection programme.
+ * Chaque écriture d'une séance, d'une salle ou d'un film recalcule seulement les programmes qu'elle touche
+ * (avant et après l'écriture) ; un programme jamais calculé l'est à la première lecture.
+ * Seuls les programmes qui ont des séances sont enregistrés : lire n'importe quel jour ne fait pas grossir la collection
+ */
+public class ProgrammeService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProgrammeService.class);
+    private static final int LOCK_STRIPES = 64;
+
+    ProgrammeRepository repository;
+    CinemaRepository cinemaRepository;
+    EntityMapper<Programme, ProgrammeDTO> mapper;
+    CollectionVersions versions;
+    ZoneId zone;
+
+    // Deux recalculs du même programme ne se croisent pas : le dernier écrit lit l'état le plus récent.
+    // Des ReentrantLock plutôt que synchronized, pour ne pas épingler les threads virtuels pendant les appels Mongo
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public ProgrammeService(
+            ProgrammeRepository repository,
+            CinemaRepository cinemaRepository,
+            EntityMapper<Programme, ProgrammeDTO> mapper,
+            CollectionVersions versions,
+            ZoneId zone
+            ) {
+        this.repository = repository;
+        this.cinemaRepository = cinemaRepository;
+        this.mapper = mapper;
+        this.versions = versions;
+        this.zone = zone;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Je lis le programme d'un cinéma pour un jour en un seul document, calculé à la demande s'il n'existe pas encore
+     * (et enregistré seulement s'il a des séances)
+     * @param cinemaId
+     * @param jour
+     * @return
+     */
+    public ProgrammeDTO findByCinema(String cinemaId, LocalDate jour) throws NotFoundException {
+        Programme programme = this.repository.findById(Programme.id(cinemaId, jour)).orElse(null);
+        if (programme == null) {
+            if (!this.cinemaRepository.existsById(cinemaId)) {
+                throw new NotFoundException("Le cinema n'a pas été trouvé");
+            }
+            programme = this.rebuild(Programme.id(cinemaId, jour), false);
+        }
+        return mapper.toDTO(programme);
+    }
+
+    /**
+     * Jour courant dans le fuseau des programmes
+     * @return
+     */
+    public LocalDate today() {
+        return LocalDate.now(this.zone);
+    }
+
+    /**
+     * ETag des programmes, qui change à chaque écriture des collections dont ils sont calculés
+     * @return
+     */
+    public String etag() {
+        return this.versions.etag(Seance.class, Salle.class, Film.class);
+    }
+
+    /**
+     * Des séances ont été écrites ou supprimées
+     * @param seanceIds
+     */
+    public void seancesChanged(Collection<String> seanceIds) {
+        this.refresh(seanceIds, ids -> this.repository.idsOfSeances(ids, this.zone));
+    }
+
+    /**
+     * Des salles ont été écrites (numéro ou cinéma changé)
+     * @param salleIds
+     */
+    public void sallesChanged(Collection<String> salleIds) {
+        this.refresh(salleIds, ids -> this.repository.idsOfSalles(ids, this.zone));
+    }
+
+    /**
+     * Des films ont été écrits ou supprimés
+     * @param filmIds
+     */
+    public void filmsChanged(Collection<String> filmIds) {
+        this.refresh(filmIds, ids -> this.repository.idsOfFilms(ids, this.zone));
+    }
+
+    /**
+     * Des séances antérieures à une date ont été supprimées en une fois : je reconstruis un à un,
+     * depuis un curseur, les programmes enregistrés qui en contiennent
+     * @param before
+     */
+    public void seancesBefore(Date before) {
+        try {
+            this.repository.forEachIdWithSeanceBefore(before, id -> this.rebuild(id, true));
+        } catch (DataAccessException e) {
+            LOGGER.warn("Mise à jour des programmes impossible pour les séances avant {}", before, e);
+        }
+    }
+
+    /**
+     * L'écriture source est déjà faite : si le recalcul échoue, je le trace sans faire échouer l'écriture
+     */
+    private void refresh(Collection<String> ids, Function<Collection<String>, Set<String>> programmes) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            programmes.apply(ids).forEach(id -> this.rebuild(id, true));
+        } catch (DataAccessException e) {
+            LOGGER.warn("Mise à jour des programmes impossible pour {}", ids, e);
+        }
+    }
+
+    /**
+     * Un programme sans séance n'est pas enregistré, et remplace en le supprimant celui qui pouvait exister
+     * @param id
+     * @param stored false si le programme n'est pas enregistré (rien à supprimer)
+     */
+    private Programme rebuild(String id, boolean stored) {
+        ReentrantLock lock = this.locks[Math.floorMod(id.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            Programme programme = this.repository.build(Programme.cinemaIdOf(id), Programme.jourOf(id), this.zone);
+            if (programme.getSeances().isEmpty()) {
+                if (stored) {
+                    this.repository.deleteById(id);
+                }
+                return programme;
+            }
+            return this.repository.save(programme);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
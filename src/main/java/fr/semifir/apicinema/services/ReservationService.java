@@ -0,0 +1,294 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.dtos.reservation.PlacesRestantesDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationRequestDTO;
+import fr.semifir.apicinema.entities.Reservation;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.ReservationRepository;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Réservation de places par séance.
+ * Chaque séance a un SeatMap en mémoire (dimensionné par Salle.nbrPlace, chargé une fois depuis Mongo),
+ * les places sont prises par CAS, et les réservations confirmées sont écrites dans Mongo par lots.
+ * Le plan d'une séance supprimée, déplacée dans une autre salle, ou dont la salle change de taille
+ * est oublié (seancesChanged, sallesChanged) : il est reconstruit à la prochaine réservation.
+ * Un plan n'est oublié qu'une fois les réservations en cours dessus arrivées dans pending,
+ * où le plan suivant les retrouve
+ */
+public class ReservationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReservationService.class);
+
+    ReservationRepository repository;
+    SeanceRepository seanceRepository;
+    BulkWriter bulkWriter;
+    int batchSize;
+
+    private final Map<String, SeanceSeats> seatMaps = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Reservation> pending = new ConcurrentLinkedQueue<>();
+    // Réservations sorties de pending dont l'écriture est en cours
+    private final Set<Reservation> flushing = ConcurrentHashMap.newKeySet();
+    // Compte les plans oubliés : un plan chargé pendant un oubli peut être périmé
+    private final AtomicLong forgets = new AtomicLong();
+    // Un seul passage d'écriture à la fois (flusher, close)
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+
+    public ReservationService(
+            ReservationRepository repository,
+            SeanceRepository seanceRepository,
+            BulkWriter bulkWriter,
+            int batchSize,
+            Duration flushInterval
+            ) {
+        this.repository = repository;
+        this.seanceRepository = seanceRepository;
+        this.bulkWriter = bulkWriter;
+        this.batchSize = batchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = flushInterval.toMillis();
+        this.flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Je réserve des places pour une séance
+     * @param seanceId
+     * @param request places précises ou nombre de places
+     * @return la réservation, écrite dans Mongo au prochain lot
+     */
+    public ReservationDTO reserve(String seanceId, ReservationRequestDTO request) throws NotFoundException, ConflictException {
+        while (true) {
+            SeanceSeats seats = this.seats(seanceId);
+            // Verrou partagé jusqu'à pending : le plan ne peut pas être oublié avant que la réservation y soit
+            seats.lock.readLock().lock();
+            try {
+                if (!seats.forgotten) {
+                    return this.reserve(seanceId, seats.seatMap, request);
+                }
+            } finally {
+                seats.lock.readLock().unlock();
+            }
+            // Plan oublié entre-temps : je réserve sur le suivant
+        }
+    }
+
+    private ReservationDTO reserve(String seanceId, SeatMap seatMap, ReservationRequestDTO request) {
+        List<Integer> places;
+        if (request.getPlaces() != null && !request.getPlaces().isEmpty()) {
+            places = new ArrayList<>(request.getPlaces());
+            for (Integer place : places) {
+                if (place == null || !seatMap.isValid(place)) {
+                    throw new IllegalArgumentException("La place " + place + " n'existe pas");
+                }
+            }
+            if (places.stream().distinct().count() != places.size() || !seatMap.claimAll(places)) {
+                throw new ConflictException("Les places demandées ne sont pas disponibles");
+            }
+        } else if (request.getNombre() != null && request.getNombre() > 0) {
+            places = seatMap.claimAny(request.getNombre());
+            if (places == null) {
+                throw new ConflictException("Il ne reste pas assez de places");
+            }
+        } else {
+            throw new IllegalArgumentException("Il faut des places ou un nombre de places");
+        }
+        Reservation reservation = new Reservation(new ObjectId().toHexString(), seanceId, places, new Date());
+        this.pending.add(reservation);
+        return new ReservationDTO(reservation.getId(), reservation.getSeanceId(), reservation.getPlaces(), reservation.getDate());
+    }
+
+    /**
+     * Places restantes, lues dans le SeatMap sans aller dans Mongo une fois la séance chargée
+     * @param seanceId
+     * @return
+     */
+    public PlacesRestantesDTO remaining(String seanceId) throws NotFoundException {
+        SeatMap seatMap = this.seats(seanceId).seatMap;
+        return new PlacesRestantesDTO(seanceId, seatMap.getNbrPlace(), seatMap.remaining());
+    }
+
+    /**
+     * Des séances ont été écrites ou supprimées : j'oublie leur plan, leur salle a pu changer
+     * @param seanceIds
+     */
+    public void seancesChanged(Collection<String> seanceIds) {
+        this.forgets.incrementAndGet();
+        seanceIds.forEach(seanceId -> this.forget(seanceId, this.seatMaps.get(seanceId)));
+    }
+
+    /**
+     * Des salles ont été écrites ou supprimées : j'oublie le plan des séances de ces salles,
+     * leur nombre de places a pu changer
+     * @param salleIds
+     */
+    public void sallesChanged(Collection<String> salleIds) {
+        Set<String> salles = new HashSet<>(salleIds);
+        this.forgets.incrementAndGet();
+        this.seatMaps.forEach((seanceId, seats) -> {
+            if (salles.contains(seats.salleId)) {
+                this.forget(seanceId, seats);
+            }
+        });
+    }
+
+    /**
+     * J'écris en base les réservations en attente, par lots de batchSize.
+     * Les réservations refusées par Mongo sont remises en attente pour le passage suivant
+     */
+    public void flush() {
+        this.flushLock.lock();
+        try {
+            List<Reservation> batch = new ArrayList<>(this.batchSize);
+            Reservation reservation;
+            while ((reservation = this.pending.peek()) != null) {
+                // Dans flushing avant de quitter pending : un plan reconstruit entre-temps voit la réservation
+                this.flushing.add(reservation);
+                this.pending.poll();
+                batch.add(reservation);
+                if (batch.size() == this.batchSize) {
+                    if (!this.insert(batch)) {
+                        return;
+                    }
+                    batch = new ArrayList<>(this.batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                this.insert(batch);
+            }
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * A l'arrêt, j'écris ce qui reste en attente
+     */
+    public void close() {
+        this.flusher.shutdown();
+        try {
+            this.flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flush();
+    }
+
+    /**
+     * Insertion non ordonnée (voir BulkWriter.insertAll) : seules les réservations refusées sont remises en attente
+     * @return false si une réservation n'a pas été écrite
+     */
+    private boolean insert(List<Reservation> batch) {
+        List<Reservation> failed = this.bulkWriter.insertAll(Reservation.class, batch);
+        if (!failed.isEmpty()) {
+            LOGGER.warn("Ecriture de {} réservations sur {} échouée, nouvel essai au prochain lot", failed.size(), batch.size());
+            this.pending.addAll(failed);
+        }
+        batch.forEach(this.flushing::remove);
+        return failed.isEmpty();
+    }
+
+    /**
+     * Le plan de la séance, chargé hors de seatMaps : computeIfAbsent garderait le verrou de la map
+     * pendant la lecture Mongo. Deux premières réservations simultanées peuvent le charger deux fois, la première gagne.
+     * Un plan chargé pendant un oubli a pu lire l'ancienne salle : il est jeté et relu
+     */
+    private SeanceSeats seats(String seanceId) {
+        while (true) {
+            SeanceSeats seats = this.seatMaps.get(seanceId);
+            if (seats != null) {
+                return seats;
+            }
+            long forgets = this.forgets.get();
+            SeanceSeats loaded = this.load(seanceId);
+            seats = this.seatMaps.putIfAbsent(seanceId, loaded);
+            if (seats != null) {
+                return seats;
+            }
+            if (this.forgets.get() == forgets) {
+                return loaded;
+            }
+            this.forget(seanceId, loaded);
+        }
+    }
+
+    /**
+     * J'oublie un plan, après les réservations en cours dessus (verrou exclusif)
+     */
+    private void forget(String seanceId, SeanceSeats seats) {
+        if (seats == null) {
+            return;
+        }
+        seats.lock.writeLock().lock();
+        try {
+            if (this.seatMaps.remove(seanceId, seats)) {
+                seats.forgotten = true;
+            }
+        } finally {
+            seats.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Je construis le plan de salle depuis la Salle de la séance et les réservations déjà prises :
+     * en attente, en cours d'écriture puis en base, dans l'ordre où elles avancent pour n'en manquer aucune
+     */
+    private SeanceSeats load(String seanceId) {
+        Seance seance = this.seanceRepository.findById(seanceId)
+                .orElseThrow(() -> new NotFoundException("La seance n'a pas été trouvée"));
+        SeatMap seatMap = new SeatMap(seance.getSalle() == null ? 0 : seance.getSalle().getNbrPlace());
+        List<Reservation> taken = new ArrayList<>();
+        this.pending.forEach(taken::add);
+        taken.addAll(this.flushing);
+        taken.removeIf(reservation -> !seanceId.equals(reservation.getSeanceId()));
+        taken.addAll(this.repository.findBySeanceId(seanceId));
+        taken.forEach(reservation ->
+                reservation.getPlaces().stream().filter(seatMap::isValid).forEach(seatMap::claim));
+        return new SeanceSeats(seance.getSalle() == null ? null : seance.getSalle().getId(), seatMap);
+    }
+
+    /**
+     * Le plan d'une séance et la salle dont il a pris le nombre de places
+     */
+    private static final class SeanceSeats {
+        final String salleId;
+        final SeatMap seatMap;
+        // Partagé par les réservations, exclusif pour l'oubli
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // Retiré de seatMaps : les réservations suivantes prennent le plan rechargé
+        boolean forgotten;
+
+        SeanceSeats(String salleId, SeatMap seatMap) {
+            this.salleId = salleId;
+            this.seatMap = seatMap;
+        }
+    }
+}
@@ -1,26 +1,82 @@
 package fr.semifir.apicinema.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
 import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
+import fr.semifir.apicinema.entities.Cinema;
 import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.DbRefBatchLoader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.ReferenceData;
 import fr.semifir.apicinema.repositories.SalleRepository;
-import org.modelmapper.ModelMapper;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class SalleService {
 
     SalleRepository repository;
-    ModelMapper mapper;
+    EntityMapper<Salle, SalleDTO> mapper;
+    Cache<String, SalleDTO> cache;
+    BulkWriter bulkWriter;
+    PatchWriter patchWriter;
+    CollectionVersions versions;
+    ServiceMetrics metrics;
+    SingleFlight flights;
+    ProgrammeService programmes;
+    ReservationService reservations;
+    ReferenceData references;
+    // null quand les écritures vont directement dans Mongo
+    WriteBehind<Salle> writeBehind;
 
     public SalleService(
             SalleRepository repository,
-            ModelMapper mapper
+            EntityMapper<Salle, SalleDTO> mapper,
+            Cache<String, SalleDTO> cache,
+            BulkWriter bulkWriter,
+            PatchWriter patchWriter,
+            CollectionVersions versions,
+            ServiceMetrics metrics,
+            ProgrammeService programmes,
+            ReservationService reservations,
+            ReferenceData references,
+            Duration writeBehind
             ) {
         this.repository = repository;
         this.mapper = mapper;
+        this.cache = cache;
+        this.bulkWriter = bulkWriter;
+        this.patchWriter = patchWriter;
+        this.versions = versions;
+        this.metrics = metrics;
+        this.flights = new SingleFlight(metrics);
+        this.programmes = programmes;
+        this.reservations = reservations;
+        this.references = references;
+        if (writeBehind != null && !writeBehind.isZero()) {
+            this.writeBehind = new WriteBehind<>("salle", Salle::getId,
+                    batch -> this.metrics.mongo("writeBehind", () -> this.bulkWriter.replaceAll(Salle.class, batch)),
+                    this::written, writeBehind);
+        }
     }
 
     /**
@@ -28,37 +84,255 @@ public class SalleService {
      * @return List<Salle>
      */
     public List<SalleDTO> findAll() {
-        List<SalleDTO> salleDTOS = new ArrayList<>();
-        this.repository.findAll().forEach(salle -> {
-            SalleDTO salleDTO = mapper.map(salle, SalleDTO.class);
-            salleDTOS.add(salleDTO);
+        List<Salle> inMemory = this.references.salles();
+        if (inMemory != null) {
+            return this.metrics.mapAll("findAll", this.withPending(inMemory), mapper::toDTO);
+        }
+        return this.flights.run("findAll", List.of(this.etag()), () -> {
+            List<Salle> salles = this.metrics.mongo("findAll", this.repository::findAllResolved);
+            return this.metrics.mapAll("findAll", salles, mapper::toDTO);
         });
-        return salleDTOS;
     }
 
     /**
-     * Je récupère un salle selon son ID
+     * Retourne une page de Salle triée par id, après le curseur after
+     * @param after id du dernier élément de la page précédente, null pour la première page
+     * @param limit
+     * @return List<SalleDTO>
+     */
+    public List<SalleDTO> findPage(String after, int limit) {
+        List<Salle> inMemory = this.references.sallePage(after, Pages.clamp(limit));
+        if (inMemory != null) {
+            return this.metrics.mapAll("findPage", this.withPending(inMemory), mapper::toDTO);
+        }
+        return this.flights.run("findPage", Arrays.asList(this.etag(), after, limit), () -> {
+            Pageable pageable = Pages.byId(limit);
+            List<Salle> salles = this.metrics.mongo("findPage", () -> this.repository.findPageResolved(after, pageable));
+            return this.metrics.mapAll("findPage", this.withPending(salles), mapper::toDTO);
+        });
+    }
+
+    /**
+     * Page réduite aux champs demandés : la projection est faite par Mongo,
+     * et les références non demandées ne sont pas chargées
+     * @param after
+     * @param limit
+     * @param fields propriétés du DTO à renvoyer
+     * @return List<SalleDTO> dont les autres champs sont vides
+     */
+    public List<SalleDTO> findPage(String after, int limit, Set<String> fields) {
+        List<Salle> inMemory = this.references.sallePage(after, Pages.clamp(limit));
+        if (inMemory != null) {
+            // Salles complètes : le controller ne garde que les champs demandés
+            return this.metrics.mapAll("findPage", this.withPending(inMemory), mapper::toDTO);
+        }
+        return this.flights.run("findPage", Arrays.asList(this.etag(), after, limit, fields), () -> {
+            Pageable pageable = Pages.byId(limit);
+            List<Salle> salles = this.metrics.mongo("findPage", () -> this.repository.findPageResolved(after, pageable, fields));
+            return this.metrics.mapAll("findPage", this.withPending(salles), mapper::toDTO);
+        });
+    }
+
+    /**
+     * Parcourt tous les Salle sur un curseur Mongo ouvert, à fermer par l'appelant
+     * @return Stream<SalleDTO>
+     */
+    public Stream<SalleDTO> stream() {
+        List<Salle> inMemory = this.references.salles();
+        if (inMemory != null) {
+            return inMemory.stream().map(mapper::toDTO);
+        }
+        return this.repository.streamAllResolved().map(mapper::toDTO);
+    }
+
+    /**
+     * ETag des lectures de Salle, qui change à chaque écriture des Salle et des collections embarquées
+     * @return
+     */
+    public String etag() {
+        return this.versions.etag(Salle.class, Cinema.class);
+    }
+
+    /**
+     * Je récupère un salle selon son ID, depuis le cache ou à défaut depuis Mongo
      * @param id
      * @return
      */
     public Optional<SalleDTO> findByID(String id) throws NotFoundException {
-        Optional<Salle> salle = this.repository.findById(id);
-        Optional<SalleDTO> salleDTO;
-        if (salle.isPresent()) {
-           salleDTO = Optional.of(mapper.map(salle.get(), SalleDTO.class));
-        } else {
+        Salle pending = this.pending(id);
+        if (pending != null) {
+            return Optional.of(mapper.toDTO(pending));
+        }
+        Salle inMemory = this.references.salle(id);
+        if (inMemory != null) {
+            return Optional.of(this.metrics.mapping("findByID", () -> mapper.toDTO(inMemory)));
+        }
+        SalleDTO salleDTO = this.cache.getIfPresent(id);
+        if (salleDTO == null) {
+            salleDTO = CachedLoads.get(this.cache, id, key -> this.metrics.mongo("findByID", () -> this.repository.findByIdResolved(key, null))
+                    .map(salle -> this.metrics.mapping("findByID", () -> mapper.toDTO(salle)))
+                    .orElse(null), this.versions, Salle.class, Cinema.class);
+        }
+        if (salleDTO == null) {
             throw new NotFoundException("Le salle n'a pas été trouvé");
         }
-        return salleDTO;
+        return Optional.of(salleDTO);
+    }
+
+    /**
+     * Je récupère une salle réduit aux champs demandés : complet depuis le cache s'il y est,
+     * sinon projeté par Mongo, sans passer par le cache
+     * @param id
+     * @param fields propriétés du DTO à renvoyer
+     * @return
+     */
+    public Optional<SalleDTO> findByID(String id, Set<String> fields) throws NotFoundException {
+        Salle pending = this.pending(id);
+        if (pending != null) {
+            return Optional.of(mapper.toDTO(pending));
+        }
+        Salle inMemory = this.references.salle(id);
+        if (inMemory != null) {
+            return Optional.of(this.metrics.mapping("findByID", () -> mapper.toDTO(inMemory)));
+        }
+        SalleDTO cached = this.cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return Optional.of(this.flights.run("findByID", List.of(this.etag(), id, fields), () -> this.metrics.mongo("findByID", () -> this.repository.findByIdResolved(id, fields))
+                        .map(salle -> this.metrics.mapping("findByID", () -> mapper.toDTO(salle)))
+                        .orElseThrow(() -> new NotFoundException("Le salle n'a pas été trouvé"))));
     }
 
     /**
-     * Save & update un salle
+     * Je récupère plusieurs salles en une requête, sans erreur pour les ids introuvables
+     * @param ids
+     * @return les SalleDTO trouvés dans l'ordre des ids, et les ids manquants
+     */
+    public MgetDTO<SalleDTO> findAllByID(Collection<String> ids) {
+        return MultiGet.collect(ids, id -> {
+            Salle pending = this.pending(id);
+            Salle current = pending != null ? pending : this.references.salle(id);
+            return current == null ? null : mapper.toDTO(current);
+        }, this.cache, misses -> {
+            List<Salle> salles = this.metrics.mongo("findAllByID", () -> this.repository.findAllByIdResolved(misses));
+            return this.metrics.mapAll("findAllByID", salles, mapper::toDTO);
+        }, SalleDTO::getId);
+    }
+
+    /**
+     * Save & update un salle, en incrémentant sa version (voir BulkWriter.replace)
      * @param salle
      * @return
+     * @throws ConflictException si salle porte une version qui n'est plus celle du document
+     */
+    public SalleDTO save(Salle salle) throws ConflictException {
+        if (this.writeBehind != null) {
+            if (salle.getId() == null) {
+                salle.setId(new ObjectId().toHexString());
+            }
+            return this.submit(salle);
+        }
+        Salle saved = this.metrics.mongo("save", () -> this.bulkWriter.replace(Salle.class, salle));
+        SalleDTO salleDTO = this.metrics.mapping("save", () -> mapper.toDTO(saved));
+        this.cache.invalidate(salleDTO.getId());
+        this.references.putSalles(List.of(saved));
+        this.programmes.sallesChanged(List.of(salleDTO.getId()));
+        this.reservations.sallesChanged(List.of(salleDTO.getId()));
+        this.versions.bump(Salle.class, List.of(salleDTO.getId()));
+        return salleDTO;
+    }
+
+    /**
+     * Mise à jour partielle : seuls les champs du patch sont écrits dans Mongo (voir PatchWriter),
+     * toujours directement, même avec l'écriture différée
+     * @param id
+     * @param body JSON merge patch, avec "version" pour ne l'appliquer qu'à cette version de la salle
+     * @return la salle après le patch et sa version
+     * @throws IllegalArgumentException si le patch est invalide
+     */
+    public PatchedDTO<SalleDTO> patch(String id, Map<String, Object> body) throws NotFoundException, ConflictException {
+        PatchWriter.Patch patch = this.patchWriter.parse(Salle.class, id, body);
+        this.flushPending(id);
+        PatchedDTO<Salle> patched = this.metrics.mongo("patch", () -> this.patchWriter.apply(patch, DbRefBatchLoader::salles));
+        if (patched == null) {
+            throw new NotFoundException("Le salle n'a pas été trouvé");
+        }
+        SalleDTO salleDTO = this.metrics.mapping("patch", () -> mapper.toDTO(patched.getValue()));
+        this.cache.invalidate(id);
+        this.references.putSalles(List.of(patched.getValue()));
+        this.programmes.sallesChanged(List.of(id));
+        this.reservations.sallesChanged(List.of(id));
+        this.versions.bump(Salle.class, List.of(id));
+        return new PatchedDTO<>(salleDTO, patched.getVersion());
+    }
+
+    /**
+     * Import en masse : j'insère les salles par lots, sans les garder tous en mémoire
+     * @param salles salles lus depuis le corps de la requête
+     * @param results résultat de chaque élément, publié après l'écriture de son lot
      */
-    public SalleDTO save(Salle salle) {
-        return mapper.map(this.repository.save(salle), SalleDTO.class);
+    public void bulkInsert(Iterator<Salle> salles, Consumer<BulkResultDTO> results) {
+        Map<String, Salle> pending = new HashMap<>();
+        List<Salle> written = new ArrayList<>();
+        BulkWriter.Bulk<Salle> bulk = this.bulkWriter.open(Salle.class, Salle::getId, Salle::setId, result -> {
+            // Seule une salle écrite par Mongo entre dans ReferenceData
+            Salle salle = pending.remove(result.getId());
+            if (salle != null && BulkResultDTO.OK.equals(result.getStatus())) {
+                written.add(salle);
+            }
+            results.accept(result);
+        });
+        List<String> ids = new ArrayList<>();
+        try {
+            salles.forEachRemaining(salle -> {
+                if (salle.getId() == null) {
+                    salle.setId(new ObjectId().toHexString());
+                }
+                pending.put(salle.getId(), salle);
+                bulk.add(salle);
+                ids.add(salle.getId());
+            });
+        } finally {
+            bulk.finish();
+            this.references.putSalles(written);
+            this.programmes.sallesChanged(ids);
+            this.reservations.sallesChanged(ids);
+            this.versions.bump(Salle.class, ids);
+        }
+    }
+    /**
+     * Je supprime une salle par son id
+     * @param id
+     */
+    public void deleteByID(String id) throws NotFoundException {
+        if (this.deleteAllByID(List.of(id)) == 0) {
+            throw new NotFoundException("Le salle n'a pas été trouvé");
+        }
+    }
+
+    /**
+     * Je supprime des salles par leurs ids, en un deleteMany par lot (voir BulkWriter).
+     * Une salle en attente d'écriture est lisible, elle compte donc comme supprimée même si Mongo ne l'a pas encore
+     * @param ids
+     * @return le nombre de salles supprimées
+     */
+    public long deleteAllByID(Collection<String> ids) {
+        List<String> stored = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        ids.stream().distinct().forEach(id -> (this.pending(id) == null ? stored : pending).add(id));
+        pending.forEach(id -> this.writeBehind.discard(id));
+        long deleted = this.metrics.mongo("deleteAllByID", () -> this.bulkWriter.deleteAll(Salle.class, stored));
+        if (!pending.isEmpty()) {
+            this.metrics.mongo("deleteAllByID", () -> this.bulkWriter.deleteAll(Salle.class, pending));
+        }
+        stored.addAll(pending);
+        this.cache.invalidateAll(stored);
+        this.references.removeSalles(stored);
+        this.programmes.sallesChanged(stored);
+        this.reservations.sallesChanged(stored);
+        this.versions.bump(Salle.class, stored);
+        return deleted + pending.size();
     }
 
     /**
@@ -66,6 +340,87 @@ public class SalleService {
      * @param salle
      */
     public void delete(Salle salle) {
-        this.repository.delete(salle);
+        if (this.writeBehind != null && salle.getId() != null) {
+            this.writeBehind.discard(salle.getId());
+        }
+        this.metrics.run("delete", () -> this.repository.delete(salle));
+        if (salle.getId() != null) {
+            this.cache.invalidate(salle.getId());
+            this.references.removeSalle(salle.getId());
+            this.programmes.sallesChanged(List.of(salle.getId()));
+            this.reservations.sallesChanged(List.of(salle.getId()));
+            this.versions.bump(Salle.class, List.of(salle.getId()));
+        }
+    }
+
+    /**
+     * Ecriture différée : la salle est lisible tout de suite depuis les écritures en attente,
+     * et écrite dans Mongo au prochain passage, avec les autres versions reçues entre-temps
+     * @param salle salle avec son id
+     * @return
+     */
+    private SalleDTO submit(Salle salle) {
+        this.writeBehind.submit(salle);
+        SalleDTO salleDTO = this.metrics.mapping("save", () -> mapper.toDTO(salle));
+        this.cache.invalidate(salleDTO.getId());
+        this.versions.bump(Salle.class, List.of(salleDTO.getId()));
+        return salleDTO;
+    }
+
+    /**
+     * Après un passage d'écriture différée, les lectures qui ne passent pas par les écritures en attente
+     * (programmes, cache rempli entre-temps) voient les nouvelles versions
+     * @param salles salles écrites dans Mongo
+     */
+    private void written(List<Salle> salles) {
+        List<String> ids = new ArrayList<>(salles.size());
+        salles.forEach(salle -> ids.add(salle.getId()));
+        this.cache.invalidateAll(ids);
+        this.references.putSalles(salles);
+        this.programmes.sallesChanged(ids);
+        this.reservations.sallesChanged(ids);
+        this.versions.bump(Salle.class, ids);
+    }
+
+    private Salle pending(String id) {
+        return this.writeBehind == null || id == null ? null : this.writeBehind.get(id);
+    }
+
+    /**
+     * Une version en attente écrite après un patch l'effacerait : je l'écris avant
+     */
+    private void flushPending(String id) throws ConflictException {
+        if (this.pending(id) == null) {
+            return;
+        }
+        this.writeBehind.flush();
+        if (this.pending(id) != null) {
+            throw new ConflictException("La salle a une écriture en attente");
+        }
+    }
+
+    /**
+     * Je remplace dans une page lue dans Mongo les salles qui ont une version en attente d'écriture.
+     * Une salle créée en écriture différée n'apparaît dans les pages qu'une fois écrite
+     */
+    private List<Salle> withPending(List<Salle> salles) {
+        if (this.writeBehind == null || this.writeBehind.size() == 0) {
+            return salles;
+        }
+        List<Salle> current = new ArrayList<>(salles.size());
+        salles.forEach(salle -> {
+            Salle pending = this.writeBehind.get(salle.getId());
+            current.add(pending != null ? pending : salle);
+        });
+        return current;
+    }
+
+    /**
+     * A l'arrêt de l'application, j'écris les salles encore en attente
+     */
+    public void close() {
+        if (this.writeBehind != null) {
+            this.writeBehind.close();
+        }
     }
 }
@@ -0,0 +1,409 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.repositories.FilmRepository;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Créneaux occupés de chaque salle, en mémoire, pour refuser sans requête Mongo une séance qui en chevauche une autre.
+ * Une séance occupe [date, date + Film.duree) ; avec plusieurs films, la durée du plus long, sans film, la durée par défaut.
+ * Chaque salle garde ses créneaux triés par début : les seuls qui peuvent chevaucher [début, fin) commencent
+ * entre début - durée max de la salle et fin, trouvés en O(log n) dans le TreeSet.
+ * L'index est chargé depuis Mongo au démarrage, puis tenu à jour par les écritures des séances et des films
+ */
+public class SeanceSchedule implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeanceSchedule.class);
+
+    SeanceRepository seanceRepository;
+    FilmRepository filmRepository;
+    long defaultLength;
+
+    // Un seul verrou : une vérification coûte quelques microsecondes, et une séance peut changer de salle.
+    // ReentrantLock plutôt que synchronized, pour ne pas épingler les threads virtuels pendant le chargement
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, SalleSlots> salles = new HashMap<>();
+    private final Map<String, Slot> slots = new HashMap<>();
+    // Film -> sa séance, et séance -> durée de chacun de ses films
+    private final Map<String, String> filmSeances = new HashMap<>();
+    private final Map<String, Map<String, Long>> lengths = new HashMap<>();
+    private volatile boolean loaded;
+
+    public SeanceSchedule(SeanceRepository seanceRepository, FilmRepository filmRepository, Duration defaultLength) {
+        this.seanceRepository = seanceRepository;
+        this.filmRepository = filmRepository;
+        this.defaultLength = defaultLength.toMillis();
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        try {
+            this.load();
+        } catch (DataAccessException e) {
+            LOGGER.warn("Chargement des créneaux des salles impossible, nouvel essai à la première écriture", e);
+        }
+    }
+
+    /**
+     * Je place une séance dans sa salle, à la place de son ancien créneau
+     * @param seance séance avec son id, sa date et sa salle
+     * @return l'ancien créneau, à rendre à restore si l'écriture dans Mongo échoue
+     * @throws ConflictException si le créneau chevauche une autre séance de la salle
+     */
+    public Slot place(Seance seance) throws ConflictException {
+        this.ensureLoaded();
+        this.lock.lock();
+        try {
+            Slot previous = this.slots.get(seance.getId());
+            if (seance.getSalle() == null || seance.getSalle().getId() == null || seance.getDate() == null) {
+                this.unlink(previous);
+                return previous;
+            }
+            long start = seance.getDate().getTime();
+            Slot slot = new Slot(seance.getId(), seance.getSalle().getId(), start, start + this.lengthOf(seance.getId()));
+            Slot conflict = this.salles.computeIfAbsent(slot.salleId, id -> new SalleSlots()).overlapping(slot);
+            if (conflict != null) {
+                throw new ConflictException("La salle est déjà occupée par la séance " + conflict.seanceId + " à " + new Date(conflict.start));
+            }
+            this.unlink(previous);
+            this.link(slot);
+            return previous;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Je remets le créneau d'une séance tel qu'il était avant place
+     * @param seanceId
+     * @param previous
+     */
+    public void restore(String seanceId, Slot previous) {
+        this.lock.lock();
+        try {
+            this.unlink(this.slots.get(seanceId));
+            if (previous != null) {
+                this.link(previous);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Je recopie le créneau d'une séance écrite par une autre instance, sans le refuser : elle l'a déjà vérifié.
+     * Avant le chargement, il n'y a rien à faire, le chargement la lira
+     * @param seanceId
+     * @param salleId null si la séance n'a pas de salle
+     * @param date
+     */
+    public void replace(String seanceId, String salleId, Date date) {
+        if (!this.loaded) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            this.unlink(this.slots.get(seanceId));
+            if (salleId != null && date != null) {
+                long start = date.getTime();
+                this.link(new Slot(seanceId, salleId, start, start + this.lengthOf(seanceId)));
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Je libère le créneau d'une séance supprimée
+     * @param seanceId
+     */
+    public void remove(String seanceId) {
+        this.lock.lock();
+        try {
+            this.unlink(this.slots.get(seanceId));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Je libère les créneaux des séances antérieures à une date, supprimées en une fois
+     * @param before
+     * @return les ids des séances retirées
+     */
+    public List<String> removeBefore(Date before) {
+        this.lock.lock();
+        try {
+            List<String> removed = new ArrayList<>();
+            for (Slot slot : new ArrayList<>(this.slots.values())) {
+                if (slot.start < before.getTime()) {
+                    this.unlink(slot);
+                    removed.add(slot.seanceId);
+                }
+            }
+            return removed;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * La durée d'une séance est celle du plus long de ses films : je porte la durée du film sur sa séance,
+     * et son ancienne séance, s'il en change, reprend la durée de ses autres films (ou la durée par défaut)
+     * @param filmId
+     * @param seanceId null si le film n'a pas de séance
+     * @param duree en minutes, null si le film n'en a pas
+     * @return la durée du film avant, à rendre à restore si l'écriture dans Mongo échoue
+     * @throws ConflictException si la séance, allongée, chevauche une autre séance de sa salle
+     */
+    public FilmDuree setDuree(String filmId, String seanceId, Float duree) throws ConflictException {
+        this.ensureLoaded();
+        this.lock.lock();
+        try {
+            FilmDuree previous = this.dureeOf(filmId);
+            this.assign(filmId, seanceId, duree == null ? null : (long) (duree * 60_000L));
+            Slot slot = seanceId == null ? null : this.slots.get(seanceId);
+            if (slot != null) {
+                Slot resized = new Slot(slot.seanceId, slot.salleId, slot.start, slot.start + this.lengthOf(seanceId));
+                Slot conflict = resized.end > slot.end ? this.salles.get(slot.salleId).overlapping(resized) : null;
+                if (conflict != null) {
+                    this.assign(filmId, previous.seanceId, previous.length);
+                    throw new ConflictException("La séance " + seanceId + " chevaucherait la séance " + conflict.seanceId + " à " + new Date(conflict.start));
+                }
+            }
+            this.resize(previous.seanceId);
+            this.resize(seanceId);
+            return previous;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Je remets la durée d'un film telle qu'elle était avant setDuree
+     * @param previous
+     */
+    public void restore(FilmDuree previous) {
+        this.lock.lock();
+        try {
+            String seanceId = this.filmSeances.get(previous.filmId);
+            this.assign(previous.filmId, previous.seanceId, previous.length);
+            this.resize(seanceId);
+            this.resize(previous.seanceId);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Je recopie la durée d'un film écrit par une autre instance, sans la refuser : elle l'a déjà vérifiée.
+     * Avant le chargement, il n'y a rien à faire, le chargement la lira
+     * @param filmId
+     * @param seanceId null si le film n'a pas de séance
+     * @param duree en minutes
+     */
+    public void replaceDuree(String filmId, String seanceId, Float duree) {
+        if (!this.loaded) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            String previous = this.filmSeances.get(filmId);
+            this.assign(filmId, seanceId, duree == null ? null : (long) (duree * 60_000L));
+            this.resize(previous);
+            this.resize(seanceId);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Un film supprimé ne compte plus dans la durée de sa séance
+     * @param filmId
+     */
+    public void removeFilm(String filmId) {
+        this.replaceDuree(filmId, null, null);
+    }
+
+    /**
+     * Je charge les créneaux de toutes les séances : une lecture des films pour les durées, une des séances
+     */
+    public void load() {
+        this.lock.lock();
+        try {
+            List<Film> films = this.filmRepository.findDurees();
+            this.salles.clear();
+            this.slots.clear();
+            this.filmSeances.clear();
+            this.lengths.clear();
+            films.forEach(film -> this.assign(film.getId(), film.getSeance().getId(), film.getDuree() == null ? null : (long) (film.getDuree() * 60_000L)));
+            this.seanceRepository.findAllSlots().forEach(seance -> {
+                if (seance.getSalle() != null && seance.getDate() != null) {
+                    long start = seance.getDate().getTime();
+                    this.link(new Slot(seance.getId(), seance.getSalle().getId(), start, start + this.lengthOf(seance.getId())));
+                }
+            });
+            this.loaded = true;
+            LOGGER.info("{} créneaux chargés dans {} salles", this.slots.size(), this.salles.size());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (this.loaded) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            if (!this.loaded) {
+                this.load();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private long lengthOf(String seanceId) {
+        Map<String, Long> films = this.lengths.get(seanceId);
+        return films == null ? this.defaultLength : Collections.max(films.values());
+    }
+
+    private FilmDuree dureeOf(String filmId) {
+        String seanceId = this.filmSeances.get(filmId);
+        Map<String, Long> films = seanceId == null ? null : this.lengths.get(seanceId);
+        return new FilmDuree(filmId, seanceId, films == null ? null : films.get(filmId));
+    }
+
+    /**
+     * Je rattache le film et sa durée à sa séance, sans toucher aux créneaux (voir resize)
+     */
+    private void assign(String filmId, String seanceId, Long length) {
+        String previous = this.filmSeances.remove(filmId);
+        Map<String, Long> films = previous == null ? null : this.lengths.get(previous);
+        if (films != null) {
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                this.lengths.remove(previous);
+            }
+        }
+        if (seanceId != null) {
+            this.filmSeances.put(filmId, seanceId);
+            if (length != null) {
+                this.lengths.computeIfAbsent(seanceId, id -> new HashMap<>()).put(filmId, length);
+            }
+        }
+    }
+
+    /**
+     * Je recalcule la fin du créneau de la séance d'après la durée de ses films
+     */
+    private void resize(String seanceId) {
+        Slot slot = seanceId == null ? null : this.slots.get(seanceId);
+        if (slot != null) {
+            this.unlink(slot);
+            this.link(new Slot(slot.seanceId, slot.salleId, slot.start, slot.start + this.lengthOf(seanceId)));
+        }
+    }
+
+    private void link(Slot slot) {
+        this.slots.put(slot.seanceId, slot);
+        this.salles.computeIfAbsent(slot.salleId, id -> new SalleSlots()).add(slot);
+    }
+
+    private void unlink(Slot slot) {
+        if (slot == null) {
+            return;
+        }
+        this.slots.remove(slot.seanceId);
+        SalleSlots salle = this.salles.get(slot.salleId);
+        if (salle != null) {
+            salle.remove(slot);
+        }
+    }
+
+    /**
+     * Créneau [start, end) d'une séance dans une salle, en millisecondes
+     */
+    public static final class Slot {
+        private static final Comparator<Slot> ORDER = Comparator.<Slot>comparingLong(slot -> slot.start)
+                .thenComparing(slot -> slot.seanceId);
+
+        final String seanceId;
+        final String salleId;
+        final long start;
+        final long end;
+
+        Slot(String seanceId, String salleId, long start, long end) {
+            this.seanceId = seanceId;
+            this.salleId = salleId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Durée d'un film et sa séance, telles qu'avant setDuree
+     */
+    public static final class FilmDuree {
+        final String filmId;
+        final String seanceId;
+        final Long length;
+
+        FilmDuree(String filmId, String seanceId, Long length) {
+            this.filmId = filmId;
+            this.seanceId = seanceId;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Créneaux d'une salle triés par début. maxLength ne diminue pas quand un créneau est retiré :
+     * la fenêtre de recherche reste juste, seulement un peu plus large
+     */
+    static final class SalleSlots {
+        private final TreeSet<Slot> slots = new TreeSet<>(Slot.ORDER);
+        private long maxLength;
+
+        void add(Slot slot) {
+            this.slots.add(slot);
+            this.maxLength = Math.max(this.maxLength, slot.end - slot.start);
+        }
+
+        void remove(Slot slot) {
+            this.slots.remove(slot);
+        }
+
+        /**
+         * Un créneau d'une autre séance qui chevauche slot, null s'il n'y en a pas
+         */
+        Slot overlapping(Slot slot) {
+            Slot from = new Slot("", slot.salleId, slot.start - this.maxLength, 0);
+            Slot to = new Slot("", slot.salleId, slot.end, 0);
+            for (Slot other : this.slots.subSet(from, false, to, false)) {
+                if (other.end > slot.start && !other.seanceId.equals(slot.seanceId)) {
+                    return other;
+                }
+            }
+            return null;
+        }
+    }
+}
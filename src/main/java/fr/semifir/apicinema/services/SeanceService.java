@@ -1,26 +1,97 @@
 package fr.semifir.apicinema.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
 import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
 import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.DbRefBatchLoader;
+import fr.semifir.apicinema.repositories.PatchWriter;
 import fr.semifir.apicinema.repositories.SeanceRepository;
-import org.modelmapper.ModelMapper;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Criteria;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class SeanceService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeanceService.class);
+
     SeanceRepository repository;
-    ModelMapper mapper;
+    EntityMapper<Seance, SeanceDTO> mapper;
+    Cache<String, SeanceDTO> cache;
+    BulkWriter bulkWriter;
+    PatchWriter patchWriter;
+    CollectionVersions versions;
+    ServiceMetrics metrics;
+    SingleFlight flights;
+    ProgrammeService programmes;
+    ReservationService reservations;
+    SeanceSchedule schedule;
+    // null quand les écritures vont directement dans Mongo
+    WriteBehind<Seance> writeBehind;
+    // Mises à jour qui suivent deleteBefore, hors du thread de la requête
+    private final ExecutorService purger = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "seance-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public SeanceService(
             SeanceRepository repository,
-            ModelMapper mapper
+            EntityMapper<Seance, SeanceDTO> mapper,
+            Cache<String, SeanceDTO> cache,
+            BulkWriter bulkWriter,
+            PatchWriter patchWriter,
+            CollectionVersions versions,
+            ServiceMetrics metrics,
+            ProgrammeService programmes,
+            ReservationService reservations,
+            SeanceSchedule schedule,
+            Duration writeBehind
             ) {
         this.repository = repository;
         this.mapper = mapper;
+        this.cache = cache;
+        this.bulkWriter = bulkWriter;
+        this.patchWriter = patchWriter;
+        this.versions = versions;
+        this.metrics = metrics;
+        this.flights = new SingleFlight(metrics);
+        this.programmes = programmes;
+        this.reservations = reservations;
+        this.schedule = schedule;
+        if (writeBehind != null && !writeBehind.isZero()) {
+            this.writeBehind = new WriteBehind<>("seance", Seance::getId,
+                    batch -> this.metrics.mongo("writeBehind", () -> this.bulkWriter.replaceAll(Seance.class, batch)),
+                    this::written, writeBehind);
+        }
     }
 
     /**
@@ -28,37 +99,322 @@ public class SeanceService {
      * @return List<Seance>
      */
     public List<SeanceDTO> findAll() {
-        List<SeanceDTO> seanceDTOS = new ArrayList<>();
-        this.repository.findAll().forEach(seance -> {
-            SeanceDTO seanceDTO = mapper.map(seance, SeanceDTO.class);
-            seanceDTOS.add(seanceDTO);
+        return this.flights.run("findAll", List.of(this.etag()), () -> {
+            List<Seance> seances = this.metrics.mongo("findAll", this.repository::findAllResolved);
+            return this.metrics.mapAll("findAll", seances, mapper::toDTO);
+        });
+    }
+
+    /**
+     * Retourne une page de Seance triée par id, après le curseur after
+     * @param after id du dernier élément de la page précédente, null pour la première page
+     * @param limit
+     * @return List<SeanceDTO>
+     */
+    public List<SeanceDTO> findPage(String after, int limit) {
+        Pageable pageable = Pages.byId(limit);
+        return this.flights.run("findPage", Arrays.asList(this.etag(), after, limit), () -> {
+            List<Seance> seances = this.metrics.mongo("findPage", () -> this.repository.findPageResolved(after, pageable));
+            return this.metrics.mapAll("findPage", this.withPending(seances), mapper::toDTO);
         });
-        return seanceDTOS;
     }
 
     /**
-     * Je récupère un seance selon son ID
+     * Page réduite aux champs demandés : la projection est faite par Mongo,
+     * et les références non demandées ne sont pas chargées
+     * @param after
+     * @param limit
+     * @param fields propriétés du DTO à renvoyer
+     * @return List<SeanceDTO> dont les autres champs sont vides
+     */
+    public List<SeanceDTO> findPage(String after, int limit, Set<String> fields) {
+        Pageable pageable = Pages.byId(limit);
+        return this.flights.run("findPage", Arrays.asList(this.etag(), after, limit, fields), () -> {
+            List<Seance> seances = this.metrics.mongo("findPage", () -> this.repository.findPageResolved(after, pageable, fields));
+            return this.metrics.mapAll("findPage", this.withPending(seances), mapper::toDTO);
+        });
+    }
+
+    /**
+     * Parcourt tous les Seance sur un curseur Mongo ouvert, à fermer par l'appelant
+     * @return Stream<SeanceDTO>
+     */
+    public Stream<SeanceDTO> stream() {
+        return this.repository.streamAllResolved().map(mapper::toDTO);
+    }
+
+    /**
+     * Les séances d'un cinéma entre deux dates, par ordre chronologique
+     * @param cinemaId
+     * @param from inclus
+     * @param to exclu
+     * @return List<SeanceDTO>
+     */
+    public List<SeanceDTO> findByCinema(String cinemaId, Date from, Date to) {
+        return this.flights.run("findByCinema", List.of(this.etag(), cinemaId, from, to), () -> {
+            List<Seance> seances = this.metrics.mongo("findByCinema", () -> this.repository.findByCinemaBetween(cinemaId, from, to));
+            return this.metrics.mapAll("findByCinema", seances, mapper::toDTO);
+        });
+    }
+
+    /**
+     * ETag des lectures de Seance, qui change à chaque écriture des Seance et des collections embarquées
+     * @return
+     */
+    public String etag() {
+        return this.versions.etag(Seance.class, Salle.class, Cinema.class);
+    }
+
+    /**
+     * Je récupère un seance selon son ID, depuis le cache ou à défaut depuis Mongo
      * @param id
      * @return
      */
     public Optional<SeanceDTO> findByID(String id) throws NotFoundException {
-        Optional<Seance> seance = this.repository.findById(id);
-        Optional<SeanceDTO> seanceDTO;
-        if (seance.isPresent()) {
-           seanceDTO = Optional.of(mapper.map(seance.get(), SeanceDTO.class));
-        } else {
+        Seance pending = this.pending(id);
+        if (pending != null) {
+            return Optional.of(mapper.toDTO(pending));
+        }
+        SeanceDTO seanceDTO = this.cache.getIfPresent(id);
+        if (seanceDTO == null) {
+            seanceDTO = CachedLoads.get(this.cache, id, key -> this.metrics.mongo("findByID", () -> this.repository.findByIdResolved(key, null))
+                    .map(seance -> this.metrics.mapping("findByID", () -> mapper.toDTO(seance)))
+                    .orElse(null), this.versions, Seance.class, Salle.class, Cinema.class);
+        }
+        if (seanceDTO == null) {
             throw new NotFoundException("Le seance n'a pas été trouvé");
         }
-        return seanceDTO;
+        return Optional.of(seanceDTO);
     }
 
     /**
-     * Save & update un seance
+     * Je récupère une seance réduit aux champs demandés : complet depuis le cache s'il y est,
+     * sinon projeté par Mongo, sans passer par le cache
+     * @param id
+     * @param fields propriétés du DTO à renvoyer
+     * @return
+     */
+    public Optional<SeanceDTO> findByID(String id, Set<String> fields) throws NotFoundException {
+        Seance pending = this.pending(id);
+        if (pending != null) {
+            return Optional.of(mapper.toDTO(pending));
+        }
+        SeanceDTO cached = this.cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return Optional.of(this.flights.run("findByID", List.of(this.etag(), id, fields), () -> this.metrics.mongo("findByID", () -> this.repository.findByIdResolved(id, fields))
+                        .map(seance -> this.metrics.mapping("findByID", () -> mapper.toDTO(seance)))
+                        .orElseThrow(() -> new NotFoundException("Le seance n'a pas été trouvé"))));
+    }
+
+    /**
+     * Je récupère plusieurs séances en une requête, sans erreur pour les ids introuvables
+     * @param ids
+     * @return les SeanceDTO trouvés dans l'ordre des ids, et les ids manquants
+     */
+    public MgetDTO<SeanceDTO> findAllByID(Collection<String> ids) {
+        return MultiGet.collect(ids, id -> {
+            Seance pending = this.pending(id);
+            return pending == null ? null : mapper.toDTO(pending);
+        }, this.cache, misses -> {
+            List<Seance> seances = this.metrics.mongo("findAllByID", () -> this.repository.findAllByIdResolved(misses));
+            return this.metrics.mapAll("findAllByID", seances, mapper::toDTO);
+        }, SeanceDTO::getId);
+    }
+
+    /**
+     * Save & update une seance, refusée si elle chevauche une autre séance de sa salle.
+     * La version est incrémentée (voir BulkWriter.replace)
      * @param seance
      * @return
+     * @throws ConflictException si le créneau est occupé, ou si seance porte une version qui n'est plus celle du document
+     */
+    public SeanceDTO save(Seance seance) throws ConflictException {
+        if (seance.getId() == null) {
+            seance.setId(new ObjectId().toHexString());
+        }
+        SeanceSchedule.Slot previous = this.schedule.place(seance);
+        if (this.writeBehind != null) {
+            return this.submit(seance);
+        }
+        Seance saved;
+        try {
+            saved = this.metrics.mongo("save", () -> this.bulkWriter.replace(Seance.class, seance));
+        } catch (RuntimeException e) {
+            this.schedule.restore(seance.getId(), previous);
+            throw e;
+        }
+        SeanceDTO seanceDTO = this.metrics.mapping("save", () -> mapper.toDTO(saved));
+        this.cache.invalidate(seanceDTO.getId());
+        this.programmes.seancesChanged(List.of(seanceDTO.getId()));
+        this.reservations.seancesChanged(List.of(seanceDTO.getId()));
+        this.versions.bump(Seance.class, List.of(seanceDTO.getId()));
+        return seanceDTO;
+    }
+
+    /**
+     * Mise à jour partielle : seuls les champs du patch sont écrits dans Mongo (voir PatchWriter),
+     * toujours directement, même avec l'écriture différée.
+     * Un patch de la date ou de la salle prend d'abord le nouveau créneau, et n'est écrit que si la séance
+     * a encore la date et la salle lues pour le vérifier
+     * @param id
+     * @param body JSON merge patch, avec "version" pour ne l'appliquer qu'à cette version de la seance
+     * @return la seance après le patch et sa version
+     * @throws IllegalArgumentException si le patch est invalide
+     * @throws ConflictException si le créneau chevauche une autre séance de la salle, ou si la seance a changé entre-temps
      */
-    public SeanceDTO save(Seance seance) {
-        return mapper.map(this.repository.save(seance), SeanceDTO.class);
+    public PatchedDTO<SeanceDTO> patch(String id, Map<String, Object> body) throws NotFoundException, ConflictException {
+        PatchWriter.Patch patch = this.patchWriter.parse(Seance.class, id, body);
+        this.flushPending(id);
+        boolean moved = patch.touches("date", "salle");
+        SeanceSchedule.Slot previous = null;
+        if (moved) {
+            Map<String, Object> after = this.metrics.mongo("patch", () -> this.patchWriter.guard(patch, "date", "salle"));
+            if (after == null) {
+                throw new NotFoundException("Le seance n'a pas été trouvé");
+            }
+            String salleId = (String) after.get("salle");
+            previous = this.schedule.place(new Seance(id, (Date) after.get("date"), salleId == null ? null : new Salle(salleId, 0, 0, null)));
+        }
+        PatchedDTO<Seance> patched;
+        try {
+            patched = this.metrics.mongo("patch", () -> this.patchWriter.apply(patch, DbRefBatchLoader::seances));
+        } catch (RuntimeException e) {
+            if (moved) {
+                this.schedule.restore(id, previous);
+            }
+            throw e;
+        }
+        if (patched == null) {
+            if (moved) {
+                this.schedule.restore(id, previous);
+            }
+            throw new NotFoundException("Le seance n'a pas été trouvé");
+        }
+        Seance seance = patched.getValue();
+        SeanceDTO seanceDTO = this.metrics.mapping("patch", () -> mapper.toDTO(seance));
+        this.cache.invalidate(id);
+        this.programmes.seancesChanged(List.of(id));
+        this.reservations.seancesChanged(List.of(id));
+        this.versions.bump(Seance.class, List.of(id));
+        return new PatchedDTO<>(seanceDTO, patched.getVersion());
+    }
+
+    /**
+     * Import en masse : j'insère les séances par lots, sans les garder tous en mémoire
+     * @param seances séances lus depuis le corps de la requête
+     * @param results résultat de chaque élément, publié après l'écriture de son lot
+     */
+    public void bulkInsert(Iterator<Seance> seances, Consumer<BulkResultDTO> results) {
+        Map<String, SeanceSchedule.Slot> placed = new HashMap<>();
+        BulkWriter.Bulk<Seance> bulk = this.bulkWriter.open(Seance.class, Seance::getId, Seance::setId, result -> {
+            // Une séance refusée par Mongo rend le créneau qu'elle avait pris
+            if (BulkResultDTO.ERROR.equals(result.getStatus()) && placed.containsKey(result.getId())) {
+                this.schedule.restore(result.getId(), placed.remove(result.getId()));
+            }
+            results.accept(result);
+        });
+        List<String> ids = new ArrayList<>();
+        try {
+            seances.forEachRemaining(seance -> {
+                if (seance.getId() == null) {
+                    seance.setId(new ObjectId().toHexString());
+                }
+                try {
+                    placed.putIfAbsent(seance.getId(), this.schedule.place(seance));
+                } catch (ConflictException e) {
+                    bulk.reject(seance, e.getMessage());
+                    return;
+                }
+                bulk.add(seance);
+                ids.add(seance.getId());
+            });
+        } finally {
+            bulk.finish();
+            this.programmes.seancesChanged(ids);
+            this.reservations.seancesChanged(ids);
+            this.versions.bump(Seance.class, ids);
+        }
+    }
+    /**
+     * Je supprime une seance par son id
+     * @param id
+     */
+    public void deleteByID(String id) throws NotFoundException {
+        if (this.deleteAllByID(List.of(id)) == 0) {
+            throw new NotFoundException("Le seance n'a pas été trouvé");
+        }
+    }
+
+    /**
+     * Je supprime des seances par leurs ids, en un deleteMany par lot (voir BulkWriter).
+     * Une seance en attente d'écriture est lisible, elle compte donc comme supprimée même si Mongo ne l'a pas encore
+     * @param ids
+     * @return le nombre de seances supprimées
+     */
+    public long deleteAllByID(Collection<String> ids) {
+        List<String> stored = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        ids.stream().distinct().forEach(id -> (this.pending(id) == null ? stored : pending).add(id));
+        pending.forEach(id -> this.writeBehind.discard(id));
+        long deleted = this.metrics.mongo("deleteAllByID", () -> this.bulkWriter.deleteAll(Seance.class, stored));
+        if (!pending.isEmpty()) {
+            this.metrics.mongo("deleteAllByID", () -> this.bulkWriter.deleteAll(Seance.class, pending));
+        }
+        stored.addAll(pending);
+        this.cache.invalidateAll(stored);
+        stored.forEach(this.schedule::remove);
+        this.programmes.seancesChanged(stored);
+        this.reservations.seancesChanged(stored);
+        this.versions.bump(Seance.class, stored);
+        return deleted + pending.size();
+    }
+
+    /**
+     * Je supprime les seances antérieures à une date en un seul deleteMany, sans lire leurs ids.
+     * Le cache, le planning, les plans de salle et les programmes sont mis à jour ensuite, hors de la requête (voir forgetBefore)
+     * @param before
+     * @return le nombre de seances supprimées
+     */
+    public long deleteBefore(Date before) {
+        if (this.writeBehind != null) {
+            this.writeBehind.flush();
+        }
+        long deleted = this.metrics.mongo("deleteBefore", () -> this.bulkWriter.deleteWhere(Seance.class, Criteria.where("date").lt(before)));
+        if (deleted > 0) {
+            // L'ETag change tout de suite : une liste relue ne repart pas en 304
+            this.versions.bump(Seance.class, List.of());
+            this.purger.execute(() -> this.forgetBefore(before));
+        }
+        return deleted;
+    }
+
+    /**
+     * Après deleteBefore : les seances supprimées sont celles du planning et du cache antérieures à la date,
+     * oubliées par lots de batchSize. Les programmes qui en contiennent sont reconstruits un à un depuis un curseur
+     * @param before
+     */
+    private void forgetBefore(Date before) {
+        try {
+            Set<String> removed = new LinkedHashSet<>(this.schedule.removeBefore(before));
+            this.cache.asMap().forEach((id, seance) -> {
+                if (seance.getDate() != null && seance.getDate().before(before)) {
+                    removed.add(id);
+                }
+            });
+            List<String> ids = new ArrayList<>(removed);
+            int batchSize = this.bulkWriter.getBatchSize();
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                this.cache.invalidateAll(batch);
+                this.reservations.seancesChanged(batch);
+                this.versions.bump(Seance.class, batch);
+            }
+            this.programmes.seancesBefore(before);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Seances antérieures à {} non retirées des caches", before, e);
+        }
     }
 
     /**
@@ -66,6 +422,87 @@ public class SeanceService {
      * @param seance
      */
     public void delete(Seance seance) {
-        this.repository.delete(seance);
+        if (this.writeBehind != null && seance.getId() != null) {
+            this.writeBehind.discard(seance.getId());
+        }
+        this.metrics.run("delete", () -> this.repository.delete(seance));
+        if (seance.getId() != null) {
+            this.cache.invalidate(seance.getId());
+            this.programmes.seancesChanged(List.of(seance.getId()));
+            this.reservations.seancesChanged(List.of(seance.getId()));
+            this.schedule.remove(seance.getId());
+            this.versions.bump(Seance.class, List.of(seance.getId()));
+        }
+    }
+
+    /**
+     * Ecriture différée : la seance est lisible tout de suite depuis les écritures en attente,
+     * et écrite dans Mongo au prochain passage, avec les autres versions reçues entre-temps
+     * @param seance seance avec son id
+     * @return
+     */
+    private SeanceDTO submit(Seance seance) {
+        this.writeBehind.submit(seance);
+        SeanceDTO seanceDTO = this.metrics.mapping("save", () -> mapper.toDTO(seance));
+        this.cache.invalidate(seanceDTO.getId());
+        this.versions.bump(Seance.class, List.of(seanceDTO.getId()));
+        return seanceDTO;
+    }
+
+    /**
+     * Après un passage d'écriture différée, les lectures qui ne passent pas par les écritures en attente
+     * (programmes, cache rempli entre-temps) voient les nouvelles versions
+     * @param seances seances écrites dans Mongo
+     */
+    private void written(List<Seance> seances) {
+        List<String> ids = new ArrayList<>(seances.size());
+        seances.forEach(seance -> ids.add(seance.getId()));
+        this.cache.invalidateAll(ids);
+        this.programmes.seancesChanged(ids);
+        this.reservations.seancesChanged(ids);
+        this.versions.bump(Seance.class, ids);
+    }
+
+    private Seance pending(String id) {
+        return this.writeBehind == null || id == null ? null : this.writeBehind.get(id);
+    }
+
+    /**
+     * Une version en attente écrite après un patch l'effacerait : je l'écris avant
+     */
+    private void flushPending(String id) throws ConflictException {
+        if (this.pending(id) == null) {
+            return;
+        }
+        this.writeBehind.flush();
+        if (this.pending(id) != null) {
+            throw new ConflictException("La seance a une écriture en attente");
+        }
+    }
+
+    /**
+     * Je remplace dans une page lue dans Mongo les seances qui ont une version en attente d'écriture.
+     * Une seance créée en écriture différée n'apparaît dans les pages qu'une fois écrite
+     */
+    private List<Seance> withPending(List<Seance> seances) {
+        if (this.writeBehind == null || this.writeBehind.size() == 0) {
+            return seances;
+        }
+        List<Seance> current = new ArrayList<>(seances.size());
+        seances.forEach(seance -> {
+            Seance pending = this.writeBehind.get(seance.getId());
+            current.add(pending != null ? pending : seance);
+        });
+        return current;
+    }
+
+    /**
+     * A l'arrêt de l'application, j'écris les seances encore en attente
+     */
+    public void close() {
+        if (this.writeBehind != null) {
+            this.writeBehind.close();
+        }
+        this.purger.shutdown();
     }
 }
@@ -0,0 +1,129 @@
+package fr.semifir.apicinema.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Plan de salle d'une séance : un bit par place, pris par compare-and-set, sans verrou.
+ * Les places sont numérotées de 1 à nbrPlace
+ */
+public class SeatMap {
+
+    private final int nbrPlace;
+    private final AtomicLongArray bits;
+    private final AtomicInteger remaining;
+    // Point de départ des recherches de places libres, pour que les acheteurs concurrents
+    // ne se battent pas tous pour les premiers mots du tableau
+    private final AtomicInteger hint = new AtomicInteger();
+
+    public SeatMap(int nbrPlace) {
+        this.nbrPlace = Math.max(nbrPlace, 0);
+        this.bits = new AtomicLongArray((this.nbrPlace + 63) / 64);
+        this.remaining = new AtomicInteger(this.nbrPlace);
+    }
+
+    public int getNbrPlace() {
+        return nbrPlace;
+    }
+
+    public int remaining() {
+        return remaining.get();
+    }
+
+    public boolean isValid(int place) {
+        return place >= 1 && place <= nbrPlace;
+    }
+
+    /**
+     * Je prends une place précise
+     * @param place
+     * @return false si elle était déjà prise
+     */
+    public boolean claim(int place) {
+        int index = place - 1;
+        int word = index >>> 6;
+        long bit = 1L << (index & 63);
+        while (true) {
+            long current = bits.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(word, current, current | bit)) {
+                remaining.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Je libère une place prise par claim
+     * @param place
+     */
+    public void release(int place) {
+        int index = place - 1;
+        int word = index >>> 6;
+        long bit = 1L << (index & 63);
+        while (true) {
+            long current = bits.get(word);
+            if ((current & bit) == 0) {
+                return;
+            }
+            if (bits.compareAndSet(word, current, current & ~bit)) {
+                remaining.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Je prends toutes les places demandées, ou aucune
+     * @param places
+     * @return false si l'une d'elles était déjà prise
+     */
+    public boolean claimAll(List<Integer> places) {
+        List<Integer> claimed = new ArrayList<>(places.size());
+        for (Integer place : places) {
+            if (!claim(place)) {
+                claimed.forEach(this::release);
+                return false;
+            }
+            claimed.add(place);
+        }
+        return true;
+    }
+
+    /**
+     * Je prends nombre places libres quelconques, ou aucune
+     * @param nombre
+     * @return les places prises, null s'il n'y en a pas assez
+     */
+    public List<Integer> claimAny(int nombre) {
+        if (nombre <= 0 || remaining.get() < nombre) {
+            return null;
+        }
+        List<Integer> claimed = new ArrayList<>(nombre);
+        int words = bits.length();
+        int start = Math.floorMod(hint.getAndIncrement(), words);
+        for (int i = 0; i < words && claimed.size() < nombre; i++) {
+            int word = (start + i) % words;
+            long current = bits.get(word);
+            while (current != -1L && claimed.size() < nombre) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(~current);
+                if (index >= nbrPlace) {
+                    break;
+                }
+                if (claim(index + 1)) {
+                    claimed.add(index + 1);
+                }
+                current = bits.get(word);
+            }
+        }
+        if (claimed.size() < nombre) {
+            claimed.forEach(this::release);
+            return null;
+        }
+        return claimed;
+    }
+}
@@ -0,0 +1,74 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Regroupe les lectures identiques en cours : le premier appel pour une clé interroge Mongo,
+ * ceux qui arrivent pendant ce temps attendent son résultat au lieu de refaire la requête.
+ * Ce n'est pas un cache, la clé est oubliée dès la fin de l'appel.
+ * La clé porte l'ETag du service : une lecture arrivée après une écriture ne rejoint pas
+ * un appel parti avant, elle en lance un nouveau.
+ * Les lectures par id passent par Cache.get, qui regroupe déjà les chargements d'une même clé :
+ * SingleFlight ne sert qu'aux lectures hors cache (pages, projections, programmes)
+ */
+public class SingleFlight {
+
+    private final Map<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final ServiceMetrics metrics;
+
+    public SingleFlight(ServiceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param method méthode du service, qui fait partie de la clé
+     * @param key arguments de la lecture et ETag lu avant l'appel
+     * @param call lecture à faire si aucune n'est en cours pour cette clé
+     * @return le résultat, partagé entre tous les appelants : à ne pas modifier
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T run(String method, List<?> key, Supplier<T> call) {
+        List<Object> flightKey = new ArrayList<>(key.size() + 1);
+        flightKey.add(method);
+        flightKey.addAll(key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = this.inFlight.putIfAbsent(flightKey, flight);
+        if (running != null) {
+            this.metrics.coalesced(method);
+            return (T) join(running);
+        }
+        try {
+            T result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private static Object join(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            // L'appelant reçoit la même exception que celui qui a fait la lecture (NotFoundException, DataAccessException...)
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
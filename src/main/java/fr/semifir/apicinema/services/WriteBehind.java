@@ -0,0 +1,145 @@
+package fr.semifir.apicinema.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Ecriture différée des save : les versions d'un même id reçues dans l'intervalle sont fusionnées (la dernière gagne)
+ * et écrites ensemble au prochain passage du flusher.
+ * Une entité reste lisible par get tant que son écriture n'a pas réussi ; elle n'est retirée ensuite
+ * que si aucune version plus récente ne l'a remplacée entre-temps
+ */
+public class WriteBehind<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehind.class);
+
+    Function<T, String> getId;
+    Function<List<T>, List<T>> writer;
+    Consumer<List<T>> written;
+
+    private final Map<String, T> pending = new ConcurrentHashMap<>();
+    // Un seul passage à la fois (flusher, discard, close).
+    // ReentrantLock plutôt que synchronized, pour ne pas épingler de thread virtuel pendant l'écriture
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * @param name nom du thread d'écriture
+     * @param getId
+     * @param writer écrit un lot et renvoie les entités non écrites
+     * @param written appelé avec les entités écrites, après chaque passage
+     * @param interval délai entre deux passages
+     */
+    public WriteBehind(String name, Function<T, String> getId, Function<List<T>, List<T>> writer, Consumer<List<T>> written, Duration interval) {
+        this.getId = getId;
+        this.writer = writer;
+        this.written = written;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        this.flusher.scheduleWithFixedDelay(this::flush, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Je mets une entité en attente d'écriture, à la place de la version en attente pour le même id
+     * @param entity entité avec son id
+     */
+    public void submit(T entity) {
+        this.pending.put(this.getId.apply(entity), entity);
+    }
+
+    /**
+     * La version en attente d'écriture, null s'il n'y en a pas
+     * @param id
+     * @return
+     */
+    public T get(String id) {
+        return this.pending.get(id);
+    }
+
+    /**
+     * J'oublie la version en attente d'une entité supprimée, après le passage en cours :
+     * elle ne sera pas réécrite après sa suppression
+     * @param id
+     */
+    public void discard(String id) {
+        this.lock.lock();
+        try {
+            this.pending.remove(id);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int size() {
+        return this.pending.size();
+    }
+
+    /**
+     * J'écris tout ce qui est en attente. Une entité que Mongo n'a pas écrite reste en attente pour le passage suivant
+     */
+    public void flush() {
+        this.lock.lock();
+        try {
+            if (this.pending.isEmpty()) {
+                return;
+            }
+            List<T> batch = new ArrayList<>(this.pending.values());
+            Set<T> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+            try {
+                failed.addAll(this.writer.apply(batch));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Ecriture différée de {} entités échouée, nouvel essai au prochain passage", batch.size(), e);
+                return;
+            }
+            if (!failed.isEmpty()) {
+                LOGGER.warn("{} écritures différées refusées par Mongo, nouvel essai au prochain passage", failed.size());
+            }
+            List<T> done = new ArrayList<>(batch.size());
+            for (T entity : batch) {
+                if (!failed.contains(entity)) {
+                    this.pending.remove(this.getId.apply(entity), entity);
+                    done.add(entity);
+                }
+            }
+            if (!done.isEmpty()) {
+                this.written.accept(done);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Suite de l'écriture différée en échec", e);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * A l'arrêt, j'écris ce qui reste en attente
+     */
+    public void close() {
+        this.flusher.shutdown();
+        try {
+            this.flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flush();
+    }
+}
@@ -0,0 +1,118 @@
+package fr.semifir.apicinema.services.reactive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import fr.semifir.apicinema.repositories.reactive.ReactiveCinemaRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveVersionedWriter;
+import fr.semifir.apicinema.services.CachedLoads;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.Pages;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Variante réactive de CinemaService (profil reactive), avec le même cache des findByID.
+ * Un cinéma écrit ou supprimé l'est aussi dans ReferenceData, avec le cinéma porté par ses salles
+ */
+public class ReactiveCinemaService {
+
+    ReactiveCinemaRepository repository;
+    EntityMapper<Cinema, CinemaDTO> mapper;
+    Cache<String, CinemaDTO> cache;
+    CollectionVersions versions;
+    ReactiveVersionedWriter writer;
+    ReferenceData references;
+
+    public ReactiveCinemaService(
+            ReactiveCinemaRepository repository,
+            EntityMapper<Cinema, CinemaDTO> mapper,
+            Cache<String, CinemaDTO> cache,
+            CollectionVersions versions,
+            ReactiveVersionedWriter writer,
+            ReferenceData references
+            ) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.cache = cache;
+        this.versions = versions;
+        this.writer = writer;
+        this.references = references;
+    }
+
+    /**
+     * Retourne une page de Cinema triée par id, après le curseur after
+     * @param after id du dernier élément de la page précédente, null pour la première page
+     * @param limit
+     * @return Flux<CinemaDTO>
+     */
+    public Flux<CinemaDTO> findPage(String after, int limit) {
+        Pageable pageable = Pages.byId(limit);
+        Flux<Cinema> cinemas = after == null
+                ? this.repository.findAllBy(pageable)
+                : this.repository.findByIdGreaterThan(after, pageable);
+        return cinemas.map(mapper::toDTO);
+    }
+
+    /**
+     * Tous les Cinema, lus dans Mongo au rythme où le client les consomme
+     * @return Flux<CinemaDTO>
+     */
+    public Flux<CinemaDTO> stream() {
+        return this.repository.findAll(Sort.by(Sort.Direction.ASC, "id")).map(mapper::toDTO);
+    }
+
+    /**
+     * Je récupère un cinéma selon son ID, depuis le cache ou à défaut depuis Mongo
+     * @param id
+     * @return
+     */
+    public Mono<CinemaDTO> findByID(String id) {
+        return Mono.justOrEmpty(this.cache.getIfPresent(id))
+                .switchIfEmpty(Mono.defer(() -> {
+                    long writes = this.versions.writes(Cinema.class);
+                    return this.repository.findById(id)
+                            .map(mapper::toDTO)
+                            .doOnNext(cinemaDTO -> CachedLoads.put(this.cache, id, cinemaDTO, this.versions, writes, Cinema.class));
+                }))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Le cinema n'a pas été trouvé")));
+    }
+
+    /**
+     * Save & update un cinéma, en incrémentant sa version (voir ReactiveVersionedWriter)
+     * @param cinema
+     * @return Mono en erreur ConflictException si cinema porte une version qui n'est plus celle du document
+     */
+    public Mono<CinemaDTO> save(Cinema cinema) {
+        return this.writer.replace(Cinema.class, cinema)
+                .doOnNext(saved -> this.references.putCinemas(List.of(saved)))
+                .map(mapper::toDTO)
+                .doOnNext(cinemaDTO -> {
+                    this.cache.invalidate(cinemaDTO.getId());
+                    this.versions.bump(Cinema.class, List.of(cinemaDTO.getId()));
+                });
+    }
+
+    /**
+     * Je supprime un cinéma
+     * @param cinema
+     * @return
+     */
+    public Mono<Void> delete(Cinema cinema) {
+        return this.repository.delete(cinema)
+                .doOnSuccess(done -> {
+                    if (cinema.getId() != null) {
+                        this.cache.invalidate(cinema.getId());
+                        this.references.removeCinema(cinema.getId());
+                        this.versions.bump(Cinema.class, List.of(cinema.getId()));
+                    }
+                });
+    }
+}
@@ -0,0 +1,130 @@
+package fr.semifir.apicinema.services.reactive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.reactive.ReactiveFilmRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveVersionedWriter;
+import fr.semifir.apicinema.services.CachedLoads;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.FilmTitleIndex;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.SeanceSchedule;
+import org.bson.types.ObjectId;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Variante réactive de FilmService (profil reactive), avec le même cache des findByID.
+ * Les écritures tiennent à jour les mêmes index en mémoire : titres (FilmTitleIndex) et durées des séances (SeanceSchedule)
+ */
+public class ReactiveFilmService {
+
+    ReactiveFilmRepository repository;
+    EntityMapper<Film, FilmDTO> mapper;
+    Cache<String, FilmDTO> cache;
+    CollectionVersions versions;
+    ReactiveVersionedWriter writer;
+    SeanceSchedule schedule;
+    FilmTitleIndex titles;
+
+    public ReactiveFilmService(
+            ReactiveFilmRepository repository,
+            EntityMapper<Film, FilmDTO> mapper,
+            Cache<String, FilmDTO> cache,
+            CollectionVersions versions,
+            ReactiveVersionedWriter writer,
+            SeanceSchedule schedule,
+            FilmTitleIndex titles
+            ) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.cache = cache;
+        this.versions = versions;
+        this.writer = writer;
+        this.schedule = schedule;
+        this.titles = titles;
+    }
+
+    /**
+     * Retourne une page de Film triée par id, après le curseur after
+     * @param after id du dernier élément de la page précédente, null pour la première page
+     * @param limit
+     * @return Flux<FilmDTO>
+     */
+    public Flux<FilmDTO> findPage(String after, int limit) {
+        return this.repository.findPageResolved(after, Pages.byId(limit)).map(mapper::toDTO);
+    }
+
+    /**
+     * Tous les Film, lus dans Mongo au rythme où le client les consomme
+     * @return Flux<FilmDTO>
+     */
+    public Flux<FilmDTO> stream() {
+        return this.repository.streamAllResolved().map(mapper::toDTO);
+    }
+
+    /**
+     * Je récupère un film selon son ID, depuis le cache ou à défaut depuis Mongo
+     * @param id
+     * @return
+     */
+    public Mono<FilmDTO> findByID(String id) {
+        return Mono.justOrEmpty(this.cache.getIfPresent(id))
+                .switchIfEmpty(Mono.defer(() -> {
+                    long writes = this.versions.writes(Film.class, Seance.class, Salle.class, Cinema.class);
+                    return this.repository.findByIdResolved(id)
+                            .map(mapper::toDTO)
+                            .doOnNext(filmDTO -> CachedLoads.put(this.cache, id, filmDTO, this.versions, writes, Film.class, Seance.class, Salle.class, Cinema.class));
+                }))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Le film n'a pas été trouvé")));
+    }
+
+    /**
+     * Save & update un film, en incrémentant sa version (voir ReactiveVersionedWriter).
+     * Sa durée est portée sur le créneau de sa séance avant l'écriture, et rendue si elle échoue
+     * @param film
+     * @return Mono en erreur ConflictException si la séance, allongée, chevauche une autre séance de sa salle,
+     * ou si film porte une version qui n'est plus celle du document
+     */
+    public Mono<FilmDTO> save(Film film) {
+        if (film.getId() == null) {
+            film.setId(new ObjectId().toHexString());
+        }
+        String seanceId = film.getSeance() == null ? null : film.getSeance().getId();
+        // La première vérification charge les créneaux avec le driver bloquant : hors des threads de l'event loop
+        return Mono.fromCallable(() -> this.schedule.setDuree(film.getId(), seanceId, film.getDuree()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(previous -> this.writer.replace(Film.class, film)
+                        .doOnError(e -> this.schedule.restore(previous)))
+                .doOnNext(this.titles::put)
+                .map(mapper::toDTO)
+                .doOnNext(filmDTO -> {
+                    this.cache.invalidate(filmDTO.getId());
+                    this.versions.bump(Film.class);
+                });
+    }
+
+    /**
+     * Je supprime un film
+     * @param film
+     * @return
+     */
+    public Mono<Void> delete(Film film) {
+        return this.repository.delete(film)
+                .doOnSuccess(done -> {
+                    if (film.getId() != null) {
+                        this.cache.invalidate(film.getId());
+                        this.titles.remove(film.getId());
+                        this.schedule.removeFilm(film.getId());
+                    }
+                    this.versions.bump(Film.class);
+                });
+    }
+}
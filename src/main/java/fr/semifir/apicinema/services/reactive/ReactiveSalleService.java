@@ -0,0 +1,113 @@
+package fr.semifir.apicinema.services.reactive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import fr.semifir.apicinema.repositories.reactive.ReactiveSalleRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveVersionedWriter;
+import fr.semifir.apicinema.services.CachedLoads;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.Pages;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Variante réactive de SalleService (profil reactive), avec le même cache des findByID.
+ * Les salles écrites ou supprimées le sont aussi dans ReferenceData, lu par SalleService et le DbRefBatchLoader
+ */
+public class ReactiveSalleService {
+
+    ReactiveSalleRepository repository;
+    EntityMapper<Salle, SalleDTO> mapper;
+    Cache<String, SalleDTO> cache;
+    CollectionVersions versions;
+    ReactiveVersionedWriter writer;
+    ReferenceData references;
+
+    public ReactiveSalleService(
+            ReactiveSalleRepository repository,
+            EntityMapper<Salle, SalleDTO> mapper,
+            Cache<String, SalleDTO> cache,
+            CollectionVersions versions,
+            ReactiveVersionedWriter writer,
+            ReferenceData references
+            ) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.cache = cache;
+        this.versions = versions;
+        this.writer = writer;
+        this.references = references;
+    }
+
+    /**
+     * Retourne une page de Salle triée par id, après le curseur after
+     * @param after id du dernier élément de la page précédente, null pour la première page
+     * @param limit
+     * @return Flux<SalleDTO>
+     */
+    public Flux<SalleDTO> findPage(String after, int limit) {
+        return this.repository.findPageResolved(after, Pages.byId(limit)).map(mapper::toDTO);
+    }
+
+    /**
+     * Tous les Salle, lus dans Mongo au rythme où le client les consomme
+     * @return Flux<SalleDTO>
+     */
+    public Flux<SalleDTO> stream() {
+        return this.repository.streamAllResolved().map(mapper::toDTO);
+    }
+
+    /**
+     * Je récupère une salle selon son ID, depuis le cache ou à défaut depuis Mongo
+     * @param id
+     * @return
+     */
+    public Mono<SalleDTO> findByID(String id) {
+        return Mono.justOrEmpty(this.cache.getIfPresent(id))
+                .switchIfEmpty(Mono.defer(() -> {
+                    long writes = this.versions.writes(Salle.class, Cinema.class);
+                    return this.repository.findByIdResolved(id)
+                            .map(mapper::toDTO)
+                            .doOnNext(salleDTO -> CachedLoads.put(this.cache, id, salleDTO, this.versions, writes, Salle.class, Cinema.class));
+                }))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Le salle n'a pas été trouvé")));
+    }
+
+    /**
+     * Save & update une salle, en incrémentant sa version (voir ReactiveVersionedWriter)
+     * @param salle
+     * @return Mono en erreur ConflictException si salle porte une version qui n'est plus celle du document
+     */
+    public Mono<SalleDTO> save(Salle salle) {
+        return this.writer.replace(Salle.class, salle)
+                .doOnNext(saved -> this.references.putSalles(List.of(saved)))
+                .map(mapper::toDTO)
+                .doOnNext(salleDTO -> {
+                    this.cache.invalidate(salleDTO.getId());
+                    this.versions.bump(Salle.class, List.of(salleDTO.getId()));
+                });
+    }
+
+    /**
+     * Je supprime une salle
+     * @param salle
+     * @return
+     */
+    public Mono<Void> delete(Salle salle) {
+        return this.repository.delete(salle)
+                .doOnSuccess(done -> {
+                    if (salle.getId() != null) {
+                        this.cache.invalidate(salle.getId());
+                        this.references.removeSalle(salle.getId());
+                        this.versions.bump(Salle.class, List.of(salle.getId()));
+                    }
+                });
+    }
+}
@@ -0,0 +1,125 @@
+package fr.semifir.apicinema.services.reactive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.reactive.ReactiveSeanceRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveVersionedWriter;
+import fr.semifir.apicinema.services.CachedLoads;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.SeanceSchedule;
+import org.bson.types.ObjectId;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Variante réactive de SeanceService (profil reactive), avec le même cache des findByID
+ * et les mêmes créneaux des salles (SeanceSchedule) pour refuser les séances qui se chevauchent
+ */
+public class ReactiveSeanceService {
+
+    ReactiveSeanceRepository repository;
+    EntityMapper<Seance, SeanceDTO> mapper;
+    Cache<String, SeanceDTO> cache;
+    CollectionVersions versions;
+    ReactiveVersionedWriter writer;
+    SeanceSchedule schedule;
+
+    public ReactiveSeanceService(
+            ReactiveSeanceRepository repository,
+            EntityMapper<Seance, SeanceDTO> mapper,
+            Cache<String, SeanceDTO> cache,
+            CollectionVersions versions,
+            ReactiveVersionedWriter writer,
+            SeanceSchedule schedule
+            ) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.cache = cache;
+        this.versions = versions;
+        this.writer = writer;
+        this.schedule = schedule;
+    }
+
+    /**
+     * Retourne une page de Seance triée par id, après le curseur after
+     * @param after id du dernier élément de la page précédente, null pour la première page
+     * @param limit
+     * @return Flux<SeanceDTO>
+     */
+    public Flux<SeanceDTO> findPage(String after, int limit) {
+        return this.repository.findPageResolved(after, Pages.byId(limit)).map(mapper::toDTO);
+    }
+
+    /**
+     * Tous les Seance, lus dans Mongo au rythme où le client les consomme
+     * @return Flux<SeanceDTO>
+     */
+    public Flux<SeanceDTO> stream() {
+        return this.repository.streamAllResolved().map(mapper::toDTO);
+    }
+
+    /**
+     * Je récupère une séance selon son ID, depuis le cache ou à défaut depuis Mongo
+     * @param id
+     * @return
+     */
+    public Mono<SeanceDTO> findByID(String id) {
+        return Mono.justOrEmpty(this.cache.getIfPresent(id))
+                .switchIfEmpty(Mono.defer(() -> {
+                    long writes = this.versions.writes(Seance.class, Salle.class, Cinema.class);
+                    return this.repository.findByIdResolved(id)
+                            .map(mapper::toDTO)
+                            .doOnNext(seanceDTO -> CachedLoads.put(this.cache, id, seanceDTO, this.versions, writes, Seance.class, Salle.class, Cinema.class));
+                }))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Le seance n'a pas été trouvé")));
+    }
+
+    /**
+     * Save & update une séance, refusée si elle chevauche une autre séance de sa salle.
+     * Le créneau est pris avant l'écriture, et rendu si elle échoue. La version est incrémentée (voir ReactiveVersionedWriter)
+     * @param seance
+     * @return Mono en erreur ConflictException si le créneau est occupé, ou si seance porte une version qui n'est plus celle du document
+     */
+    public Mono<SeanceDTO> save(Seance seance) {
+        if (seance.getId() == null) {
+            seance.setId(new ObjectId().toHexString());
+        }
+        // La première vérification charge les créneaux avec le driver bloquant : hors des threads de l'event loop
+        return Mono.fromCallable(() -> Optional.ofNullable(this.schedule.place(seance)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(previous -> this.writer.replace(Seance.class, seance)
+                        .doOnError(e -> this.schedule.restore(seance.getId(), previous.orElse(null))))
+                .map(mapper::toDTO)
+                .doOnNext(seanceDTO -> {
+                    this.cache.invalidate(seanceDTO.getId());
+                    this.versions.bump(Seance.class, List.of(seanceDTO.getId()));
+                });
+    }
+
+    /**
+     * Je supprime une séance
+     * @param seance
+     * @return
+     */
+    public Mono<Void> delete(Seance seance) {
+        return this.repository.delete(seance)
+                .doOnSuccess(done -> {
+                    if (seance.getId() != null) {
+                        this.cache.invalidate(seance.getId());
+                        this.schedule.remove(seance.getId());
+                        this.versions.bump(Seance.class, List.of(seance.getId()));
+                    }
+                });
+    }
+}
@@ -3,7 +3,8 @@ package fr.semifir.apicinema;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// Sans Mongo joignable, les tâches de démarrage (index...) échouent vite et sont seulement tracées
+@SpringBootTest(properties = "apicinema.mongo.server-selection-timeout=200ms")
 class ApiCinemaApplicationTests {
 
     @Test
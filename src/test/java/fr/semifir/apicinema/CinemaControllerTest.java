@@ -4,15 +4,25 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
 
 import fr.semifir.apicinema.controllers.CinemaController;
+import fr.semifir.apicinema.controllers.Patches;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
 import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.mget.MgetRequestDTO;
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
 import fr.semifir.apicinema.entities.Cinema;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.MultiGet;
+import fr.semifir.apicinema.services.Pages;
 import fr.semifir.apicinema.services.CinemaService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -20,11 +30,19 @@ import org.mockito.BDDMockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -138,4 +156,178 @@ public class CinemaControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testFindAllCinemasNextCursor() throws Exception {
+        BDDMockito.given(service.findPage(null, 1))
+                .willReturn(List.of(this.cinemaDTO()));
+
+        this.mockMvc.perform(get("/cinemas").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Pages.NEXT_CURSOR_HEADER, this.cinemaDTO().getId()))
+                .andExpect(jsonPath("$[0].id").value(this.cinemaDTO().getId()));
+    }
+
+    @Test
+    public void testFindAllCinemasLastPage() throws Exception {
+        BDDMockito.given(service.findPage("1", 10))
+                .willReturn(List.of(this.cinemaDTOUpdated()));
+
+        this.mockMvc.perform(get("/cinemas").param("after", "1").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(Pages.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void testStreamCinemas() throws Exception {
+        BDDMockito.given(service.stream())
+                .willReturn(Stream.of(this.cinemaDTO(), this.cinemaDTOUpdated()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/cinemas/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+
+        Gson json = new GsonBuilder().create();
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals(json.fromJson(lines[1], CinemaDTO.class).getNom(), this.cinemaDTOUpdated().getNom());
+    }
+
+    @Test
+    public void testBulkCinemas() throws Exception {
+        this.givenBulkInsertAcceptsAll();
+
+        String[] lines = this.bulk("[{\"nom\":\"Pathé\"},{\"nom\":\"Gaumont\"}]", MediaType.APPLICATION_JSON_VALUE);
+
+        Gson json = new GsonBuilder().create();
+        Assertions.assertEquals(2, lines.length);
+        BulkResultDTO result = json.fromJson(lines[1], BulkResultDTO.class);
+        Assertions.assertEquals(1, result.getIndex());
+        Assertions.assertEquals("id1", result.getId());
+        Assertions.assertEquals(BulkResultDTO.OK, result.getStatus());
+    }
+
+    @Test
+    public void testFindAllCinemasNotModified() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-1\"");
+
+        this.mockMvc.perform(get("/cinemas").header(HttpHeaders.IF_NONE_MATCH, "\"v-1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v-1\""));
+
+        BDDMockito.then(service).should(BDDMockito.never()).findPage(any(), anyInt());
+    }
+
+    @Test
+    public void testFindOneCinemaStaleETag() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-2\"");
+        BDDMockito.given(service.findByID("1"))
+                .willReturn(Optional.of(this.cinemaDTO()));
+
+        this.mockMvc.perform(get("/cinemas/1").header(HttpHeaders.IF_NONE_MATCH, "\"v-1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v-2\""));
+    }
+
+    @Test
+    public void testFindAllCinemasFields() throws Exception {
+        BDDMockito.given(service.findPage(null, Pages.DEFAULT_LIMIT)).willReturn(List.of(this.cinemaDTO()));
+
+        this.mockMvc.perform(get("/cinemas").param("fields", "id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("1"))
+                .andExpect(jsonPath("$[0].nom").doesNotExist());
+    }
+
+    @Test
+    public void testFindOneCinemaFields() throws Exception {
+        BDDMockito.given(service.findByID("1")).willReturn(Optional.of(this.cinemaDTO()));
+
+        this.mockMvc.perform(get("/cinemas/1").param("fields", "nom"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"))
+                .andExpect(jsonPath("$.nom").value("gaumont"));
+    }
+
+    @Test
+    public void testFindAllCinemasUnknownField() throws Exception {
+        this.mockMvc.perform(get("/cinemas").param("fields", "id,inconnu"))
+                .andExpect(status().isBadRequest());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findPage(any(), anyInt());
+    }
+
+    @Test
+    public void testMgetCinemas() throws Exception {
+        String id = this.cinemaDTO().getId();
+        BDDMockito.given(service.findAllByID(List.of(id, "inconnu")))
+                .willReturn(new MgetDTO<>(List.of(this.cinemaDTO()), List.of("inconnu")));
+
+        Gson json = new GsonBuilder().create();
+        this.mockMvc.perform(post("/cinemas/_mget")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json.toJson(new MgetRequestDTO(List.of(id, "inconnu")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found[0].id").value(id))
+                .andExpect(jsonPath("$.missing[0]").value("inconnu"));
+    }
+
+    @Test
+    public void testMgetCinemasTooManyIds() throws Exception {
+        String ids = String.join(",", Collections.nCopies(MultiGet.MAX_IDS + 1, "1"));
+        this.mockMvc.perform(get("/cinemas/_mget").param("ids", ids))
+                .andExpect(status().isBadRequest());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findAllByID(any());
+    }
+
+    @Test
+    public void testPatchCinema() throws Exception {
+        BDDMockito.given(service.patch("1", Map.of("nom", "Rex")))
+                .willReturn(new PatchedDTO<>(this.cinemaDTOUpdated(), 2));
+
+        this.mockMvc.perform(patch("/cinemas/1")
+                .contentType(Patches.MEDIA_TYPE)
+                .content("{\"nom\": \"Rex\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Patches.VERSION_HEADER, "2"));
+    }
+
+    /**
+     * Le service simulé accepte chaque élément lu et lui donne l'id "id" + index
+     */
+    private void givenBulkInsertAcceptsAll() {
+        BDDMockito.willAnswer(invocation -> {
+            Iterator<Cinema> items = invocation.getArgument(0);
+            Consumer<BulkResultDTO> results = invocation.getArgument(1);
+            long index = 0;
+            while (items.hasNext()) {
+                items.next();
+                results.accept(BulkResultDTO.ok(index, "id" + index));
+                index++;
+            }
+            return null;
+        }).given(service).bulkInsert(any(), any());
+    }
+
+    private String[] bulk(String body, String contentType) throws Exception {
+        MvcResult mvcResult = this.mockMvc.perform(post("/cinemas/bulk")
+                        .contentType(contentType)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+    }
+
 }
@@ -0,0 +1,80 @@
+package fr.semifir.apicinema;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import fr.semifir.apicinema.controllers.CinemaSeanceController;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.services.SeanceService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = CinemaSeanceController.class)
+public class CinemaSeanceControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SeanceService service;
+
+    private SeanceDTO seanceDTO () {
+        return new SeanceDTO(
+                "1",
+                Date.from(Instant.parse("2021-12-10T20:30:00Z")),
+                new Salle());
+    }
+
+    @Test
+    public void testFindSeancesByCinema() throws Exception {
+        Date from = Date.from(Instant.parse("2021-12-10T18:00:00Z"));
+        Date to = Date.from(Instant.parse("2021-12-11T00:00:00Z"));
+        BDDMockito.given(service.findByCinema("1", from, to))
+                .willReturn(List.of(this.seanceDTO()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/cinemas/1/seances")
+                .param("from", "2021-12-10T18:00:00Z")
+                .param("to", "2021-12-11T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        Gson json = new GsonBuilder().setDateFormat("yyyy-MM-dd").create();
+        SeanceDTO[] body = json.fromJson(mvcResult.getResponse().getContentAsString(), SeanceDTO[].class);
+        Assertions.assertEquals(1, body.length);
+        Assertions.assertEquals(body[0].getId(), this.seanceDTO().getId());
+    }
+
+    @Test
+    public void testFindSeancesByCinemaDefaultRange() throws Exception {
+        BDDMockito.given(service.findByCinema(eq("1"), any(Date.class), any(Date.class)))
+                .willReturn(List.of());
+
+        this.mockMvc.perform(get("/cinemas/1/seances"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    public void testFindSeancesByCinemaWrongRange() throws Exception {
+        this.mockMvc.perform(get("/cinemas/1/seances")
+                .param("from", "2021-12-11T00:00:00Z")
+                .param("to", "2021-12-10T00:00:00Z"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -2,14 +2,24 @@ package fr.semifir.apicinema;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import fr.semifir.apicinema.controllers.NdjsonStreams;
 import fr.semifir.apicinema.controllers.CinemaController;
 import fr.semifir.apicinema.controllers.FilmController;
+import fr.semifir.apicinema.controllers.Patches;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
 import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
 import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.mget.MgetRequestDTO;
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
+import fr.semifir.apicinema.dtos.film.FilmTitreDTO;
 import fr.semifir.apicinema.entities.Cinema;
 import fr.semifir.apicinema.entities.Film;
 import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.services.CinemaService;
+import fr.semifir.apicinema.services.MultiGet;
+import fr.semifir.apicinema.services.Pages;
 import fr.semifir.apicinema.services.FilmService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -18,14 +28,26 @@ import org.mockito.BDDMockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -148,11 +170,223 @@ public class FilmControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testFindAllFilmsNextCursor() throws Exception {
+        BDDMockito.given(service.findPage(null, 1))
+                .willReturn(List.of(this.filmDTO()));
 
+        this.mockMvc.perform(get("/films").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Pages.NEXT_CURSOR_HEADER, this.filmDTO().getId()))
+                .andExpect(jsonPath("$[0].id").value(this.filmDTO().getId()));
+    }
 
+    @Test
+    public void testFindAllFilmsLastPage() throws Exception {
+        BDDMockito.given(service.findPage("1", 10))
+                .willReturn(List.of(this.filmDTOUpdate()));
 
+        this.mockMvc.perform(get("/films").param("after", "1").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(Pages.NEXT_CURSOR_HEADER));
+    }
 
+    @Test
+    public void testStreamFilms() throws Exception {
+        BDDMockito.given(service.stream())
+                .willReturn(Stream.of(this.filmDTO(), this.filmDTOUpdate()));
 
+        MvcResult mvcResult = this.mockMvc.perform(get("/films/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
 
-}
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+
+        Gson json = new GsonBuilder().create();
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals(json.fromJson(lines[1], FilmDTO.class).getNom(), this.filmDTOUpdate().getNom());
+    }
+
+    @Test
+    public void testBulkFilms() throws Exception {
+        this.givenBulkInsertAcceptsAll();
+
+        String[] lines = this.bulk("[{\"nom\":\"Dune\"},{\"nom\":\"Matrix\"}]", MediaType.APPLICATION_JSON_VALUE);
+
+        Gson json = new GsonBuilder().create();
+        Assertions.assertEquals(2, lines.length);
+        BulkResultDTO result = json.fromJson(lines[1], BulkResultDTO.class);
+        Assertions.assertEquals(1, result.getIndex());
+        Assertions.assertEquals("id1", result.getId());
+        Assertions.assertEquals(BulkResultDTO.OK, result.getStatus());
+    }
+
+    @Test
+    public void testBulkFilmsNdjsonInvalidLine() throws Exception {
+        this.givenBulkInsertAcceptsAll();
 
+        String[] lines = this.bulk("{\"nom\":\"Dune\"}\n{\"nom\":\"Matrix\"}\n{\"nom\":", NdjsonStreams.MEDIA_TYPE);
+
+        Gson json = new GsonBuilder().create();
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertEquals(BulkResultDTO.OK, json.fromJson(lines[1], BulkResultDTO.class).getStatus());
+        BulkResultDTO error = json.fromJson(lines[2], BulkResultDTO.class);
+        Assertions.assertEquals(2, error.getIndex());
+        Assertions.assertEquals(BulkResultDTO.ERROR, error.getStatus());
+    }
+
+    @Test
+    public void testBulkFilmsStoreFailureIsNotReportedAsUnreadable() throws Exception {
+        BDDMockito.willThrow(new DataAccessResourceFailureException("Mongo injoignable"))
+                .given(service).bulkInsert(any(), any());
+
+        MvcResult mvcResult = this.mockMvc.perform(post("/films/bulk")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .content("[{\"nom\":\"Dune\"}]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        Assertions.assertThrows(Exception.class, () -> this.mockMvc.perform(asyncDispatch(mvcResult)));
+        Assertions.assertFalse(mvcResult.getResponse().getContentAsString().contains("illisible"));
+    }
+
+    @Test
+    public void testFindAllFilmsNotModified() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-1\"");
+
+        this.mockMvc.perform(get("/films").header(HttpHeaders.IF_NONE_MATCH, "\"v-1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v-1\""));
+
+        BDDMockito.then(service).should(BDDMockito.never()).findPage(any(), anyInt());
+    }
+
+    @Test
+    public void testFindOneFilmStaleETag() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-2\"");
+        BDDMockito.given(service.findByID("1"))
+                .willReturn(Optional.of(this.filmDTO()));
+
+        this.mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, "\"v-1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v-2\""));
+    }
+
+    @Test
+    public void testFindAllFilmsFields() throws Exception {
+        BDDMockito.given(service.findPage(null, Pages.DEFAULT_LIMIT, Set.of("id", "nom"))).willReturn(List.of(new FilmDTO("1", "Mon Film", null, null)));
+
+        this.mockMvc.perform(get("/films").param("fields", "nom"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("1"))
+                .andExpect(jsonPath("$[0].nom").value("Mon Film"))
+                .andExpect(jsonPath("$[0].duree").doesNotExist())
+                .andExpect(jsonPath("$[0].seance").doesNotExist());
+    }
+
+    @Test
+    public void testFindOneFilmFields() throws Exception {
+        BDDMockito.given(service.findByID("1", Set.of("id", "duree"))).willReturn(Optional.of(this.filmDTO()));
+
+        this.mockMvc.perform(get("/films/1").param("fields", "duree"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.duree").value(120.0))
+                .andExpect(jsonPath("$.nom").doesNotExist())
+                .andExpect(jsonPath("$.seance").doesNotExist());
+    }
+
+    @Test
+    public void testFindAllFilmsUnknownField() throws Exception {
+        this.mockMvc.perform(get("/films").param("fields", "id,inconnu"))
+                .andExpect(status().isBadRequest());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findPage(any(), anyInt(), any());
+    }
+
+    @Test
+    public void testMgetFilms() throws Exception {
+        String id = this.filmDTO().getId();
+        BDDMockito.given(service.findAllByID(List.of(id, "inconnu")))
+                .willReturn(new MgetDTO<>(List.of(this.filmDTO()), List.of("inconnu")));
+
+        Gson json = new GsonBuilder().create();
+        this.mockMvc.perform(post("/films/_mget")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json.toJson(new MgetRequestDTO(List.of(id, "inconnu")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found[0].id").value(id))
+                .andExpect(jsonPath("$.missing[0]").value("inconnu"));
+    }
+
+    @Test
+    public void testMgetFilmsTooManyIds() throws Exception {
+        String ids = String.join(",", Collections.nCopies(MultiGet.MAX_IDS + 1, "1"));
+        this.mockMvc.perform(get("/films/_mget").param("ids", ids))
+                .andExpect(status().isBadRequest());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findAllByID(any());
+    }
+
+    @Test
+    public void testPatchFilmStaleVersion() throws Exception {
+        BDDMockito.given(service.patch("1", Map.of("duree", 95, "version", 1)))
+                .willThrow(new ConflictException("Le document a été modifié depuis la version 1"));
+
+        this.mockMvc.perform(patch("/films/1")
+                .contentType(Patches.MEDIA_TYPE)
+                .content("{\"duree\": 95, \"version\": 1}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testSearchFilms() throws Exception {
+        BDDMockito.given(service.search("amel", FilmService.SEARCH_DEFAULT_LIMIT))
+                .willReturn(List.of(new FilmTitreDTO("1", "Le Fabuleux Destin d'Amélie Poulain", 122f)));
+
+        this.mockMvc.perform(get("/films/search").param("q", "amel"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("1"))
+                .andExpect(jsonPath("$[0].nom").value("Le Fabuleux Destin d'Amélie Poulain"))
+                .andExpect(jsonPath("$[0].seance").doesNotExist());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findByID(any());
+    }
+
+    /**
+     * Le service simulé accepte chaque élément lu et lui donne l'id "id" + index
+     */
+    private void givenBulkInsertAcceptsAll() {
+        BDDMockito.willAnswer(invocation -> {
+            Iterator<Film> items = invocation.getArgument(0);
+            Consumer<BulkResultDTO> results = invocation.getArgument(1);
+            long index = 0;
+            while (items.hasNext()) {
+                items.next();
+                results.accept(BulkResultDTO.ok(index, "id" + index));
+                index++;
+            }
+            return null;
+        }).given(service).bulkInsert(any(), any());
+    }
+
+    private String[] bulk(String body, String contentType) throws Exception {
+        MvcResult mvcResult = this.mockMvc.perform(post("/films/bulk")
+                        .contentType(contentType)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+    }
+
+}
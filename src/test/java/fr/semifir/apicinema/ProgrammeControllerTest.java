@@ -0,0 +1,92 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.controllers.ProgrammeController;
+import fr.semifir.apicinema.dtos.programme.ProgrammeDTO;
+import fr.semifir.apicinema.entities.ProgrammeFilm;
+import fr.semifir.apicinema.entities.ProgrammeSeance;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.ProgrammeService;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = ProgrammeController.class)
+public class ProgrammeControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ProgrammeService service;
+
+    private ProgrammeDTO programmeDTO () {
+        return new ProgrammeDTO(
+                "1",
+                "2021-12-10",
+                new Date(),
+                List.of(new ProgrammeSeance(
+                        "2",
+                        Date.from(Instant.parse("2021-12-10T20:30:00Z")),
+                        "3",
+                        1,
+                        List.of(new ProgrammeFilm("4", "Mon Film", 120f)))));
+    }
+
+    @Test
+    public void testFindProgramme() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-1\"");
+        BDDMockito.given(service.findByCinema("1", LocalDate.of(2021, 12, 10))).willReturn(this.programmeDTO());
+
+        this.mockMvc.perform(get("/cinemas/1/programme/2021-12-10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v-1\""))
+                .andExpect(jsonPath("$.jour").value("2021-12-10"))
+                .andExpect(jsonPath("$.seances[0].numDeSalle").value(1))
+                .andExpect(jsonPath("$.seances[0].films[0].nom").value("Mon Film"));
+    }
+
+    @Test
+    public void testFindProgrammeToday() throws Exception {
+        LocalDate today = LocalDate.of(2021, 12, 10);
+        BDDMockito.given(service.today()).willReturn(today);
+        BDDMockito.given(service.findByCinema("1", today)).willReturn(this.programmeDTO());
+
+        this.mockMvc.perform(get("/cinemas/1/programme"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cinemaId").value("1"));
+    }
+
+    @Test
+    public void testFindProgrammeWrongCinema() throws Exception {
+        BDDMockito.given(service.findByCinema("2", LocalDate.of(2021, 12, 10)))
+                .willThrow(new NotFoundException("Le cinema n'a pas été trouvé"));
+
+        this.mockMvc.perform(get("/cinemas/2/programme/2021-12-10"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testFindProgrammeNotModified() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-1\"");
+
+        this.mockMvc.perform(get("/cinemas/1/programme/2021-12-10").header(HttpHeaders.IF_NONE_MATCH, "\"v-1\""))
+                .andExpect(status().isNotModified());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findByCinema(any(), any());
+    }
+}
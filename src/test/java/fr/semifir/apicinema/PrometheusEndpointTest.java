@@ -0,0 +1,34 @@
+package fr.semifir.apicinema;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Les exports de métriques sont coupés par défaut dans les tests, @AutoConfigureMetrics les remet
+@SpringBootTest(properties = "apicinema.mongo.server-selection-timeout=200ms")
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class PrometheusEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testScrapeHttpServerRequests() throws Exception {
+        this.mockMvc.perform(get("/monitoring/caches"))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("uri=\"/monitoring/caches\"")));
+    }
+}
@@ -0,0 +1,126 @@
+package fr.semifir.apicinema;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import fr.semifir.apicinema.controllers.reactive.ReactiveCinemaController;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.reactive.ReactiveCinemaService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = ReactiveCinemaController.class)
+@ActiveProfiles("reactive")
+public class ReactiveCinemaControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReactiveCinemaService service;
+
+    private CinemaDTO cinemaDTO () {
+        return new CinemaDTO("1", "Cinéma 1");
+    }
+    private CinemaDTO cinemaDTO2 () {
+        return new CinemaDTO("2", "Cinéma 2");
+    }
+
+    @Test
+    public void testFindAllCinemasNextCursor() throws Exception {
+        BDDMockito.given(service.findPage(null, 2))
+                .willReturn(Flux.just(this.cinemaDTO(), this.cinemaDTO2()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/cinemas").param("limit", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Pages.NEXT_CURSOR_HEADER, "2"))
+                .andExpect(jsonPath("$[1].id").value("2"));
+    }
+
+    @Test
+    public void testFindOneCinema() throws Exception {
+        BDDMockito.given(service.findByID("1"))
+                .willReturn(Mono.just(this.cinemaDTO()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/cinemas/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"));
+    }
+
+    @Test
+    public void testFindOneCinemaWrongId() throws Exception {
+        BDDMockito.given(service.findByID("3"))
+                .willReturn(Mono.error(new NotFoundException("introuvable")));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/cinemas/3"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testStreamCinemas() throws Exception {
+        BDDMockito.given(service.stream())
+                .willReturn(Flux.just(this.cinemaDTO(), this.cinemaDTO2()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/cinemas/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[1].contains("\"id\":\"2\""));
+    }
+
+    @Test
+    public void testSaveCinema() throws Exception {
+        BDDMockito.given(service.save(any(Cinema.class)))
+                .willReturn(Mono.just(this.cinemaDTO()));
+
+        Gson json = new GsonBuilder().create();
+        MvcResult mvcResult = this.mockMvc.perform(post("/reactive/cinemas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.toJson(this.cinemaDTO())))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"));
+    }
+}
@@ -0,0 +1,127 @@
+package fr.semifir.apicinema;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import fr.semifir.apicinema.controllers.reactive.ReactiveFilmController;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.reactive.ReactiveFilmService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = ReactiveFilmController.class)
+@ActiveProfiles("reactive")
+public class ReactiveFilmControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReactiveFilmService service;
+
+    private FilmDTO filmDTO () {
+        return new FilmDTO("1", "Mon Film 1", 120f, new Seance());
+    }
+    private FilmDTO filmDTO2 () {
+        return new FilmDTO("2", "Mon Film 2", 120f, new Seance());
+    }
+
+    @Test
+    public void testFindAllFilmsNextCursor() throws Exception {
+        BDDMockito.given(service.findPage(null, 2))
+                .willReturn(Flux.just(this.filmDTO(), this.filmDTO2()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/films").param("limit", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Pages.NEXT_CURSOR_HEADER, "2"))
+                .andExpect(jsonPath("$[1].id").value("2"));
+    }
+
+    @Test
+    public void testFindOneFilm() throws Exception {
+        BDDMockito.given(service.findByID("1"))
+                .willReturn(Mono.just(this.filmDTO()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/films/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"));
+    }
+
+    @Test
+    public void testFindOneFilmWrongId() throws Exception {
+        BDDMockito.given(service.findByID("3"))
+                .willReturn(Mono.error(new NotFoundException("introuvable")));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/films/3"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testStreamFilms() throws Exception {
+        BDDMockito.given(service.stream())
+                .willReturn(Flux.just(this.filmDTO(), this.filmDTO2()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/films/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[1].contains("\"id\":\"2\""));
+    }
+
+    @Test
+    public void testSaveFilm() throws Exception {
+        BDDMockito.given(service.save(any(Film.class)))
+                .willReturn(Mono.just(this.filmDTO()));
+
+        Gson json = new GsonBuilder().create();
+        MvcResult mvcResult = this.mockMvc.perform(post("/reactive/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.toJson(this.filmDTO())))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"));
+    }
+}
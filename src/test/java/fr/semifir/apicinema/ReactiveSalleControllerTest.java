@@ -0,0 +1,127 @@
+package fr.semifir.apicinema;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import fr.semifir.apicinema.controllers.reactive.ReactiveSalleController;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.reactive.ReactiveSalleService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = ReactiveSalleController.class)
+@ActiveProfiles("reactive")
+public class ReactiveSalleControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReactiveSalleService service;
+
+    private SalleDTO salleDTO () {
+        return new SalleDTO("1", 1, 100, new Cinema());
+    }
+    private SalleDTO salleDTO2 () {
+        return new SalleDTO("2", 2, 100, new Cinema());
+    }
+
+    @Test
+    public void testFindAllSallesNextCursor() throws Exception {
+        BDDMockito.given(service.findPage(null, 2))
+                .willReturn(Flux.just(this.salleDTO(), this.salleDTO2()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/salles").param("limit", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Pages.NEXT_CURSOR_HEADER, "2"))
+                .andExpect(jsonPath("$[1].id").value("2"));
+    }
+
+    @Test
+    public void testFindOneSalle() throws Exception {
+        BDDMockito.given(service.findByID("1"))
+                .willReturn(Mono.just(this.salleDTO()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/salles/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"));
+    }
+
+    @Test
+    public void testFindOneSalleWrongId() throws Exception {
+        BDDMockito.given(service.findByID("3"))
+                .willReturn(Mono.error(new NotFoundException("introuvable")));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/salles/3"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testStreamSalles() throws Exception {
+        BDDMockito.given(service.stream())
+                .willReturn(Flux.just(this.salleDTO(), this.salleDTO2()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/salles/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[1].contains("\"id\":\"2\""));
+    }
+
+    @Test
+    public void testSaveSalle() throws Exception {
+        BDDMockito.given(service.save(any(Salle.class)))
+                .willReturn(Mono.just(this.salleDTO()));
+
+        Gson json = new GsonBuilder().create();
+        MvcResult mvcResult = this.mockMvc.perform(post("/reactive/salles")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.toJson(this.salleDTO())))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"));
+    }
+}
@@ -0,0 +1,142 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.controllers.reactive.ReactiveSeanceController;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.Pages;
+import fr.semifir.apicinema.services.reactive.ReactiveSeanceService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = ReactiveSeanceController.class)
+@ActiveProfiles("reactive")
+public class ReactiveSeanceControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReactiveSeanceService service;
+
+    private SeanceDTO seanceDTO () {
+        return new SeanceDTO("1", new Date(), new Salle());
+    }
+    private SeanceDTO seanceDTO2 () {
+        return new SeanceDTO("2", new Date(), new Salle());
+    }
+
+    @Test
+    public void testFindAllSeancesNextCursor() throws Exception {
+        BDDMockito.given(service.findPage(null, 2))
+                .willReturn(Flux.just(this.seanceDTO(), this.seanceDTO2()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/seances").param("limit", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Pages.NEXT_CURSOR_HEADER, "2"))
+                .andExpect(jsonPath("$[1].id").value("2"));
+    }
+
+    @Test
+    public void testFindOneSeance() throws Exception {
+        BDDMockito.given(service.findByID("1"))
+                .willReturn(Mono.just(this.seanceDTO()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/seances/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"));
+    }
+
+    @Test
+    public void testFindOneSeanceWrongId() throws Exception {
+        BDDMockito.given(service.findByID("3"))
+                .willReturn(Mono.error(new NotFoundException("introuvable")));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/seances/3"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testStreamSeances() throws Exception {
+        BDDMockito.given(service.stream())
+                .willReturn(Flux.just(this.seanceDTO(), this.seanceDTO2()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/reactive/seances/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[1].contains("\"id\":\"2\""));
+    }
+
+    @Test
+    public void testSaveSeance() throws Exception {
+        BDDMockito.given(service.save(any(Seance.class)))
+                .willReturn(Mono.just(this.seanceDTO()));
+
+        MvcResult mvcResult = this.mockMvc.perform(post("/reactive/seances")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"1\",\"date\":\"2021-12-10T18:00:00.000+00:00\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"));
+    }
+
+    @Test
+    public void testSaveOverlappingSeance() throws Exception {
+        BDDMockito.given(service.save(any(Seance.class)))
+                .willReturn(Mono.error(new ConflictException("La salle est déjà occupée")));
+
+        MvcResult mvcResult = this.mockMvc.perform(put("/reactive/seances")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"1\",\"date\":\"2021-12-10T18:00:00.000+00:00\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isConflict());
+    }
+}
@@ -0,0 +1,114 @@
+package fr.semifir.apicinema;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import fr.semifir.apicinema.controllers.ReservationController;
+import fr.semifir.apicinema.dtos.reservation.PlacesRestantesDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationRequestDTO;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.ReservationService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = ReservationController.class)
+public class ReservationControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReservationService service;
+
+    private ReservationDTO reservationDTO () {
+        return new ReservationDTO(
+                "10",
+                "1",
+                List.of(3, 4),
+                new Date());
+    }
+
+    @Test
+    public void testReserve() throws Exception {
+        BDDMockito.given(service.reserve(eq("1"), any(ReservationRequestDTO.class)))
+                .willReturn(this.reservationDTO());
+
+        Gson json = new GsonBuilder().create();
+        String body = json.toJson(new ReservationRequestDTO(List.of(3, 4), null));
+        MvcResult mvcResult = this.mockMvc.perform(post("/seances/1/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        ReservationDTO result = new GsonBuilder().setDateFormat("yyyy-MM-dd").create()
+                .fromJson(mvcResult.getResponse().getContentAsString(), ReservationDTO.class);
+        Assertions.assertEquals(result.getId(), this.reservationDTO().getId());
+        Assertions.assertEquals(result.getPlaces(), this.reservationDTO().getPlaces());
+    }
+
+    @Test
+    public void testReserveUnavailable() throws Exception {
+        BDDMockito.given(service.reserve(eq("1"), any(ReservationRequestDTO.class)))
+                .willThrow(new ConflictException("complet"));
+
+        Gson json = new GsonBuilder().create();
+        this.mockMvc.perform(post("/seances/1/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json.toJson(new ReservationRequestDTO(null, 2))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testReserveWrongSeance() throws Exception {
+        BDDMockito.given(service.reserve(eq("2"), any(ReservationRequestDTO.class)))
+                .willThrow(new NotFoundException("absente"));
+
+        Gson json = new GsonBuilder().create();
+        this.mockMvc.perform(post("/seances/2/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json.toJson(new ReservationRequestDTO(null, 2))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testReserveWrongPlace() throws Exception {
+        BDDMockito.given(service.reserve(eq("1"), any(ReservationRequestDTO.class)))
+                .willThrow(new IllegalArgumentException("place"));
+
+        Gson json = new GsonBuilder().create();
+        this.mockMvc.perform(post("/seances/1/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json.toJson(new ReservationRequestDTO(List.of(500), null))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testRemaining() throws Exception {
+        BDDMockito.given(service.remaining("1"))
+                .willReturn(new PlacesRestantesDTO("1", 100, 98));
+
+        this.mockMvc.perform(get("/seances/1/reservations/remaining"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nbrPlace").value(100))
+                .andExpect(jsonPath("$.nbrPlaceRestante").value(98));
+    }
+}
@@ -3,9 +3,17 @@ package fr.semifir.apicinema;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import fr.semifir.apicinema.controllers.SalleController;
+import fr.semifir.apicinema.controllers.Patches;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
 import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.mget.MgetRequestDTO;
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
 import fr.semifir.apicinema.entities.Cinema;
 import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.MultiGet;
+import fr.semifir.apicinema.services.Pages;
 import fr.semifir.apicinema.services.SalleService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -13,14 +21,25 @@ import org.mockito.BDDMockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -142,11 +161,229 @@ public class SalleControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testFindAllSallesNextCursor() throws Exception {
+        BDDMockito.given(service.findPage(null, 1))
+                .willReturn(List.of(this.salleDTO()));
+
+        this.mockMvc.perform(get("/salles").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Pages.NEXT_CURSOR_HEADER, this.salleDTO().getId()))
+                .andExpect(jsonPath("$[0].id").value(this.salleDTO().getId()));
+    }
 
+    @Test
+    public void testFindAllSallesLastPage() throws Exception {
+        BDDMockito.given(service.findPage("1", 10))
+                .willReturn(List.of(this.salleTOUpdate()));
 
+        this.mockMvc.perform(get("/salles").param("after", "1").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(Pages.NEXT_CURSOR_HEADER));
+    }
 
+    @Test
+    public void testStreamSalles() throws Exception {
+        BDDMockito.given(service.stream())
+                .willReturn(Stream.of(this.salleDTO(), this.salleTOUpdate()));
 
+        MvcResult mvcResult = this.mockMvc.perform(get("/salles/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
 
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
 
-}
+        Gson json = new GsonBuilder().create();
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals(json.fromJson(lines[1], SalleDTO.class).getNbrPlace(), this.salleTOUpdate().getNbrPlace());
+    }
+
+    @Test
+    public void testBulkSalles() throws Exception {
+        this.givenBulkInsertAcceptsAll();
+
+        String[] lines = this.bulk("[{\"numDeSalle\":1,\"nbrPlace\":100},{\"numDeSalle\":2,\"nbrPlace\":80}]", MediaType.APPLICATION_JSON_VALUE);
+
+        Gson json = new GsonBuilder().create();
+        Assertions.assertEquals(2, lines.length);
+        BulkResultDTO result = json.fromJson(lines[1], BulkResultDTO.class);
+        Assertions.assertEquals(1, result.getIndex());
+        Assertions.assertEquals("id1", result.getId());
+        Assertions.assertEquals(BulkResultDTO.OK, result.getStatus());
+    }
+
+    @Test
+    public void testFindAllSallesNotModified() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-1\"");
+
+        this.mockMvc.perform(get("/salles").header(HttpHeaders.IF_NONE_MATCH, "\"v-1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v-1\""));
+
+        BDDMockito.then(service).should(BDDMockito.never()).findPage(any(), anyInt());
+    }
 
+    @Test
+    public void testFindOneSalleStaleETag() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-2\"");
+        BDDMockito.given(service.findByID("1"))
+                .willReturn(Optional.of(this.salleDTO()));
+
+        this.mockMvc.perform(get("/salles/1").header(HttpHeaders.IF_NONE_MATCH, "\"v-1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v-2\""));
+    }
+
+    @Test
+    public void testFindAllSallesFields() throws Exception {
+        BDDMockito.given(service.findPage(null, Pages.DEFAULT_LIMIT, Set.of("id", "numDeSalle"))).willReturn(List.of(new SalleDTO("1", 1, 0, null)));
+
+        this.mockMvc.perform(get("/salles").param("fields", "numDeSalle"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("1"))
+                .andExpect(jsonPath("$[0].numDeSalle").value(1))
+                .andExpect(jsonPath("$[0].nbrPlace").doesNotExist())
+                .andExpect(jsonPath("$[0].cinema").doesNotExist());
+    }
+
+    @Test
+    public void testFindOneSalleFields() throws Exception {
+        BDDMockito.given(service.findByID("1", Set.of("id", "nbrPlace"))).willReturn(Optional.of(this.salleDTO()));
+
+        this.mockMvc.perform(get("/salles/1").param("fields", "nbrPlace"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nbrPlace").value(100))
+                .andExpect(jsonPath("$.numDeSalle").doesNotExist())
+                .andExpect(jsonPath("$.cinema").doesNotExist());
+    }
+
+    @Test
+    public void testFindAllSallesUnknownField() throws Exception {
+        this.mockMvc.perform(get("/salles").param("fields", "id,inconnu"))
+                .andExpect(status().isBadRequest());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findPage(any(), anyInt(), any());
+    }
+
+    @Test
+    public void testMgetSalles() throws Exception {
+        String id = this.salleDTO().getId();
+        BDDMockito.given(service.findAllByID(List.of(id, "inconnu")))
+                .willReturn(new MgetDTO<>(List.of(this.salleDTO()), List.of("inconnu")));
+
+        Gson json = new GsonBuilder().create();
+        this.mockMvc.perform(post("/salles/_mget")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json.toJson(new MgetRequestDTO(List.of(id, "inconnu")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found[0].id").value(id))
+                .andExpect(jsonPath("$.missing[0]").value("inconnu"));
+    }
+
+    @Test
+    public void testMgetSallesTooManyIds() throws Exception {
+        String ids = String.join(",", Collections.nCopies(MultiGet.MAX_IDS + 1, "1"));
+        this.mockMvc.perform(get("/salles/_mget").param("ids", ids))
+                .andExpect(status().isBadRequest());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findAllByID(any());
+    }
+
+    @Test
+    public void testPatchSalle() throws Exception {
+        BDDMockito.given(service.patch("1", Map.of("$inc", Map.of("nbrPlace", 10))))
+                .willReturn(new PatchedDTO<>(this.salleTOUpdate(), 1));
+
+        this.mockMvc.perform(patch("/salles/1")
+                .contentType(Patches.MEDIA_TYPE)
+                .content("{\"$inc\": {\"nbrPlace\": 10}}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Patches.VERSION_HEADER, "1"))
+                .andExpect(jsonPath("$.nbrPlace").value(110));
+    }
+
+    @Test
+    public void testPatchSalleNotFound() throws Exception {
+        BDDMockito.given(service.patch(any(), any()))
+                .willThrow(new NotFoundException("Le salle n'a pas été trouvé"));
+
+        this.mockMvc.perform(patch("/salles/inconnu")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nbrPlace\": 120}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testDeleteSalleById() throws Exception {
+        this.mockMvc.perform(delete("/salles/1"))
+                .andExpect(status().isOk());
+
+        BDDMockito.then(service).should().deleteByID("1");
+    }
+
+    @Test
+    public void testDeleteSalleByIdNotFound() throws Exception {
+        BDDMockito.willThrow(new NotFoundException("Le salle n'a pas été trouvé"))
+                .given(service).deleteByID("inconnu");
+
+        this.mockMvc.perform(delete("/salles/inconnu"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testDeleteSallesByIds() throws Exception {
+        BDDMockito.given(service.deleteAllByID(List.of("1", "2", "3")))
+                .willReturn(2L);
+
+        this.mockMvc.perform(delete("/salles").param("ids", "1,2,3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(2));
+    }
+
+    @Test
+    public void testDeleteSallesTooManyIds() throws Exception {
+        String ids = String.join(",", Collections.nCopies(MultiGet.MAX_IDS + 1, "1"));
+        this.mockMvc.perform(delete("/salles").param("ids", ids))
+                .andExpect(status().isBadRequest());
+
+        BDDMockito.then(service).should(BDDMockito.never()).deleteAllByID(any());
+    }
+
+    /**
+     * Le service simulé accepte chaque élément lu et lui donne l'id "id" + index
+     */
+    private void givenBulkInsertAcceptsAll() {
+        BDDMockito.willAnswer(invocation -> {
+            Iterator<Salle> items = invocation.getArgument(0);
+            Consumer<BulkResultDTO> results = invocation.getArgument(1);
+            long index = 0;
+            while (items.hasNext()) {
+                items.next();
+                results.accept(BulkResultDTO.ok(index, "id" + index));
+                index++;
+            }
+            return null;
+        }).given(service).bulkInsert(any(), any());
+    }
+
+    private String[] bulk(String body, String contentType) throws Exception {
+        MvcResult mvcResult = this.mockMvc.perform(post("/salles/bulk")
+                        .contentType(contentType)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+    }
+
+}
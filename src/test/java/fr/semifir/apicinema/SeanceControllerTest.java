@@ -3,9 +3,17 @@ package fr.semifir.apicinema;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import fr.semifir.apicinema.controllers.SeanceController;
+import fr.semifir.apicinema.controllers.Patches;
+import fr.semifir.apicinema.dtos.bulk.BulkResultDTO;
 import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.dtos.mget.MgetDTO;
+import fr.semifir.apicinema.dtos.mget.MgetRequestDTO;
+import fr.semifir.apicinema.dtos.patch.PatchedDTO;
 import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.services.MultiGet;
+import fr.semifir.apicinema.services.Pages;
 import fr.semifir.apicinema.services.SeanceService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -13,15 +21,27 @@ import org.mockito.BDDMockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Instant;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -92,6 +112,18 @@ public class SeanceControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testSaveSeanceOverlap() throws Exception {
+        BDDMockito.given(service.save(any()))
+                .willThrow(new ConflictException("La salle est déjà occupée"));
+
+        Gson json = new GsonBuilder().setDateFormat("yyyy-MM-dd").create();
+        this.mockMvc.perform(post("/seances")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json.toJson(this.seanceDTO())))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     public void testUpdateSeance() throws Exception {
         SeanceDTO seanceDTO = this.seanceDTO();
@@ -135,5 +167,213 @@ public class SeanceControllerTest {
                 .andExpect(status().isOk());
     }
 
-}
+    @Test
+    public void testFindAllSeancesNextCursor() throws Exception {
+        BDDMockito.given(service.findPage(null, 1))
+                .willReturn(List.of(this.seanceDTO()));
+
+        this.mockMvc.perform(get("/seances").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Pages.NEXT_CURSOR_HEADER, this.seanceDTO().getId()))
+                .andExpect(jsonPath("$[0].id").value(this.seanceDTO().getId()));
+    }
+
+    @Test
+    public void testFindAllSeancesLastPage() throws Exception {
+        BDDMockito.given(service.findPage("1", 10))
+                .willReturn(List.of(this.seanceDTOUpdate()));
+
+        this.mockMvc.perform(get("/seances").param("after", "1").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(Pages.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void testStreamSeances() throws Exception {
+        BDDMockito.given(service.stream())
+                .willReturn(Stream.of(this.seanceDTO(), this.seanceDTOUpdate()));
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/seances/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+
+        Gson json = new GsonBuilder().setDateFormat("yyyy-MM-dd").create();
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals(json.fromJson(lines[1], SeanceDTO.class).getId(), this.seanceDTOUpdate().getId());
+    }
+
+    @Test
+    public void testBulkSeances() throws Exception {
+        this.givenBulkInsertAcceptsAll();
+
+        String[] lines = this.bulk("[{\"date\":\"2021-12-10T18:00:00.000+00:00\"},{\"date\":\"2021-12-10T21:00:00.000+00:00\"}]", MediaType.APPLICATION_JSON_VALUE);
+
+        Gson json = new GsonBuilder().create();
+        Assertions.assertEquals(2, lines.length);
+        BulkResultDTO result = json.fromJson(lines[1], BulkResultDTO.class);
+        Assertions.assertEquals(1, result.getIndex());
+        Assertions.assertEquals("id1", result.getId());
+        Assertions.assertEquals(BulkResultDTO.OK, result.getStatus());
+    }
+
+    @Test
+    public void testFindAllSeancesNotModified() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-1\"");
+
+        this.mockMvc.perform(get("/seances").header(HttpHeaders.IF_NONE_MATCH, "\"v-1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v-1\""));
+
+        BDDMockito.then(service).should(BDDMockito.never()).findPage(any(), anyInt());
+    }
+
+    @Test
+    public void testFindOneSeanceStaleETag() throws Exception {
+        BDDMockito.given(service.etag()).willReturn("\"v-2\"");
+        BDDMockito.given(service.findByID("1"))
+                .willReturn(Optional.of(this.seanceDTO()));
+
+        this.mockMvc.perform(get("/seances/1").header(HttpHeaders.IF_NONE_MATCH, "\"v-1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v-2\""));
+    }
+
+    @Test
+    public void testFindAllSeancesFields() throws Exception {
+        BDDMockito.given(service.findPage(null, Pages.DEFAULT_LIMIT, Set.of("id", "date"))).willReturn(List.of(this.seanceDTO()));
+
+        this.mockMvc.perform(get("/seances").param("fields", "date"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("1"))
+                .andExpect(jsonPath("$[0].date").exists())
+                .andExpect(jsonPath("$[0].salle").doesNotExist());
+    }
+
+    @Test
+    public void testFindOneSeanceFields() throws Exception {
+        BDDMockito.given(service.findByID("1", Set.of("id"))).willReturn(Optional.of(this.seanceDTO()));
+
+        this.mockMvc.perform(get("/seances/1").param("fields", "id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1"))
+                .andExpect(jsonPath("$.date").doesNotExist())
+                .andExpect(jsonPath("$.salle").doesNotExist());
+    }
+
+    @Test
+    public void testFindAllSeancesUnknownField() throws Exception {
+        this.mockMvc.perform(get("/seances").param("fields", "id,inconnu"))
+                .andExpect(status().isBadRequest());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findPage(any(), anyInt(), any());
+    }
+
+    @Test
+    public void testMgetSeances() throws Exception {
+        String id = this.seanceDTO().getId();
+        BDDMockito.given(service.findAllByID(List.of(id, "inconnu")))
+                .willReturn(new MgetDTO<>(List.of(this.seanceDTO()), List.of("inconnu")));
+
+        Gson json = new GsonBuilder().create();
+        this.mockMvc.perform(post("/seances/_mget")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json.toJson(new MgetRequestDTO(List.of(id, "inconnu")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found[0].id").value(id))
+                .andExpect(jsonPath("$.missing[0]").value("inconnu"));
+    }
+
+    @Test
+    public void testMgetSeancesTooManyIds() throws Exception {
+        String ids = String.join(",", Collections.nCopies(MultiGet.MAX_IDS + 1, "1"));
+        this.mockMvc.perform(get("/seances/_mget").param("ids", ids))
+                .andExpect(status().isBadRequest());
+
+        BDDMockito.then(service).should(BDDMockito.never()).findAllByID(any());
+    }
+
+    @Test
+    public void testPatchSeance() throws Exception {
+        BDDMockito.given(service.patch("1", Map.of("date", "2021-12-24T20:30:00.000+00:00", "version", 3)))
+                .willReturn(new PatchedDTO<>(this.seanceDTO(), 4));
 
+        this.mockMvc.perform(patch("/seances/1")
+                .contentType(Patches.MEDIA_TYPE)
+                .content("{\"date\": \"2021-12-24T20:30:00.000+00:00\", \"version\": 3}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Patches.VERSION_HEADER, "4"))
+                .andExpect(jsonPath("$.id").value("1"));
+    }
+
+    @Test
+    public void testPatchSeanceOverlap() throws Exception {
+        BDDMockito.given(service.patch(any(), any()))
+                .willThrow(new ConflictException("La salle est déjà occupée"));
+
+        this.mockMvc.perform(patch("/seances/1")
+                .contentType(Patches.MEDIA_TYPE)
+                .content("{\"salle\": {\"id\": \"2\"}}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testPatchSeanceInvalid() throws Exception {
+        BDDMockito.given(service.patch(any(), any()))
+                .willThrow(new IllegalArgumentException("Champ inconnu : places"));
+
+        this.mockMvc.perform(patch("/seances/1")
+                .contentType(Patches.MEDIA_TYPE)
+                .content("{\"places\": 3}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testDeleteSeancesBefore() throws Exception {
+        BDDMockito.given(service.deleteBefore(Date.from(Instant.parse("2022-01-01T00:00:00Z"))))
+                .willReturn(12L);
+
+        this.mockMvc.perform(delete("/seances").param("before", "2022-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(12));
+    }
+
+    /**
+     * Le service simulé accepte chaque élément lu et lui donne l'id "id" + index
+     */
+    private void givenBulkInsertAcceptsAll() {
+        BDDMockito.willAnswer(invocation -> {
+            Iterator<Seance> items = invocation.getArgument(0);
+            Consumer<BulkResultDTO> results = invocation.getArgument(1);
+            long index = 0;
+            while (items.hasNext()) {
+                items.next();
+                results.accept(BulkResultDTO.ok(index, "id" + index));
+                index++;
+            }
+            return null;
+        }).given(service).bulkInsert(any(), any());
+    }
+
+    private String[] bulk(String body, String contentType) throws Exception {
+        MvcResult mvcResult = this.mockMvc.perform(post("/seances/bulk")
+                        .contentType(contentType)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+    }
+
+}
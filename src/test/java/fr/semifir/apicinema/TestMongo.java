@@ -0,0 +1,73 @@
+package fr.semifir.apicinema;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import fr.semifir.apicinema.monitoring.MongoCommandCounter;
+import fr.semifir.apicinema.repositories.DbRefBatchLoader;
+import fr.semifir.apicinema.repositories.FilmRepositoryCustom;
+import fr.semifir.apicinema.repositories.FilmRepositoryCustomImpl;
+import fr.semifir.apicinema.repositories.ProgrammeRepositoryCustom;
+import fr.semifir.apicinema.repositories.ProgrammeRepositoryCustomImpl;
+import fr.semifir.apicinema.repositories.SalleRepositoryCustom;
+import fr.semifir.apicinema.repositories.SalleRepositoryCustomImpl;
+import fr.semifir.apicinema.repositories.SeanceRepositoryCustom;
+import fr.semifir.apicinema.repositories.SeanceRepositoryCustomImpl;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Mongo en mémoire (mongo-java-server) pour les tests des services et des repositories,
+ * avec les commandes envoyées comptées par collection
+ */
+public class TestMongo implements AutoCloseable {
+
+    private final MongoServer server;
+    private final MongoClient client;
+    public final MongoCommandCounter commands = new MongoCommandCounter();
+    public final MongoTemplate template;
+    private final MongoRepositoryFactory repositories;
+
+    public TestMongo() {
+        this.server = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = this.server.bind();
+        this.client = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString("mongodb://" + address.getHostString() + ":" + address.getPort()))
+                .addCommandListener(this.commands)
+                .build());
+        this.template = new MongoTemplate(this.client, "cinemas");
+        this.repositories = new MongoRepositoryFactory(this.template);
+    }
+
+    /**
+     * Repository Spring Data, avec les fragments custom de l'application (sans ReferenceData)
+     * @param repositoryType
+     * @return
+     */
+    public <R> R repository(Class<R> repositoryType) {
+        DbRefBatchLoader loader = new DbRefBatchLoader(this.template);
+        RepositoryFragments fragments = RepositoryFragments.empty();
+        if (SalleRepositoryCustom.class.isAssignableFrom(repositoryType)) {
+            fragments = RepositoryFragments.just(new SalleRepositoryCustomImpl(loader));
+        } else if (SeanceRepositoryCustom.class.isAssignableFrom(repositoryType)) {
+            fragments = RepositoryFragments.just(new SeanceRepositoryCustomImpl(loader, this.template));
+        } else if (FilmRepositoryCustom.class.isAssignableFrom(repositoryType)) {
+            fragments = RepositoryFragments.just(new FilmRepositoryCustomImpl(loader, this.template));
+        } else if (ProgrammeRepositoryCustom.class.isAssignableFrom(repositoryType)) {
+            fragments = RepositoryFragments.just(new ProgrammeRepositoryCustomImpl(this.template));
+        }
+        return this.repositories.getRepository(repositoryType, fragments);
+    }
+
+    @Override
+    public void close() {
+        this.client.close();
+        this.server.shutdownNow();
+    }
+}
@@ -0,0 +1,145 @@
+package fr.semifir.apicinema.configurations;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.services.CachedLoads;
+import fr.semifir.apicinema.services.CollectionVersions;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Une écriture d'une collection embarquée retire des caches qui l'embarquent les entrées qui la référencent, avant que l'ETag change
+ */
+public class CacheConfigurationTest {
+
+    private Cache<String, CinemaDTO> cinemas;
+    private Cache<String, SalleDTO> salles;
+    private Cache<String, SeanceDTO> seances;
+    private Cache<String, FilmDTO> films;
+    private CollectionVersions versions;
+
+    @BeforeEach
+    public void setUp() {
+        CacheConfiguration configuration = new CacheConfiguration();
+        configuration.maximumSize = 100;
+        configuration.ttl = Duration.ofMinutes(5);
+        this.cinemas = configuration.cinemaCache();
+        this.salles = configuration.salleCache();
+        this.seances = configuration.seanceCache();
+        this.films = configuration.filmCache();
+        this.versions = configuration.collectionVersions(this.salles, this.seances, this.films);
+
+        Cinema cinema = new Cinema("c", "Rex");
+        Salle salle = new Salle("s", 1, 80, cinema);
+        Seance seance = new Seance("se", new Date(), salle);
+        this.cinemas.put("c", new CinemaDTO("c", "Rex"));
+        this.salles.put("s", new SalleDTO("s", 1, 80, cinema));
+        this.seances.put("se", new SeanceDTO("se", new Date(), salle));
+        this.films.put("f", new FilmDTO("f", "Film", 90f, seance));
+
+        Cinema autreCinema = new Cinema("c2", "Lumière");
+        Salle autreSalle = new Salle("s2", 2, 60, autreCinema);
+        Seance autreSeance = new Seance("se2", new Date(), autreSalle);
+        this.salles.put("s2", new SalleDTO("s2", 2, 60, autreCinema));
+        this.seances.put("se2", new SeanceDTO("se2", new Date(), autreSalle));
+        this.films.put("f2", new FilmDTO("f2", "Autre film", 90f, autreSeance));
+        this.films.put("f3", new FilmDTO("f3", "Sans séance", 90f, null));
+    }
+
+    @Test
+    public void testCinemaWriteEvictsEntriesEmbeddingIt() {
+        this.versions.bump(Cinema.class, List.of("c"));
+
+        Assertions.assertNotNull(this.cinemas.getIfPresent("c"));
+        Assertions.assertNull(this.salles.getIfPresent("s"));
+        Assertions.assertNull(this.seances.getIfPresent("se"));
+        Assertions.assertNull(this.films.getIfPresent("f"));
+        Assertions.assertNotNull(this.salles.getIfPresent("s2"));
+        Assertions.assertNotNull(this.seances.getIfPresent("se2"));
+        Assertions.assertNotNull(this.films.getIfPresent("f2"));
+        Assertions.assertNotNull(this.films.getIfPresent("f3"));
+    }
+
+    @Test
+    public void testWriteWithoutIdsEmptiesEmbeddingCaches() {
+        this.versions.bump(Cinema.class);
+
+        Assertions.assertEquals(0, this.salles.estimatedSize());
+        Assertions.assertEquals(0, this.seances.estimatedSize());
+        Assertions.assertEquals(0, this.films.estimatedSize());
+    }
+
+    @Test
+    public void testSalleWriteKeepsCinemasAndSalles() {
+        this.versions.bump(Salle.class, List.of("s"));
+
+        Assertions.assertNotNull(this.salles.getIfPresent("s"));
+        Assertions.assertNull(this.seances.getIfPresent("se"));
+        Assertions.assertNull(this.films.getIfPresent("f"));
+        Assertions.assertNotNull(this.seances.getIfPresent("se2"));
+        Assertions.assertNotNull(this.films.getIfPresent("f2"));
+    }
+
+    @Test
+    public void testSeanceWriteEvictsItsFilms() {
+        this.versions.bump(Seance.class, List.of("se"));
+
+        Assertions.assertNotNull(this.seances.getIfPresent("se"));
+        Assertions.assertNull(this.films.getIfPresent("f"));
+        Assertions.assertNotNull(this.films.getIfPresent("f2"));
+    }
+
+    @Test
+    public void testFilmWriteKeepsOtherCaches() {
+        this.versions.bump(Film.class, List.of("f"));
+
+        Assertions.assertNotNull(this.seances.getIfPresent("se"));
+        Assertions.assertNotNull(this.films.getIfPresent("f"));
+    }
+
+    @Test
+    public void testCacheEmptiedBeforeVersionChanges() {
+        String before = this.versions.etag(Seance.class, Salle.class, Cinema.class);
+        this.versions.onBump(Salle.class, ids -> Assertions.assertEquals(before, this.versions.etag(Seance.class, Salle.class, Cinema.class)));
+
+        this.versions.bump(Salle.class, List.of("s"));
+
+        Assertions.assertNotEquals(before, this.versions.etag(Seance.class, Salle.class, Cinema.class));
+    }
+
+    @Test
+    public void testLoadRacingAWriteIsNotKept() {
+        this.seances.invalidate("se");
+
+        SeanceDTO loaded = CachedLoads.get(this.seances, "se", id -> {
+            SeanceDTO stale = new SeanceDTO("se", new Date(), new Salle("s", 1, 80, new Cinema("c", "Rex")));
+            // La salle est écrite pendant la lecture : son éviction passe avant que l'entrée soit mise
+            this.versions.bump(Salle.class, List.of("s"));
+            return stale;
+        }, this.versions, Seance.class, Salle.class, Cinema.class);
+
+        Assertions.assertNotNull(loaded);
+        Assertions.assertNull(this.seances.getIfPresent("se"));
+    }
+
+    @Test
+    public void testLoadWithoutWriteIsKept() {
+        this.seances.invalidate("se");
+
+        CachedLoads.get(this.seances, "se", id -> new SeanceDTO("se", new Date(), null), this.versions, Seance.class, Salle.class, Cinema.class);
+
+        Assertions.assertNotNull(this.seances.getIfPresent("se"));
+    }
+}
@@ -0,0 +1,144 @@
+package fr.semifir.apicinema.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.semifir.apicinema.TestMongo;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Les remplacements de BulkWriter incrémentent la version des documents, comme les patchs de PatchWriter
+ */
+public class BulkWriterTest {
+
+    private TestMongo mongo;
+    private MongoTemplate template;
+    private BulkWriter writer;
+    private PatchWriter patchWriter;
+
+    @BeforeEach
+    public void setUp() {
+        this.mongo = new TestMongo();
+        this.template = this.mongo.template;
+        this.writer = new BulkWriter(this.template, 2);
+        this.patchWriter = new PatchWriter(this.template, new DbRefBatchLoader(this.template), new ObjectMapper());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.mongo.close();
+    }
+
+    @Test
+    public void testReplaceInsertsAtVersionZero() throws ConflictException {
+        Cinema cinema = this.writer.replace(Cinema.class, new Cinema(null, "Rex"));
+
+        Assertions.assertNotNull(cinema.getId());
+        Assertions.assertEquals(0L, this.stored(cinema.getId()).getVersion());
+    }
+
+    @Test
+    public void testReplaceWithoutVersionBumpsStoredVersion() throws ConflictException {
+        Cinema cinema = this.writer.replace(Cinema.class, new Cinema(null, "Rex"));
+
+        Cinema replaced = this.writer.replace(Cinema.class, new Cinema(cinema.getId(), "Grand Rex"));
+
+        Assertions.assertEquals(1L, replaced.getVersion());
+        Cinema stored = this.stored(cinema.getId());
+        Assertions.assertEquals("Grand Rex", stored.getNom());
+        Assertions.assertEquals(1L, stored.getVersion());
+    }
+
+    @Test
+    public void testReplaceWithCurrentVersion() throws ConflictException {
+        Cinema cinema = this.writer.replace(Cinema.class, new Cinema(null, "Rex"));
+
+        this.writer.replace(Cinema.class, new Cinema(cinema.getId(), "Grand Rex", 0L));
+
+        Assertions.assertEquals(1L, this.stored(cinema.getId()).getVersion());
+    }
+
+    @Test
+    public void testReplaceWithStaleVersionIsRefused() throws ConflictException {
+        Cinema cinema = this.writer.replace(Cinema.class, new Cinema(null, "Rex"));
+        this.writer.replace(Cinema.class, new Cinema(cinema.getId(), "Grand Rex", 0L));
+
+        Cinema stale = new Cinema(cinema.getId(), "Lumière", 0L);
+        Assertions.assertThrows(ConflictException.class, () -> this.writer.replace(Cinema.class, stale));
+
+        Assertions.assertEquals(0L, stale.getVersion());
+        Cinema stored = this.stored(cinema.getId());
+        Assertions.assertEquals("Grand Rex", stored.getNom());
+        Assertions.assertEquals(1L, stored.getVersion());
+    }
+
+    @Test
+    public void testReplaceOfDocumentWrittenBeforeVersions() throws ConflictException {
+        this.template.getCollection(this.template.getCollectionName(Cinema.class)).insertOne(new Document("_id", "c1").append("nom", "Rex"));
+
+        this.writer.replace(Cinema.class, new Cinema("c1", "Grand Rex", 0L));
+
+        Assertions.assertEquals(1L, this.stored("c1").getVersion());
+    }
+
+    @Test
+    public void testPatchAfterReplaceNeedsNewVersion() throws ConflictException {
+        Cinema cinema = this.writer.replace(Cinema.class, new Cinema(null, "Rex"));
+        this.writer.replace(Cinema.class, new Cinema(cinema.getId(), "Grand Rex"));
+
+        PatchWriter.Patch stale = this.patchWriter.parse(Cinema.class, cinema.getId(), Map.of("nom", "Lumière", "version", 0));
+        Assertions.assertThrows(ConflictException.class, () -> this.patchWriter.apply(stale, DbRefBatchLoader::cinemas));
+
+        PatchWriter.Patch current = this.patchWriter.parse(Cinema.class, cinema.getId(), Map.of("nom", "Lumière", "version", 1));
+        Assertions.assertEquals(2L, this.patchWriter.apply(current, DbRefBatchLoader::cinemas).getVersion());
+    }
+
+    @Test
+    public void testPatchCannotSetVersion() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> this.patchWriter.parse(Cinema.class, "c1", Map.of("$inc", Map.of("version", 1))));
+    }
+
+    @Test
+    public void testReplaceAllBumpsVersions() throws ConflictException {
+        Cinema first = this.writer.replace(Cinema.class, new Cinema(null, "Rex"));
+        this.writer.replace(Cinema.class, new Cinema(first.getId(), "Grand Rex"));
+        Cinema second = this.writer.replace(Cinema.class, new Cinema(null, "Lumière"));
+
+        List<Cinema> failed = this.writer.replaceAll(Cinema.class, List.of(
+                new Cinema(first.getId(), "Rex"),
+                new Cinema(second.getId(), "Lumière 2"),
+                new Cinema("c3", "Nouveau")));
+
+        Assertions.assertTrue(failed.isEmpty());
+        Assertions.assertEquals(2L, this.stored(first.getId()).getVersion());
+        Assertions.assertEquals(1L, this.stored(second.getId()).getVersion());
+        Assertions.assertEquals(0L, this.stored("c3").getVersion());
+    }
+
+    @Test
+    public void testDeleteWhereRemovesMatchingDocuments() throws ConflictException {
+        Cinema rex = this.writer.replace(Cinema.class, new Cinema(null, "Rex"));
+        this.writer.replace(Cinema.class, new Cinema(null, "Lumière"));
+        this.writer.replace(Cinema.class, new Cinema(null, "Lux"));
+
+        long deleted = this.writer.deleteWhere(Cinema.class, Criteria.where("nom").ne("Rex"));
+
+        Assertions.assertEquals(2, deleted);
+        Assertions.assertEquals(List.of(rex.getId()), this.template.findAll(Cinema.class).stream().map(Cinema::getId).collect(Collectors.toList()));
+    }
+
+    private Cinema stored(String id) {
+        return this.template.findById(DbRefBatchLoader.toObjectId(id), Cinema.class);
+    }
+}
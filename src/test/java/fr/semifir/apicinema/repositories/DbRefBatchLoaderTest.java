@@ -0,0 +1,104 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.TestMongo;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.mappers.FilmMapper;
+import fr.semifir.apicinema.monitoring.MongoCommandCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * DbRefBatchLoader contre un Mongo en mémoire : mêmes entités que la résolution @DBRef de Spring Data,
+ * en une requête $in par niveau de référence
+ */
+public class DbRefBatchLoaderTest {
+
+    private TestMongo mongo;
+    private MongoTemplate template;
+    private MongoCommandCounter commands;
+    private final FilmMapper mapper = Mappers.getMapper(FilmMapper.class);
+
+    @BeforeEach
+    public void setUp() {
+        this.mongo = new TestMongo();
+        this.template = this.mongo.template;
+        this.commands = this.mongo.commands;
+
+        List<Cinema> cinemas = List.of(new Cinema(null, "Rex"), new Cinema(null, "Lumière"));
+        this.template.insertAll(cinemas);
+        List<Salle> salles = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            salles.add(new Salle(null, i + 1, 80 + i, cinemas.get(i % cinemas.size())));
+        }
+        this.template.insertAll(salles);
+        List<Seance> seances = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            seances.add(new Seance(null, new Date(1_700_000_000_000L + i * 3_600_000L), salles.get(i % salles.size())));
+        }
+        this.template.insertAll(seances);
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            films.add(new Film(null, "Film " + i, 90f + i, i % 5 == 0 ? null : seances.get(i % seances.size())));
+        }
+        this.template.insertAll(films);
+        this.commands.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.mongo.close();
+    }
+
+    @Test
+    public void testFilmsResolvedLikeDbRef() {
+        List<FilmDTO> expected = this.toDTOs(this.template.findAll(Film.class));
+
+        DbRefBatchLoader loader = new DbRefBatchLoader(this.template);
+        this.commands.reset();
+        List<FilmDTO> batched = this.toDTOs(loader.films(loader.findAll(Film.class)));
+
+        Assertions.assertEquals(expected, batched);
+        Assertions.assertEquals(1, this.commands.count("find", "film"));
+        Assertions.assertEquals(1, this.commands.count("find", "seance"));
+        Assertions.assertEquals(1, this.commands.count("find", "salle"));
+        Assertions.assertEquals(1, this.commands.count("find", "cinema"));
+    }
+
+    @Test
+    public void testFilmsFromReferenceData() {
+        ReferenceData references = new ReferenceData(this.template, true, Duration.ZERO);
+        references.load();
+        DbRefBatchLoader loader = new DbRefBatchLoader(this.template, references);
+        List<FilmDTO> expected = this.toDTOs(this.template.findAll(Film.class));
+
+        this.commands.reset();
+        List<FilmDTO> batched = this.toDTOs(loader.films(loader.findAll(Film.class)));
+
+        Assertions.assertEquals(expected, batched);
+        // Salles et cinémas sont pris dans l'instantané
+        Assertions.assertEquals(1, this.commands.count("find", "seance"));
+        Assertions.assertEquals(0, this.commands.count("find", "salle"));
+        Assertions.assertEquals(0, this.commands.count("find", "cinema"));
+    }
+
+    private List<FilmDTO> toDTOs(List<Film> films) {
+        List<FilmDTO> dtos = new ArrayList<>();
+        films.forEach(film -> dtos.add(this.mapper.toDTO(film)));
+        dtos.sort(Comparator.comparing(FilmDTO::getId));
+        return dtos;
+    }
+}
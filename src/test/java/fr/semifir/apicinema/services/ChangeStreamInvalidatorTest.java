@@ -0,0 +1,331 @@
+package fr.semifir.apicinema.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.DBRef;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import fr.semifir.apicinema.TestMongo;
+import fr.semifir.apicinema.configurations.CacheConfiguration;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * ChangeStreamInvalidator avec des événements construits à la main : apply directement,
+ * et la boucle du change stream sur un curseur simulé pour les reprises impossibles
+ */
+public class ChangeStreamInvalidatorTest {
+
+    private static final String NODE = "test-node";
+    // Ids des éléments mis en cache, au format des documents Mongo
+    private static final String C1 = new ObjectId().toHexString();
+    private static final String S1 = new ObjectId().toHexString();
+    private static final String SE1 = new ObjectId().toHexString();
+    private static final BsonDocument SAVED_TOKEN = new BsonDocument("_data", new BsonString("saved"));
+
+    private TestMongo mongo;
+    private MongoTemplate template;
+    private Cache<String, CinemaDTO> cinemaCache;
+    private Cache<String, SalleDTO> salleCache;
+    private Cache<String, SeanceDTO> seanceCache;
+    private Cache<String, FilmDTO> filmCache;
+    private FilmTitleIndex titles;
+    private SeanceSchedule schedule;
+    private ReferenceData references;
+    private CollectionVersions versions;
+    private ChangeStreamInvalidator invalidator;
+
+    @BeforeEach
+    public void setUp() {
+        this.mongo = new TestMongo();
+        this.template = Mockito.spy(this.mongo.template);
+        this.cinemaCache = Caffeine.newBuilder().build();
+        this.salleCache = Caffeine.newBuilder().build();
+        this.seanceCache = Caffeine.newBuilder().build();
+        this.filmCache = Caffeine.newBuilder().build();
+        this.titles = Mockito.mock(FilmTitleIndex.class);
+        this.schedule = Mockito.mock(SeanceSchedule.class);
+        this.references = Mockito.mock(ReferenceData.class);
+        // Les versions branchées sur les caches comme dans l'application
+        this.versions = new CacheConfiguration().collectionVersions(this.salleCache, this.seanceCache, this.filmCache);
+        this.invalidator = new ChangeStreamInvalidator(this.template, this.cinemaCache, this.salleCache, this.seanceCache, this.filmCache,
+                this.titles, this.schedule, this.references, this.versions, NODE, Duration.ofHours(1), Duration.ofMillis(10));
+
+        Cinema cinema = new Cinema(C1, "Rex");
+        Salle salle = new Salle(S1, 1, 80, cinema);
+        Seance seance = new Seance(SE1, new Date(), salle);
+        this.cinemaCache.put(C1, new CinemaDTO(C1, "Rex"));
+        this.salleCache.put(S1, new SalleDTO(S1, 1, 80, cinema));
+        this.salleCache.put("s2", new SalleDTO("s2", 2, 40, cinema));
+        this.seanceCache.put(SE1, new SeanceDTO(SE1, new Date(), salle));
+        this.filmCache.put("f1", new FilmDTO("f1", "Amélie", 120f, seance));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.invalidator.close();
+        this.mongo.close();
+    }
+
+    private ChangeStreamDocument<Document> change(OperationType operation, Class<?> entity, ObjectId id, Document document) {
+        BsonDocument namespace = new BsonDocument("db", new BsonString("cinemas"))
+                .append("coll", new BsonString(this.template.getCollectionName(entity)));
+        BsonDocument key = new BsonDocument("_id", new BsonObjectId(id));
+        return new ChangeStreamDocument<>(operation, new BsonDocument("_data", new BsonString("next")),
+                namespace, null, document, key, null, null, null, null);
+    }
+
+    @Test
+    public void testSalleUpdateEvictsItsSeancesAndFilms() {
+        ObjectId salleId = new ObjectId(S1);
+        ObjectId cinemaId = new ObjectId();
+        this.seanceCache.put("se2", new SeanceDTO("se2", new Date(), new Salle("s2", 2, 40, new Cinema(C1, "Rex"))));
+        String etag = this.versions.etag(Seance.class, Salle.class, Cinema.class);
+        Document document = new Document("_id", salleId)
+                .append("numSalle", 3)
+                .append("nbrPlace", 120)
+                .append("cinema", new DBRef("cinema", cinemaId));
+
+        this.invalidator.apply(this.change(OperationType.UPDATE, Salle.class, salleId, document));
+
+        Assertions.assertNull(this.salleCache.getIfPresent(salleId.toHexString()));
+        Assertions.assertNotNull(this.salleCache.getIfPresent("s2"));
+        Assertions.assertNull(this.seanceCache.getIfPresent(SE1));
+        Assertions.assertNull(this.filmCache.getIfPresent("f1"));
+        Assertions.assertNotNull(this.seanceCache.getIfPresent("se2"));
+        Assertions.assertNotNull(this.cinemaCache.getIfPresent(C1));
+        Assertions.assertNotEquals(etag, this.versions.etag(Seance.class, Salle.class, Cinema.class));
+        ArgumentCaptor<Collection<Salle>> salles = salleCaptor();
+        Mockito.verify(this.references).putSalles(salles.capture());
+        Salle salle = salles.getValue().iterator().next();
+        Assertions.assertEquals(120, salle.getNbrPlace());
+        Assertions.assertEquals(cinemaId.toHexString(), salle.getCinema().getId());
+    }
+
+    @Test
+    public void testCinemaDeleteEvictsEmbeddingEntries() {
+        ObjectId cinemaId = new ObjectId(C1);
+        this.cinemaCache.put("c2", new CinemaDTO("c2", "Lux"));
+        this.salleCache.put("s3", new SalleDTO("s3", 1, 60, new Cinema("c2", "Lux")));
+
+        this.invalidator.apply(this.change(OperationType.DELETE, Cinema.class, cinemaId, null));
+
+        Mockito.verify(this.references).removeCinema(C1);
+        Assertions.assertNull(this.cinemaCache.getIfPresent(C1));
+        Assertions.assertNotNull(this.cinemaCache.getIfPresent("c2"));
+        Assertions.assertNotNull(this.salleCache.getIfPresent("s3"));
+        Assertions.assertNull(this.salleCache.getIfPresent(S1));
+        Assertions.assertNull(this.seanceCache.getIfPresent(SE1));
+        Assertions.assertNull(this.filmCache.getIfPresent("f1"));
+    }
+
+    @Test
+    public void testSeanceUpdateReplacesSlot() {
+        ObjectId seanceId = new ObjectId(SE1);
+        ObjectId salleId = new ObjectId();
+        Date date = new Date(3_600_000L);
+        Document document = new Document("_id", seanceId)
+                .append("date", date)
+                .append("salle", new DBRef("salle", salleId));
+
+        this.invalidator.apply(this.change(OperationType.REPLACE, Seance.class, seanceId, document));
+
+        Mockito.verify(this.schedule).replace(seanceId.toHexString(), salleId.toHexString(), date);
+        Assertions.assertNotNull(this.salleCache.getIfPresent(S1));
+        Assertions.assertNull(this.filmCache.getIfPresent("f1"));
+    }
+
+    @Test
+    public void testSeanceDeleteFreesSlot() {
+        ObjectId seanceId = new ObjectId();
+
+        this.invalidator.apply(this.change(OperationType.DELETE, Seance.class, seanceId, null));
+
+        Mockito.verify(this.schedule).remove(seanceId.toHexString());
+    }
+
+    @Test
+    public void testFilmInsertIndexesTitleAndLength() {
+        ObjectId filmId = new ObjectId();
+        ObjectId seanceId = new ObjectId();
+        Document document = new Document("_id", filmId)
+                .append("nom", "Brazil")
+                .append("duree", 142.0)
+                .append("seance", new DBRef("seance", seanceId));
+
+        this.invalidator.apply(this.change(OperationType.INSERT, Film.class, filmId, document));
+
+        Mockito.verify(this.titles).put(new Film(filmId.toHexString(), "Brazil", 142f, null));
+        Mockito.verify(this.schedule).replaceDuree(filmId.toHexString(), seanceId.toHexString(), 142f);
+        Assertions.assertNotNull(this.seanceCache.getIfPresent(SE1));
+    }
+
+    @Test
+    public void testFilmDeleteRemovesTitleAndLength() {
+        ObjectId filmId = new ObjectId();
+
+        this.invalidator.apply(this.change(OperationType.DELETE, Film.class, filmId, null));
+
+        Mockito.verify(this.titles).remove(filmId.toHexString());
+        Mockito.verify(this.schedule).removeFilm(filmId.toHexString());
+    }
+
+    @Test
+    public void testInvalidateReloadsEverything() {
+        this.invalidator.apply(new ChangeStreamDocument<>(OperationType.INVALIDATE, null, null, null, null, null, null, null, null, null));
+
+        assertReloaded();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {286, 280, 260})
+    public void testResumeFailedReloadsAndRestartsFromNow(int code) {
+        Watch watch = this.watch();
+        BDDMockito.given(watch.resumed.cursor()).willThrow(commandException(code));
+
+        this.invalidator.start();
+
+        Mockito.verify(this.references, Mockito.timeout(5000)).load();
+        Mockito.verify(watch.fromNow, Mockito.timeout(5000)).cursor();
+        this.invalidator.close();
+        Mockito.verify(watch.fromNow, Mockito.times(1)).resumeAfter(any());
+        assertReloaded();
+    }
+
+    @Test
+    public void testOtherErrorRetriesFromToken() {
+        Watch watch = this.watch();
+        BDDMockito.given(watch.resumed.cursor()).willThrow(commandException(6));
+
+        this.invalidator.start();
+
+        Mockito.verify(watch.resumed, Mockito.timeout(5000).atLeast(2)).cursor();
+        this.invalidator.close();
+        Mockito.verify(this.references, Mockito.never()).load();
+        Mockito.verify(watch.fromNow, Mockito.never()).cursor();
+    }
+
+    @Test
+    public void testCloseSavesLastToken() {
+        Watch watch = this.watch();
+        BsonDocument latest = new BsonDocument("_data", new BsonString("latest"));
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = idleCursor();
+        BDDMockito.given(cursor.getResumeToken()).willReturn(latest);
+        BDDMockito.given(watch.resumed.cursor()).willReturn(cursor);
+
+        this.invalidator.start();
+
+        Mockito.verify(cursor, Mockito.timeout(5000).atLeast(2)).tryNext();
+        this.invalidator.close();
+        ArgumentCaptor<BsonDocument> saved = ArgumentCaptor.forClass(BsonDocument.class);
+        Mockito.verify(watch.tokens, Mockito.atLeastOnce()).replaceOne(any(Bson.class), saved.capture(), any());
+        Assertions.assertEquals(latest, saved.getValue().getDocument("token"));
+    }
+
+    private void assertReloaded() {
+        Mockito.verify(this.references).load();
+        Mockito.verify(this.titles).load();
+        Mockito.verify(this.schedule).load();
+        Assertions.assertNull(this.cinemaCache.getIfPresent(C1));
+        Assertions.assertNull(this.salleCache.getIfPresent(S1));
+        Assertions.assertNull(this.seanceCache.getIfPresent(SE1));
+        Assertions.assertNull(this.filmCache.getIfPresent("f1"));
+    }
+
+    /**
+     * Change stream simulé : un jeton enregistré pour NODE, resumed pour la reprise depuis ce jeton,
+     * fromNow pour le flux sans jeton, dont le curseur reste sans événement
+     */
+    private static final class Watch {
+        MongoCollection<BsonDocument> tokens;
+        ChangeStreamIterable<Document> fromNow;
+        ChangeStreamIterable<Document> resumed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Watch watch() {
+        Watch watch = new Watch();
+        MongoDatabase db = Mockito.mock(MongoDatabase.class);
+        Mockito.doReturn(db).when(this.template).getDb();
+
+        watch.tokens = Mockito.mock(MongoCollection.class);
+        FindIterable<BsonDocument> found = Mockito.mock(FindIterable.class);
+        BDDMockito.given(db.getCollection(ChangeStreamInvalidator.TOKENS_COLLECTION, BsonDocument.class)).willReturn(watch.tokens);
+        BDDMockito.given(watch.tokens.find(any(Bson.class))).willReturn(found);
+        BDDMockito.given(found.first()).willReturn(new BsonDocument("_id", new BsonString(NODE)).append("token", SAVED_TOKEN));
+
+        watch.fromNow = Mockito.mock(ChangeStreamIterable.class);
+        watch.resumed = Mockito.mock(ChangeStreamIterable.class);
+        BDDMockito.given(db.watch(anyList())).willReturn(watch.fromNow);
+        BDDMockito.given(watch.fromNow.fullDocument(any())).willReturn(watch.fromNow);
+        BDDMockito.given(watch.fromNow.maxAwaitTime(anyLong(), any())).willReturn(watch.fromNow);
+        BDDMockito.given(watch.fromNow.resumeAfter(eq(SAVED_TOKEN))).willReturn(watch.resumed);
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = idleCursor();
+        BDDMockito.given(watch.fromNow.cursor()).willReturn(cursor);
+        return watch;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoChangeStreamCursor<ChangeStreamDocument<Document>> idleCursor() {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = Mockito.mock(MongoChangeStreamCursor.class);
+        // maxAwaitTime simulé : le curseur attend un peu avant de rendre la main sans événement
+        BDDMockito.given(cursor.tryNext()).willAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(10);
+            return null;
+        });
+        return cursor;
+    }
+
+    private static MongoCommandException commandException(int code) {
+        return new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(code))
+                .append("errmsg", new BsonString("resume failed")), new ServerAddress());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Collection<Salle>> salleCaptor() {
+        return ArgumentCaptor.forClass(Collection.class);
+    }
+}
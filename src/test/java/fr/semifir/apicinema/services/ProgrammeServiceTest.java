@@ -0,0 +1,107 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.TestMongo;
+import fr.semifir.apicinema.dtos.programme.ProgrammeDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Programme;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.ProgrammeMapper;
+import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.ProgrammeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Seuls les programmes avec des séances sont enregistrés : une lecture d'un jour vide ne crée pas de document
+ */
+public class ProgrammeServiceTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Paris");
+    private static final LocalDate JOUR = LocalDate.of(2021, 12, 10);
+
+    private TestMongo mongo;
+    private ProgrammeRepository repository;
+    private ProgrammeService service;
+    private Salle salle;
+
+    @BeforeEach
+    public void setUp() {
+        this.mongo = new TestMongo();
+        this.repository = this.mongo.repository(ProgrammeRepository.class);
+        this.service = new ProgrammeService(this.repository, this.mongo.repository(CinemaRepository.class),
+                Mappers.getMapper(ProgrammeMapper.class), new CollectionVersions(), ZONE);
+        Cinema cinema = this.mongo.template.insert(new Cinema(null, "Rex"));
+        this.salle = this.mongo.template.insert(new Salle(null, 1, 80, cinema));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.mongo.close();
+    }
+
+    private Seance seance() {
+        return this.mongo.template.insert(new Seance(null, Date.from(JOUR.atTime(20, 0).atZone(ZONE).toInstant()), this.salle));
+    }
+
+    @Test
+    public void testEmptyDayIsNotStored() throws NotFoundException {
+        for (int i = 0; i < 30; i++) {
+            ProgrammeDTO programme = this.service.findByCinema(this.salle.getCinema().getId(), JOUR.plusDays(i));
+            Assertions.assertTrue(programme.getSeances().isEmpty());
+        }
+
+        Assertions.assertEquals(0, this.repository.count());
+    }
+
+    @Test
+    public void testDayWithSeancesIsStored() throws NotFoundException {
+        Seance seance = this.seance();
+
+        ProgrammeDTO programme = this.service.findByCinema(this.salle.getCinema().getId(), JOUR);
+
+        Assertions.assertEquals(1, programme.getSeances().size());
+        String id = Programme.id(this.salle.getCinema().getId(), JOUR);
+        Assertions.assertEquals(seance.getId(), this.repository.findById(id).get().getSeances().get(0).getSeanceId());
+    }
+
+    @Test
+    public void testProgrammeLeftEmptyIsDeleted() throws NotFoundException {
+        Seance seance = this.seance();
+        this.service.findByCinema(this.salle.getCinema().getId(), JOUR);
+        String id = Programme.id(this.salle.getCinema().getId(), JOUR);
+        Assertions.assertTrue(this.repository.existsById(id));
+
+        this.mongo.template.remove(seance);
+        this.service.seancesChanged(List.of(seance.getId()));
+
+        Assertions.assertFalse(this.repository.existsById(id));
+    }
+
+    @Test
+    public void testSeancesBeforeRebuildsProgrammesThatContainThem() throws NotFoundException {
+        Seance seance = this.seance();
+        this.service.findByCinema(this.salle.getCinema().getId(), JOUR);
+        this.service.findByCinema(this.salle.getCinema().getId(), JOUR.plusDays(1));
+        String id = Programme.id(this.salle.getCinema().getId(), JOUR);
+
+        this.mongo.template.remove(seance);
+        this.service.seancesBefore(Date.from(JOUR.plusDays(1).atStartOfDay(ZONE).toInstant()));
+
+        Assertions.assertFalse(this.repository.existsById(id));
+    }
+
+    @Test
+    public void testUnknownCinema() {
+        Assertions.assertThrows(NotFoundException.class, () -> this.service.findByCinema("inconnu", JOUR));
+    }
+}
@@ -0,0 +1,122 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.TestMongo;
+import fr.semifir.apicinema.dtos.reservation.ReservationDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationRequestDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Reservation;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.ReservationRepository;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+public class ReservationServiceTest {
+
+    private TestMongo mongo;
+    private ReservationService service;
+    private Salle petite;
+    private Salle grande;
+    private Seance seance;
+
+    @BeforeEach
+    public void setUp() {
+        this.mongo = new TestMongo();
+        Cinema cinema = this.mongo.template.insert(new Cinema(null, "Rex"));
+        this.petite = this.mongo.template.insert(new Salle(null, 1, 10, cinema));
+        this.grande = this.mongo.template.insert(new Salle(null, 2, 100, cinema));
+        this.seance = this.mongo.template.insert(new Seance(null, new Date(), this.petite));
+        // Pas d'écriture automatique : les tests appellent flush
+        this.service = new ReservationService(
+                this.mongo.repository(ReservationRepository.class),
+                this.mongo.repository(SeanceRepository.class),
+                new BulkWriter(this.mongo.template, 1000),
+                500,
+                Duration.ofHours(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.service.close();
+        this.mongo.close();
+    }
+
+    @Test
+    public void testFlushWritesPastADuplicate() {
+        ReservationDTO first = this.service.reserve(this.seance.getId(), new ReservationRequestDTO(List.of(1), null));
+        ReservationDTO second = this.service.reserve(this.seance.getId(), new ReservationRequestDTO(List.of(2), null));
+        // La première a déjà été écrite par un passage interrompu
+        this.mongo.template.insert(new Reservation(first.getId(), this.seance.getId(), List.of(1), first.getDate()));
+
+        this.service.flush();
+
+        Assertions.assertEquals(2, this.mongo.template.count(new Query(), Reservation.class));
+        Assertions.assertNotNull(this.mongo.template.findById(second.getId(), Reservation.class));
+        // Rien n'est resté en attente
+        this.mongo.commands.reset();
+        this.service.flush();
+        Assertions.assertEquals(0, this.mongo.commands.count("insert", "reservation"));
+    }
+
+    @Test
+    public void testSalleResizedRebuildsSeatMap() {
+        this.service.reserve(this.seance.getId(), new ReservationRequestDTO(List.of(1, 2), null));
+        Assertions.assertEquals(8, this.service.remaining(this.seance.getId()).getNbrPlaceRestante());
+
+        this.petite.setNbrPlace(20);
+        this.mongo.template.save(this.petite);
+        this.service.sallesChanged(List.of(this.petite.getId()));
+
+        // Les réservations encore en attente sont reprises dans le nouveau plan
+        Assertions.assertEquals(20, this.service.remaining(this.seance.getId()).getNbrPlace());
+        Assertions.assertEquals(18, this.service.remaining(this.seance.getId()).getNbrPlaceRestante());
+        Assertions.assertThrows(ConflictException.class,
+                () -> this.service.reserve(this.seance.getId(), new ReservationRequestDTO(List.of(2), null)));
+        Assertions.assertNotNull(this.service.reserve(this.seance.getId(), new ReservationRequestDTO(List.of(15), null)));
+    }
+
+    @Test
+    public void testSeanceMovedToAnotherSalle() {
+        this.service.reserve(this.seance.getId(), new ReservationRequestDTO(null, 3));
+        this.service.flush();
+
+        this.seance.setSalle(this.grande);
+        this.mongo.template.save(this.seance);
+        this.service.seancesChanged(List.of(this.seance.getId()));
+
+        Assertions.assertEquals(100, this.service.remaining(this.seance.getId()).getNbrPlace());
+        Assertions.assertEquals(97, this.service.remaining(this.seance.getId()).getNbrPlaceRestante());
+    }
+
+    @Test
+    public void testSeanceDeletedForgetsSeatMap() {
+        this.service.reserve(this.seance.getId(), new ReservationRequestDTO(null, 1));
+
+        this.mongo.template.remove(this.seance);
+        this.service.seancesChanged(List.of(this.seance.getId()));
+
+        Assertions.assertThrows(NotFoundException.class, () -> this.service.remaining(this.seance.getId()));
+    }
+
+    @Test
+    public void testOtherSallesKeepTheirSeatMap() {
+        this.service.reserve(this.seance.getId(), new ReservationRequestDTO(null, 1));
+        this.mongo.commands.reset();
+
+        this.service.sallesChanged(List.of(this.grande.getId()));
+        this.service.remaining(this.seance.getId());
+
+        Assertions.assertEquals(0, this.mongo.commands.count("find", "seance"));
+    }
+}
@@ -0,0 +1,232 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.repositories.FilmRepository;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+public class SeanceScheduleTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private SeanceSchedule schedule;
+
+    @BeforeEach
+    public void setUp() {
+        // Mongo vide : les créneaux ne viennent que des place de chaque test
+        this.schedule = new SeanceSchedule(Mockito.mock(SeanceRepository.class), Mockito.mock(FilmRepository.class), Duration.ofMinutes(60));
+        this.schedule.load();
+    }
+
+    private static Seance seance(String id, String salleId, long startMinute) {
+        return new Seance(id, new Date(startMinute * MINUTE), new Salle(salleId, 1, 100, null));
+    }
+
+    private static SeanceSchedule.Slot slot(String seanceId, long startMinute, long endMinute) {
+        return new SeanceSchedule.Slot(seanceId, "s1", startMinute * MINUTE, endMinute * MINUTE);
+    }
+
+    @Test
+    public void testPlaceRejectsOverlap() {
+        this.schedule.place(seance("a", "s1", 0));
+
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(seance("b", "s1", 30)));
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(seance("c", "s1", -30)));
+        this.schedule.place(seance("d", "s2", 30));
+    }
+
+    @Test
+    public void testRemoveBeforeFreesOnlyEarlierSlots() {
+        this.schedule.place(seance("a", "s1", 0));
+        this.schedule.place(seance("b", "s2", 30));
+        this.schedule.place(seance("c", "s1", 120));
+
+        Assertions.assertEquals(Set.of("a", "b"), new HashSet<>(this.schedule.removeBefore(new Date(60 * MINUTE))));
+
+        this.schedule.place(seance("d", "s1", 0));
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(seance("e", "s1", 150)));
+    }
+
+    @Test
+    public void testPlaceAcceptsEdgeTouchingSlots() {
+        this.schedule.place(seance("a", "s1", 60));
+
+        this.schedule.place(seance("b", "s1", 120));
+        this.schedule.place(seance("c", "s1", 0));
+    }
+
+    @Test
+    public void testPlaceMovesSeanceWithoutConflictingWithItself() {
+        this.schedule.place(seance("a", "s1", 0));
+
+        this.schedule.place(seance("a", "s1", 30));
+
+        this.schedule.place(seance("b", "s1", -30));
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(seance("c", "s1", 60)));
+    }
+
+    @Test
+    public void testPlaceToAnotherSalleFreesTheOldOne() {
+        this.schedule.place(seance("a", "s1", 0));
+
+        this.schedule.place(seance("a", "s2", 0));
+
+        this.schedule.place(seance("b", "s1", 0));
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(seance("c", "s2", 0)));
+    }
+
+    @Test
+    public void testRestorePutsBackThePreviousSlot() {
+        this.schedule.place(seance("a", "s1", 0));
+        SeanceSchedule.Slot previous = this.schedule.place(seance("a", "s1", 120));
+
+        // l'écriture dans Mongo a échoué : la séance est toujours à 0
+        this.schedule.restore("a", previous);
+
+        this.schedule.place(seance("b", "s1", 120));
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(seance("c", "s1", 0)));
+    }
+
+    @Test
+    public void testRestoreWithoutPreviousSlotFreesTheNewOne() {
+        SeanceSchedule.Slot previous = this.schedule.place(seance("a", "s1", 0));
+        Assertions.assertNull(previous);
+
+        this.schedule.restore("a", null);
+
+        this.schedule.place(seance("b", "s1", 0));
+    }
+
+    @Test
+    public void testRemoveFreesTheSlot() {
+        this.schedule.place(seance("a", "s1", 0));
+
+        this.schedule.remove("a");
+
+        this.schedule.place(seance("b", "s1", 0));
+    }
+
+    @Test
+    public void testSetDureeStretchesTheSlot() {
+        this.schedule.place(seance("a", "s1", 0));
+
+        // le film de a dure maintenant 2 h : b ne peut plus prendre 90
+        this.schedule.setDuree("f1", "a", 120f);
+
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(seance("b", "s1", 90)));
+        this.schedule.setDuree("f1", "a", 30f);
+        this.schedule.place(seance("b", "s1", 30));
+    }
+
+    @Test
+    public void testSetDureeRefusesOverlapWithNextSeance() {
+        this.schedule.place(seance("a", "s1", 0));
+        this.schedule.place(seance("b", "s1", 90));
+
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.setDuree("f1", "a", 120f));
+
+        // le créneau de a garde la durée par défaut
+        this.schedule.remove("b");
+        this.schedule.place(seance("c", "s1", 60));
+    }
+
+    @Test
+    public void testSetDureeBeforePlaceIsKeptForTheSeance() {
+        this.schedule.setDuree("f1", "a", 10f);
+
+        this.schedule.place(seance("a", "s1", 0));
+
+        this.schedule.place(seance("b", "s1", 10));
+    }
+
+    @Test
+    public void testFilmMovedToAnotherSeanceResetsTheOldOne() {
+        this.schedule.place(seance("a", "s1", 0));
+        this.schedule.setDuree("f1", "a", 120f);
+
+        this.schedule.setDuree("f1", "x", 120f);
+
+        this.schedule.place(seance("b", "s1", 60));
+    }
+
+    @Test
+    public void testSeanceLastsAsLongAsItsLongestFilm() {
+        this.schedule.place(seance("a", "s1", 0));
+        this.schedule.setDuree("f1", "a", 120f);
+        this.schedule.setDuree("f2", "a", 30f);
+
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(seance("b", "s1", 90)));
+        this.schedule.removeFilm("f1");
+        this.schedule.place(seance("b", "s1", 30));
+    }
+
+    @Test
+    public void testRestoreGivesBackPreviousDuree() {
+        this.schedule.place(seance("a", "s1", 0));
+        this.schedule.setDuree("f1", "a", 30f);
+
+        SeanceSchedule.FilmDuree previous = this.schedule.setDuree("f1", "a", 120f);
+        this.schedule.restore(previous);
+
+        this.schedule.place(seance("b", "s1", 30));
+    }
+
+    @Test
+    public void testReplaceDureeIsNotRefused() {
+        this.schedule.place(seance("a", "s1", 0));
+        this.schedule.place(seance("b", "s1", 90));
+
+        // écrit par une autre instance, déjà vérifié par elle
+        this.schedule.replaceDuree("f1", "a", 120f);
+
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(seance("c", "s1", 60)));
+    }
+
+    @Test
+    public void testOverlappingEdges() {
+        SeanceSchedule.SalleSlots salle = new SeanceSchedule.SalleSlots();
+        salle.add(slot("a", 60, 120));
+
+        Assertions.assertNull(salle.overlapping(slot("b", 0, 60)));
+        Assertions.assertNull(salle.overlapping(slot("b", 120, 180)));
+        Assertions.assertEquals("a", salle.overlapping(slot("b", 119, 180)).seanceId);
+        Assertions.assertEquals("a", salle.overlapping(slot("b", 0, 61)).seanceId);
+        Assertions.assertEquals("a", salle.overlapping(slot("b", 70, 80)).seanceId);
+        Assertions.assertNull(salle.overlapping(slot("a", 70, 80)));
+    }
+
+    @Test
+    public void testOverlappingFindsLongSlotStartedWellBefore() {
+        SeanceSchedule.SalleSlots salle = new SeanceSchedule.SalleSlots();
+        salle.add(slot("long", 0, 300));
+        salle.add(slot("short", 100, 110));
+
+        Assertions.assertEquals("long", salle.overlapping(slot("b", 250, 260)).seanceId);
+    }
+
+    @Test
+    public void testOverlappingAfterLongSlotRemoved() {
+        SeanceSchedule.SalleSlots salle = new SeanceSchedule.SalleSlots();
+        SeanceSchedule.Slot longSlot = slot("long", 0, 300);
+        salle.add(longSlot);
+        salle.add(slot("short", 400, 410));
+
+        salle.remove(longSlot);
+
+        // la fenêtre reste large de 300 minutes : elle ne trouve que des créneaux qui chevauchent vraiment
+        Assertions.assertNull(salle.overlapping(slot("b", 250, 260)));
+        Assertions.assertNull(salle.overlapping(slot("b", 410, 420)));
+        Assertions.assertEquals("short", salle.overlapping(slot("b", 405, 420)).seanceId);
+        Assertions.assertEquals("short", salle.overlapping(slot("b", 300, 401)).seanceId);
+    }
+}
@@ -0,0 +1,123 @@
+package fr.semifir.apicinema.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SeatMapTest {
+
+    @Test
+    public void testClaimAllRollsBackWhenOnePlaceIsTaken() {
+        SeatMap seatMap = new SeatMap(10);
+        Assertions.assertTrue(seatMap.claim(3));
+
+        Assertions.assertFalse(seatMap.claimAll(List.of(1, 2, 3, 4)));
+
+        Assertions.assertEquals(9, seatMap.remaining());
+        Assertions.assertTrue(seatMap.claim(1));
+        Assertions.assertTrue(seatMap.claim(2));
+        Assertions.assertTrue(seatMap.claim(4));
+    }
+
+    @Test
+    public void testClaimAnyRollsBackWhenNotEnoughPlaces() {
+        SeatMap seatMap = new SeatMap(70);
+        for (int place = 1; place <= 68; place++) {
+            seatMap.claim(place);
+        }
+
+        Assertions.assertNull(seatMap.claimAny(3));
+        Assertions.assertEquals(2, seatMap.remaining());
+        Assertions.assertEquals(List.of(69, 70), sorted(seatMap.claimAny(2)));
+        Assertions.assertEquals(0, seatMap.remaining());
+    }
+
+    @Test
+    public void testClaimAnyStaysInsideTheRoom() {
+        // Le dernier mot n'est pas plein : les bits au-delà de nbrPlace ne sont jamais des places
+        SeatMap seatMap = new SeatMap(65);
+        List<Integer> places = seatMap.claimAny(65);
+
+        Assertions.assertEquals(65, places.size());
+        Assertions.assertEquals(65, (int) Collections.max(places));
+        Assertions.assertNull(seatMap.claimAny(1));
+    }
+
+    /**
+     * Des acheteurs concurrents, par places précises ou par nombre, sur une petite salle :
+     * aucune place n'est vendue deux fois, et les places des demandes refusées sont toutes rendues
+     */
+    @Test
+    public void testConcurrentClaimsNeverOverbook() throws Exception {
+        int nbrPlace = 150;
+        SeatMap seatMap = new SeatMap(nbrPlace);
+        ConcurrentLinkedQueue<Integer> sold = new ConcurrentLinkedQueue<>();
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < 500; i++) {
+                    if (random.nextBoolean()) {
+                        List<Integer> wanted = new ArrayList<>();
+                        int first = 1 + random.nextInt(nbrPlace - 3);
+                        for (int place = first; place < first + 1 + random.nextInt(3); place++) {
+                            wanted.add(place);
+                        }
+                        if (seatMap.claimAll(wanted)) {
+                            sold.addAll(wanted);
+                        }
+                    } else {
+                        List<Integer> claimed = seatMap.claimAny(1 + random.nextInt(4));
+                        if (claimed != null) {
+                            sold.addAll(claimed);
+                        }
+                    }
+                    // Des annulations pour que les demandes se croisent jusqu'au bout
+                    if (random.nextInt(10) == 0) {
+                        Integer place = sold.poll();
+                        if (place != null) {
+                            seatMap.release(place);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        List<Integer> places = new ArrayList<>(sold);
+        Assertions.assertEquals(places.size(), places.stream().distinct().count(), "place vendue deux fois");
+        Assertions.assertEquals(nbrPlace - places.size(), seatMap.remaining());
+        for (Integer place : places) {
+            Assertions.assertFalse(seatMap.claim(place), "place vendue mais libre : " + place);
+        }
+        // Toutes les autres places ont été rendues
+        for (int place = 1; place <= nbrPlace; place++) {
+            if (!places.contains(place)) {
+                Assertions.assertTrue(seatMap.claim(place), "place perdue : " + place);
+            }
+        }
+        Assertions.assertEquals(0, seatMap.remaining());
+    }
+
+    private static List<Integer> sorted(List<Integer> places) {
+        List<Integer> copy = new ArrayList<>(places);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,156 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.monitoring.ServiceMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private SimpleMeterRegistry registry;
+    private SingleFlight flight;
+    private ExecutorService callers;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        this.registry = new SimpleMeterRegistry();
+        this.flight = new SingleFlight(new ServiceMetrics(this.registry, "film"));
+        this.callers = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.release.countDown();
+        this.callers.shutdownNow();
+    }
+
+    /**
+     * Lecture bloquée jusqu'à release, qui compte ses appels
+     */
+    private <T> Supplier<T> gated(Supplier<T> result) {
+        return () -> {
+            this.calls.incrementAndGet();
+            try {
+                Assertions.assertTrue(this.release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result.get();
+        };
+    }
+
+    private <T> List<Future<T>> runConcurrently(String method, List<?> key, Supplier<T> call) {
+        List<Future<T>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(this.callers.submit(() -> this.flight.run(method, key, call)));
+        }
+        return results;
+    }
+
+    private double coalesced(String method) {
+        return this.registry.counter(ServiceMetrics.COALESCED, "service", "film", "method", method).count();
+    }
+
+    /**
+     * Tous les appelants sauf le premier attendent la lecture en cours
+     */
+    private void awaitWaiters(String method) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (this.coalesced(method) < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(CALLERS - 1, this.coalesced(method));
+    }
+
+    @Test
+    public void testConcurrentIdenticalCallsShareOneCall() throws Exception {
+        Object shared = new Object();
+
+        List<Future<Object>> results = this.runConcurrently("findByID", List.of("f1", "etag"), this.gated(() -> shared));
+        this.awaitWaiters("findByID");
+        this.release.countDown();
+
+        for (Future<Object> result : results) {
+            Assertions.assertSame(shared, result.get(5, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, this.calls.get());
+    }
+
+    @Test
+    public void testLeaderExceptionReachesEveryWaiter() throws Exception {
+        IllegalStateException failure = new IllegalStateException("Mongo indisponible");
+
+        List<Future<Object>> results = this.runConcurrently("findByID", List.of("f1", "etag"), this.gated(() -> {
+            throw failure;
+        }));
+        this.awaitWaiters("findByID");
+        this.release.countDown();
+
+        for (Future<Object> result : results) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            Assertions.assertSame(failure, e.getCause());
+        }
+        Assertions.assertEquals(1, this.calls.get());
+    }
+
+    @Test
+    public void testKeyReleasedAfterException() {
+        Assertions.assertThrows(IllegalStateException.class, () -> this.flight.run("findByID", List.of("f1"), () -> {
+            this.calls.incrementAndGet();
+            throw new IllegalStateException("Mongo indisponible");
+        }));
+
+        Object result = this.flight.run("findByID", List.of("f1"), () -> {
+            this.calls.incrementAndGet();
+            return "film";
+        });
+
+        Assertions.assertEquals("film", result);
+        Assertions.assertEquals(2, this.calls.get());
+        Assertions.assertEquals(0, this.coalesced("findByID"));
+    }
+
+    @Test
+    public void testKeyReleasedAfterResult() {
+        this.flight.run("findByID", List.of("f1"), () -> this.calls.incrementAndGet());
+        this.flight.run("findByID", List.of("f1"), () -> this.calls.incrementAndGet());
+
+        Assertions.assertEquals(2, this.calls.get());
+    }
+
+    @Test
+    public void testOtherKeyOrMethodNotCoalesced() throws Exception {
+        Future<Object> first = this.callers.submit(() -> this.flight.run("findByID", List.of("f1"), this.gated(() -> "f1")));
+        Future<Object> otherKey = this.callers.submit(() -> this.flight.run("findByID", List.of("f2"), this.gated(() -> "f2")));
+        Future<Object> otherMethod = this.callers.submit(() -> this.flight.run("findByCinema", List.of("f1"), this.gated(() -> "c")));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (this.calls.get() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        this.release.countDown();
+
+        Assertions.assertEquals("f1", first.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("f2", otherKey.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("c", otherMethod.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(3, this.calls.get());
+        Assertions.assertEquals(0, this.coalesced("findByID") + this.coalesced("findByCinema"));
+    }
+}
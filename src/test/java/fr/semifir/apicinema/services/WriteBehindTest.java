@@ -0,0 +1,188 @@
+package fr.semifir.apicinema.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+public class WriteBehindTest {
+
+    /**
+     * Entité de test sans equals : deux versions d'un même id sont deux objets distincts
+     */
+    private static final class Doc {
+        final String id;
+        final int version;
+
+        Doc(String id, int version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+
+    private final List<List<Doc>> batches = new CopyOnWriteArrayList<>();
+    private final List<Doc> written = new CopyOnWriteArrayList<>();
+    private volatile Function<List<Doc>, List<Doc>> writer;
+    private WriteBehind<Doc> writeBehind;
+
+    @BeforeEach
+    public void setUp() {
+        this.writer = batch -> List.of();
+        // Intervalle d'une heure : seuls les flush des tests écrivent
+        this.writeBehind = new WriteBehind<>("test", doc -> doc.id, batch -> {
+            this.batches.add(List.copyOf(batch));
+            return this.writer.apply(batch);
+        }, this.written::addAll, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.writeBehind.close();
+    }
+
+    @Test
+    public void testVersionsOfOneIdCoalesced() {
+        Doc last = new Doc("a", 3);
+        this.writeBehind.submit(new Doc("a", 1));
+        this.writeBehind.submit(new Doc("b", 1));
+        this.writeBehind.submit(new Doc("a", 2));
+        this.writeBehind.submit(last);
+
+        this.writeBehind.flush();
+
+        Assertions.assertEquals(1, this.batches.size());
+        Assertions.assertEquals(2, this.batches.get(0).size());
+        Assertions.assertTrue(this.batches.get(0).contains(last));
+        Assertions.assertEquals(0, this.writeBehind.size());
+    }
+
+    @Test
+    public void testPendingEntityReadUntilWritten() {
+        Doc doc = new Doc("a", 1);
+        this.writeBehind.submit(doc);
+
+        Assertions.assertSame(doc, this.writeBehind.get("a"));
+        Assertions.assertNull(this.writeBehind.get("b"));
+
+        this.writeBehind.flush();
+
+        Assertions.assertNull(this.writeBehind.get("a"));
+        Assertions.assertEquals(List.of(doc), this.written);
+    }
+
+    @Test
+    public void testRefusedEntityRequeued() {
+        Doc a = new Doc("a", 1);
+        Doc b = new Doc("b", 1);
+        this.writeBehind.submit(a);
+        this.writeBehind.submit(b);
+        this.writer = batch -> List.of(b);
+
+        this.writeBehind.flush();
+
+        Assertions.assertEquals(List.of(a), this.written);
+        Assertions.assertNull(this.writeBehind.get("a"));
+        Assertions.assertSame(b, this.writeBehind.get("b"));
+
+        this.writer = batch -> List.of();
+        this.writeBehind.flush();
+
+        Assertions.assertEquals(List.of(b), this.batches.get(1));
+        Assertions.assertEquals(0, this.writeBehind.size());
+    }
+
+    @Test
+    public void testFailedFlushKeepsEverything() {
+        Doc doc = new Doc("a", 1);
+        this.writeBehind.submit(doc);
+        this.writer = batch -> {
+            throw new IllegalStateException("Mongo indisponible");
+        };
+
+        this.writeBehind.flush();
+
+        Assertions.assertSame(doc, this.writeBehind.get("a"));
+        Assertions.assertTrue(this.written.isEmpty());
+
+        this.writer = batch -> List.of();
+        this.writeBehind.flush();
+
+        Assertions.assertEquals(List.of(doc), this.written);
+        Assertions.assertEquals(0, this.writeBehind.size());
+    }
+
+    @Test
+    public void testNewerVersionSubmittedDuringFlushKept() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        this.writer = gated(writing, release);
+        this.writeBehind.submit(new Doc("a", 1));
+
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(this.writeBehind::flush);
+        Assertions.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        Doc newer = new Doc("a", 2);
+        this.writeBehind.submit(newer);
+        release.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+
+        // la version 1 est écrite, mais ne retire pas la version 2 reçue pendant l'écriture
+        Assertions.assertSame(newer, this.writeBehind.get("a"));
+    }
+
+    @Test
+    public void testDiscardWaitsForFlushInProgress() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        this.writer = gated(writing, release);
+        this.writeBehind.submit(new Doc("a", 1));
+
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(this.writeBehind::flush);
+        Assertions.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        this.writeBehind.submit(new Doc("a", 2));
+        CompletableFuture<Void> discard = CompletableFuture.runAsync(() -> this.writeBehind.discard("a"));
+
+        Thread.sleep(100);
+        Assertions.assertFalse(discard.isDone());
+
+        release.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+        discard.get(5, TimeUnit.SECONDS);
+
+        // la version 2 est oubliée : rien n'est réécrit après la suppression
+        Assertions.assertNull(this.writeBehind.get("a"));
+        this.writer = batch -> List.of();
+        this.writeBehind.flush();
+        Assertions.assertEquals(1, this.batches.size());
+    }
+
+    @Test
+    public void testCloseFlushesPending() {
+        Doc doc = new Doc("a", 1);
+        this.writeBehind.submit(doc);
+
+        this.writeBehind.close();
+
+        Assertions.assertEquals(List.of(doc), this.written);
+        Assertions.assertEquals(0, this.writeBehind.size());
+    }
+
+    private static Function<List<Doc>, List<Doc>> gated(CountDownLatch writing, CountDownLatch release) {
+        return batch -> {
+            writing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of();
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package fr.semifir.apicinema.services.reactive;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.semifir.apicinema.TestMongo;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.mappers.CinemaMapper;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import fr.semifir.apicinema.repositories.reactive.ReactiveCinemaRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveVersionedWriter;
+import fr.semifir.apicinema.services.CollectionVersions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * Les écritures réactives des cinémas sont reportées dans ReferenceData, comme celles de CinemaService
+ */
+public class ReactiveCinemaServiceTest {
+
+    private TestMongo mongo;
+    private ReferenceData references;
+    private ReactiveCinemaService service;
+
+    @BeforeEach
+    public void setUp() {
+        this.mongo = new TestMongo();
+        this.references = new ReferenceData(this.mongo.template, true, Duration.ZERO);
+        this.references.load();
+        ReactiveCinemaRepository repository = Mockito.mock(ReactiveCinemaRepository.class);
+        ReactiveVersionedWriter writer = Mockito.mock(ReactiveVersionedWriter.class);
+        BDDMockito.given(writer.replace(eq(Cinema.class), any(Cinema.class))).willAnswer(invocation -> Mono.just(invocation.getArgument(1)));
+        BDDMockito.given(repository.delete(any(Cinema.class))).willReturn(Mono.empty());
+        this.service = new ReactiveCinemaService(repository, Mappers.getMapper(CinemaMapper.class),
+                Caffeine.newBuilder().build(), new CollectionVersions(), writer, this.references);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.mongo.close();
+    }
+
+    @Test
+    public void testSaveReplacesCinemaOfSalles() {
+        this.references.putCinemas(List.of(new Cinema("c1", "Rex")));
+        this.references.putSalles(List.of(new Salle("s1", 1, 80, new Cinema("c1", null))));
+
+        this.service.save(new Cinema("c1", "Grand Rex")).block();
+
+        Assertions.assertEquals("Grand Rex", this.references.cinema("c1").getNom());
+        Assertions.assertEquals("Grand Rex", this.references.salle("s1").getCinema().getNom());
+    }
+
+    @Test
+    public void testDeleteRemovesCinema() {
+        Cinema cinema = new Cinema("c1", "Rex");
+        this.service.save(cinema).block();
+        this.references.putSalles(List.of(new Salle("s1", 1, 80, new Cinema("c1", null))));
+
+        this.service.delete(cinema).block();
+
+        Assertions.assertNull(this.references.cinema("c1"));
+        Assertions.assertNull(this.references.salle("s1").getCinema());
+    }
+}
@@ -0,0 +1,97 @@
+package fr.semifir.apicinema.services.reactive;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.mappers.FilmMapper;
+import fr.semifir.apicinema.repositories.FilmRepository;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveFilmRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveVersionedWriter;
+import fr.semifir.apicinema.services.CollectionVersions;
+import fr.semifir.apicinema.services.FilmTitleIndex;
+import fr.semifir.apicinema.services.SeanceSchedule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * Les écritures réactives tiennent à jour l'index des titres et les durées des séances, comme FilmService
+ */
+public class ReactiveFilmServiceTest {
+
+    private ReactiveFilmRepository repository;
+    private ReactiveVersionedWriter writer;
+    private FilmTitleIndex titles;
+    private SeanceSchedule schedule;
+    private ReactiveFilmService service;
+
+    @BeforeEach
+    public void setUp() {
+        this.repository = Mockito.mock(ReactiveFilmRepository.class);
+        this.writer = Mockito.mock(ReactiveVersionedWriter.class);
+        BDDMockito.given(this.writer.replace(eq(Film.class), any(Film.class))).willAnswer(invocation -> Mono.just(invocation.getArgument(1)));
+        BDDMockito.given(this.repository.delete(any(Film.class))).willReturn(Mono.empty());
+        this.titles = new FilmTitleIndex(Mockito.mock(FilmRepository.class));
+        this.schedule = new SeanceSchedule(Mockito.mock(SeanceRepository.class), Mockito.mock(FilmRepository.class), Duration.ofMinutes(60));
+        this.schedule.load();
+        this.service = new ReactiveFilmService(this.repository, Mappers.getMapper(FilmMapper.class),
+                Caffeine.newBuilder().build(), new CollectionVersions(), this.writer, this.schedule, this.titles);
+    }
+
+    @Test
+    public void testSaveIndexesTitle() {
+        this.service.save(new Film("f1", "Amélie", 120f, null)).block();
+
+        Assertions.assertEquals("f1", this.titles.search("ame", 10).get(0).getId());
+
+        this.service.save(new Film("f1", "Brazil", 120f, null)).block();
+
+        Assertions.assertTrue(this.titles.search("ame", 10).isEmpty());
+        Assertions.assertEquals("f1", this.titles.search("braz", 10).get(0).getId());
+    }
+
+    @Test
+    public void testDeleteRemovesTitle() {
+        Film film = new Film("f1", "Amélie", 120f, null);
+        this.service.save(film).block();
+
+        this.service.delete(film).block();
+
+        Assertions.assertTrue(this.titles.search("ame", 10).isEmpty());
+    }
+
+    @Test
+    public void testSaveSetsSeanceLength() {
+        Seance seance = new Seance("se1", new Date(0), new Salle("s1", 1, 100, null));
+        this.schedule.place(seance);
+
+        this.service.save(new Film("f1", "Amélie", 120f, seance)).block();
+
+        Seance next = new Seance("se2", new Date(90 * 60_000L), new Salle("s1", 1, 100, null));
+        Assertions.assertThrows(ConflictException.class, () -> this.schedule.place(next));
+    }
+
+    @Test
+    public void testSaveRefusesLengthOverlappingNextSeance() {
+        this.schedule.place(new Seance("se1", new Date(0), new Salle("s1", 1, 100, null)));
+        this.schedule.place(new Seance("se2", new Date(90 * 60_000L), new Salle("s1", 1, 100, null)));
+
+        Film film = new Film("f1", "Amélie", 120f, new Seance("se1", null, null));
+        Assertions.assertThrows(ConflictException.class, () -> this.service.save(film).block());
+
+        BDDMockito.then(this.writer).should(Mockito.never()).replace(eq(Film.class), any(Film.class));
+    }
+}
@@ -0,0 +1,76 @@
+package fr.semifir.apicinema.services.reactive;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.semifir.apicinema.TestMongo;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.mappers.SalleMapper;
+import fr.semifir.apicinema.repositories.ReferenceData;
+import fr.semifir.apicinema.repositories.reactive.ReactiveSalleRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveVersionedWriter;
+import fr.semifir.apicinema.services.CollectionVersions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * Les écritures réactives des salles sont reportées dans ReferenceData, comme celles de SalleService
+ */
+public class ReactiveSalleServiceTest {
+
+    private TestMongo mongo;
+    private ReferenceData references;
+    private ReactiveSalleService service;
+
+    @BeforeEach
+    public void setUp() {
+        this.mongo = new TestMongo();
+        this.references = new ReferenceData(this.mongo.template, true, Duration.ZERO);
+        this.references.load();
+        this.references.putCinemas(List.of(new Cinema("c1", "Rex")));
+        ReactiveSalleRepository repository = Mockito.mock(ReactiveSalleRepository.class);
+        ReactiveVersionedWriter writer = Mockito.mock(ReactiveVersionedWriter.class);
+        BDDMockito.given(writer.replace(eq(Salle.class), any(Salle.class))).willAnswer(invocation -> Mono.just(invocation.getArgument(1)));
+        BDDMockito.given(repository.delete(any(Salle.class))).willReturn(Mono.empty());
+        this.service = new ReactiveSalleService(repository, Mappers.getMapper(SalleMapper.class),
+                Caffeine.newBuilder().build(), new CollectionVersions(), writer, this.references);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.mongo.close();
+    }
+
+    @Test
+    public void testSavePutsSalle() {
+        this.service.save(new Salle("s1", 1, 80, new Cinema("c1", null))).block();
+
+        Assertions.assertEquals(80, this.references.salle("s1").getNbrPlace());
+        Assertions.assertEquals("Rex", this.references.salle("s1").getCinema().getNom());
+
+        this.service.save(new Salle("s1", 1, 120, new Cinema("c1", null))).block();
+
+        Assertions.assertEquals(120, this.references.salle("s1").getNbrPlace());
+    }
+
+    @Test
+    public void testDeleteRemovesSalle() {
+        Salle salle = new Salle("s1", 1, 80, new Cinema("c1", null));
+        this.service.save(salle).block();
+
+        this.service.delete(salle).block();
+
+        Assertions.assertNull(this.references.salle("s1"));
+    }
+}